@@ -49,6 +49,11 @@ public interface API {
 
     Map<String, String> getPreferences();
 
+    /**
+     * @return the indexes of the opened containers. A future is done as soon as a first snapshot of its indexes is
+     * available: 'get()' returns the latest snapshot while the indexation is running. The collection may implement
+     * FederatedIndexes to look up the indexes of all containers at once.
+     */
     Collection<Future<Indexes>> getCollectionOfFutureIndexes();
 
     interface LoadSourceListener {
@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.api.feature;
+
+import org.jd.gui.api.model.Container;
+
+/**
+ * Optional feature of a Container: lookup of an entry by path, without iterating over the children.
+ */
+public interface ContainerEntryLocatable {
+    /**
+     * @param path path of the entry in the container, as returned by 'Container.Entry.getPath()'
+     * @return the entry, or null if the container contains no entry with this path
+     */
+    Container.Entry getEntry(String path);
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.api.feature;
+
+import org.jd.gui.api.model.Container;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Optional feature of a Container: notification of the changes of its content, like the files of a directory
+ * rewritten by a build.
+ */
+public interface ContainerWatchable {
+    interface ChangeListener {
+        /**
+         * Called once per batch of changes, after the update of the entries of the container. A modified entry is
+         * replaced by a new entry: the old one is removed, the new one is added.
+         *
+         * @param removed removed entries. The descendants of a removed directory are not listed.
+         * @param added   added entries. The descendants of an added directory are not listed.
+         */
+        void containerChanged(Collection<Container.Entry> removed, Collection<Container.Entry> added);
+    }
+
+    /**
+     * @return a handle stopping the watch, or null if the content of this container can not be watched
+     */
+    Closeable watch(ChangeListener listener) throws IOException;
+}
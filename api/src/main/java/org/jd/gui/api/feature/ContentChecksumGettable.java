@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.api.feature;
+
+/**
+ * Optional feature of a Container.Entry: value identifying the version of the content.
+ */
+public interface ContentChecksumGettable {
+    /**
+     * @return the CRC-32 of the content when available, otherwise a value changing with the content, like a
+     *         combination of the modification time and the size
+     */
+    long getContentChecksum();
+}
@@ -12,4 +12,22 @@ import org.jd.gui.api.model.Indexes;
 
 public interface ContentIndexable {
     Indexes index(API api);
+
+    /**
+     * Index the content, publishing snapshots of the indexes to 'listener' while the indexation is running.
+     */
+    default Indexes index(API api, SnapshotListener listener) { return index(api); }
+
+    interface SnapshotListener {
+        /**
+         * @param snapshot immutable indexes
+         * @param progress percentage of indexed entries
+         */
+        void snapshotPublished(Indexes snapshot, int progress);
+
+        /**
+         * @return true to stop the indexation
+         */
+        default boolean isCancelled() { return false; }
+    }
 }
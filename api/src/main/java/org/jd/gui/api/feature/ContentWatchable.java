@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.api.feature;
+
+import org.jd.gui.api.API;
+import org.jd.gui.api.model.Indexes;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Optional feature of a ContentIndexable panel: live update of the indexes when the content changes, or when a part of
+ * the content, like a nested archive, is indexed after 'ContentIndexable.index()'.
+ */
+public interface ContentWatchable {
+    interface UpdateListener {
+        /**
+         * Called once per batch of changes, from a background thread.
+         *
+         * @param indexes updated indexes, replacing the previous ones
+         */
+        void indexesUpdated(Indexes indexes);
+    }
+
+    /**
+     * Watch the content indexed by 'indexes', the result of 'ContentIndexable.index()'.
+     *
+     * @return a handle stopping the watch, or null if the content can not be watched
+     */
+    Closeable watch(API api, Indexes indexes, UpdateListener listener) throws IOException;
+}
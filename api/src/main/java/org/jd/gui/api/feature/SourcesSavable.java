@@ -16,6 +16,9 @@ public interface SourcesSavable {
 
     int getFileCount();
 
+    /**
+     * @throws java.io.UncheckedIOException if the sources can not be written
+     */
     void save(API api, Controller controller, Listener listener, Path path);
 
     interface Controller {
@@ -16,6 +16,12 @@ public interface Container {
 
     Entry getRoot();
 
+    /**
+     * Release the file systems, the nested containers and the temporary files of a container no longer displayed.
+     * The entries must not be read after this call.
+     */
+    default void close() {}
+
     /**
      * File or directory
      */
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.api.model;
+
+/**
+ * Indexes able to postpone the indexation of nested archives: indexers ask before indexing the content of a nested
+ * archive, and skip it if its indexation is deferred. The owner of the indexes indexes it later.
+ */
+public interface DeferringIndexes extends Indexes {
+    /**
+     * Called from any thread.
+     *
+     * @param entry nested archive
+     * @return true if the indexation of 'entry' is deferred
+     */
+    boolean deferIndexation(Container.Entry entry);
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.api.model;
+
+import java.util.Collection;
+import java.util.concurrent.Future;
+
+/**
+ * Collection of the future indexes of the opened containers, merged in a single view.<br>
+ * <br>
+ * 'getIndex(name).get(key)' returns the values of all containers, without iterating over the collection. A federated
+ * collection is immutable: a new version is published each time a container is opened or closed, or publishes new
+ * indexes.
+ */
+public interface FederatedIndexes extends Collection<Future<Indexes>>, Indexes {
+    /**
+     * @return a number incremented each time the collection or the indexes change
+     */
+    long getVersion();
+}
@@ -65,4 +65,10 @@ import java.util.Map;
  */
 public interface Indexes {
     Map<String, Collection> getIndex(String name);
+
+    /**
+     * @return true if the indexation populating these indexes has been cancelled: indexers should check it between
+     * entries, and throw a 'java.util.concurrent.CancellationException'.
+     */
+    default boolean isCancelled() { return false; }
 }
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.api.model;
+
+/**
+ * Indexes able to publish snapshots while the indexation is running.<br>
+ * <br>
+ * Indexers populating these indexes from several threads must synchronize on them, and must call
+ * 'entriesIndexed(int)' only when the content of the indexes is consistent.
+ */
+public interface ProgressiveIndexes extends Indexes {
+    /**
+     * @param count number of entries to index
+     */
+    void entriesFound(int count);
+
+    /**
+     * @param count number of entries indexed since the last call
+     */
+    void entriesIndexed(int count);
+}
@@ -8,6 +8,7 @@
 package org.jd.gui.spi;
 
 import org.jd.gui.api.API;
+import org.jd.gui.api.model.Container;
 
 import java.io.File;
 
@@ -19,4 +20,12 @@ public interface FileLoader {
 	boolean accept(API api, File file);
 	
 	boolean load(API api, File file);
+
+	/**
+	 * Open the container of an archive without user interface, for a batch export for example.
+	 *
+	 * @param parentEntry entry of 'file', parent of the root of the container
+	 * @return the container, released by 'Container.close()', or null if 'file' can not be opened
+	 */
+	default Container open(API api, File file, Container.Entry parentEntry) { return null; }
 }
@@ -13,6 +13,10 @@ import org.jd.gui.api.model.Indexes;
 
 import java.util.regex.Pattern;
 
+/**
+ * Indexers may be called concurrently by the indexing threads: implementations must not store the state of an
+ * indexation in their fields.
+ */
 public interface Indexer {
     String[] getSelectors();
 
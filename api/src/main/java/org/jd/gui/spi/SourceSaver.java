@@ -10,7 +10,14 @@ package org.jd.gui.spi;
 import org.jd.gui.api.API;
 import org.jd.gui.api.model.Container;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.regex.Pattern;
 
 public interface SourceSaver {
@@ -36,11 +43,38 @@ public interface SourceSaver {
      */
     void saveContent(API api, Controller controller, Listener listener, Path rootPath, Path path, Container.Entry entry);
 
+    /**
+     * Save the content in a new archive. By default, the content is saved in a zip file system.
+     */
+    default void saveArchive(API api, Controller controller, Listener listener, Path archivePath, Container.Entry entry) throws IOException {
+        try {
+            URI uri = archivePath.toUri();
+            URI archiveUri = new URI("jar:" + uri.getScheme(), uri.getHost(), uri.getPath() + "!/", null);
+
+            try (FileSystem archiveFs = FileSystems.newFileSystem(archiveUri, Collections.singletonMap("create", "true"))) {
+                Path archiveRootPath = archiveFs.getPath("/");
+                saveContent(api, controller, listener, archiveRootPath, archiveRootPath, entry);
+            }
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     interface Controller {
         boolean isCancelled();
     }
 
     interface Listener {
         void pathSaved(Path path);
+
+        /**
+         * Report of the decompilation of a saved source, possibly called by several threads.
+         *
+         * @param nanos   duration of the decompilation
+         * @param failure cause of the failure, or null
+         */
+        default void pathDecompiled(Path path, long nanos, Throwable failure) {}
     }
 }
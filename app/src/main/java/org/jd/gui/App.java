@@ -7,6 +7,7 @@
 
 package org.jd.gui;
 
+import org.jd.gui.controller.ExportController;
 import org.jd.gui.controller.MainController;
 import org.jd.gui.model.configuration.Configuration;
 import org.jd.gui.service.configuration.ConfigurationPersister;
@@ -26,8 +27,12 @@ public class App {
     protected static MainController controller;
 
     public static void main(String[] args) {
-		if (checkHelpFlag(args)) {
-			JOptionPane.showMessageDialog(null, "Usage: jd-gui [option] [input-file] ...\n\nOption:\n -h Show this help message and exit", Constants.APP_NAME, JOptionPane.INFORMATION_MESSAGE);
+        if (ExportController.checkExportFlag(args)) {
+            // Batch export, before any use of Swing
+            System.setProperty("java.awt.headless", "true");
+            System.exit(new ExportController(System.out).export(args));
+        } else if (checkHelpFlag(args)) {
+			JOptionPane.showMessageDialog(null, "Usage: jd-gui [option] [input-file] ...\n\nOption:\n -h Show this help message and exit\n --export <input-file> ... --out <directory|archive.zip> [--threads N] [--include <glob>] ... [--exclude <glob>] ...\n    Save the sources without user interface, and exit", Constants.APP_NAME, JOptionPane.INFORMATION_MESSAGE);
 		} else {
             // Load preferences
             ConfigurationPersister persister = ConfigurationPersisterService.getInstance().get();
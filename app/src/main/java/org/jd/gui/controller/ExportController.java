@@ -0,0 +1,655 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.controller;
+
+import org.jd.gui.Constants;
+import org.jd.gui.api.API;
+import org.jd.gui.api.feature.UriGettable;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.api.model.Indexes;
+import org.jd.gui.service.configuration.ConfigurationXmlPersisterProvider;
+import org.jd.gui.service.container.ContainerFactoryService;
+import org.jd.gui.service.fileloader.FileLoaderService;
+import org.jd.gui.service.indexer.IndexerService;
+import org.jd.gui.service.sourcesaver.SourceSaverService;
+import org.jd.gui.service.type.TypeFactoryService;
+import org.jd.gui.spi.*;
+import org.jd.gui.util.exception.ExceptionUtil;
+
+import javax.swing.*;
+import java.io.*;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Headless batch export: save the sources of archives and directories without user interface.<br>
+ * <br>
+ * Usage: jd-gui --export &lt;input-file&gt; ... --out &lt;directory|archive.zip&gt; [--threads N]
+ * [--include &lt;glob&gt;] ... [--exclude &lt;glob&gt;] ...<br>
+ * <br>
+ * Swing is never initialized: the inputs are opened by the file loaders and the container factories, and the sources
+ * are saved by the source savers. Several inputs exported to one archive are streamed into it, each one under a
+ * directory named after the input. A JSON object per decompiled file, per input and a final summary are printed on the
+ * standard output.
+ */
+public class ExportController implements API {
+    public static final String EXPORT_FLAG = "--export";
+
+    protected static final String USAGE =
+        "Usage: jd-gui --export <input-file> ... --out <directory|archive.zip> [--threads N] [--include <glob>] ... [--exclude <glob>] ...";
+    protected static final String[] ARCHIVE_EXTENSIONS = { ".zip", ".jar", ".war", ".ear", ".aar", ".jmod", ".kar" };
+    protected static final String JD_CORE_VERSION = "JdGuiPreferences.jdCoreVersion";
+    protected static final String CACHE_DIRECTORY = "JdGuiPreferences.cacheDirectory";
+
+    protected static final int EXIT_SUCCESS = 0;
+    protected static final int EXIT_FAILURE = 1;
+    protected static final int EXIT_USAGE = 2;
+
+    protected HashMap<String, String> preferences = new HashMap<>();
+    protected ArrayList<Input> inputs = new ArrayList<>();
+    protected HashMap<String, Input> inputsByName = new HashMap<>();
+    protected ArrayList<PathMatcher> includes = new ArrayList<>();
+    protected ArrayList<PathMatcher> excludes = new ArrayList<>();
+    protected Path outPath;
+    protected PrintStream out;
+
+    // Saver of the inputs exported in one archive, null otherwise
+    protected SourceSaver inputSourceSaver;
+
+    public ExportController(PrintStream out) {
+        this.out = out;
+    }
+
+    public static boolean checkExportFlag(String[] args) {
+        if (args != null) {
+            for (String arg : args) {
+                if (EXPORT_FLAG.equals(arg)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the exit status: 0 if all sources are saved, 1 on failures, 2 on invalid arguments
+     */
+    public int export(String[] args) {
+        try {
+            parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        preferences.put(JD_CORE_VERSION, ConfigurationXmlPersisterProvider.getJdCoreVersion());
+        preferences.put(CACHE_DIRECTORY, new File(ConfigurationXmlPersisterProvider.getConfigFile().getAbsoluteFile().getParentFile(), Constants.CACHE_DIRECTORYNAME).getPath());
+
+        long start = System.nanoTime();
+        int totalFileCount = 0, totalFailureCount = 0, failedInputCount = 0;
+
+        try {
+            if (isArchive(outPath.getFileName().toString())) {
+                if (outPath.getParent() != null) {
+                    Files.createDirectories(outPath.getParent());
+                }
+                if (inputs.size() == 1) {
+                    exportInput(inputs.get(0), outPath, true);
+                } else {
+                    exportInputs(outPath);
+                }
+            } else {
+                for (Input input : inputs) {
+                    exportInput(input, (inputs.size() == 1) ? outPath : outPath.resolve(input.name), false);
+                }
+            }
+        } catch (IOException e) {
+            assert ExceptionUtil.printStackTrace(e);
+            System.err.println("Cannot write '" + outPath + "': " + e);
+            return EXIT_FAILURE;
+        }
+
+        for (Input input : inputs) {
+            if (input.failure != null) {
+                failedInputCount++;
+            }
+            totalFileCount += input.fileCount;
+            totalFailureCount += input.failureCount;
+        }
+
+        out.println("{\"type\":\"summary\",\"inputs\":" + inputs.size() + ",\"failedInputs\":" + failedInputCount +
+            ",\"files\":" + totalFileCount + ",\"failures\":" + totalFailureCount + ",\"ms\":" + toMillis(System.nanoTime() - start) + "}");
+        out.flush();
+
+        return ((failedInputCount == 0) && (totalFailureCount == 0)) ? EXIT_SUCCESS : EXIT_FAILURE;
+    }
+
+    protected void parseArgs(String[] args) {
+        int i = 0, length = args.length;
+
+        while (i < length) {
+            String arg = args[i++];
+
+            switch (arg) {
+                case EXPORT_FLAG:
+                    while ((i < length) && !args[i].startsWith("--")) {
+                        addInput(new File(args[i++]));
+                    }
+                    break;
+                case "--out":
+                    outPath = Paths.get(getValue(args, i++, arg)).toAbsolutePath();
+                    break;
+                case "--threads":
+                    String threads = getValue(args, i++, arg);
+                    try {
+                        if (Integer.parseInt(threads) < 1) {
+                            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+                        }
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number of threads: " + threads);
+                    }
+                    // Read by the source saver pipeline, not loaded yet
+                    System.setProperty("jd-gui.saveAllSources.threads", threads);
+                    break;
+                case "--include":
+                    includes.add(newPathMatcher(getValue(args, i++, arg)));
+                    break;
+                case "--exclude":
+                    excludes.add(newPathMatcher(getValue(args, i++, arg)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No input file");
+        }
+        if (outPath == null) {
+            throw new IllegalArgumentException("No output, option '--out' missing");
+        }
+        for (Input input : inputs) {
+            if (!input.file.exists()) {
+                throw new IllegalArgumentException("Input file not found: " + input.file);
+            }
+        }
+    }
+
+    /**
+     * Add an input, named after its file: the inputs with the same file name, like the same archive passed twice, are
+     * suffixed to be saved in distinct directories.
+     */
+    protected void addInput(File file) {
+        String name = file.getName();
+
+        if (inputsByName.containsKey(name)) {
+            int index = name.lastIndexOf('.');
+            String baseName = (index > 0) ? name.substring(0, index) : name;
+            String extension = (index > 0) ? name.substring(index) : "";
+
+            for (int i=2; inputsByName.containsKey(name); i++) {
+                name = baseName + '-' + i + extension;
+            }
+        }
+
+        Input input = new Input(file, name);
+
+        inputs.add(input);
+        inputsByName.put(name, input);
+    }
+
+    protected static String getValue(String[] args, int index, String option) {
+        if ((index >= args.length) || args[index].startsWith("--")) {
+            throw new IllegalArgumentException("Missing value of option '" + option + "'");
+        }
+        return args[index];
+    }
+
+    protected static PathMatcher newPathMatcher(String glob) {
+        try {
+            return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid pattern: " + glob);
+        }
+    }
+
+    /**
+     * Save the sources of an input, in the directory or in the new archive 'path'.
+     */
+    protected void exportInput(Input input, Path path, boolean archive) {
+        long start = System.nanoTime();
+
+        input.rootPath = path;
+
+        try {
+            open(input);
+
+            SourceSaver sourceSaver = getSourceSaver(input.entry);
+
+            if (sourceSaver == null) {
+                throw new IOException("No source saver");
+            }
+
+            SourceSaver.Controller controller = () -> false;
+            SourceSaver.Listener listener = new SourceSaver.Listener() {
+                @Override public void pathSaved(Path p) { input.fileCount++; }
+                @Override public void pathDecompiled(Path p, long nanos, Throwable failure) { printFile(input, p, nanos, failure); }
+            };
+
+            if (archive) {
+                // Streamed and decompiled in parallel
+                sourceSaver.saveArchive(this, controller, listener, path, input.entry);
+            } else {
+                Files.createDirectories(path);
+                sourceSaver.saveContent(this, controller, listener, path, path, input.entry);
+            }
+        } catch (UncheckedIOException e) {
+            // Failure of a write, thrown by the source saver
+            assert ExceptionUtil.printStackTrace(e);
+            input.failure = e.getCause();
+        } catch (Exception e) {
+            assert ExceptionUtil.printStackTrace(e);
+            input.failure = e;
+        } finally {
+            input.close();
+            input.nanos = System.nanoTime() - start;
+            printInput(input);
+        }
+    }
+
+    /**
+     * Stream the sources of all the inputs into the new archive 'archivePath', in one pass: the directory source saver
+     * writes the archive, and 'inputSourceSaver' saves each input under its name.
+     */
+    protected void exportInputs(Path archivePath) {
+        ArrayList<Container.Entry> children = new ArrayList<>(inputs.size());
+
+        for (Input input : inputs) {
+            input.rootPath = archivePath.resolve(input.name);
+            children.add(input.entry);
+        }
+
+        OutputEntry outputEntry = new OutputEntry(archivePath.toFile(), children);
+        SourceSaver sourceSaver = SourceSaverService.getInstance().get(outputEntry);
+        SourceSaver.Listener listener = new SourceSaver.Listener() {
+            @Override
+            public void pathSaved(Path p) {
+                Input input = getInput(archivePath, p);
+
+                if (input != null) {
+                    input.fileCount++;
+                }
+            }
+
+            @Override
+            public void pathDecompiled(Path p, long nanos, Throwable failure) {
+                Input input = getInput(archivePath, p);
+
+                if (input != null) {
+                    printFile(input, p, nanos, failure);
+                }
+            }
+        };
+        Throwable failure = null;
+
+        inputSourceSaver = new InputSourceSaver();
+
+        try {
+            if (sourceSaver == null) {
+                throw new IOException("No source saver");
+            }
+
+            sourceSaver.saveArchive(this, () -> false, listener, archivePath, outputEntry);
+        } catch (UncheckedIOException e) {
+            assert ExceptionUtil.printStackTrace(e);
+            failure = e.getCause();
+        } catch (Exception e) {
+            assert ExceptionUtil.printStackTrace(e);
+            failure = e;
+        } finally {
+            inputSourceSaver = null;
+        }
+
+        for (Input input : inputs) {
+            // The archive is shared: a failure of its writing fails all the inputs
+            if ((input.failure == null) && (failure != null)) {
+                input.failure = failure;
+            }
+
+            // Closed once their contents are written
+            input.close();
+            printInput(input);
+        }
+    }
+
+    protected Input getInput(Path archivePath, Path path) {
+        if ((path.getFileSystem() != archivePath.getFileSystem()) || !path.startsWith(archivePath) || path.equals(archivePath)) {
+            return null;
+        }
+        return inputsByName.get(archivePath.relativize(path).getName(0).toString());
+    }
+
+    /**
+     * Open the container of an input: the archives are opened by their file loader, on the file systems shared with
+     * the other containers, without creating the panel of the user interface.
+     */
+    protected void open(Input input) throws IOException {
+        File file = input.file;
+        Container container = null;
+
+        if (file.isDirectory()) {
+            Path rootPath = file.toPath();
+            ContainerFactory containerFactory = getContainerFactory(rootPath);
+
+            if (containerFactory != null) {
+                container = containerFactory.make(this, input.entry, rootPath);
+            }
+        } else if (isArchive(file.getName())) {
+            FileLoader fileLoader = FileLoaderService.getInstance().get(this, file);
+
+            if ((fileLoader != null) && fileLoader.accept(this, file)) {
+                container = fileLoader.open(this, file, input.entry);
+            }
+        }
+
+        if (container == null) {
+            throw new IOException("Unsupported input file");
+        }
+
+        input.container = container;
+        input.entry.setChildren(container.getRoot().getChildren());
+    }
+
+    // --- Summary --- //
+    protected synchronized void printFile(Input input, Path path, long nanos, Throwable failure) {
+        StringBuilder sb = new StringBuilder("{\"type\":\"file\",\"input\":");
+
+        appendString(sb, input.name).append(",\"path\":");
+        appendString(sb, getRelativePath(input.rootPath, path)).append(",\"ms\":").append(toMillis(nanos));
+
+        if (failure == null) {
+            sb.append(",\"status\":\"ok\"}");
+        } else {
+            input.failureCount++;
+            sb.append(",\"status\":\"failed\",\"error\":");
+            appendString(sb, failure.toString()).append('}');
+        }
+
+        out.println(sb);
+    }
+
+    protected synchronized void printInput(Input input) {
+        StringBuilder sb = new StringBuilder("{\"type\":\"input\",\"input\":");
+
+        appendString(sb, input.name).append(",\"files\":").append(input.fileCount).append(",\"failures\":").append(input.failureCount);
+        sb.append(",\"ms\":").append(toMillis(input.nanos));
+
+        if (input.failure == null) {
+            sb.append(",\"status\":\"ok\"}");
+        } else {
+            sb.append(",\"status\":\"failed\",\"error\":");
+            appendString(sb, input.failure.toString()).append('}');
+        }
+
+        out.println(sb);
+    }
+
+    protected static String getRelativePath(Path rootPath, Path path) {
+        if (path.getFileSystem() != rootPath.getFileSystem()) {
+            // Nested archive saved in a temporary file system
+            return path.toString();
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (Path name : rootPath.relativize(path)) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(name.toString());
+        }
+
+        return sb.toString();
+    }
+
+    protected static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    protected static StringBuilder appendString(StringBuilder sb, String s) {
+        sb.append('"');
+
+        for (int i = 0, length = s.length(); i < length; i++) {
+            char c = s.charAt(i);
+
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < ' ') {
+                        sb.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+
+        return sb.append('"');
+    }
+
+    // --- Filters --- //
+    protected boolean isIncluded(Container.Entry entry) {
+        if (entry instanceof InputEntry) {
+            return true;
+        }
+
+        Path path = Paths.get(entry.getPath());
+
+        for (PathMatcher matcher : excludes) {
+            if (matcher.matches(path)) {
+                return false;
+            }
+        }
+
+        if (includes.isEmpty() || entry.isDirectory() || isArchive(entry.getPath())) {
+            // Traverse directories and nested archives
+            return true;
+        }
+
+        for (PathMatcher matcher : includes) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    protected static boolean isArchive(String name) {
+        String lowerCase = name.toLowerCase();
+
+        for (String extension : ARCHIVE_EXTENSIONS) {
+            if (lowerCase.endsWith(extension)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // --- API --- //
+    @Override public boolean openURI(URI uri) { return false; }
+    @Override public boolean openURI(int x, int y, Collection<Container.Entry> entries, String query, String fragment) { return false; }
+    @Override public void addURI(URI uri) {}
+    @Override public <T extends JComponent & UriGettable> void addPanel(String title, Icon icon, String tip, T component) {}
+    @Override public Collection<Action> getContextualActions(Container.Entry entry, String fragment) { return null; }
+    @Override public UriLoader getUriLoader(URI uri) { return null; }
+    @Override public FileLoader getFileLoader(File file) { return null; }
+    @Override public ContainerFactory getContainerFactory(Path rootPath) { return ContainerFactoryService.getInstance().get(this, rootPath); }
+    @Override public PanelFactory getMainPanelFactory(Container container) { return null; }
+    @Override public TreeNodeFactory getTreeNodeFactory(Container.Entry entry) { return null; }
+    @Override public TypeFactory getTypeFactory(Container.Entry entry) { return TypeFactoryService.getInstance().get(entry); }
+    @Override public Indexer getIndexer(Container.Entry entry) { return IndexerService.getInstance().get(entry); }
+    @Override
+    public SourceSaver getSourceSaver(Container.Entry entry) {
+        if ((inputSourceSaver != null) && (entry instanceof InputEntry)) {
+            return inputSourceSaver;
+        }
+        return isIncluded(entry) ? SourceSaverService.getInstance().get(entry) : null;
+    }
+    @Override public Map<String, String> getPreferences() { return preferences; }
+    @Override public Collection<Future<Indexes>> getCollectionOfFutureIndexes() { return Collections.emptyList(); }
+
+    // Sources are decompiled, never downloaded
+    @Override public String getSource(Container.Entry entry) { return null; }
+    @Override public void loadSource(Container.Entry entry, LoadSourceListener listener) {}
+    @Override public File loadSourceFile(Container.Entry entry) { return null; }
+
+    protected static class Input {
+        protected File file;
+        // Name in the output, unique
+        protected String name;
+        protected InputEntry entry;
+        protected Container container;
+        protected Path rootPath;
+
+        // Statistics
+        protected long nanos;
+        protected int fileCount;
+        protected int failureCount;
+        protected Throwable failure;
+
+        public Input(File file, String name) {
+            this.file = file;
+            this.name = name;
+            this.entry = new InputEntry(file.getAbsoluteFile());
+        }
+
+        public void close() {
+            if (container != null) {
+                container.close();
+                container = null;
+            }
+        }
+    }
+
+    /**
+     * Saver of an input exported with other inputs in one archive: open the input, then save its content under its name.
+     */
+    protected class InputSourceSaver implements SourceSaver {
+        @Override public String[] getSelectors() { return new String[0]; }
+        @Override public Pattern getPathPattern() { return null; }
+        @Override public String getSourcePath(Container.Entry entry) { return getInput(entry).name; }
+        @Override public int getFileCount(API api, Container.Entry entry) { return 0; }
+
+        @Override
+        public void save(API api, SourceSaver.Controller controller, SourceSaver.Listener listener, Path rootPath, Container.Entry entry) {
+            saveContent(api, controller, listener, rootPath, rootPath.resolve(getSourcePath(entry)), entry);
+        }
+
+        @Override
+        public void saveContent(API api, SourceSaver.Controller controller, SourceSaver.Listener listener, Path rootPath, Path path, Container.Entry entry) {
+            Input input = getInput(entry);
+            long start = System.nanoTime();
+
+            try {
+                open(input);
+
+                // Paths of the content relative to the directory of the input
+                for (Container.Entry e : entry.getChildren()) {
+                    if (controller.isCancelled()) {
+                        break;
+                    }
+
+                    SourceSaver sourceSaver = api.getSourceSaver(e);
+
+                    if (sourceSaver != null) {
+                        sourceSaver.save(api, controller, listener, path, e);
+                    }
+                }
+            } catch (Exception e) {
+                assert ExceptionUtil.printStackTrace(e);
+                input.failure = e;
+            } finally {
+                input.nanos = System.nanoTime() - start;
+            }
+        }
+
+        protected Input getInput(Container.Entry entry) {
+            for (Input input : inputs) {
+                if (input.entry == entry) {
+                    return input;
+                }
+            }
+            throw new IllegalArgumentException("Not an input: " + entry.getPath());
+        }
+    }
+
+    protected static class InputEntry implements Container.Entry {
+        protected static final Container PARENT_CONTAINER = new Container() {
+            @Override public String getType() { return "generic"; }
+            @Override public Container.Entry getRoot() { return null; }
+        };
+
+        protected Collection<Container.Entry> children = Collections.emptyList();
+        protected File file;
+        protected URI uri;
+        protected String path;
+
+        public InputEntry(File file) {
+            this.file = file;
+            this.uri = file.toURI();
+            this.path = uri.getPath();
+
+            if (path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+        }
+
+        @Override public Container getContainer() { return PARENT_CONTAINER; }
+        @Override public Container.Entry getParent() { return null; }
+        @Override public URI getUri() { return uri; }
+        @Override public String getPath() { return path; }
+        @Override public boolean isDirectory() { return file.isDirectory(); }
+        @Override public long length() { return file.length(); }
+        @Override public Collection<Container.Entry> getChildren() { return children; }
+
+        @Override
+        public InputStream getInputStream() {
+            try {
+                return new BufferedInputStream(new FileInputStream(file));
+            } catch (FileNotFoundException e) {
+                assert ExceptionUtil.printStackTrace(e);
+                return null;
+            }
+        }
+
+        public void setChildren(Collection<Container.Entry> children) {
+            this.children = children;
+        }
+    }
+
+    /**
+     * Directory of the inputs exported in one archive.
+     */
+    protected static class OutputEntry extends InputEntry {
+        public OutputEntry(File file, Collection<Container.Entry> children) {
+            super(file);
+            this.children = children;
+        }
+
+        @Override public boolean isDirectory() { return true; }
+    }
+}
@@ -10,6 +10,7 @@ package org.jd.gui.controller;
 import org.jd.gui.api.API;
 import org.jd.gui.api.feature.*;
 import org.jd.gui.api.model.Container;
+import org.jd.gui.api.model.FederatedIndexes;
 import org.jd.gui.api.model.Indexes;
 import org.jd.gui.model.configuration.Configuration;
 import org.jd.gui.model.history.History;
@@ -28,9 +29,14 @@ import org.jd.gui.service.type.TypeFactoryService;
 import org.jd.gui.service.uriloader.UriLoaderService;
 import org.jd.gui.spi.*;
 import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.index.CompactIndexes;
+import org.jd.gui.util.index.GlobalIndexes;
+import org.jd.gui.util.index.IndexesFuture;
+import org.jd.gui.util.index.IndexingScheduler;
 import org.jd.gui.util.net.UriUtil;
 import org.jd.gui.util.swing.SwingUtil;
 import org.jd.gui.view.MainView;
+import org.jd.gui.view.component.panel.OpeningPanel;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -40,6 +46,7 @@ import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -48,6 +55,9 @@ import java.net.URI;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -71,6 +81,19 @@ public class MainController implements API {
     protected JComponent currentPage = null;
     protected ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
     protected ArrayList<IndexesChangeListener> containerChangeListeners = new ArrayList<>();
+    protected GlobalIndexes globalIndexes = new GlobalIndexes("typeDeclarations");
+    protected IndexingScheduler indexingScheduler = new IndexingScheduler(2, () -> SwingUtil.invokeLater(() -> updateIndexingStates()));
+    protected ConcurrentHashMap<Future<Indexes>, Closeable> watches = new ConcurrentHashMap<>();
+    // Files are opened in parallel, out of the event dispatch thread
+    protected ExecutorService openingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "jd-gui-opener");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Placeholder of the file opened by the current thread of 'openingExecutor'
+    protected ThreadLocal<OpeningPanel> openingPanel = new ThreadLocal<>();
+    // Main panels releasing their resources when closed, accessed from the event dispatch thread
+    protected ArrayList<JComponent> closeablePanels = new ArrayList<>();
 
     @SuppressWarnings("unchecked")
     public MainController(Configuration configuration) {
@@ -397,10 +420,18 @@ public class MainController implements API {
         aboutController.show();
     }
 
+    @SuppressWarnings("unchecked")
     protected void onCurrentPageChanged(JComponent page) {
         currentPage = page;
         checkPreferencesChange(page);
         checkIndexesChange(page);
+
+        // Index the selected container first
+        JComponent selectedPanel = mainView.getSelectedMainPanel();
+
+        if (selectedPanel != null) {
+            indexingScheduler.select((Future<Indexes>)selectedPanel.getClientProperty("indexes"));
+        }
     }
 
     protected void checkPreferencesChange(JComponent page) {
@@ -418,13 +449,13 @@ public class MainController implements API {
 
     protected void checkIndexesChange(JComponent page) {
         if (page instanceof IndexesChangeListener) {
-            Collection<Future<Indexes>> collectionOfFutureIndexes = getCollectionOfFutureIndexes();
-            Integer currentHashcode = Integer.valueOf(collectionOfFutureIndexes.hashCode());
-            Integer lastHashcode = (Integer)page.getClientProperty("collectionOfFutureIndexes-hashCode");
+            FederatedIndexes federatedIndexes = globalIndexes.getFederatedIndexes();
+            Long currentVersion = Long.valueOf(federatedIndexes.getVersion());
+            Long lastVersion = (Long)page.getClientProperty("indexes-version");
 
-            if (!currentHashcode.equals(lastHashcode)) {
-                ((IndexesChangeListener)page).indexesChanged(collectionOfFutureIndexes);
-                page.putClientProperty("collectionOfFutureIndexes-hashCode", currentHashcode);
+            if (!currentVersion.equals(lastVersion)) {
+                ((IndexesChangeListener)page).indexesChanged(federatedIndexes);
+                page.putClientProperty("indexes-version", currentVersion);
             }
         }
     }
@@ -452,9 +483,19 @@ public class MainController implements API {
 
         if (errors.isEmpty()) {
             for (File file : files) {
-                if (openURI(file.toURI())) {
+                URI uri = file.toURI();
+
+                if (mainView.openUri(uri)) {
+                    // File already opened, or being opened
+                    addURI(uri);
                     configuration.addRecentFile(file);
                     mainView.updateRecentFilesMenu(configuration.getRecentFiles());
+                } else {
+                    UriLoader uriLoader = getUriLoader(uri);
+
+                    if (uriLoader != null) {
+                        openInBackground(file, uri, uriLoader);
+                    }
                 }
             }
         } else {
@@ -532,7 +573,60 @@ public class MainController implements API {
         }
     }
 
+    @SuppressWarnings("unchecked")
     protected void panelClosed() {
+        List<JComponent> mainPanels = mainView.getMainPanels();
+        ArrayList<Future<Indexes>> list = new ArrayList<>(mainPanels.size());
+
+        for (JComponent panel : mainPanels) {
+            Future<Indexes> futureIndexes = (Future<Indexes>)panel.getClientProperty("indexes");
+            if (futureIndexes != null) {
+                list.add(futureIndexes);
+            }
+        }
+
+        // Cancel the indexation of the closed containers
+        indexingScheduler.retain(list);
+
+        // Stop watching the closed containers
+        for (Future<Indexes> futureIndexes : watches.keySet()) {
+            if (!list.contains(futureIndexes)) {
+                closeWatch(futureIndexes);
+            }
+        }
+
+        // Release the closed containers
+        ArrayList<Closeable> closedPanels = new ArrayList<>();
+
+        for (Iterator<JComponent> iterator = closeablePanels.iterator(); iterator.hasNext(); ) {
+            JComponent panel = iterator.next();
+
+            if (!mainPanels.contains(panel)) {
+                iterator.remove();
+                closedPanels.add((Closeable)panel);
+            }
+        }
+
+        executor.execute(() -> {
+            // Remove the indexes of the closed containers
+            globalIndexes.retain(list);
+            fireIndexesChanged();
+
+            for (Closeable panel : closedPanels) {
+                close(panel);
+            }
+        });
+    }
+
+    protected static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            assert ExceptionUtil.printStackTrace(e);
+        }
+    }
+
+    protected void fireIndexesChanged() {
         SwingUtil.invokeLater(() -> {
             // Fire 'indexesChanged' event
             Collection<Future<Indexes>> collectionOfFutureIndexes = getCollectionOfFutureIndexes();
@@ -542,6 +636,65 @@ public class MainController implements API {
             if (currentPage instanceof IndexesChangeListener) {
                 ((IndexesChangeListener)currentPage).indexesChanged(collectionOfFutureIndexes);
             }
+            updateIndexingStates();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void updateIndexingStates() {
+        for (JComponent panel : (List<JComponent>)mainView.getMainPanels()) {
+            Object futureIndexes = panel.getClientProperty("indexes");
+
+            if (futureIndexes instanceof IndexesFuture) {
+                IndexesFuture indexesFuture = (IndexesFuture)futureIndexes;
+                int position = indexingScheduler.getQueuePosition(indexesFuture);
+
+                if (position > 0) {
+                    mainView.setMainPanelState(panel, "waiting for indexing, position " + position + " in queue", true);
+                } else if (!indexesFuture.isCompleted()) {
+                    mainView.setMainPanelState(panel, "indexing " + indexesFuture.getProgress() + "%", false);
+                } else {
+                    mainView.setMainPanelState(panel, null, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Display a placeholder, then load the file from 'openingExecutor': the placeholder is replaced by the panel
+     * added by the loader, or removed if the loading fails.
+     */
+    @SuppressWarnings("unchecked")
+    protected void openInBackground(File file, URI uri, UriLoader uriLoader) {
+        OpeningPanel placeholder = new OpeningPanel(file);
+
+        mainView.addMainPanel(file.getName(), null, "Location: " + file.getPath(), placeholder);
+        mainView.setMainPanelState(placeholder, "opening", true);
+
+        openingExecutor.execute(() -> {
+            boolean success = false;
+
+            try {
+                openingPanel.set(placeholder);
+                success = uriLoader.load(this, uri);
+            } catch (Throwable t) {
+                assert ExceptionUtil.printStackTrace(t);
+            } finally {
+                openingPanel.remove();
+            }
+
+            boolean loaded = success;
+
+            SwingUtil.invokeLater(() -> {
+                // Remove the placeholder, if not replaced
+                mainView.removeMainPanel(placeholder);
+
+                if (loaded) {
+                    addURI(uri);
+                    configuration.addRecentFile(file);
+                    mainView.updateRecentFilesMenu(configuration.getRecentFiles());
+                }
+            });
         });
     }
 
@@ -602,27 +755,126 @@ public class MainController implements API {
     @Override
     @SuppressWarnings("unchecked")
     public <T extends JComponent & UriGettable> void addPanel(String title, Icon icon, String tip, T component) {
-        mainView.addMainPanel(title, icon, tip, component);
+        OpeningPanel placeholder = openingPanel.get();
+
+        if (placeholder == null) {
+            mainView.addMainPanel(title, icon, tip, component);
+            addCloseablePanel(component);
+            submitIndexing(component);
+        } else {
+            // Called by a loader running in 'openingExecutor'
+            openingPanel.remove();
 
+            SwingUtil.invokeLater(() -> {
+                if (mainView.getMainPanels().contains(placeholder)) {
+                    addCloseablePanel(component);
+                    submitIndexing(component);
+                    mainView.replaceMainPanel(placeholder, title, icon, tip, component);
+                } else if (component instanceof Closeable) {
+                    // Drop the panel: the placeholder has been closed meanwhile
+                    executor.execute(() -> close((Closeable)component));
+                }
+            });
+        }
+    }
+
+    protected void addCloseablePanel(JComponent component) {
+        if (component instanceof Closeable) {
+            closeablePanels.add(component);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T extends JComponent & UriGettable> void submitIndexing(T component) {
         if (component instanceof ContentIndexable) {
-            Future<Indexes> futureIndexes = executor.submit(() -> {
-                Indexes indexes = ((ContentIndexable)component).index(this);
+            IndexesFuture futureIndexes = new IndexesFuture();
+
+            component.putClientProperty("indexes", futureIndexes);
+            globalIndexes.add(futureIndexes);
+
+            indexingScheduler.submit(futureIndexes, () -> {
+                Indexes indexes = null;
+
+                try {
+                    // Publish snapshots while indexing, stop when the panel is closed
+                    indexes = ((ContentIndexable)component).index(this, new ContentIndexable.SnapshotListener() {
+                        @Override
+                        public void snapshotPublished(Indexes snapshot, int progress) {
+                            futureIndexes.publish(snapshot, progress);
+                            globalIndexes.update(futureIndexes, snapshot);
+                            fireIndexesChanged();
+                        }
+
+                        @Override public boolean isCancelled() { return futureIndexes.isCancelled(); }
+                    });
+                    futureIndexes.complete(indexes);
+                } catch (CancellationException e) {
+                    // Panel closed
+                    return;
+                } catch (Throwable t) {
+                    assert ExceptionUtil.printStackTrace(t);
+                    futureIndexes.fail(t);
+                }
+
+                globalIndexes.update(futureIndexes, indexes);
+
+                fireIndexesChanged();
+
+                if (indexes instanceof CompactIndexes) {
+                    // Prepare searches
+                    ((CompactIndexes)indexes).buildTypeNameIndex("typeDeclarations");
+                    ((CompactIndexes)indexes).buildTrigramIndexes();
+                }
+
+                if ((indexes != null) && (component instanceof ContentWatchable)) {
+                    watch(component, futureIndexes, indexes);
+                }
+            });
+        }
+    }
+
+    /**
+     * Update the indexes of a container after each change of its content, or of its indexed content.
+     */
+    protected <T extends JComponent & UriGettable> void watch(T component, IndexesFuture futureIndexes, Indexes indexes) {
+        try {
+            Closeable watch = ((ContentWatchable)component).watch(this, indexes, updatedIndexes -> {
+                if (updatedIndexes instanceof CompactIndexes) {
+                    // Prepare searches
+                    ((CompactIndexes)updatedIndexes).buildTypeNameIndex("typeDeclarations");
+                    ((CompactIndexes)updatedIndexes).buildTrigramIndexes();
+                }
+
+                futureIndexes.update(updatedIndexes);
+                globalIndexes.update(futureIndexes, updatedIndexes);
+
+                fireIndexesChanged();
+            });
+
+            if (watch != null) {
+                watches.put(futureIndexes, watch);
 
                 SwingUtil.invokeLater(() -> {
-                    // Fire 'indexesChanged' event
-                    Collection<Future<Indexes>> collectionOfFutureIndexes = getCollectionOfFutureIndexes();
-                    for (IndexesChangeListener listener : containerChangeListeners) {
-                        listener.indexesChanged(collectionOfFutureIndexes);
-                    }
-                    if (currentPage instanceof IndexesChangeListener) {
-                        ((IndexesChangeListener) currentPage).indexesChanged(collectionOfFutureIndexes);
+                    // Panel closed while the watch was starting ?
+                    if (!mainView.getMainPanels().contains(component)) {
+                        closeWatch(futureIndexes);
                     }
                 });
+            }
+        } catch (IOException e) {
+            assert ExceptionUtil.printStackTrace(e);
+        }
+    }
 
-                return indexes;
-            });
+    protected void closeWatch(Future<Indexes> futureIndexes) {
+        Closeable watch = watches.remove(futureIndexes);
 
-            component.putClientProperty("indexes", futureIndexes);
+        if (watch != null) {
+            try {
+                watch.close();
+            } catch (IOException e) {
+                assert ExceptionUtil.printStackTrace(e);
+            }
         }
     }
 
@@ -647,38 +899,8 @@ public class MainController implements API {
     @Override public Map<String, String> getPreferences() { return configuration.getPreferences(); }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Collection<Future<Indexes>> getCollectionOfFutureIndexes() {
-        List<JComponent> mainPanels = mainView.getMainPanels();
-        ArrayList<Future<Indexes>> list = new ArrayList<Future<Indexes>>(mainPanels.size()) {
-            @Override
-            public int hashCode() {
-                int hashCode = 1;
-
-                try {
-                    for (Future<Indexes> futureIndexes : this) {
-                        hashCode *= 31;
-
-                        if (futureIndexes.isDone()) {
-                            hashCode += futureIndexes.get().hashCode();
-                        }
-                    }
-                } catch (Exception e) {
-                    assert ExceptionUtil.printStackTrace(e);
-                }
-
-                return hashCode;
-            }
-        };
-
-        for (JComponent panel : mainPanels) {
-            Future<Indexes> futureIndexes = (Future<Indexes>)panel.getClientProperty("indexes");
-            if (futureIndexes != null) {
-                list.add(futureIndexes);
-            }
-        }
-
-        return list;
+        return globalIndexes.getFederatedIndexes();
     }
 
     @Override
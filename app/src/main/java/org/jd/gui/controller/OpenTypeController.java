@@ -12,6 +12,9 @@ import org.jd.gui.api.feature.IndexesChangeListener;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.api.model.Indexes;
 import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.index.CompactIndexes;
+import org.jd.gui.util.index.IndexesFuture;
+import org.jd.gui.util.index.TypeNameIndex;
 import org.jd.gui.util.net.UriUtil;
 import org.jd.gui.view.OpenTypeView;
 
@@ -26,6 +29,7 @@ import java.util.regex.Pattern;
 
 public class OpenTypeController implements IndexesChangeListener {
     protected static final int CACHE_MAX_ENTRIES = 5*20;
+    protected static final String REGEX_CHARACTERS = "\\[](){}+^$|";
 
     protected API api;
     protected ScheduledExecutorService executor;
@@ -76,7 +80,7 @@ public class OpenTypeController implements IndexesChangeListener {
 
         if (patternLength == 0) {
             // Display
-            openTypeView.updateList(Collections.emptyMap());
+            openTypeView.updateList(Collections.emptyMap(), IndexesFuture.getProgress(collectionOfFutureIndexes));
         } else {
             executor.execute(() -> {
                 // Waiting the end of indexation...
@@ -109,7 +113,9 @@ public class OpenTypeController implements IndexesChangeListener {
                                     matchingEntries = new HashMap<>();
 
                                     // Filter
-                                    if (patternLength == 1) {
+                                    if (index instanceof CompactIndexes.Index) {
+                                        match(pattern, regExpPattern, (CompactIndexes.Index)index, matchingEntries);
+                                    } else if (patternLength == 1) {
                                         match(pattern.charAt(0), index, matchingEntries);
                                     } else {
                                         String lastKey = key.substring(0, patternLength - 1);
@@ -141,10 +147,12 @@ public class OpenTypeController implements IndexesChangeListener {
                     assert ExceptionUtil.printStackTrace(e);
                 }
 
+                int progress = IndexesFuture.getProgress(collectionOfFutureIndexes);
+
                 SwingUtilities.invokeLater(() -> {
                     openTypeView.hideWaitCursor();
                     // Display
-                    openTypeView.updateList(result);
+                    openTypeView.updateList(result, progress);
                 });
             });
         }
@@ -226,6 +234,66 @@ public class OpenTypeController implements IndexesChangeListener {
         return Pattern.compile(sbPattern.toString());
     }
 
+    /**
+     * Select the candidates with the type name index: the prefix of the pattern, before the first wildcard or camel
+     * case hump, and its letters are searched in the simple names, then the candidates are verified.
+     */
+    protected static void match(String pattern, Pattern regExpPattern, CompactIndexes.Index index, Map<String, Collection> result) {
+        int patternLength = pattern.length();
+        Map<String, Collection> matchingEntries;
+
+        if (patternLength == 1) {
+            char c = pattern.charAt(0);
+            char upperCase = Character.isLowerCase(c) ? Character.toUpperCase(c) : c;
+
+            matchingEntries = index.filterTypeNames(pattern, "", "", typeName -> {
+                int lastIndex = TypeNameIndex.getSimpleNameOffset(typeName);
+                char first = typeName.charAt(lastIndex);
+                return (first == c) || (first == upperCase);
+            });
+        } else {
+            StringBuilder prefix = new StringBuilder(patternLength);
+            StringBuilder upperCases = new StringBuilder(patternLength);
+            StringBuilder letters = new StringBuilder(patternLength);
+            boolean inPrefix = true;
+
+            if ((pattern.indexOf('|') == -1) && (pattern.indexOf('{') == -1)) {
+                for (int i=0; i<patternLength; i++) {
+                    char c = pattern.charAt(i);
+
+                    if (REGEX_CHARACTERS.indexOf(c) != -1) {
+                        // Regular expression: stop the selection
+                        break;
+                    }
+
+                    if (Character.isUpperCase(c)) {
+                        if (i > 1) {
+                            inPrefix = false;
+                        }
+                        upperCases.append(c);
+                    } else if (Character.isLowerCase(c)) {
+                        letters.append(c);
+                    } else if ((c == '*') || (c == '?') || (c == '.')) {
+                        inPrefix = false;
+                    }
+
+                    if (inPrefix) {
+                        prefix.append(c);
+                    }
+                }
+            }
+
+            matchingEntries = index.filterTypeNames(prefix.toString(), upperCases.toString(), letters.toString(), typeName -> {
+                int lastIndex = TypeNameIndex.getSimpleNameOffset(typeName);
+                return regExpPattern.matcher(typeName.substring(lastIndex)).matches();
+            });
+        }
+
+        for (Map.Entry<String, Collection> mapEntry : matchingEntries.entrySet()) {
+            add(result, mapEntry.getKey(), mapEntry.getValue());
+        }
+    }
+
     @SuppressWarnings("unchecked")
     protected static void match(Pattern regExpPattern, Map<String, Collection> index, Map<String, Collection> result) {
         for (Map.Entry<String, Collection> mapEntry : index.entrySet()) {
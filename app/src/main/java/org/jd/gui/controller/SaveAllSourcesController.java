@@ -22,7 +22,7 @@ import java.util.concurrent.ScheduledExecutorService;
 public class SaveAllSourcesController implements SourcesSavable.Controller, SourcesSavable.Listener {
     protected API api;
     protected SaveAllSourcesView saveAllSourcesView;
-    protected boolean cancel;
+    protected volatile boolean cancel;
     protected int counter;
     protected int mask;
 
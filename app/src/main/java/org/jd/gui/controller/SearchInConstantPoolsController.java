@@ -17,6 +17,8 @@ import org.jd.gui.service.type.TypeFactoryService;
 import org.jd.gui.spi.TypeFactory;
 import org.jd.gui.util.exception.ExceptionUtil;
 import org.jd.gui.util.function.TriConsumer;
+import org.jd.gui.util.index.CompactIndexes;
+import org.jd.gui.util.index.IndexesFuture;
 import org.jd.gui.view.SearchInConstantPoolsView;
 
 import javax.swing.*;
@@ -131,7 +133,7 @@ public class SearchInConstantPoolsController implements IndexesChangeListener {
             final int count = matchingTypeCount;
 
             searchInConstantPoolsView.hideWaitCursor();
-            searchInConstantPoolsView.updateTree(delegatingFilterContainers, count);
+            searchInConstantPoolsView.updateTree(delegatingFilterContainers, count, IndexesFuture.getProgress(collectionOfFutureIndexes));
         });
     }
 
@@ -297,7 +299,7 @@ public class SearchInConstantPoolsController implements IndexesChangeListener {
                     } else {
                         String lastKey = key.substring(0, key.length() - 1);
                         Map<String, Collection> lastMatchedTypes = cache.get(lastKey);
-                        if (lastMatchedTypes != null) {
+                        if ((lastMatchedTypes != null) && !(index instanceof CompactIndexes.Index)) {
                             matchedEntries = matchWithStringFunction.apply(pattern, lastMatchedTypes);
                         } else {
                             matchedEntries = matchWithStringFunction.apply(pattern, index);
@@ -340,6 +342,15 @@ public class SearchInConstantPoolsController implements IndexesChangeListener {
 
     protected static Map<String, Collection> matchTypeEntriesWithString(String pattern, Map<String, Collection> index) {
         Pattern p = createPattern(pattern);
+
+        if (index instanceof CompactIndexes.Index) {
+            // Select candidates with the trigram index
+            return ((CompactIndexes.Index)index).filter(pattern, false, typeName -> {
+                int lastIndex = Math.max(typeName.lastIndexOf('/'), typeName.lastIndexOf('$')) + 1;
+                return p.matcher(typeName.substring(lastIndex)).matches();
+            });
+        }
+
         Map<String, Collection> map = new HashMap<>();
 
         for (String typeName : index.keySet()) {
@@ -359,6 +370,9 @@ public class SearchInConstantPoolsController implements IndexesChangeListener {
     protected static Map<String, Collection> matchWithChar(char c, Map<String, Collection> index) {
         if ((c == '*') || (c == '?')) {
             return index;
+        } else if (index instanceof CompactIndexes.Index) {
+            // Select the range of sorted keys starting with 'c'
+            return ((CompactIndexes.Index)index).filter(String.valueOf(c), true, key -> !key.isEmpty() && (key.charAt(0) == c));
         } else {
             Map<String, Collection> map = new HashMap<>();
 
@@ -374,6 +388,12 @@ public class SearchInConstantPoolsController implements IndexesChangeListener {
 
     protected static Map<String, Collection> matchWithString(String pattern, Map<String, Collection> index) {
         Pattern p = createPattern(pattern);
+
+        if (index instanceof CompactIndexes.Index) {
+            // Select candidates with the sorted keys and the trigram index
+            return ((CompactIndexes.Index)index).filter(pattern, true, key -> p.matcher(key).matches());
+        }
+
         Map<String, Collection> map = new HashMap<>();
 
         for (String key : index.keySet()) {
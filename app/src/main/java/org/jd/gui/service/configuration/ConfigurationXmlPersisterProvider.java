@@ -24,10 +24,11 @@ import java.util.jar.Manifest;
 public class ConfigurationXmlPersisterProvider implements ConfigurationPersister {
     protected static final String ERROR_BACKGROUND_COLOR = "JdGuiPreferences.errorBackgroundColor";
     protected static final String JD_CORE_VERSION = "JdGuiPreferences.jdCoreVersion";
+    protected static final String CACHE_DIRECTORY = "JdGuiPreferences.cacheDirectory";
 
     protected static final File FILE = getConfigFile();
 
-    protected static File getConfigFile() {
+    public static File getConfigFile() {
         String configFilePath = System.getProperty(Constants.CONFIG_FILENAME);
 
         if (configFilePath != null) {
@@ -180,11 +181,13 @@ public class ConfigurationXmlPersisterProvider implements ConfigurationPersister
         }
 
         config.getPreferences().put(JD_CORE_VERSION, getJdCoreVersion());
+        // Directory of the caches, next to the configuration file
+        config.getPreferences().put(CACHE_DIRECTORY, new File(FILE.getAbsoluteFile().getParentFile(), Constants.CACHE_DIRECTORYNAME).getPath());
 
         return config;
     }
 
-    protected String getJdCoreVersion() {
+    public static String getJdCoreVersion() {
         try {
             Enumeration<URL> enumeration = ConfigurationXmlPersisterProvider.class.getClassLoader().getResources("META-INF/MANIFEST.MF");
 
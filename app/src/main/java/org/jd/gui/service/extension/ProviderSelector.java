@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.service.extension;
+
+import org.jd.gui.api.model.Container;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled dispatch of the entries to the providers declaring selectors like 'containerType:type:pathKey'.<br>
+ * <br>
+ * 'containerType' is a container type or '*', 'type' is 'dir' or 'file', 'pathKey' is a path, '*&#47;name',
+ * '*.extension' or '*'. For a container type, the path keys are tried in this order, then the keys of the container
+ * type '*'. In a group of providers declaring the same selector, the providers having a path pattern are tried first.<br>
+ * <br>
+ * Selectors are compiled in hash tables queried from an offset in the entry path, without building any key. The
+ * result depending only on the extension is computed once per container type, type and extension; the path is
+ * examined only when a path key or a path pattern may change this result.
+ */
+public class ProviderSelector<T> {
+    protected static final String WILDCARD = "*";
+    protected static final Object DYNAMIC = new Object();
+
+    protected HashMap<String, Selectors> mapSelectors = new HashMap<>();
+    protected ConcurrentHashMap<String, Dispatch[]> mapDispatches = new ConcurrentHashMap<>();
+
+    public ProviderSelector(Collection<T> providers, Function<T, String[]> getSelectors, Function<T, Pattern> getPathPattern) {
+        HashMap<String, Providers<T>> mapProviders = new HashMap<>();
+
+        for (T provider : providers) {
+            String[] selectors = getSelectors.apply(provider);
+
+            if (selectors != null) {
+                for (String selector : selectors) {
+                    mapProviders.computeIfAbsent(selector, s -> new Providers<>(getPathPattern)).add(provider);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Providers<T>> mapEntry : mapProviders.entrySet()) {
+            String selector = mapEntry.getKey();
+            int index1 = selector.indexOf(':');
+            int index2 = selector.indexOf(':', index1+1);
+
+            if ((index1 != -1) && (index2 != -1)) {
+                String prefix = selector.substring(0, index2);
+                String pathKey = selector.substring(index2+1);
+
+                mapSelectors.computeIfAbsent(prefix, p -> new Selectors()).add(pathKey, mapEntry.getValue().compile());
+            }
+        }
+    }
+
+    public T get(Container.Entry entry) {
+        return get(entry.getContainer().getType(), entry, true);
+    }
+
+    public T get(String containerType, Container.Entry entry) {
+        return get(containerType, entry, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected T get(String containerType, Container.Entry entry, boolean fallback) {
+        Dispatch[] dispatches = mapDispatches.get(containerType);
+
+        if (dispatches == null) {
+            dispatches = mapDispatches.computeIfAbsent(containerType, ct -> new Dispatch[] {
+                new Dispatch(mapSelectors, ct, "file", true), new Dispatch(mapSelectors, ct, "dir", true),
+                new Dispatch(mapSelectors, ct, "file", false), new Dispatch(mapSelectors, ct, "dir", false)
+            });
+        }
+
+        return (T)dispatches[(entry.isDirectory() ? 1 : 0) + (fallback ? 0 : 2)].get(entry.getPath());
+    }
+
+    // --- Compiled selectors --- //
+    protected static class Providers<T> {
+        protected Function<T, Pattern> getPathPattern;
+        protected HashMap<String, T> providers = new HashMap<>();
+        protected T defaultProvider;
+
+        public Providers(Function<T, Pattern> getPathPattern) {
+            this.getPathPattern = getPathPattern;
+        }
+
+        public void add(T provider) {
+            Pattern pathPattern = getPathPattern.apply(provider);
+
+            if (pathPattern != null) {
+                providers.put(pathPattern.pattern(), provider);
+            } else {
+                defaultProvider = provider;
+            }
+        }
+
+        public Candidates compile() {
+            int size = providers.size();
+            Object[] patternProviders = new Object[size];
+            Pattern[] patterns = new Pattern[size];
+            int i = 0;
+
+            for (T provider : providers.values()) {
+                patternProviders[i] = provider;
+                patterns[i++] = getPathPattern.apply(provider);
+            }
+
+            return new Candidates(patternProviders, patterns, defaultProvider);
+        }
+    }
+
+    protected static class Candidates {
+        protected Object[] providers;
+        protected Pattern[] patterns;
+        protected Object defaultProvider;
+
+        public Candidates(Object[] providers, Pattern[] patterns, Object defaultProvider) {
+            this.providers = providers;
+            this.patterns = patterns;
+            this.defaultProvider = defaultProvider;
+        }
+
+        public boolean hasPatterns() { return patterns.length > 0; }
+
+        public Object match(String path) {
+            for (int i=0; i<patterns.length; i++) {
+                if (patterns[i].matcher(path).matches()) {
+                    return providers[i];
+                }
+            }
+            return defaultProvider;
+        }
+    }
+
+    /**
+     * Selectors of a container type and a type, by kind of path key.
+     */
+    protected static class Selectors {
+        protected KeyTable<Candidates> paths = new KeyTable<>();
+        protected KeyTable<Candidates> names = new KeyTable<>();
+        protected KeyTable<Candidates> extensions = new KeyTable<>();
+        protected Candidates wildcard;
+
+        public void add(String pathKey, Candidates candidates) {
+            if (pathKey.equals(WILDCARD)) {
+                wildcard = candidates;
+            } else if (pathKey.startsWith("*/")) {
+                names.put(pathKey.substring(2), candidates);
+            } else if (pathKey.startsWith("*.")) {
+                extensions.put(pathKey.substring(2), candidates);
+            } else {
+                paths.put(pathKey, candidates);
+            }
+        }
+    }
+
+    /**
+     * Resolution of the entries of a container type and a type, with the results memoized per extension.
+     */
+    protected static class Dispatch {
+        protected Selectors[] chain;
+        protected KeyTable<Object> extensionResults = new KeyTable<>();
+        protected Object otherExtensionResult;
+        protected Object noExtensionResult;
+
+        public Dispatch(Map<String, Selectors> mapSelectors, String containerType, String type, boolean fallback) {
+            ArrayList<Selectors> list = new ArrayList<>(2);
+            Selectors selectors = mapSelectors.get(containerType + ':' + type);
+
+            if (selectors != null) {
+                list.add(selectors);
+            }
+            if (fallback && !containerType.equals(WILDCARD)) {
+                selectors = mapSelectors.get(WILDCARD + ':' + type);
+
+                if (selectors != null) {
+                    list.add(selectors);
+                }
+            }
+
+            chain = list.toArray(new Selectors[list.size()]);
+
+            HashSet<String> extensions = new HashSet<>();
+
+            for (Selectors s : chain) {
+                extensions.addAll(s.extensions.keys());
+            }
+            for (String extension : extensions) {
+                extensionResults.put(extension, resolve(extension, extensions));
+            }
+
+            otherExtensionResult = resolve("", extensions);
+            noExtensionResult = resolve(null, extensions);
+        }
+
+        /**
+         * @param extension an extension, "" for the other extensions, null for no extension
+         * @return the result of the entries having this extension, or DYNAMIC if it depends on the path
+         */
+        protected Object resolve(String extension, Set<String> extensions) {
+            for (Selectors s : chain) {
+                if (hasKey(s.paths, extension, extensions) || hasKey(s.names, extension, extensions)) {
+                    return DYNAMIC;
+                }
+
+                Candidates candidates = ((extension == null) || extension.isEmpty()) ? null : s.extensions.get(extension, 0);
+
+                for (Candidates c : new Candidates[] { candidates, s.wildcard }) {
+                    if (c != null) {
+                        if (c.hasPatterns()) {
+                            return DYNAMIC;
+                        }
+                        if (c.defaultProvider != null) {
+                            return c.defaultProvider;
+                        }
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        protected boolean hasKey(KeyTable<Candidates> table, String extension, Set<String> extensions) {
+            for (String key : table.keys()) {
+                String keyExtension = getExtension(key);
+
+                if ((extension == null) ? (keyExtension == null) :
+                    extension.isEmpty() ? ((keyExtension != null) && !extensions.contains(keyExtension)) : extension.equals(keyExtension)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        protected String getExtension(String path) {
+            int lastSlashIndex = path.lastIndexOf('/');
+            int index = path.lastIndexOf('.');
+            return (index > lastSlashIndex) ? path.substring(index+1) : null;
+        }
+
+        public Object get(String path) {
+            int lastSlashIndex = path.lastIndexOf('/');
+            int index = path.lastIndexOf('.');
+            Object result;
+
+            if (index > lastSlashIndex) {
+                result = extensionResults.get(path, index+1);
+
+                if (result == null) {
+                    result = extensionResults.containsKey(path, index+1) ? null : otherExtensionResult;
+                }
+            } else {
+                result = noExtensionResult;
+            }
+
+            if (result != DYNAMIC) {
+                return result;
+            }
+
+            for (Selectors s : chain) {
+                Candidates candidates = s.paths.get(path, 0);
+
+                if ((candidates != null) && ((result = candidates.match(path)) != null)) {
+                    return result;
+                }
+
+                candidates = s.names.get(path, lastSlashIndex+1);
+
+                if ((candidates != null) && ((result = candidates.match(path)) != null)) {
+                    return result;
+                }
+
+                if (index > lastSlashIndex) {
+                    candidates = s.extensions.get(path, index+1);
+
+                    if ((candidates != null) && ((result = candidates.match(path)) != null)) {
+                        return result;
+                    }
+                }
+
+                if ((s.wildcard != null) && ((result = s.wildcard.match(path)) != null)) {
+                    return result;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Open addressing hash table, queried with the suffix of a string starting at an offset.
+     */
+    protected static class KeyTable<V> {
+        protected String[] keys = new String[8];
+        protected Object[] values = new Object[8];
+        protected int size;
+
+        public List<String> keys() {
+            ArrayList<String> list = new ArrayList<>(size);
+
+            for (String key : keys) {
+                if (key != null) {
+                    list.add(key);
+                }
+            }
+
+            return list;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void put(String key, V value) {
+            if ((size + 1) * 2 > keys.length) {
+                String[] oldKeys = keys;
+                Object[] oldValues = values;
+
+                keys = new String[oldKeys.length * 2];
+                values = new Object[oldKeys.length * 2];
+                size = 0;
+
+                for (int i=0; i<oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        put(oldKeys[i], (V)oldValues[i]);
+                    }
+                }
+            }
+
+            int mask = keys.length - 1;
+            int slot = mix(key.hashCode()) & mask;
+
+            while (keys[slot] != null) {
+                if (keys[slot].equals(key)) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(String s, int offset) {
+            int slot = indexOf(s, offset);
+            return (slot == -1) ? null : (V)values[slot];
+        }
+
+        public boolean containsKey(String s, int offset) {
+            return indexOf(s, offset) != -1;
+        }
+
+        protected int indexOf(String s, int offset) {
+            if (size == 0) {
+                return -1;
+            }
+
+            int length = s.length() - offset;
+            int hash = 0;
+
+            // Same hash as 'String.hashCode()' of the suffix
+            for (int i=offset, end=s.length(); i<end; i++) {
+                hash = 31 * hash + s.charAt(i);
+            }
+
+            int mask = keys.length - 1;
+            int slot = mix(hash) & mask;
+            String key;
+
+            while ((key = keys[slot]) != null) {
+                if ((key.length() == length) && s.regionMatches(offset, key, 0, length)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            return -1;
+        }
+
+        protected static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.service.indexer;
+
+import org.jd.gui.Constants;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.service.configuration.ConfigurationXmlPersisterProvider;
+import org.jd.gui.util.index.CompactIndexes;
+import org.jd.gui.util.exception.ExceptionUtil;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent store of the indexes of the archives, under the configuration directory.<br>
+ * <br>
+ * An archive is identified by its path, its size, its modification time and, optionally, the CRC of its content. Each
+ * archive is stored in one file, using the following binary format, read at once in a heap buffer:
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * int    fingerprint of the indexers
+ * long   archive size
+ * long   archive modification time
+ * long   archive CRC (-1 if not computed)
+ * string archive path
+ * int    entry count, int indexed entry count, { int container entry id (-1: root entry), string path }[]
+ * compact indexes
+ * </pre>
+ * The root entry itself is stored with the container entry id -2 and no path. Entries of nested containers refer to
+ * the entry of their container, stored after the indexed entries.<br>
+ * <br>
+ * The total size of the store is bounded: least recently used files are deleted first.
+ */
+public class IndexesCacheService {
+    protected static final IndexesCacheService INDEXES_CACHE_SERVICE = new IndexesCacheService();
+
+    public static final String ENABLED = "DirectoryIndexerPreferences.cacheEnabled";
+    public static final String CONTENT_HASH = "DirectoryIndexerPreferences.cacheContentHash";
+    public static final String MAXIMUM_SIZE = "DirectoryIndexerPreferences.cacheMaximumSize";
+
+    protected static final int MAGIC = 0x4A44494E; // "JDIN"
+    protected static final int VERSION = 2;
+    protected static final int DEFAULT_MAXIMUM_SIZE = 256; // MB
+    protected static final String EXTENSION = ".idx";
+
+    public static IndexesCacheService getInstance() { return INDEXES_CACHE_SERVICE; }
+
+    protected File directory;
+
+    protected IndexesCacheService() {
+        File configDirectory = ConfigurationXmlPersisterProvider.getConfigFile().getAbsoluteFile().getParentFile();
+        directory = new File(new File(configDirectory, Constants.CACHE_DIRECTORYNAME), "indexes");
+    }
+
+    public boolean isEnabled(Map<String, String> preferences) {
+        return !"false".equals(preferences.get(ENABLED));
+    }
+
+    /**
+     * @return the cached indexes of 'entry', or null if the cache is disabled, missing or stale
+     */
+    public CompactIndexes load(Map<String, String> preferences, Container.Entry entry) {
+        if (!isCacheable(preferences, entry)) {
+            return null;
+        }
+
+        File archive = new File(entry.getUri());
+        File cacheFile = getCacheFile(archive);
+
+        if (!cacheFile.exists()) {
+            return null;
+        }
+
+        try {
+            // Read in a heap buffer: the file is closed, and so can be replaced or deleted, before the parsing
+            ByteBuffer buffer = readFile(cacheFile);
+
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION) || (buffer.getInt() != IndexerService.getInstance().getFingerprint())) {
+                return invalidate(cacheFile);
+            }
+            if ((buffer.getLong() != archive.length()) || (buffer.getLong() != archive.lastModified())) {
+                return invalidate(cacheFile);
+            }
+
+            long crc = buffer.getLong();
+
+            if (isContentHashEnabled(preferences) && (crc != computeCrc(archive))) {
+                return invalidate(cacheFile);
+            }
+            if (!archive.getAbsolutePath().equals(CompactIndexes.readString(buffer))) {
+                return invalidate(cacheFile);
+            }
+
+            // Read and resolve entries
+            int entryCount = buffer.getInt();
+            int indexedEntryCount = buffer.getInt();
+            int[] containerEntryIds = new int[entryCount];
+            String[] paths = new String[entryCount];
+
+            for (int i=0; i<entryCount; i++) {
+                containerEntryIds[i] = buffer.getInt();
+                paths[i] = (containerEntryIds[i] == -2) ? null : CompactIndexes.readString(buffer);
+            }
+
+            Container.Entry[] entries = new Container.Entry[indexedEntryCount];
+            EntryResolver resolver = new EntryResolver(entry, containerEntryIds, paths);
+
+            for (int i=0; i<indexedEntryCount; i++) {
+                if ((entries[i] = resolver.resolve(i)) == null) {
+                    // Archive content has changed
+                    return invalidate(cacheFile);
+                }
+            }
+
+            // Read indexes
+            CompactIndexes indexes = CompactIndexes.read(buffer, entries);
+
+            // Mark as recently used
+            Files.setLastModifiedTime(cacheFile.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+
+            return indexes;
+        } catch (Exception e) {
+            assert ExceptionUtil.printStackTrace(e);
+            return invalidate(cacheFile);
+        }
+    }
+
+    public void store(Map<String, String> preferences, Container.Entry entry, CompactIndexes indexes) {
+        if (!isCacheable(preferences, entry)) {
+            return;
+        }
+
+        File archive = new File(entry.getUri());
+        File cacheFile = getCacheFile(archive);
+        Container.Entry[] indexedEntries = indexes.getEntries();
+        HashMap<Container.Entry, Integer> entryIds = new HashMap<>();
+        ArrayList<Container.Entry> entries = new ArrayList<>(Arrays.asList(indexedEntries));
+        ArrayList<Integer> containerEntryIds = new ArrayList<>();
+
+        for (int i=0; i<indexedEntries.length; i++) {
+            entryIds.put(indexedEntries[i], i);
+        }
+
+        // Link entries to the entries of their containers
+        for (int i=0; i<entries.size(); i++) {
+            Container.Entry e = entries.get(i);
+
+            if (e == entry) {
+                containerEntryIds.add(-2);
+            } else {
+                Container.Entry containerRoot = e.getContainer().getRoot();
+
+                if (containerRoot == null) {
+                    // Unsupported container
+                    return;
+                }
+
+                Container.Entry containerEntry = containerRoot.getParent();
+
+                if (containerEntry == entry) {
+                    containerEntryIds.add(-1);
+                } else {
+                    Integer id = entryIds.get(containerEntry);
+
+                    if (id == null) {
+                        entryIds.put(containerEntry, id=entries.size());
+                        entries.add(containerEntry);
+                    }
+
+                    containerEntryIds.add(id);
+                }
+            }
+        }
+
+        File tmpFile = null;
+
+        try {
+            long length = archive.length();
+            long lastModified = archive.lastModified();
+            long crc = isContentHashEnabled(preferences) ? computeCrc(archive) : -1L;
+
+            directory.mkdirs();
+            // Unique per writer: the same archive may be indexed by several threads or processes at the same time
+            tmpFile = Files.createTempFile(directory.toPath(), cacheFile.getName(), ".tmp").toFile();
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(IndexerService.getInstance().getFingerprint());
+                out.writeLong(length);
+                out.writeLong(lastModified);
+                out.writeLong(crc);
+                CompactIndexes.writeString(out, archive.getAbsolutePath());
+
+                out.writeInt(entries.size());
+                out.writeInt(indexedEntries.length);
+
+                for (int i=0, count=entries.size(); i<count; i++) {
+                    int containerEntryId = containerEntryIds.get(i);
+
+                    out.writeInt(containerEntryId);
+
+                    if (containerEntryId != -2) {
+                        CompactIndexes.writeString(out, entries.get(i).getPath());
+                    }
+                }
+
+                indexes.write(out);
+            }
+
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            evict(getMaximumSize(preferences));
+        } catch (Exception e) {
+            assert ExceptionUtil.printStackTrace(e);
+
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    protected boolean isCacheable(Map<String, String> preferences, Container.Entry entry) {
+        return isEnabled(preferences) && "file".equals(entry.getUri().getScheme()) && !entry.isDirectory();
+    }
+
+    protected static boolean isContentHashEnabled(Map<String, String> preferences) {
+        return "true".equals(preferences.get(CONTENT_HASH));
+    }
+
+    protected static long getMaximumSize(Map<String, String> preferences) {
+        int maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+        try {
+            maximumSize = Integer.parseInt(preferences.get(MAXIMUM_SIZE));
+        } catch (NumberFormatException ignore) {
+        }
+
+        return maximumSize * 1024L * 1024L;
+    }
+
+    protected File getCacheFile(File archive) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(archive.getAbsolutePath().getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2 + EXTENSION.length());
+
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return new File(directory, sb.append(EXTENSION).toString());
+        } catch (Exception e) {
+            assert ExceptionUtil.printStackTrace(e);
+            return new File(directory, Integer.toHexString(archive.getAbsolutePath().hashCode()) + EXTENSION);
+        }
+    }
+
+    protected static long computeCrc(File archive) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+
+        try (InputStream is = new FileInputStream(archive)) {
+            int len = is.read(buffer);
+
+            while (len > 0) {
+                crc.update(buffer, 0, len);
+                len = is.read(buffer);
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    protected static ByteBuffer readFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Cache file too large: " + file);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int)size);
+
+            while (buffer.hasRemaining() && (channel.read(buffer) >= 0));
+
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    protected static CompactIndexes invalidate(File cacheFile) {
+        try {
+            Files.deleteIfExists(cacheFile.toPath());
+        } catch (IOException e) {
+            assert ExceptionUtil.printStackTrace(e);
+        }
+        return null;
+    }
+
+    /**
+     * Delete the least recently used files until the total size of the store is lower than 'maximumSize'.
+     */
+    protected void evict(long maximumSize) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+
+        if (files != null) {
+            long totalSize = 0;
+
+            for (File file : files) {
+                totalSize += file.length();
+            }
+
+            if (totalSize > maximumSize) {
+                Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+                for (File file : files) {
+                    long length = file.length();
+
+                    if (file.delete()) {
+                        totalSize -= length;
+
+                        if (totalSize <= maximumSize) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Locate entries from their path, mounting nested containers on demand.
+     */
+    protected static class EntryResolver {
+        protected Container.Entry rootEntry;
+        protected int[] containerEntryIds;
+        protected String[] paths;
+        protected Container.Entry[] entries;
+        protected HashMap<Container.Entry, HashMap<String, Container.Entry>> childrenByPath = new HashMap<>();
+
+        public EntryResolver(Container.Entry rootEntry, int[] containerEntryIds, String[] paths) {
+            this.rootEntry = rootEntry;
+            this.containerEntryIds = containerEntryIds;
+            this.paths = paths;
+            this.entries = new Container.Entry[paths.length];
+        }
+
+        public Container.Entry resolve(int id) {
+            Container.Entry entry = entries[id];
+
+            if (entry == null) {
+                int containerEntryId = containerEntryIds[id];
+
+                if (containerEntryId == -2) {
+                    entry = rootEntry;
+                } else {
+                    Container.Entry containerEntry = (containerEntryId == -1) ? rootEntry : resolve(containerEntryId);
+
+                    if (containerEntry != null) {
+                        entry = resolve(containerEntry, paths[id]);
+                    }
+                }
+
+                entries[id] = entry;
+            }
+
+            return entry;
+        }
+
+        protected Container.Entry resolve(Container.Entry containerEntry, String path) {
+            Container.Entry entry = containerEntry;
+            int index = path.indexOf('/');
+
+            while (index != -1) {
+                entry = getChild(entry, path.substring(0, index));
+
+                if (entry == null) {
+                    return null;
+                }
+
+                index = path.indexOf('/', index+1);
+            }
+
+            return getChild(entry, path);
+        }
+
+        protected Container.Entry getChild(Container.Entry parent, String path) {
+            HashMap<String, Container.Entry> children = childrenByPath.get(parent);
+
+            if (children == null) {
+                children = new HashMap<>();
+
+                for (Container.Entry child : parent.getChildren()) {
+                    children.put(child.getPath(), child);
+                }
+
+                childrenByPath.put(parent, children);
+            }
+
+            return children.get(path);
+        }
+    }
+}
@@ -8,32 +8,63 @@
 package org.jd.gui.service.mainpanel;
 
 import org.jd.gui.api.API;
-import org.jd.gui.api.feature.ContentIndexable;
-import org.jd.gui.api.feature.SourcesSavable;
-import org.jd.gui.api.feature.UriGettable;
+import org.jd.gui.api.feature.*;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.api.model.Indexes;
+import org.jd.gui.service.indexer.IndexesCacheService;
+import org.jd.gui.util.index.CompactIndexes;
 import org.jd.gui.spi.Indexer;
 import org.jd.gui.spi.PanelFactory;
 import org.jd.gui.spi.SourceSaver;
 import org.jd.gui.spi.TreeNodeFactory;
 import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.swing.SwingUtil;
 import org.jd.gui.view.component.panel.TreeTabbedPanel;
 
 import javax.swing.*;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 
 public class ContainerPanelFactoryProvider implements PanelFactory {
     protected static final String[] TYPES = { "default" };
+    protected static final String WATCH_CHANGES = "DirectoryIndexerPreferences.watchChanges";
+    protected static final String NESTED_ARCHIVES = "DirectoryIndexerPreferences.nestedArchives";
+    protected static final String NESTED_ARCHIVES_EAGER = "eager";
+    protected static final String NESTED_ARCHIVES_ON_DEMAND = "onDemand";
+
+    // States of the nested archives not indexed yet
+    protected static final String NOT_INDEXED = "not indexed";
+    protected static final String WAITING = "waiting for indexing";
+    protected static final String INDEXING = "indexing";
+
+    // Nested archives are indexed one at a time, with a low priority, and published at most every UPDATE_DELAY ms. Each
+    // publication copies the indexes: unless expanded by the user, the archives are published by batches of at least
+    // 1/UPDATE_RATIO of the indexed entries.
+    protected static final long UPDATE_DELAY = 1000;
+    protected static final int UPDATE_RATIO = 4;
+    protected static final ExecutorService ARCHIVE_INDEXER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jd-gui-archive-indexer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
 
 	@Override public String[] getTypes() { return TYPES; }
 
@@ -43,14 +74,44 @@ public class ContainerPanelFactoryProvider implements PanelFactory {
         return (T)new ContainerPanel(api, container);
 	}
 
-    protected class ContainerPanel extends TreeTabbedPanel implements ContentIndexable, SourcesSavable {
+    protected class ContainerPanel extends TreeTabbedPanel implements ContentIndexable, ContentWatchable, SourcesSavable, Closeable {
+        protected Container container;
         protected Container.Entry entry;
+        protected final Object indexesLock = new Object();
+        protected CompactIndexes watchedIndexes;
+        protected volatile UpdateListener updateListener;
+        protected volatile boolean closed = false;
+        // Nested archives not indexed yet, queue of the archives waiting for indexing, archives expanded by the user,
+        // and state of the indexers reading the container, guarded by 'archiveStates'
+        protected Map<Container.Entry, String> archiveStates = Collections.synchronizedMap(new IdentityHashMap<>());
+        protected ArrayDeque<Container.Entry> queuedArchives = new ArrayDeque<>();
+        protected Set<Container.Entry> requestedArchives = Collections.newSetFromMap(new IdentityHashMap<>());
+        protected int runningIndexerCount = 0;
+        protected boolean closeAfterIndexing = false;
 
         public ContainerPanel(API api, Container container) {
             super(api, container.getRoot().getParent().getUri());
 
+            this.container = container;
             this.entry = container.getRoot().getParent();
 
+            tree.setModel(new DefaultTreeModel(createRootNode()));
+            tree.addTreeExpansionListener(new TreeExpansionListener() {
+                @Override
+                public void treeExpanded(TreeExpansionEvent e) {
+                    Object node = e.getPath().getLastPathComponent();
+
+                    if (node instanceof ContainerEntryGettable) {
+                        // Index the expanded nested archive first
+                        indexArchive(((ContainerEntryGettable)node).getEntry());
+                    }
+                }
+                @Override
+                public void treeCollapsed(TreeExpansionEvent e) {}
+            });
+        }
+
+        protected DefaultMutableTreeNode createRootNode() {
             DefaultMutableTreeNode root = new DefaultMutableTreeNode();
 
             for (Container.Entry entry : container.getRoot().getChildren()) {
@@ -60,27 +121,433 @@ public class ContainerPanelFactoryProvider implements PanelFactory {
                 }
             }
 
-            tree.setModel(new DefaultTreeModel(root));
+            return root;
         }
 
         // --- ContentIndexable --- //
         @Override
         public Indexes index(API api) {
-            HashMap<String, Map<String, Collection>> map = new HashMap<>();
-            DelegatedMapMapWithDefault mapWithDefault = new DelegatedMapMapWithDefault(map);
+            return index(api, null);
+        }
+
+        @Override
+        public Indexes index(API api, SnapshotListener listener) {
+            if (!startIndexing()) {
+                // Panel closed
+                throw new CancellationException();
+            }
+
+            try {
+                return indexContainer(api, listener);
+            } finally {
+                stopIndexing();
+            }
+        }
+
+        protected Indexes indexContainer(API api, SnapshotListener listener) {
+            IndexesCacheService cacheService = IndexesCacheService.getInstance();
+            CompactIndexes indexes = cacheService.load(api.getPreferences(), entry);
+
+            if (indexes == null) {
+                // Index populating value automatically
+                CompactIndexes.Builder builder = new CompactIndexes.Builder();
+                String nestedArchives = api.getPreferences().get(NESTED_ARCHIVES);
+                List<Container.Entry> deferredEntries = new ArrayList<>();
+
+                builder.setSnapshotListener(listener);
+
+                if (!NESTED_ARCHIVES_EAGER.equals(nestedArchives)) {
+                    // Index the classes of the container first
+                    builder.setDeferredEntries(deferredEntries);
+                }
+
+                // Index entry
+                Indexer indexer = api.getIndexer(entry);
+
+                if (indexer != null) {
+                    indexer.index(api, entry, builder);
+                }
+
+                // To prevent memory leaks, return an immutable index, without the 'populate' behaviour
+                indexes = builder.build();
+
+                if (deferredEntries.isEmpty()) {
+                    if (indexer != null) {
+                        cacheService.store(api.getPreferences(), entry, indexes);
+                    }
+                } else {
+                    // Index the nested archives after the publication of the indexes, or when they are expanded
+                    boolean onDemand = NESTED_ARCHIVES_ON_DEMAND.equals(nestedArchives);
+
+                    deferredEntries.sort(Comparator.comparing(Container.Entry::getPath));
+
+                    synchronized (archiveStates) {
+                        for (Container.Entry deferredEntry : deferredEntries) {
+                            if (onDemand) {
+                                archiveStates.put(deferredEntry, NOT_INDEXED);
+                            } else {
+                                archiveStates.put(deferredEntry, WAITING);
+                                queuedArchives.add(deferredEntry);
+                            }
+                        }
+                    }
+
+                    refreshTreeNodeStates();
+                }
+            }
+
+            return indexes;
+        }
+
+        // --- Nested archives --- //
+        protected void indexArchive(Container.Entry archive) {
+            synchronized (archiveStates) {
+                String state = archiveStates.get(archive);
+
+                if (NOT_INDEXED.equals(state) || WAITING.equals(state)) {
+                    queuedArchives.remove(archive);
+                    queuedArchives.addFirst(archive);
+                    requestedArchives.add(archive);
+                    archiveStates.put(archive, WAITING);
+
+                    if (updateListener != null) {
+                        ARCHIVE_INDEXER.execute(() -> indexQueuedArchives());
+                    }
+                }
+            }
+
+            refreshTreeNodeStates();
+        }
+
+        protected void indexQueuedArchives() {
+            if (!startIndexing()) {
+                return;
+            }
+
+            try {
+                CompactIndexes.Builder builder = newArchiveBuilder();
+                List<Container.Entry> indexedArchives = new ArrayList<>();
+                boolean requested = false;
+                long updateTime = System.currentTimeMillis() + UPDATE_DELAY;
+
+                while (!closed) {
+                    Container.Entry archive;
+
+                    synchronized (archiveStates) {
+                        archive = queuedArchives.poll();
+
+                        if (archive != null) {
+                            archiveStates.put(archive, INDEXING);
+                            requested |= requestedArchives.remove(archive);
+                        }
+                    }
+
+                    if (archive == null) {
+                        break;
+                    }
+
+                    refreshTreeNodeStates();
+
+                    Indexer indexer = api.getIndexer(archive);
+
+                    if (indexer != null) {
+                        try {
+                            indexer.index(api, archive, builder);
+                        } catch (Exception e) {
+                            assert ExceptionUtil.printStackTrace(e);
+                        }
+                    }
+
+                    indexedArchives.add(archive);
+
+                    if (!closed && (requested || ((System.currentTimeMillis() >= updateTime) && (builder.getEntryCount() * UPDATE_RATIO >= getIndexedEntryCount())))) {
+                        archivesIndexed(indexedArchives, builder);
+                        builder = newArchiveBuilder();
+                        indexedArchives = new ArrayList<>();
+                        requested = false;
+                        updateTime = System.currentTimeMillis() + UPDATE_DELAY;
+                    }
+                }
+
+                if (!closed && !indexedArchives.isEmpty()) {
+                    archivesIndexed(indexedArchives, builder);
+                }
+            } finally {
+                stopIndexing();
+            }
+        }
+
+        /**
+         * @return false if the panel is closed: the container must not be read
+         */
+        protected boolean startIndexing() {
+            synchronized (archiveStates) {
+                if (closed) {
+                    return false;
+                }
+                runningIndexerCount++;
+                return true;
+            }
+        }
+
+        /**
+         * Release the container if the panel was closed while indexing, once no longer read by any indexer.
+         */
+        protected void stopIndexing() {
+            boolean closeContainer;
+
+            synchronized (archiveStates) {
+                closeContainer = (--runningIndexerCount == 0) && closeAfterIndexing;
+            }
+
+            if (closeContainer) {
+                container.close();
+            }
+        }
+
+        protected CompactIndexes.Builder newArchiveBuilder() {
+            // Checked by the indexers between the entries
+            return new CompactIndexes.Builder() {
+                @Override public boolean isCancelled() { return closed; }
+            };
+        }
+
+        protected int getIndexedEntryCount() {
+            synchronized (indexesLock) {
+                return watchedIndexes.getEntries().length;
+            }
+        }
+
+        protected void archivesIndexed(List<Container.Entry> indexedArchives, CompactIndexes.Builder builder) {
+            CompactIndexes indexes = updateIndexes(e -> false, builder.build());
+            boolean completed;
+
+            synchronized (archiveStates) {
+                for (Container.Entry archive : indexedArchives) {
+                    archiveStates.remove(archive);
+                }
+                completed = archiveStates.isEmpty();
+            }
+
+            refreshTreeNodeStates();
+
+            if (completed) {
+                // All nested archives indexed
+                IndexesCacheService.getInstance().store(api.getPreferences(), entry, indexes);
+            }
+        }
 
-            // Index populating value automatically
-            Indexes indexesWithDefault = name -> mapWithDefault.get(name);
+        protected void refreshTreeNodeStates() {
+            SwingUtil.invokeLater(() -> {
+                DefaultTreeModel model = (DefaultTreeModel)tree.getModel();
 
-            // Index entry
-            Indexer indexer = api.getIndexer(entry);
+                for (int row=0, count=tree.getRowCount(); row<count; row++) {
+                    model.nodeChanged((TreeNode)tree.getPathForRow(row).getLastPathComponent());
+                }
+            });
+        }
+
+        @Override
+        protected String getTreeNodeState(Object node) {
+            return (node instanceof ContainerEntryGettable) ? archiveStates.get(((ContainerEntryGettable)node).getEntry()) : null;
+        }
+
+        // --- ContentWatchable --- //
+        @Override
+        public Closeable watch(API api, Indexes indexes, UpdateListener listener) throws IOException {
+            if (!(indexes instanceof CompactIndexes)) {
+                return null;
+            }
+
+            Closeable watch = null;
+
+            synchronized (indexesLock) {
+                watchedIndexes = (CompactIndexes)indexes;
+            }
+
+            if ((container instanceof ContainerWatchable) && !"false".equals(api.getPreferences().get(WATCH_CHANGES))) {
+                // Changes are notified sequentially, from the thread of the watcher
+                watch = ((ContainerWatchable)container).watch((removed, added) -> containerChanged(removed, added));
+            }
+
+            boolean deferredArchives;
+
+            synchronized (archiveStates) {
+                updateListener = listener;
+                deferredArchives = !archiveStates.isEmpty();
+
+                if (!queuedArchives.isEmpty()) {
+                    ARCHIVE_INDEXER.execute(() -> indexQueuedArchives());
+                }
+            }
+
+            if ((watch == null) && !deferredArchives) {
+                return null;
+            }
+
+            Closeable directoryWatch = watch;
+
+            return () -> {
+                closed = true;
+
+                if (directoryWatch != null) {
+                    directoryWatch.close();
+                }
+            };
+        }
+
+        protected void containerChanged(Collection<Container.Entry> removed, Collection<Container.Entry> added) {
+            if (!startIndexing()) {
+                return;
+            }
+
+            // Index the added entries only
+            CompactIndexes.Builder builder = new CompactIndexes.Builder();
+
+            try {
+                for (Container.Entry entry : added) {
+                    Indexer indexer = api.getIndexer(entry);
+
+                    if (indexer != null) {
+                        indexer.index(api, entry, builder);
+                    }
+                }
+            } finally {
+                stopIndexing();
+            }
+
+            // Remove the values of the removed entries and their descendants, merge the new values
+            Set<Container.Entry> removedEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+            removedEntries.addAll(removed);
+
+            Predicate<Container.Entry> removedPredicate = e -> isRemoved(removedEntries, e);
+
+            synchronized (archiveStates) {
+                archiveStates.keySet().removeIf(removedPredicate);
+                queuedArchives.removeIf(removedPredicate);
+                requestedArchives.removeIf(removedPredicate);
+            }
+
+            updateIndexes(removedPredicate, builder.build());
+
+            SwingUtil.invokeLater(() -> reload(removedPredicate));
+        }
+
+        protected CompactIndexes updateIndexes(Predicate<Container.Entry> removedPredicate, CompactIndexes delta) {
+            synchronized (indexesLock) {
+                watchedIndexes = watchedIndexes.update(removedPredicate, delta);
+                updateListener.indexesUpdated(watchedIndexes);
+                return watchedIndexes;
+            }
+        }
+
+        protected boolean isRemoved(Set<Container.Entry> removedEntries, Container.Entry entry) {
+            for (; entry != null; entry = entry.getParent()) {
+                if (removedEntries.contains(entry)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Rebuild the tree, restoring the expanded nodes and the selection, and reopen the pages of the modified
+         * entries.
+         */
+        protected void reload(Predicate<Container.Entry> removedPredicate) {
+            // Save expanded nodes and selection
+            DefaultMutableTreeNode root = (DefaultMutableTreeNode)tree.getModel().getRoot();
+            Enumeration<TreePath> expandedPaths = tree.getExpandedDescendants(new TreePath(root));
+            List<URI> expandedUris = new ArrayList<>();
+            TreePath selectionPath = tree.getSelectionPath();
+            URI selectedUri = null;
+
+            if (expandedPaths != null) {
+                while (expandedPaths.hasMoreElements()) {
+                    Object node = expandedPaths.nextElement().getLastPathComponent();
+
+                    if (node instanceof UriGettable) {
+                        expandedUris.add(((UriGettable)node).getUri());
+                    }
+                }
+            }
+
+            if ((selectionPath != null) && (selectionPath.getLastPathComponent() instanceof UriGettable)) {
+                selectedUri = ((UriGettable)selectionPath.getLastPathComponent()).getUri();
+            }
+
+            // Rebuild tree
+            root = createRootNode();
+            tree.setModel(new DefaultTreeModel(root));
+
+            expandedUris.sort(Comparator.comparingInt(uri -> uri.toString().length()));
+
+            for (URI uri : expandedUris) {
+                DefaultMutableTreeNode node = searchTreeNode(uri, root);
+
+                if (node != null) {
+                    tree.expandPath(new TreePath(node.getPath()));
+                }
+            }
 
-            if (indexer != null) {
-                indexer.index(api, entry, indexesWithDefault);
+            // Attach the pages to the new nodes, close the pages of the removed entries
+            JTabbedPane tabbedPane = tabbedPanel.getTabbedPane();
+            Component selectedPage = tabbedPane.getSelectedComponent();
+            List<JComponent> removedPages = new ArrayList<>();
+            List<URI> reopenedUris = new ArrayList<>();
+            URI reopenedSelectedUri = null;
+
+            for (int i=0, count=tabbedPane.getTabCount(); i<count; i++) {
+                JComponent page = (JComponent)tabbedPane.getComponentAt(i);
+                Object node = page.getClientProperty("node");
+
+                if ((node instanceof ContainerEntryGettable) && (node instanceof UriGettable)) {
+                    URI uri = ((UriGettable)node).getUri();
+                    DefaultMutableTreeNode newNode = searchTreeNode(uri, root);
+
+                    if (!removedPredicate.test(((ContainerEntryGettable)node).getEntry())) {
+                        page.putClientProperty("node", newNode);
+                    } else {
+                        removedPages.add(page);
+
+                        if (newNode != null) {
+                            // Modified entry
+                            if (page == selectedPage) {
+                                reopenedSelectedUri = uri;
+                            } else {
+                                reopenedUris.add(uri);
+                            }
+                        }
+                    }
+                }
+            }
+
+            for (JComponent page : removedPages) {
+                tabbedPanel.removeComponent(page);
+            }
+            for (URI uri : reopenedUris) {
+                openUri(uri);
             }
 
-            // To prevent memory leaks, return an index without the 'populate' behaviour
-            return name -> map.get(name);
+            // Restore selection
+            if (reopenedSelectedUri != null) {
+                openUri(reopenedSelectedUri);
+            } else if ((selectedPage != null) && !removedPages.contains(selectedPage)) {
+                tabbedPane.setSelectedComponent(selectedPage);
+            } else if (selectedUri != null) {
+                DefaultMutableTreeNode node = searchTreeNode(selectedUri, root);
+
+                if (node != null) {
+                    try {
+                        // Disable tree node changed listener
+                        treeNodeChangedEnabled = false;
+                        tree.setSelectionPath(new TreePath(node.getPath()));
+                    } finally {
+                        // Enable tree node changed listener
+                        treeNodeChangedEnabled = true;
+                    }
+                }
+            }
         }
 
         // --- SourcesSavable --- //
@@ -112,77 +579,36 @@ public class ContainerPanelFactoryProvider implements PanelFactory {
                     Files.createDirectories(parentPath);
                 }
 
-                URI uri = path.toUri();
-                URI archiveUri = new URI("jar:" + uri.getScheme(), uri.getHost(), uri.getPath() + "!/", null);
-
-                try (FileSystem archiveFs = FileSystems.newFileSystem(archiveUri, Collections.singletonMap("create", "true"))) {
-                    Path archiveRootPath = archiveFs.getPath("/");
-                    SourceSaver saver = api.getSourceSaver(entry);
+                SourceSaver saver = api.getSourceSaver(entry);
 
-                    if (saver != null) {
-                        saver.saveContent(
-                            api,
-                            () -> controller.isCancelled(),
-                            (p) -> listener. pathSaved(p),
-                            archiveRootPath, archiveRootPath, entry);
-                    }
+                if (saver != null) {
+                    saver.saveArchive(
+                        api,
+                        () -> controller.isCancelled(),
+                        (p) -> listener.pathSaved(p),
+                        path, entry);
                 }
-            } catch (URISyntaxException|IOException e) {
-                assert ExceptionUtil.printStackTrace(e);
+            } catch (IOException e) {
+                // Failure of a write, reported by the caller of the export
+                throw new UncheckedIOException(e);
             }
         }
-    }
 
-    protected static class DelegatedMap<K, V> implements Map<K, V> {
-        protected Map<K, V> map;
-
-        public DelegatedMap(Map<K, V> map) { this.map = map; }
-
-        @Override public int size() { return map.size(); }
-        @Override public boolean isEmpty() { return map.isEmpty(); }
-        @Override public boolean containsKey(Object o) { return map.containsKey(o); }
-        @Override public boolean containsValue(Object o) { return map.containsValue(o); }
-        @Override public V get(Object o) { return map.get(o); }
-        @Override public V put(K k, V v) { return map.put(k, v); }
-        @Override public V remove(Object o) { return map.remove(o); }
-        @Override public void putAll(Map<? extends K, ? extends V> map) { this.map.putAll(map); }
-        @Override public void clear() { map.clear(); }
-        @Override public Set<K> keySet() { return map.keySet(); }
-        @Override public Collection<V> values() { return map.values(); }
-        @Override public Set<Entry<K, V>> entrySet() { return map.entrySet(); }
-        @Override public boolean equals(Object o) { return map.equals(o); }
-        @Override public int hashCode() { return map.hashCode(); }
-    }
-
-    protected static class DelegatedMapWithDefault extends DelegatedMap<String, Collection> {
-        public DelegatedMapWithDefault(Map<String, Collection> map) { super(map); }
-
-        @Override public Collection get(Object o) {
-            Collection value = map.get(o);
-            if (value == null) {
-                String key = o.toString();
-                map.put(key, value=new ArrayList());
+        // --- Closeable --- //
+        @Override
+        public void close() {
+            // Stop the indexations, then release the container, once no longer read by the indexers
+            boolean indexing;
+
+            synchronized (archiveStates) {
+                closed = true;
+                indexing = (runningIndexerCount > 0);
+                closeAfterIndexing = indexing;
             }
-            return value;
-        }
-    }
-
-    protected static class DelegatedMapMapWithDefault extends DelegatedMap<String, Map<String, Collection>> {
-	    protected HashMap<String, Map<String, Collection>> wrappers = new HashMap<>();
-
-        public DelegatedMapMapWithDefault(Map<String, Map<String, Collection>> map) { super(map); }
 
-        @Override public Map<String, Collection> get(Object o) {
-            Map<String, Collection> value = wrappers.get(o);
-
-            if (value == null) {
-                String key = o.toString();
-                HashMap<String, Collection> m = new HashMap<>();
-                map.put(key, m);
-                wrappers.put(key, value=new DelegatedMapWithDefault(m));
+            if (!indexing) {
+                container.close();
             }
-
-            return value;
         }
     }
 }
@@ -0,0 +1,1052 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.index;
+
+import org.jd.gui.api.feature.ContentIndexable;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.api.model.DeferringIndexes;
+import org.jd.gui.api.model.Indexes;
+import org.jd.gui.api.model.ProgressiveIndexes;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Immutable indexes, sharing a dictionary of strings and a table of entries between all indexes.<br>
+ * <br>
+ * Each index stores its keys as string ids, sorted by key, and its values as sorted posting lists of ints, packed in a
+ * single array: entries are stored with their id, strings (like the values of 'subTypeNames') with their id and the
+ * sign bit set. Indexes are presented through read-only Map views.<br>
+ * <br>
+ * Instances are created by a 'Builder', populated by the indexers.
+ */
+public class CompactIndexes implements Indexes {
+    protected static final int STRING_FLAG = 0x80000000;
+
+    protected String[] strings;
+    protected Container.Entry[] entries;
+    protected HashMap<String, Index> indexes;
+
+    // Lineage: the indexes this instance derives from are identified by their token, not to be retained
+    protected final Object token = new Object();
+    protected Object parentToken;
+    protected boolean appendOnly;
+    protected HashMap<String, String[]> addedKeys;
+
+    public CompactIndexes(String[] strings, Container.Entry[] entries) {
+        this.strings = strings;
+        this.entries = entries;
+        this.indexes = new HashMap<>();
+    }
+
+    @Override
+    public Map<String, Collection> getIndex(String name) {
+        return indexes.get(name);
+    }
+
+    public Container.Entry[] getEntries() {
+        return entries;
+    }
+
+    /**
+     * Build the trigram indexes of the large indexes, used by the searches, built on demand otherwise.
+     */
+    public void buildTrigramIndexes() {
+        for (Index index : indexes.values()) {
+            if (index.size() >= Index.TRIGRAM_INDEX_THRESHOLD) {
+                index.getTrigramIndex();
+            }
+        }
+    }
+
+    /**
+     * Build the type name index of the index 'name', used by Open Type, built on demand otherwise.
+     */
+    public void buildTypeNameIndex(String name) {
+        Index index = indexes.get(name);
+
+        if (index != null) {
+            index.getTypeNameIndex();
+        }
+    }
+
+    /**
+     * @return the keys of the index 'name' which may be missing from 'previous', or null if these indexes do not derive
+     *         from 'previous'
+     */
+    public Collection<String> getAddedKeys(Indexes previous, String name) {
+        if ((addedKeys == null) || !(previous instanceof CompactIndexes) || (((CompactIndexes)previous).token != parentToken)) {
+            return null;
+        }
+
+        String[] keys = addedKeys.get(name);
+        return (keys == null) ? Collections.emptyList() : Arrays.asList(keys);
+    }
+
+    /**
+     * @return true if these indexes may miss keys of 'previous'; false if they are a later build of the same builder
+     */
+    public boolean hasRemovedKeys(Indexes previous) {
+        return !appendOnly || !(previous instanceof CompactIndexes) || (((CompactIndexes)previous).token != parentToken);
+    }
+
+    protected void addIndex(String name, int[] keyIds, int[] offsets, int[] postings) {
+        indexes.put(name, new Index(keyIds, offsets, postings));
+    }
+
+    // --- Incremental update --- //
+    /**
+     * Build new indexes without the values of the removed entries, merged with 'delta', the indexes of the added
+     * entries. The posting lists are filtered in a single pass, the entry ids are compacted, and only the lists of the
+     * keys of 'delta' are merged. The type names declared by removed entries only, keys of 'typeDeclarations', are
+     * removed from the string values, like the values of 'subTypeNames'. The strings no longer referenced are removed
+     * from the dictionary.
+     */
+    public CompactIndexes update(Predicate<Container.Entry> removedEntryPredicate, CompactIndexes delta) {
+        return new Updater(removedEntryPredicate, delta).update();
+    }
+
+    protected class Updater {
+        protected CompactIndexes delta;
+        protected int[] entryIdMap;
+        protected ArrayList<Container.Entry> newEntries;
+        protected int deltaEntryBase;
+        protected HashSet<String> removedTypeNames = new HashSet<>();
+        protected ArrayList<String> newStrings;
+        // Ids of the strings of the dictionary, then of the appended strings
+        protected HashMap<String, Integer> stringIds;
+        protected int[] deltaStringIdMap;
+        protected HashMap<String, String[]> addedKeys = new HashMap<>();
+
+        public Updater(Predicate<Container.Entry> removedEntryPredicate, CompactIndexes delta) {
+            this.delta = delta;
+            this.entryIdMap = new int[entries.length];
+            this.newEntries = new ArrayList<>(entries.length + delta.entries.length);
+
+            // Compact the ids of the kept entries, append the added entries
+            for (int i=0; i<entries.length; i++) {
+                if (removedEntryPredicate.test(entries[i])) {
+                    entryIdMap[i] = -1;
+                } else {
+                    entryIdMap[i] = newEntries.size();
+                    newEntries.add(entries[i]);
+                }
+            }
+
+            this.deltaEntryBase = newEntries.size();
+            this.newEntries.addAll(Arrays.asList(delta.entries));
+            this.newStrings = new ArrayList<>(Arrays.asList(strings));
+            this.stringIds = new HashMap<>((strings.length + delta.strings.length) * 4 / 3 + 1);
+            this.deltaStringIdMap = new int[delta.strings.length];
+
+            for (int i=0; i<strings.length; i++) {
+                stringIds.putIfAbsent(strings[i], Integer.valueOf(i));
+            }
+
+            Arrays.fill(deltaStringIdMap, -1);
+
+            // Type names declared by removed entries only
+            Index typeDeclarations = indexes.get("typeDeclarations");
+
+            if (typeDeclarations != null) {
+                for (int i=0; i<typeDeclarations.keyIds.length; i++) {
+                    boolean removed = false;
+                    boolean kept = false;
+
+                    for (int j=typeDeclarations.offsets[i], end=typeDeclarations.offsets[i+1]; j<end; j++) {
+                        int value = typeDeclarations.postings[j];
+
+                        if ((value & STRING_FLAG) == 0) {
+                            if (entryIdMap[value] == -1) {
+                                removed = true;
+                            } else {
+                                kept = true;
+                            }
+                        }
+                    }
+
+                    if (removed && !kept) {
+                        removedTypeNames.add(strings[typeDeclarations.keyIds[i]]);
+                    }
+                }
+            }
+        }
+
+        public CompactIndexes update() {
+            LinkedHashSet<String> names = new LinkedHashSet<>(indexes.keySet());
+            ArrayList<Object[]> packedIndexes = new ArrayList<>();
+
+            names.addAll(delta.indexes.keySet());
+
+            for (String name : names) {
+                packedIndexes.add(merge(name, indexes.get(name), delta.indexes.get(name)));
+            }
+
+            CompactIndexes compactIndexes = new CompactIndexes(
+                compactStrings(packedIndexes), newEntries.toArray(new Container.Entry[newEntries.size()]));
+
+            for (Object[] packedIndex : packedIndexes) {
+                compactIndexes.addIndex((String)packedIndex[0], (int[])packedIndex[1], (int[])packedIndex[2], (int[])packedIndex[3]);
+            }
+
+            compactIndexes.parentToken = token;
+            compactIndexes.addedKeys = addedKeys;
+
+            return compactIndexes;
+        }
+
+        protected Object[] merge(String name, Index oldIndex, Index deltaIndex) {
+            int oldCount = (oldIndex == null) ? 0 : oldIndex.keyIds.length;
+            int deltaCount = (deltaIndex == null) ? 0 : deltaIndex.keyIds.length;
+            int[] keyIds = new int[oldCount + deltaCount];
+            int[] offsets = new int[oldCount + deltaCount + 1];
+            int[] postings = new int[((oldIndex == null) ? 0 : oldIndex.postings.length) + ((deltaIndex == null) ? 0 : deltaIndex.postings.length)];
+            ArrayList<String> added = new ArrayList<>();
+            int count = 0;
+            int length = 0;
+
+            for (int oi=0, di=0; (oi < oldCount) || (di < deltaCount);) {
+                int cmp = (oi == oldCount) ? 1 : (di == deltaCount) ? -1 : strings[oldIndex.keyIds[oi]].compareTo(delta.strings[deltaIndex.keyIds[di]]);
+                int from = length;
+                int keyId = -1;
+
+                if (cmp <= 0) {
+                    keyId = oldIndex.keyIds[oi];
+                    length = copyOldPostings(oldIndex, oi++, postings, length);
+                }
+                if (cmp >= 0) {
+                    if (cmp > 0) {
+                        keyId = getStringId(deltaIndex.keyIds[di]);
+                        added.add(delta.strings[deltaIndex.keyIds[di]]);
+                    }
+
+                    length = appendDeltaPostings(deltaIndex, di++, postings, from, length);
+
+                    // Sort the merged list, remove duplicates
+                    Arrays.sort(postings, from, length);
+
+                    int last = from;
+
+                    for (int j=from; j<length; j++) {
+                        if ((j == from) || (postings[j] != postings[last-1])) {
+                            postings[last++] = postings[j];
+                        }
+                    }
+
+                    length = last;
+                }
+
+                if (length > from) {
+                    keyIds[count++] = keyId;
+                    offsets[count] = length;
+                }
+            }
+
+            addedKeys.put(name, added.toArray(new String[added.size()]));
+
+            return new Object[] { name, Arrays.copyOf(keyIds, count), Arrays.copyOf(offsets, count+1), Arrays.copyOf(postings, length) };
+        }
+
+        protected int copyOldPostings(Index index, int i, int[] postings, int length) {
+            for (int j=index.offsets[i], end=index.offsets[i+1]; j<end; j++) {
+                int value = index.postings[j];
+
+                if ((value & STRING_FLAG) == 0) {
+                    int id = entryIdMap[value];
+
+                    if (id != -1) {
+                        postings[length++] = id;
+                    }
+                } else if (removedTypeNames.isEmpty() || !removedTypeNames.contains(strings[value & ~STRING_FLAG])) {
+                    postings[length++] = value;
+                }
+            }
+
+            return length;
+        }
+
+        protected int appendDeltaPostings(Index index, int i, int[] postings, int from, int length) {
+            for (int j=index.offsets[i], end=index.offsets[i+1]; j<end; j++) {
+                int value = index.postings[j];
+
+                if ((value & STRING_FLAG) == 0) {
+                    postings[length++] = deltaEntryBase + value;
+                } else if (!containsString(postings, from, length, delta.strings[value & ~STRING_FLAG])) {
+                    postings[length++] = getStringId(value & ~STRING_FLAG) | STRING_FLAG;
+                }
+            }
+
+            return length;
+        }
+
+        protected boolean containsString(int[] postings, int from, int to, String s) {
+            for (int j=from; j<to; j++) {
+                if (((postings[j] & STRING_FLAG) != 0) && newStrings.get(postings[j] & ~STRING_FLAG).equals(s)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        protected int getStringId(int deltaStringId) {
+            int id = deltaStringIdMap[deltaStringId];
+
+            if (id == -1) {
+                String s = delta.strings[deltaStringId];
+                Integer stringId = stringIds.get(s);
+
+                if (stringId == null) {
+                    stringIds.put(s, stringId=newStrings.size());
+                    newStrings.add(s);
+                }
+
+                id = deltaStringIdMap[deltaStringId] = stringId;
+            }
+
+            return id;
+        }
+
+        /**
+         * Remove the strings referenced by no key and no value, like the names of the removed types. The order of the
+         * kept ids is unchanged: the posting lists stay sorted.
+         */
+        protected String[] compactStrings(ArrayList<Object[]> packedIndexes) {
+            int[] stringIdMap = new int[newStrings.size()];
+
+            for (Object[] packedIndex : packedIndexes) {
+                for (int keyId : (int[])packedIndex[1]) {
+                    stringIdMap[keyId] = 1;
+                }
+                for (int value : (int[])packedIndex[3]) {
+                    if ((value & STRING_FLAG) != 0) {
+                        stringIdMap[value & ~STRING_FLAG] = 1;
+                    }
+                }
+            }
+
+            ArrayList<String> usedStrings = new ArrayList<>(newStrings.size());
+
+            for (int i=0; i<stringIdMap.length; i++) {
+                if (stringIdMap[i] != 0) {
+                    stringIdMap[i] = usedStrings.size();
+                    usedStrings.add(newStrings.get(i));
+                } else {
+                    stringIdMap[i] = -1;
+                }
+            }
+
+            if (usedStrings.size() < stringIdMap.length) {
+                for (Object[] packedIndex : packedIndexes) {
+                    int[] keyIds = (int[])packedIndex[1];
+                    int[] postings = (int[])packedIndex[3];
+
+                    for (int i=0; i<keyIds.length; i++) {
+                        keyIds[i] = stringIdMap[keyIds[i]];
+                    }
+                    for (int i=0; i<postings.length; i++) {
+                        if ((postings[i] & STRING_FLAG) != 0) {
+                            postings[i] = stringIdMap[postings[i] & ~STRING_FLAG] | STRING_FLAG;
+                        }
+                    }
+                }
+            }
+
+            return usedStrings.toArray(new String[usedStrings.size()]);
+        }
+    }
+
+    // --- Serialization --- //
+    /**
+     * Write strings and indexes. Entries are written by the caller: they are passed back to 'read', in the same order.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(strings.length);
+
+        for (String string : strings) {
+            writeString(out, string);
+        }
+
+        out.writeInt(indexes.size());
+
+        for (Map.Entry<String, Index> mapEntry : indexes.entrySet()) {
+            Index index = mapEntry.getValue();
+
+            writeString(out, mapEntry.getKey());
+            writeInts(out, index.keyIds);
+            writeInts(out, index.offsets);
+            writeInts(out, index.postings);
+        }
+    }
+
+    public static CompactIndexes read(ByteBuffer buffer, Container.Entry[] entries) {
+        String[] strings = new String[buffer.getInt()];
+
+        for (int i=0; i<strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+
+        CompactIndexes compactIndexes = new CompactIndexes(strings, entries);
+
+        for (int count=buffer.getInt(); count>0; count--) {
+            String name = readString(buffer);
+            int[] keyIds = readInts(buffer);
+            int[] offsets = readInts(buffer);
+            int[] postings = readInts(buffer);
+
+            if ((offsets.length != keyIds.length+1) || (offsets[keyIds.length] != postings.length)) {
+                throw new IllegalStateException("Corrupted index '" + name + "'");
+            }
+
+            compactIndexes.addIndex(name, keyIds, offsets, postings);
+        }
+
+        return compactIndexes;
+    }
+
+    protected static void writeInts(DataOutputStream out, int[] ints) throws IOException {
+        out.writeInt(ints.length);
+
+        for (int i : ints) {
+            out.writeInt(i);
+        }
+    }
+
+    protected static int[] readInts(ByteBuffer buffer) {
+        int[] ints = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(ints);
+        buffer.position(buffer.position() + ints.length * 4);
+        return ints;
+    }
+
+    /**
+     * Write an int byte length followed by the modified UTF-8 bytes of 's', without the 64K limit of
+     * DataOutput.writeUTF().
+     */
+    public static void writeString(DataOutputStream out, String s) throws IOException {
+        int length = s.length();
+        int byteLength = 0;
+
+        for (int i=0; i<length; i++) {
+            char c = s.charAt(i);
+            byteLength += ((c >= 0x0001) && (c <= 0x007F)) ? 1 : (c <= 0x07FF) ? 2 : 3;
+        }
+
+        out.writeInt(byteLength);
+
+        for (int i=0; i<length; i++) {
+            char c = s.charAt(i);
+
+            if ((c >= 0x0001) && (c <= 0x007F)) {
+                out.write(c);
+            } else if (c <= 0x07FF) {
+                out.write(0xC0 | ((c >> 6) & 0x1F));
+                out.write(0x80 | (c & 0x3F));
+            } else {
+                out.write(0xE0 | ((c >> 12) & 0x0F));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    public static String readString(ByteBuffer buffer) {
+        int byteLength = buffer.getInt();
+        char[] chars = new char[byteLength];
+        int count = 0;
+
+        for (int end=buffer.position()+byteLength; buffer.position()<end;) {
+            int b = buffer.get() & 0xFF;
+
+            if (b < 0x80) {
+                chars[count++] = (char)b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char)(((b & 0x1F) << 6) | (buffer.get() & 0x3F));
+            } else {
+                chars[count++] = (char)(((b & 0x0F) << 12) | ((buffer.get() & 0x3F) << 6) | (buffer.get() & 0x3F));
+            }
+        }
+
+        return new String(chars, 0, count);
+    }
+
+    // --- Map views --- //
+    public class Index extends AbstractMap<String, Collection> {
+        protected static final int TRIGRAM_INDEX_THRESHOLD = 1024;
+        protected static final String REGEX_CHARACTERS = "\\[](){}+^$|";
+
+        protected int[] keyIds;
+        protected int[] offsets;
+        protected int[] postings;
+        protected TrigramIndex trigramIndex;
+        protected TypeNameIndex typeNameIndex;
+
+        public Index(int[] keyIds, int[] offsets, int[] postings) {
+            this.keyIds = keyIds;
+            this.offsets = offsets;
+            this.postings = postings;
+        }
+
+        @Override public int size() { return keyIds.length; }
+        @Override public boolean isEmpty() { return keyIds.length == 0; }
+        @Override public boolean containsKey(Object key) { return indexOf(key) >= 0; }
+
+        @Override
+        public Collection get(Object key) {
+            int index = indexOf(key);
+            return (index < 0) ? null : new Postings(offsets[index], offsets[index+1]);
+        }
+
+        protected int indexOf(Object key) {
+            if (key instanceof String) {
+                String s = (String)key;
+                int low = 0;
+                int high = keyIds.length - 1;
+
+                while (low <= high) {
+                    int middle = (low + high) >>> 1;
+                    int cmp = strings[keyIds[middle]].compareTo(s);
+
+                    if (cmp < 0) {
+                        low = middle + 1;
+                    } else if (cmp > 0) {
+                        high = middle - 1;
+                    } else {
+                        return middle;
+                    }
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Select the keys matching 'pattern' with the prefix range of the sorted keys and the trigram index, then
+         * verify them with 'predicate'.
+         *
+         * @param pattern   search pattern: '*' matches 0 or N characters, '?' matches 1 character
+         * @param prefix    true if 'pattern' matches the beginning of the keys
+         * @param predicate final verification of the selected keys
+         * @return the matching keys and their values
+         */
+        public Map<String, Collection> filter(String pattern, boolean prefix, Predicate<String> predicate) {
+            HashMap<String, Collection> map = new HashMap<>();
+            int from = 0;
+            int to = keyIds.length;
+            int[] candidates = null;
+
+            if (!containsRegexCharacters(pattern)) {
+                ArrayList<String> fragments = split(pattern);
+                Predicate<String> verification = predicate;
+
+                // Check fragments before running the predicate
+                predicate = key -> {
+                    for (String fragment : fragments) {
+                        if (key.indexOf(fragment) == -1) {
+                            return false;
+                        }
+                    }
+                    return verification.test(key);
+                };
+
+                if (prefix && !fragments.isEmpty() && pattern.startsWith(fragments.get(0))) {
+                    String first = fragments.get(0);
+                    from = lowerBound(first);
+                    to = prefixUpperBound(first, from);
+                }
+
+                if (keyIds.length >= TRIGRAM_INDEX_THRESHOLD) {
+                    candidates = getTrigramIndex().find(fragments);
+                }
+            }
+
+            if (candidates == null) {
+                for (int i=from; i<to; i++) {
+                    String key = strings[keyIds[i]];
+
+                    if (predicate.test(key)) {
+                        map.put(key, new Postings(offsets[i], offsets[i+1]));
+                    }
+                }
+            } else {
+                for (int i : candidates) {
+                    if (i >= to) {
+                        break;
+                    }
+                    if (i >= from) {
+                        String key = strings[keyIds[i]];
+
+                        if (predicate.test(key)) {
+                            map.put(key, new Postings(offsets[i], offsets[i+1]));
+                        }
+                    }
+                }
+            }
+
+            return map;
+        }
+
+        /**
+         * Select the keys, type names using the JVM internal format, with the type name index, then verify them with
+         * 'predicate'.
+         *
+         * @param prefix     prefix of the simple names, compared without case
+         * @param upperCases upper case letters contained by the simple names
+         * @param letters    letters contained by the simple names, compared without case
+         * @param predicate  final verification of the selected type names
+         * @return the matching type names and their values
+         */
+        public Map<String, Collection> filterTypeNames(String prefix, String upperCases, String letters, Predicate<String> predicate) {
+            HashMap<String, Collection> map = new HashMap<>();
+
+            for (int i : getTypeNameIndex().find(prefix, upperCases, letters)) {
+                String key = strings[keyIds[i]];
+
+                if (predicate.test(key)) {
+                    map.put(key, new Postings(offsets[i], offsets[i+1]));
+                }
+            }
+
+            return map;
+        }
+
+        protected synchronized TrigramIndex getTrigramIndex() {
+            if (trigramIndex == null) {
+                trigramIndex = new TrigramIndex(getKeys());
+            }
+
+            return trigramIndex;
+        }
+
+        protected synchronized TypeNameIndex getTypeNameIndex() {
+            if (typeNameIndex == null) {
+                typeNameIndex = new TypeNameIndex(getKeys());
+            }
+
+            return typeNameIndex;
+        }
+
+        protected String[] getKeys() {
+            String[] keys = new String[keyIds.length];
+
+            for (int i=0; i<keys.length; i++) {
+                keys[i] = strings[keyIds[i]];
+            }
+
+            return keys;
+        }
+
+        protected boolean containsRegexCharacters(String pattern) {
+            for (int i=0, length=pattern.length(); i<length; i++) {
+                if (REGEX_CHARACTERS.indexOf(pattern.charAt(i)) != -1) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        protected ArrayList<String> split(String pattern) {
+            ArrayList<String> fragments = new ArrayList<>();
+            int start = 0;
+
+            for (int i=0, length=pattern.length(); i<=length; i++) {
+                if ((i == length) || (pattern.charAt(i) == '*') || (pattern.charAt(i) == '?')) {
+                    if (start < i) {
+                        fragments.add(pattern.substring(start, i));
+                    }
+                    start = i + 1;
+                }
+            }
+
+            return fragments;
+        }
+
+        /**
+         * @return the position of the first key greater than or equal to 's'
+         */
+        protected int lowerBound(String s) {
+            int low = 0;
+            int high = keyIds.length;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (strings[keyIds[middle]].compareTo(s) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+        /**
+         * @return the position of the first key, after 'from', not starting with 'prefix'
+         */
+        protected int prefixUpperBound(String prefix, int from) {
+            int low = from;
+            int high = keyIds.length;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (strings[keyIds[middle]].startsWith(prefix)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return new AbstractSet<String>() {
+                @Override public int size() { return keyIds.length; }
+                @Override public boolean contains(Object o) { return indexOf(o) >= 0; }
+
+                @Override
+                public Iterator<String> iterator() {
+                    return new Iterator<String>() {
+                        protected int index = 0;
+
+                        @Override public boolean hasNext() { return index < keyIds.length; }
+
+                        @Override
+                        public String next() {
+                            if (index >= keyIds.length) {
+                                throw new NoSuchElementException();
+                            }
+                            return strings[keyIds[index++]];
+                        }
+                    };
+                }
+            };
+        }
+
+        @Override
+        public Set<Map.Entry<String, Collection>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Collection>>() {
+                @Override public int size() { return keyIds.length; }
+
+                @Override
+                public Iterator<Map.Entry<String, Collection>> iterator() {
+                    return new Iterator<Map.Entry<String, Collection>>() {
+                        protected int index = 0;
+
+                        @Override public boolean hasNext() { return index < keyIds.length; }
+
+                        @Override
+                        public Map.Entry<String, Collection> next() {
+                            if (index >= keyIds.length) {
+                                throw new NoSuchElementException();
+                            }
+                            Postings value = new Postings(offsets[index], offsets[index+1]);
+                            return new SimpleImmutableEntry<>(strings[keyIds[index++]], value);
+                        }
+                    };
+                }
+            };
+        }
+
+        protected class Postings extends AbstractCollection<Object> {
+            protected int from;
+            protected int to;
+
+            public Postings(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override public int size() { return to - from; }
+
+            @Override
+            public Iterator<Object> iterator() {
+                return new Iterator<Object>() {
+                    protected int index = from;
+
+                    @Override public boolean hasNext() { return index < to; }
+
+                    @Override
+                    public Object next() {
+                        if (index >= to) {
+                            throw new NoSuchElementException();
+                        }
+                        return decode(postings[index++]);
+                    }
+                };
+            }
+        }
+    }
+
+    protected Object decode(int value) {
+        return ((value & STRING_FLAG) == 0) ? entries[value] : strings[value & ~STRING_FLAG];
+    }
+
+    // --- Builder --- //
+    /**
+     * Mutable indexes populating keys automatically, used by the indexers. Keys and values are encoded as soon as they
+     * are added; 'build()' sorts and packs them, and can be called several times.<br>
+     * <br>
+     * While the indexation is running, snapshots are built and published to the listener, at most every
+     * SNAPSHOT_DELAY milliseconds, and less often if building a snapshot takes time.<br>
+     * <br>
+     * Once 'setDeferredEntries()' has been called, the nested archives found by the indexers are collected instead of
+     * being indexed.
+     */
+    public static class Builder implements ProgressiveIndexes, DeferringIndexes {
+        protected static final long SNAPSHOT_DELAY = 250;
+
+        protected ContentIndexable.SnapshotListener listener;
+        protected int foundCount = 0;
+        protected int indexedCount = 0;
+        protected long nextSnapshotTime;
+        protected List<Container.Entry> deferredEntries;
+
+        protected HashMap<String, Integer> stringIds = new HashMap<>();
+        protected ArrayList<String> strings = new ArrayList<>();
+        protected HashMap<Container.Entry, Integer> entryIds = new HashMap<>();
+        protected ArrayList<Container.Entry> entries = new ArrayList<>();
+        protected LinkedHashMap<String, IndexBuilder> indexes = new LinkedHashMap<>();
+        // Token of the last built indexes
+        protected Object lastToken;
+
+        @Override
+        public Map<String, Collection> getIndex(String name) {
+            IndexBuilder index = indexes.get(name);
+
+            if (index == null) {
+                indexes.put(name, index=new IndexBuilder());
+            }
+
+            return index;
+        }
+
+        public boolean isEmpty() {
+            return indexes.isEmpty();
+        }
+
+        /**
+         * @return the number of entries referenced by the indexes
+         */
+        public int getEntryCount() {
+            return entries.size();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return (listener != null) && listener.isCancelled();
+        }
+
+        public void setSnapshotListener(ContentIndexable.SnapshotListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * @param deferredEntries list receiving the nested archives to index later, or null to index them
+         */
+        public void setDeferredEntries(List<Container.Entry> deferredEntries) {
+            this.deferredEntries = deferredEntries;
+        }
+
+        @Override
+        public boolean deferIndexation(Container.Entry entry) {
+            List<Container.Entry> list = deferredEntries;
+
+            if (list == null) {
+                return false;
+            }
+
+            synchronized (list) {
+                list.add(entry);
+            }
+
+            return true;
+        }
+
+        @Override
+        public void entriesFound(int count) {
+            foundCount += count;
+            nextSnapshotTime = System.currentTimeMillis() + SNAPSHOT_DELAY;
+        }
+
+        @Override
+        public void entriesIndexed(int count) {
+            indexedCount += count;
+
+            if ((listener != null) && (indexedCount < foundCount)) {
+                long time = System.currentTimeMillis();
+
+                if (time >= nextSnapshotTime) {
+                    CompactIndexes snapshot = build();
+                    long buildDuration = System.currentTimeMillis() - time;
+
+                    nextSnapshotTime = time + buildDuration + Math.max(SNAPSHOT_DELAY, 4 * buildDuration);
+                    listener.snapshotPublished(snapshot, getProgress());
+                }
+            }
+        }
+
+        /**
+         * @return the percentage of indexed entries
+         */
+        public int getProgress() {
+            return (foundCount == 0) ? 0 : (int)(100L * indexedCount / foundCount);
+        }
+
+        protected int getStringId(String string) {
+            Integer id = stringIds.get(string);
+
+            if (id == null) {
+                stringIds.put(string, id=strings.size());
+                strings.add(string);
+            }
+
+            return id;
+        }
+
+        protected int encode(Object value) {
+            if (value instanceof Container.Entry) {
+                Container.Entry entry = (Container.Entry)value;
+                Integer id = entryIds.get(entry);
+
+                if (id == null) {
+                    entryIds.put(entry, id=entries.size());
+                    entries.add(entry);
+                }
+
+                return id;
+            } else {
+                return getStringId(value.toString()) | STRING_FLAG;
+            }
+        }
+
+        public CompactIndexes build() {
+            CompactIndexes compactIndexes = new CompactIndexes(
+                strings.toArray(new String[strings.size()]), entries.toArray(new Container.Entry[entries.size()]));
+
+            for (Map.Entry<String, IndexBuilder> mapEntry : indexes.entrySet()) {
+                IndexBuilder index = mapEntry.getValue();
+                String[] keys = index.keySet().toArray(new String[index.size()]);
+                int[] keyIds = new int[keys.length];
+                int[] offsets = new int[keys.length+1];
+                int length = 0;
+
+                Arrays.sort(keys);
+
+                for (String key : keys) {
+                    length += ((PostingsBuilder)index.get(key)).size;
+                }
+
+                int[] postings = new int[length];
+
+                length = 0;
+
+                for (int i=0; i<keys.length; i++) {
+                    PostingsBuilder postingsBuilder = (PostingsBuilder)index.get(keys[i]);
+                    int from = length;
+
+                    System.arraycopy(postingsBuilder.values, 0, postings, from, postingsBuilder.size);
+                    Arrays.sort(postings, from, from + postingsBuilder.size);
+
+                    // Remove duplicates
+                    for (int j=from, last=from+postingsBuilder.size; j<last; j++) {
+                        if ((j == from) || (postings[j] != postings[length-1])) {
+                            postings[length++] = postings[j];
+                        }
+                    }
+
+                    keyIds[i] = stringIds.get(keys[i]);
+                    offsets[i+1] = length;
+                }
+
+                compactIndexes.addIndex(mapEntry.getKey(), keyIds, offsets, (length == postings.length) ? postings : Arrays.copyOf(postings, length));
+            }
+
+            if (lastToken != null) {
+                // Keys added since the last build, the others are kept
+                HashMap<String, String[]> addedKeys = new HashMap<>();
+
+                for (Map.Entry<String, IndexBuilder> mapEntry : indexes.entrySet()) {
+                    ArrayList<String> added = mapEntry.getValue().addedKeys;
+                    addedKeys.put(mapEntry.getKey(), added.toArray(new String[added.size()]));
+                }
+
+                compactIndexes.parentToken = lastToken;
+                compactIndexes.appendOnly = true;
+                compactIndexes.addedKeys = addedKeys;
+            }
+
+            for (IndexBuilder index : indexes.values()) {
+                index.addedKeys.clear();
+            }
+
+            lastToken = compactIndexes.token;
+
+            return compactIndexes;
+        }
+
+        protected class IndexBuilder extends HashMap<String, Collection> {
+            // Keys added since the last build
+            protected ArrayList<String> addedKeys = new ArrayList<>();
+
+            @Override
+            public Collection get(Object o) {
+                Collection value = super.get(o);
+
+                if (value == null) {
+                    String key = strings.get(getStringId(o.toString()));
+                    put(key, value=new PostingsBuilder());
+                    addedKeys.add(key);
+                }
+
+                return value;
+            }
+        }
+
+        protected class PostingsBuilder extends AbstractCollection<Object> {
+            protected int[] values = new int[2];
+            protected int size = 0;
+
+            @Override public int size() { return size; }
+
+            @Override
+            public boolean add(Object o) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = encode(o);
+                return true;
+            }
+
+            @Override
+            public Iterator<Object> iterator() {
+                return new Iterator<Object>() {
+                    protected int index = 0;
+
+                    @Override public boolean hasNext() { return index < size; }
+
+                    @Override
+                    public Object next() {
+                        if (index >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        int value = values[index++];
+                        return ((value & STRING_FLAG) == 0) ? entries.get(value) : strings.get(value & ~STRING_FLAG);
+                    }
+                };
+            }
+        }
+    }
+}
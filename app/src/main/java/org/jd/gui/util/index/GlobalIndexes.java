@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.index;
+
+import org.jd.gui.api.model.FederatedIndexes;
+import org.jd.gui.api.model.Indexes;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * Merged view of the indexes of the opened containers, updated incrementally when a container is opened, closed or
+ * publishes new indexes.<br>
+ * <br>
+ * Containers are assigned to slots. For each maintained index, a concurrent map associates the keys to the mask of
+ * the slots declaring them, so that a lookup queries only the containers containing the key. Each change publishes a
+ * new FederatedIndexes with a new version, holding the indexes of the containers at that time; readers never lock.<br>
+ * <br>
+ * The masks are shared by the snapshots: the bits of the added keys are set before the publication, the bits of the
+ * removed keys are cleared after. A snapshot published before the last clearing ignores the masks and queries all its
+ * containers, its indexes may still contain the cleared keys.
+ */
+public class GlobalIndexes {
+    protected static final int OVERFLOW_BIT = 1 << 31; // Shared by the slots above 30
+
+    protected HashMap<String, ConcurrentHashMap<String, Integer>> masks = new HashMap<>();
+    protected ArrayList<Member> members = new ArrayList<>();
+    protected long version = 0;
+    // Version of the first snapshot published after the last clearing of bits
+    protected volatile long clearedVersion = 0;
+    protected volatile Snapshot snapshot;
+
+    /**
+     * @param names names of the indexes to maintain, the other indexes are looked up in all containers
+     */
+    public GlobalIndexes(String... names) {
+        for (String name : names) {
+            masks.put(name, new ConcurrentHashMap<>());
+        }
+        snapshot = new Snapshot();
+    }
+
+    public FederatedIndexes getFederatedIndexes() {
+        return snapshot;
+    }
+
+    public synchronized void add(Future<Indexes> futureIndexes) {
+        members.add(new Member(futureIndexes, getFreeSlot()));
+        publish();
+    }
+
+    /**
+     * Merge the latest indexes of a container.
+     *
+     * @param indexes latest indexes, or null if the indexation failed
+     */
+    public synchronized void update(Future<Indexes> futureIndexes, Indexes indexes) {
+        for (Member member : members) {
+            if (member.futureIndexes == futureIndexes) {
+                Indexes oldIndexes = member.indexes;
+
+                if ((indexes != null) && (indexes != oldIndexes)) {
+                    int bit = getBit(member.slot);
+
+                    // Set the bit of the new keys, publish, then clear the bit of the removed keys
+                    setBits(oldIndexes, indexes, bit);
+                    member.indexes = indexes;
+                    publish();
+
+                    if ((oldIndexes != null) && hasRemovedKeys(oldIndexes, indexes)) {
+                        clearedVersion = version;
+                        clearBits(oldIndexes, indexes, bit);
+                    }
+                } else {
+                    publish();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove the containers closed since the last call.
+     */
+    public synchronized void retain(Collection<Future<Indexes>> collectionOfFutureIndexes) {
+        ArrayList<Member> removedMembers = new ArrayList<>();
+
+        for (Iterator<Member> iterator = members.iterator(); iterator.hasNext();) {
+            Member member = iterator.next();
+
+            if (!collectionOfFutureIndexes.contains(member.futureIndexes)) {
+                removedMembers.add(member);
+                iterator.remove();
+            }
+        }
+
+        if (!removedMembers.isEmpty()) {
+            publish();
+            clearedVersion = version;
+
+            // Cleared before the slots are reused by 'add'
+            for (Member member : removedMembers) {
+                if (member.indexes != null) {
+                    clearBits(member.indexes, null, getBit(member.slot));
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the bit of the keys of 'newIndexes', only of the keys added since 'oldIndexes' if they derive from them.
+     */
+    protected void setBits(Indexes oldIndexes, Indexes newIndexes, int bit) {
+        Integer value = Integer.valueOf(bit);
+
+        for (Map.Entry<String, ConcurrentHashMap<String, Integer>> mapEntry : masks.entrySet()) {
+            Map<String, Collection> index = newIndexes.getIndex(mapEntry.getKey());
+
+            if (index != null) {
+                ConcurrentHashMap<String, Integer> keyMasks = mapEntry.getValue();
+                Collection<String> keys = null;
+
+                if ((oldIndexes != null) && (newIndexes instanceof CompactIndexes)) {
+                    keys = ((CompactIndexes)newIndexes).getAddedKeys(oldIndexes, mapEntry.getKey());
+                }
+
+                for (String key : (keys == null) ? index.keySet() : keys) {
+                    keyMasks.merge(key, value, (m1, m2) -> Integer.valueOf(m1.intValue() | m2.intValue()));
+                }
+            }
+        }
+    }
+
+    protected static boolean hasRemovedKeys(Indexes oldIndexes, Indexes newIndexes) {
+        return !(newIndexes instanceof CompactIndexes) || ((CompactIndexes)newIndexes).hasRemovedKeys(oldIndexes);
+    }
+
+    /**
+     * Clear the bit of the keys of 'oldIndexes' missing from 'newIndexes', or of all keys if 'newIndexes' is null. The
+     * overflow bit is shared by several containers: it is never cleared.
+     */
+    protected void clearBits(Indexes oldIndexes, Indexes newIndexes, int bit) {
+        if (bit == OVERFLOW_BIT) {
+            return;
+        }
+
+        for (Map.Entry<String, ConcurrentHashMap<String, Integer>> mapEntry : masks.entrySet()) {
+            Map<String, Collection> oldIndex = oldIndexes.getIndex(mapEntry.getKey());
+
+            if (oldIndex != null) {
+                Map<String, Collection> newIndex = (newIndexes == null) ? null : newIndexes.getIndex(mapEntry.getKey());
+                ConcurrentHashMap<String, Integer> keyMasks = mapEntry.getValue();
+
+                for (String key : oldIndex.keySet()) {
+                    if ((newIndex == null) || !newIndex.containsKey(key)) {
+                        keyMasks.computeIfPresent(key, (k, m) -> ((m.intValue() & ~bit) == 0) ? null : Integer.valueOf(m.intValue() & ~bit));
+                    }
+                }
+            }
+        }
+    }
+
+    protected int getFreeSlot() {
+        for (int slot=0; ; slot++) {
+            boolean used = false;
+
+            for (Member member : members) {
+                if (member.slot == slot) {
+                    used = true;
+                    break;
+                }
+            }
+
+            if (!used) {
+                return slot;
+            }
+        }
+    }
+
+    protected static int getBit(int slot) {
+        return (slot < 31) ? (1 << slot) : OVERFLOW_BIT;
+    }
+
+    protected void publish() {
+        version++;
+        snapshot = new Snapshot();
+    }
+
+    protected static class Member {
+        protected Future<Indexes> futureIndexes;
+        protected int slot;
+        protected Indexes indexes;
+
+        public Member(Future<Indexes> futureIndexes, int slot) {
+            this.futureIndexes = futureIndexes;
+            this.slot = slot;
+        }
+    }
+
+    protected class Snapshot extends AbstractCollection<Future<Indexes>> implements FederatedIndexes {
+        protected long version;
+        protected List<Future<Indexes>> futures;
+        protected Indexes[] indexes;
+        protected int[] bits;
+
+        @SuppressWarnings("unchecked")
+        public Snapshot() {
+            int size = members.size();
+            Future<Indexes>[] futures = new Future[size];
+
+            this.version = GlobalIndexes.this.version;
+            this.futures = Arrays.asList(futures);
+            this.indexes = new Indexes[size];
+            this.bits = new int[size];
+
+            for (int i=0; i<size; i++) {
+                Member member = members.get(i);
+                futures[i] = member.futureIndexes;
+                indexes[i] = member.indexes;
+                bits[i] = getBit(member.slot);
+            }
+        }
+
+        @Override public long getVersion() { return version; }
+        @Override public Iterator<Future<Indexes>> iterator() { return futures.iterator(); }
+        @Override public int size() { return futures.size(); }
+        @Override public int hashCode() { return Long.hashCode(version); }
+
+        @Override
+        public Map<String, Collection> getIndex(String name) {
+            return new Index(name, masks.get(name));
+        }
+
+        protected class Index extends AbstractMap<String, Collection> {
+            protected String name;
+            protected Map<String, Integer> keyMasks;
+
+            public Index(String name, Map<String, Integer> keyMasks) {
+                this.name = name;
+                this.keyMasks = keyMasks;
+            }
+
+            @Override public boolean containsKey(Object key) { return get(key) != null; }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Collection get(Object key) {
+                int mask = -1;
+
+                if (keyMasks != null) {
+                    if (key == null) {
+                        return null;
+                    }
+
+                    Integer m = keyMasks.get(key);
+
+                    // Checked after reading the mask: 'clearedVersion' is set before the bits are cleared
+                    if (version >= clearedVersion) {
+                        if (m == null) {
+                            return null;
+                        }
+
+                        mask = m.intValue();
+                    }
+                }
+
+                Collection result = null;
+                ArrayList merged = null;
+
+                for (int i=0; i<indexes.length; i++) {
+                    if (((bits[i] & mask) != 0) && (indexes[i] != null)) {
+                        Map<String, Collection> index = indexes[i].getIndex(name);
+
+                        if (index != null) {
+                            Collection collection = index.get(key);
+
+                            if (collection != null) {
+                                if (result == null) {
+                                    result = collection;
+                                } else {
+                                    if (merged == null) {
+                                        result = merged = new ArrayList(result);
+                                    }
+                                    merged.addAll(collection);
+                                }
+                            }
+                        }
+                    }
+                }
+
+                return result;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Set<Map.Entry<String, Collection>> entrySet() {
+                LinkedHashMap<String, Collection> map = new LinkedHashMap<>();
+
+                for (Indexes i : indexes) {
+                    Map<String, Collection> index = (i == null) ? null : i.getIndex(name);
+
+                    if (index != null) {
+                        for (Map.Entry<String, Collection> mapEntry : index.entrySet()) {
+                            Collection collection = map.get(mapEntry.getKey());
+
+                            if (collection == null) {
+                                map.put(mapEntry.getKey(), collection = new ArrayList());
+                            }
+
+                            collection.addAll(mapEntry.getValue());
+                        }
+                    }
+                }
+
+                return map.entrySet();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.index;
+
+import org.jd.gui.api.model.Indexes;
+
+import java.util.Collection;
+import java.util.concurrent.*;
+
+/**
+ * Future of indexes publishing snapshots while the indexation is running: the future is done as soon as a first
+ * snapshot is available, and 'get()' returns the latest snapshot, then the final indexes.
+ */
+public class IndexesFuture implements Future<Indexes> {
+    protected CountDownLatch latch = new CountDownLatch(1);
+    protected volatile Indexes indexes;
+    protected volatile int progress = 0;
+    protected volatile boolean completed = false;
+    protected volatile boolean cancelled = false;
+    protected volatile Throwable throwable;
+
+    public void publish(Indexes snapshot, int progress) {
+        if (!completed) {
+            this.indexes = snapshot;
+            this.progress = progress;
+            latch.countDown();
+        }
+    }
+
+    public void complete(Indexes indexes) {
+        this.indexes = indexes;
+        this.progress = 100;
+        this.completed = true;
+        latch.countDown();
+    }
+
+    /**
+     * Replace the final indexes, after an incremental update.
+     */
+    public void update(Indexes indexes) {
+        if (completed && !cancelled && (throwable == null)) {
+            this.indexes = indexes;
+        }
+    }
+
+    public void fail(Throwable throwable) {
+        this.throwable = throwable;
+        this.completed = true;
+        latch.countDown();
+    }
+
+    /**
+     * @return the percentage of indexed entries
+     */
+    public int getProgress() { return progress; }
+
+    /**
+     * @return true if the indexation is terminated
+     */
+    public boolean isCompleted() { return completed; }
+
+    /**
+     * @return the lowest percentage of indexed entries of the running indexations, or 100
+     */
+    public static int getProgress(Collection<Future<Indexes>> collectionOfFutureIndexes) {
+        int progress = 100;
+
+        for (Future<Indexes> futureIndexes : collectionOfFutureIndexes) {
+            if (futureIndexes instanceof IndexesFuture) {
+                IndexesFuture indexesFuture = (IndexesFuture)futureIndexes;
+
+                if (!indexesFuture.isCompleted()) {
+                    progress = Math.min(progress, indexesFuture.getProgress());
+                }
+            } else if (!futureIndexes.isDone()) {
+                progress = 0;
+            }
+        }
+
+        return progress;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (completed) {
+            return false;
+        }
+
+        cancelled = completed = true;
+        latch.countDown();
+        return true;
+    }
+
+    @Override public boolean isCancelled() { return cancelled; }
+
+    @Override public boolean isDone() { return (indexes != null) || completed; }
+
+    @Override
+    public Indexes get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return getIndexes();
+    }
+
+    @Override
+    public Indexes get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getIndexes();
+    }
+
+    protected Indexes getIndexes() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (throwable != null) {
+            throw new ExecutionException(throwable);
+        }
+        return indexes;
+    }
+}
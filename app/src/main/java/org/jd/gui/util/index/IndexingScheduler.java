@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.index;
+
+import org.jd.gui.api.model.Indexes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Queue of indexing jobs, one per container, run by a fixed number of threads.<br>
+ * <br>
+ * Jobs run in submission order, except the job of the selected container, which runs first. A job is identified by
+ * the future of its indexes: cancelling a queued job removes it from the queue, cancelling a running job cancels its
+ * future, the indexers stopping at the next check.
+ */
+public class IndexingScheduler {
+    protected ExecutorService executor;
+    protected Runnable queueChangedCallback;
+    protected ArrayList<Job> queue = new ArrayList<>();
+    protected ArrayList<Job> runningJobs = new ArrayList<>();
+    protected Future<Indexes> selectedFutureIndexes;
+
+    /**
+     * @param queueChangedCallback called, from any thread, when a job is queued, started, terminated or cancelled
+     */
+    public IndexingScheduler(int threadCount, Runnable queueChangedCallback) {
+        this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "jd-gui-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.queueChangedCallback = queueChangedCallback;
+    }
+
+    public void submit(Future<Indexes> futureIndexes, Runnable task) {
+        synchronized (this) {
+            queue.add(new Job(futureIndexes, task));
+        }
+        // Each submission starts one run: the job to run is chosen when a thread is available
+        executor.execute(() -> runNext());
+        queueChangedCallback.run();
+    }
+
+    /**
+     * Run the job of 'futureIndexes' before the other queued jobs.
+     */
+    public void select(Future<Indexes> futureIndexes) {
+        boolean changed;
+
+        synchronized (this) {
+            changed = (selectedFutureIndexes != futureIndexes) && (indexOf(futureIndexes) > 0);
+            selectedFutureIndexes = futureIndexes;
+        }
+
+        if (changed) {
+            queueChangedCallback.run();
+        }
+    }
+
+    /**
+     * Cancel the jobs of the containers closed since the last call.
+     */
+    public void retain(Collection<Future<Indexes>> collectionOfFutureIndexes) {
+        ArrayList<Future<Indexes>> cancelled = new ArrayList<>();
+
+        synchronized (this) {
+            for (Iterator<Job> iterator = queue.iterator(); iterator.hasNext();) {
+                Job job = iterator.next();
+
+                if (!collectionOfFutureIndexes.contains(job.futureIndexes)) {
+                    iterator.remove();
+                    cancelled.add(job.futureIndexes);
+                }
+            }
+            for (Job job : runningJobs) {
+                if (!collectionOfFutureIndexes.contains(job.futureIndexes)) {
+                    cancelled.add(job.futureIndexes);
+                }
+            }
+            if (!collectionOfFutureIndexes.contains(selectedFutureIndexes)) {
+                selectedFutureIndexes = null;
+            }
+        }
+
+        if (!cancelled.isEmpty()) {
+            for (Future<Indexes> futureIndexes : cancelled) {
+                futureIndexes.cancel(false);
+            }
+            queueChangedCallback.run();
+        }
+    }
+
+    /**
+     * @return the position of the job of 'futureIndexes' in the queue, from 1, or 0 if the job is not queued
+     */
+    public synchronized int getQueuePosition(Future<Indexes> futureIndexes) {
+        int index = indexOf(futureIndexes);
+
+        if (index == -1) {
+            return 0;
+        }
+
+        int selectedIndex = indexOf(selectedFutureIndexes);
+
+        if ((selectedIndex == -1) || (selectedIndex == index)) {
+            return (selectedIndex == index) ? 1 : index + 1;
+        }
+
+        return (index < selectedIndex) ? index + 2 : index + 1;
+    }
+
+    protected int indexOf(Future<Indexes> futureIndexes) {
+        for (int i=0, size=queue.size(); i<size; i++) {
+            if (queue.get(i).futureIndexes == futureIndexes) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    protected void runNext() {
+        Job job;
+
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                // The job of this run has been cancelled
+                return;
+            }
+
+            int index = indexOf(selectedFutureIndexes);
+
+            job = queue.remove((index == -1) ? 0 : index);
+            runningJobs.add(job);
+        }
+
+        queueChangedCallback.run();
+
+        try {
+            job.task.run();
+        } finally {
+            synchronized (this) {
+                runningJobs.remove(job);
+            }
+            queueChangedCallback.run();
+        }
+    }
+
+    protected static class Job {
+        protected Future<Indexes> futureIndexes;
+        protected Runnable task;
+
+        public Job(Future<Indexes> futureIndexes, Runnable task) {
+            this.futureIndexes = futureIndexes;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.index;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Inverted index of the trigrams of a list of keys, used to select the keys containing some fragments of text.<br>
+ * <br>
+ * Trigrams are packed in ints (10 bits per character): characters above 0x3FF may collide, so the candidates must be
+ * verified by the caller. Keys longer than MAX_KEY_LENGTH are not indexed and are always candidates. Posting lists of
+ * key positions are sorted and stored in a single array; trigrams are located with an open addressing hash table.
+ */
+public class TrigramIndex {
+    protected static final int MAX_KEY_LENGTH = 1024;
+    protected static final int[] EMPTY = new int[0];
+
+    protected int[] trigrams;     // Hash table, -1 for empty slots
+    protected int[] offsets;
+    protected int[] lengths;
+    protected int[] postings;
+    protected int[] longKeyPositions;
+
+    public TrigramIndex(String[] keys) {
+        int[] lastPositions;
+        int longKeyCount = 0;
+
+        trigrams = new int[1024];
+        lengths = new int[1024];
+        lastPositions = new int[1024];
+        Arrays.fill(trigrams, -1);
+
+        // Count distinct trigrams per key
+        int size = 0;
+
+        for (int position=0; position<keys.length; position++) {
+            String key = keys[position];
+
+            if (key.length() > MAX_KEY_LENGTH) {
+                longKeyCount++;
+            } else {
+                for (int i=0, end=key.length()-2; i<end; i++) {
+                    int trigram = trigram(key, i);
+                    int slot = slot(trigram);
+
+                    if (trigrams[slot] == -1) {
+                        trigrams[slot] = trigram;
+                        lastPositions[slot] = -1;
+
+                        if (++size * 2 > trigrams.length) {
+                            lastPositions = grow(lastPositions);
+                            slot = slot(trigram);
+                        }
+                    }
+
+                    if (lastPositions[slot] != position) {
+                        lastPositions[slot] = position;
+                        lengths[slot]++;
+                    }
+                }
+            }
+        }
+
+        // Compute offsets
+        offsets = new int[trigrams.length];
+
+        int total = 0;
+
+        for (int slot=0; slot<trigrams.length; slot++) {
+            offsets[slot] = total;
+            total += lengths[slot];
+            lengths[slot] = 0;
+            lastPositions[slot] = -1;
+        }
+
+        // Fill posting lists, sorted by construction
+        postings = new int[total];
+        longKeyPositions = new int[longKeyCount];
+        longKeyCount = 0;
+
+        for (int position=0; position<keys.length; position++) {
+            String key = keys[position];
+
+            if (key.length() > MAX_KEY_LENGTH) {
+                longKeyPositions[longKeyCount++] = position;
+            } else {
+                for (int i=0, end=key.length()-2; i<end; i++) {
+                    int slot = slot(trigram(key, i));
+
+                    if (lastPositions[slot] != position) {
+                        lastPositions[slot] = position;
+                        postings[offsets[slot] + lengths[slot]++] = position;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the sorted positions of the keys possibly containing all 'fragments', or null if the fragments are too
+     * short to select keys
+     */
+    public int[] find(Collection<String> fragments) {
+        int[] result = null;
+
+        for (String fragment : fragments) {
+            for (int i=0, end=fragment.length()-2; i<end; i++) {
+                int trigram = trigram(fragment, i);
+                int slot = slot(trigram);
+
+                if (trigrams[slot] == -1) {
+                    // Unknown trigram
+                    return longKeyPositions;
+                }
+
+                result = (result == null) ?
+                    Arrays.copyOfRange(postings, offsets[slot], offsets[slot] + lengths[slot]) :
+                    intersect(result, postings, offsets[slot], offsets[slot] + lengths[slot]);
+
+                if (result.length == 0) {
+                    return longKeyPositions;
+                }
+            }
+        }
+
+        return (result == null) ? null : union(result, longKeyPositions);
+    }
+
+    protected static int trigram(String s, int index) {
+        return ((s.charAt(index) & 0x3FF) << 20) | ((s.charAt(index+1) & 0x3FF) << 10) | (s.charAt(index+2) & 0x3FF);
+    }
+
+    protected int slot(int trigram) {
+        int mask = trigrams.length - 1;
+        int slot = (trigram * 0x9E3779B9) >>> 7 & mask;
+
+        while ((trigrams[slot] != -1) && (trigrams[slot] != trigram)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    protected int[] grow(int[] lastPositions) {
+        int[] oldTrigrams = trigrams;
+        int[] oldLengths = lengths;
+        int[] newLastPositions = new int[oldTrigrams.length * 2];
+
+        trigrams = new int[oldTrigrams.length * 2];
+        lengths = new int[oldTrigrams.length * 2];
+        Arrays.fill(trigrams, -1);
+
+        for (int oldSlot=0; oldSlot<oldTrigrams.length; oldSlot++) {
+            int trigram = oldTrigrams[oldSlot];
+
+            if (trigram != -1) {
+                int slot = slot(trigram);
+                trigrams[slot] = trigram;
+                lengths[slot] = oldLengths[oldSlot];
+                newLastPositions[slot] = lastPositions[oldSlot];
+            }
+        }
+
+        return newLastPositions;
+    }
+
+    protected static int[] intersect(int[] a, int[] b, int from, int to) {
+        int[] result = new int[Math.min(a.length, to - from)];
+        int length = 0;
+
+        for (int i=0, j=from; (i<a.length) && (j<to);) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[length++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return (length == result.length) ? result : Arrays.copyOf(result, length);
+    }
+
+    protected static int[] union(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+
+        int[] result = new int[a.length + b.length];
+        int length = 0;
+        int i = 0, j = 0;
+
+        while ((i < a.length) && (j < b.length)) {
+            if (a[i] < b[j]) {
+                result[length++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[length++] = b[j++];
+            } else {
+                result[length++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[length++] = a[i++];
+        }
+        while (j < b.length) {
+            result[length++] = b[j++];
+        }
+
+        return Arrays.copyOf(result, length);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.index;
+
+import java.util.Arrays;
+
+/**
+ * Index of the simple names of a list of type names, using the JVM internal format.<br>
+ * <br>
+ * Simple names (after the last '/' or '$') are sorted without case, to select the names starting with a prefix by
+ * binary search. For each name, a camel case mask records the upper case letters (the humps) and the letters, without
+ * case, found in the simple name, to reject most of the names without matching them.
+ */
+public class TypeNameIndex {
+    protected String[] typeNames;
+    protected int[] positions;         // Positions of the type names, sorted by simple name
+    protected int[] simpleNameOffsets; // Offset of the simple names, by sorted position
+    protected long[] masks;            // Camel case masks, by sorted position
+
+    public TypeNameIndex(String[] typeNames) {
+        int length = typeNames.length;
+        Integer[] sortedPositions = new Integer[length];
+        int[] offsets = new int[length];
+
+        for (int i=0; i<length; i++) {
+            sortedPositions[i] = i;
+            offsets[i] = getSimpleNameOffset(typeNames[i]);
+        }
+
+        Arrays.sort(sortedPositions, (p1, p2) -> compare(typeNames[p1], offsets[p1], typeNames[p2], offsets[p2]));
+
+        this.typeNames = typeNames;
+        this.positions = new int[length];
+        this.simpleNameOffsets = new int[length];
+        this.masks = new long[length];
+
+        for (int i=0; i<length; i++) {
+            int position = sortedPositions[i];
+            positions[i] = position;
+            simpleNameOffsets[i] = offsets[position];
+            masks[i] = getMask(typeNames[position], offsets[position]);
+        }
+    }
+
+    /**
+     * @param prefix     prefix of the simple names, compared without case
+     * @param upperCases upper case letters contained by the simple names
+     * @param letters    letters contained by the simple names, compared without case
+     * @return the positions of the candidate type names
+     */
+    public int[] find(String prefix, String upperCases, String letters) {
+        int from = lowerBound(prefix);
+        int to = prefixUpperBound(prefix, from);
+        long mask = getUpperCaseMask(upperCases, 0) | getLetterMask(letters, 0);
+        int[] result = new int[to - from];
+        int count = 0;
+
+        for (int i=from; i<to; i++) {
+            if ((masks[i] & mask) == mask) {
+                result[count++] = positions[i];
+            }
+        }
+
+        return (count == result.length) ? result : Arrays.copyOf(result, count);
+    }
+
+    public static int getSimpleNameOffset(String typeName) {
+        return Math.max(typeName.lastIndexOf('/'), typeName.lastIndexOf('$')) + 1;
+    }
+
+    /**
+     * @return the camel case mask of 's', from 'offset': upper case letters in the low 32 bits, letters without case
+     * in the high 32 bits.
+     */
+    protected static long getMask(String s, int offset) {
+        return getUpperCaseMask(s, offset) | getLetterMask(s, offset);
+    }
+
+    protected static long getUpperCaseMask(String s, int offset) {
+        long mask = 0;
+
+        for (int i=offset, length=s.length(); i<length; i++) {
+            char c = s.charAt(i);
+
+            if ((c >= 'A') && (c <= 'Z')) {
+                mask |= 1L << (c - 'A');
+            }
+        }
+
+        return mask;
+    }
+
+    protected static long getLetterMask(String s, int offset) {
+        long mask = 0;
+
+        for (int i=offset, length=s.length(); i<length; i++) {
+            char c = s.charAt(i);
+
+            if ((c >= 'A') && (c <= 'Z')) {
+                mask |= 1L << (32 + c - 'A');
+            } else if ((c >= 'a') && (c <= 'z')) {
+                mask |= 1L << (32 + c - 'a');
+            }
+        }
+
+        return mask;
+    }
+
+    /**
+     * Compare the simple names without case.
+     */
+    protected static int compare(String s1, int offset1, String s2, int offset2) {
+        int length1 = s1.length() - offset1;
+        int length2 = s2.length() - offset2;
+        int length = Math.min(length1, length2);
+
+        for (int i=0; i<length; i++) {
+            char c1 = Character.toLowerCase(s1.charAt(offset1 + i));
+            char c2 = Character.toLowerCase(s2.charAt(offset2 + i));
+
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+
+        return length1 - length2;
+    }
+
+    /**
+     * @return the first sorted position of the simple names greater than or equal to 'prefix', without case
+     */
+    protected int lowerBound(String prefix) {
+        int low = 0;
+        int high = positions.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (compare(typeNames[positions[middle]], simpleNameOffsets[middle], prefix, 0) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @return the first sorted position, after 'from', of the simple names not starting with 'prefix', without case
+     */
+    protected int prefixUpperBound(String prefix, int from) {
+        int low = from;
+        int high = positions.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (startsWith(typeNames[positions[middle]], simpleNameOffsets[middle], prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    protected static boolean startsWith(String s, int offset, String prefix) {
+        int length = prefix.length();
+
+        if (s.length() - offset < length) {
+            return false;
+        }
+
+        for (int i=0; i<length; i++) {
+            if (Character.toLowerCase(s.charAt(offset + i)) != Character.toLowerCase(prefix.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -8,7 +8,9 @@
 package org.jd.gui.util.net;
 
 import org.jd.gui.api.API;
+import org.jd.gui.api.feature.ContainerEntryLocatable;
 import org.jd.gui.api.model.Container;
+import org.jd.gui.api.model.FederatedIndexes;
 import org.jd.gui.api.model.Indexes;
 import org.jd.gui.api.model.Type;
 import org.jd.gui.service.type.TypeFactoryService;
@@ -52,16 +54,27 @@ public class UriUtil {
         String outerName = type.getOuterName();
 
         if (outerName != null) {
+            String outerPathInContainer = getOuterPath(entry, type.getName(), outerName);
+
+            if (outerPathInContainer != null) {
+                return outerPathInContainer;
+            }
+
             try {
-                for (Future<Indexes> futureIndexes : collectionOfFutureIndexes) {
-                    if (futureIndexes.isDone()) {
-                        Collection<Container.Entry> outerEntries = futureIndexes.get().getIndex("typeDeclarations").get(outerName);
-
-                        if (outerEntries != null) {
-                            for (Container.Entry outerEntry : outerEntries) {
-                                if (outerEntry.getContainer() == entry.getContainer()) {
-                                    return outerEntry.getUri().getPath();
-                                }
+                if (collectionOfFutureIndexes instanceof FederatedIndexes) {
+                    Collection<Container.Entry> outerEntries = ((FederatedIndexes)collectionOfFutureIndexes).getIndex("typeDeclarations").get(outerName);
+                    String outerPath = getOuterPath(outerEntries, entry);
+
+                    if (outerPath != null) {
+                        return outerPath;
+                    }
+                } else {
+                    for (Future<Indexes> futureIndexes : collectionOfFutureIndexes) {
+                        if (futureIndexes.isDone()) {
+                            String outerPath = getOuterPath(futureIndexes.get().getIndex("typeDeclarations").get(outerName), entry);
+
+                            if (outerPath != null) {
+                                return outerPath;
                             }
                         }
                     }
@@ -73,4 +86,36 @@ public class UriUtil {
 
         return entry.getUri().getPath();
     }
+
+    protected static String getOuterPath(Container.Entry entry, String name, String outerName) {
+        Container container = entry.getContainer();
+
+        if (container instanceof ContainerEntryLocatable) {
+            // Outer entry in the same directory of the same container
+            String path = entry.getPath();
+            String typePath = name + ".class";
+
+            if (path.endsWith(typePath)) {
+                Container.Entry outerEntry = ((ContainerEntryLocatable)container).getEntry(path.substring(0, path.length() - typePath.length()) + outerName + ".class");
+
+                if (outerEntry != null) {
+                    return outerEntry.getUri().getPath();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    protected static String getOuterPath(Collection<Container.Entry> outerEntries, Container.Entry entry) {
+        if (outerEntries != null) {
+            for (Container.Entry outerEntry : outerEntries) {
+                if (outerEntry.getContainer() == entry.getContainer()) {
+                    return outerEntry.getUri().getPath();
+                }
+            }
+        }
+
+        return null;
+    }
 }
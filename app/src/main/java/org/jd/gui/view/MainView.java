@@ -25,6 +25,8 @@ import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.ContainerAdapter;
+import java.awt.event.ContainerEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
@@ -309,8 +311,6 @@ public class MainView<T extends JComponent & UriGettable> implements UriOpenable
                 }
             });
             mainTabbedPanel.getTabbedPane().addChangeListener(new ChangeListener() {
-                protected int lastTabCount = 0;
-
                 @Override
                 public void stateChanged(ChangeEvent e) {
                     int tabCount = mainTabbedPanel.getTabbedPane().getTabCount();
@@ -320,12 +320,13 @@ public class MainView<T extends JComponent & UriGettable> implements UriOpenable
                     openTypeAction.setEnabled(enabled);
                     searchAction.setEnabled(enabled);
                     saveAllSourcesAction.setEnabled((mainTabbedPanel.getTabbedPane().getSelectedComponent() instanceof SourcesSavable));
-
-                    if (tabCount < lastTabCount) {
-                        panelClosedCallback.run();
-                    }
-
-                    lastTabCount = tabCount;
+                }
+            });
+            mainTabbedPanel.getTabbedPane().addContainerListener(new ContainerAdapter() {
+                @Override
+                public void componentRemoved(ContainerEvent e) {
+                    // Also notified for the tabs closed without selection change, once the tabs are updated
+                    SwingUtilities.invokeLater(panelClosedCallback);
                 }
             });
             mainTabbedPanel.preferencesChanged(configuration.getPreferences());
@@ -369,10 +370,26 @@ public class MainView<T extends JComponent & UriGettable> implements UriOpenable
         });
     }
 
+    public <T extends JComponent & UriGettable> void replaceMainPanel(T oldComponent, String title, Icon icon, String tip, T component) {
+        invokeLater(() -> {
+            mainTabbedPanel.replacePage(oldComponent, title, icon, tip, component);
+        });
+    }
+
+    public <T extends JComponent & UriGettable> void removeMainPanel(T component) {
+        invokeLater(() -> {
+            mainTabbedPanel.removeComponent(component);
+        });
+    }
+
     public <T extends JComponent & UriGettable> List<T> getMainPanels() {
         return mainTabbedPanel.getPages();
     }
 
+    public <T extends JComponent & UriGettable> void setMainPanelState(T component, String state, boolean waiting) {
+        mainTabbedPanel.setPageState(component, state, waiting);
+    }
+
     public <T extends JComponent & UriGettable> T getSelectedMainPanel() {
         return (T)mainTabbedPanel.getTabbedPane().getSelectedComponent();
     }
@@ -192,7 +192,7 @@ public class OpenTypeView {
     }
 
     @SuppressWarnings("unchecked")
-    public void updateList(Map<String, Collection<Container.Entry>> map) {
+    public void updateList(Map<String, Collection<Container.Entry>> map, int indexingProgress) {
         SwingUtil.invokeLater(() -> {
             DefaultListModel model = (DefaultListModel)openTypeList.getModel();
             ArrayList<String> typeNames = new ArrayList<>(map.keySet());
@@ -219,17 +219,20 @@ public class OpenTypeView {
             }
 
             int count = typeNames.size();
+            String text;
 
             switch (count) {
                 case 0:
-                    openTypeMatchLabel.setText("Matching types:");
+                    text = "Matching types";
                     break;
                 case 1:
-                    openTypeMatchLabel.setText("1 matching type:");
+                    text = "1 matching type";
                     break;
                 default:
-                    openTypeMatchLabel.setText(count + " matching types:");
+                    text = count + " matching types";
             }
+
+            openTypeMatchLabel.setText((indexingProgress < 100) ? text + " (indexing " + indexingProgress + "%):" : text + ":");
         });
     }
 
@@ -369,7 +369,7 @@ public class SearchInConstantPoolsView<T extends DefaultMutableTreeNode & Contai
     }
 
     @SuppressWarnings("unchecked")
-    public void updateTree(Collection<DelegatingFilterContainer> containers, int matchingTypeCount) {
+    public void updateTree(Collection<DelegatingFilterContainer> containers, int matchingTypeCount, int indexingProgress) {
         SwingUtil.invokeLater(() -> {
             DefaultTreeModel model = (DefaultTreeModel)searchInConstantPoolsTree.getModel();
             T root = (T)model.getRoot();
@@ -412,16 +412,20 @@ public class SearchInConstantPoolsView<T extends DefaultMutableTreeNode & Contai
             }
 
             // Update matching item counter
+            String text;
+
             switch (matchingTypeCount) {
                 case 0:
-                    searchInConstantPoolsLabel.setText("Matching entries:");
+                    text = "Matching entries";
                     break;
                 case 1:
-                    searchInConstantPoolsLabel.setText("1 matching entry:");
+                    text = "1 matching entry";
                     break;
                 default:
-                    searchInConstantPoolsLabel.setText(matchingTypeCount + " matching entries:");
+                    text = matchingTypeCount + " matching entries";
             }
+
+            searchInConstantPoolsLabel.setText((indexingProgress < 100) ? text + " (indexing " + indexingProgress + "%):" : text + ":");
         });
     }
 
@@ -123,6 +123,18 @@ public class MainTabbedPanel<T extends JComponent & UriGettable> extends TabbedP
         }
     }
 
+    @Override
+    public void replacePage(T oldPage, String title, Icon icon, String tip, T page) {
+        if (tabbedPane.indexOfComponent(oldPage) == -1) {
+            addPage(title, icon, tip, page);
+        } else {
+            super.replacePage(oldPage, title, icon, tip, page);
+            if (page instanceof PageChangeable) {
+                ((PageChangeable)page).addPageChangeListener(this);
+            }
+        }
+    }
+
     public List<T> getPages() {
         int i = tabbedPane.getTabCount();
         ArrayList<T> pages = new ArrayList<>(i);
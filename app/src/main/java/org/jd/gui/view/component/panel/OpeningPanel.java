@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.view.component.panel;
+
+import org.jd.gui.api.feature.UriGettable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.net.URI;
+
+/**
+ * Placeholder of a main panel, displayed while its file is opened in background.
+ */
+public class OpeningPanel extends JPanel implements UriGettable {
+    protected URI uri;
+
+    public OpeningPanel(File file) {
+        super(new GridBagLayout());
+
+        this.uri = file.toURI();
+
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        JProgressBar progressBar = new JProgressBar();
+
+        progressBar.setIndeterminate(true);
+
+        panel.add(new JLabel("Opening '" + file.getName() + "'..."), BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+
+        add(panel);
+    }
+
+    // --- UriGettable --- //
+    @Override public URI getUri() { return uri; }
+}
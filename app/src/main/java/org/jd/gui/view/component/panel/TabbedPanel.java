@@ -80,7 +80,36 @@ public class TabbedPanel<T extends JComponent & UriGettable> extends JPanel impl
 	}
 
     public void addPage(String title, Icon icon, String tip, T page) {
-        // Add a new tab
+		int index = tabbedPane.getTabCount();
+		tabbedPane.addTab(title, page);
+        tabbedPane.setTabComponentAt(index, createTab(title, icon, tip, page));
+        setSelectedIndex(index);
+
+        cardLayout.show(this, "tabs");
+	}
+
+    /**
+     * Replace a page at the same position, keeping the selection. The page is added if 'oldPage' is not displayed.
+     */
+    public void replacePage(T oldPage, String title, Icon icon, String tip, T page) {
+        int index = tabbedPane.indexOfComponent(oldPage);
+
+        if (index == -1) {
+            addPage(title, icon, tip, page);
+        } else {
+            boolean selected = (tabbedPane.getSelectedIndex() == index);
+
+            tabbedPane.insertTab(title, null, page, null, index);
+            tabbedPane.setTabComponentAt(index, createTab(title, icon, tip, page));
+            tabbedPane.remove(oldPage);
+
+            if (selected) {
+                setSelectedIndex(index);
+            }
+        }
+    }
+
+    protected JPanel createTab(String title, Icon icon, String tip, T page) {
         JLabel tabCloseButton = new JLabel(CLOSE_ICON);
         tabCloseButton.setToolTipText("Close this panel");
         tabCloseButton.addMouseListener(new MouseListener() {
@@ -92,21 +121,42 @@ public class TabbedPanel<T extends JComponent & UriGettable> extends JPanel impl
         });
 
 		JPanel tab = new JPanel(new BorderLayout());
+        JLabel tabLabel = new JLabel(title, icon, JLabel.LEADING);
         tab.setBorder(BorderFactory.createEmptyBorder(2, 0, 3, 0));
 		tab.setOpaque(false);
         tab.setToolTipText(tip);
-        tab.add(new JLabel(title, icon, JLabel.LEADING), BorderLayout.CENTER);
+        tab.putClientProperty("tip", tip);
+        tab.putClientProperty("label", tabLabel);
+        tab.add(tabLabel, BorderLayout.CENTER);
 		tab.add(tabCloseButton, BorderLayout.EAST);
         ToolTipManager.sharedInstance().unregisterComponent(tab);
 
-		int index = tabbedPane.getTabCount();
-		tabbedPane.addTab(title, page);
-        tabbedPane.setTabComponentAt(index, tab);
-        setSelectedIndex(index);
-
-        cardLayout.show(this, "tabs");
+        return tab;
 	}
 
+    /**
+     * Display the state of the page in the tool tip of its tab: a page waiting for a background task is dimmed.
+     *
+     * @param state a short description, or null to restore the tab
+     * @param waiting true if the page is waiting
+     */
+    public void setPageState(T page, String state, boolean waiting) {
+        int index = tabbedPane.indexOfComponent(page);
+
+        if (index != -1) {
+            JComponent tab = (JComponent)tabbedPane.getTabComponentAt(index);
+            String tip = (String)tab.getClientProperty("tip");
+
+            if (state == null) {
+                tab.setToolTipText(tip);
+            } else {
+                tab.setToolTipText((tip == null) ? state : tip + " (" + state + ")");
+            }
+
+            ((JLabel)tab.getClientProperty("label")).setEnabled(!waiting);
+        }
+    }
+
     protected void setSelectedIndex(int index) {
         if (index != -1) {
             if (tabbedPane.getTabLayoutPolicy() == JTabbedPane.SCROLL_TAB_LAYOUT) {
@@ -55,7 +55,14 @@ public class TreeTabbedPanel<T extends DefaultMutableTreeNode & ContainerEntryGe
             @Override
             public Component getTreeCellRendererComponent(JTree tree, Object value, boolean selected, boolean expanded, boolean leaf, int row, boolean hasFocus) {
                 // Always render the left tree with focus
-                return super.getTreeCellRendererComponent(tree, value, selected, expanded, leaf, row, true);
+                Component component = super.getTreeCellRendererComponent(tree, value, selected, expanded, leaf, row, true);
+                String state = getTreeNodeState(value);
+
+                if (state != null) {
+                    label.setText(label.getText() + " (" + state + ")");
+                }
+
+                return component;
             }
         });
         tree.addTreeSelectionListener(e -> treeNodeChanged((T)tree.getLastSelectedPathComponent()));
@@ -116,6 +123,13 @@ public class TreeTabbedPanel<T extends DefaultMutableTreeNode & ContainerEntryGe
         add(splitter, BorderLayout.CENTER);
     }
 
+    /**
+     * @return a short description of the state of the node, displayed after its label, or null
+     */
+    protected String getTreeNodeState(Object node) {
+        return null;
+    }
+
     protected static int createHashCode(Enumeration enumeration) {
         int hashCode = 1;
 
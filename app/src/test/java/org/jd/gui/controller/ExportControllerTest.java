@@ -0,0 +1,180 @@
+package org.jd.gui.controller;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class ExportControllerTest extends TestCase {
+    protected static final String CLASS_PATH = "org/jd/gui/controller/ExportControllerTest.class";
+    protected static final String SOURCE_PATH = "org/jd/gui/controller/ExportControllerTest.java";
+
+    protected File directory;
+    protected File input;
+    protected List<String> lines;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("jd-gui.test.").toFile();
+        input = new File(directory, "input.jar");
+
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(input));
+             InputStream is = ExportControllerTest.class.getResourceAsStream("ExportControllerTest.class")) {
+            zos.putNextEntry(new ZipEntry(CLASS_PATH));
+
+            byte[] buffer = new byte[1024];
+
+            for (int len = is.read(buffer); len != -1; len = is.read(buffer)) {
+                zos.write(buffer, 0, len);
+            }
+
+            zos.closeEntry();
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(directory);
+    }
+
+    public void testExportToDirectory() throws Exception {
+        File out = new File(directory, "out");
+
+        Assert.assertEquals(ExportController.EXIT_SUCCESS, export(input.getPath(), "--out", out.getPath()));
+        Assert.assertTrue(new File(out, SOURCE_PATH).isFile());
+
+        assertLines("ok");
+        Assert.assertEquals(3, lines.size());
+    }
+
+    public void testExportToArchive() throws Exception {
+        File out = new File(directory, "out.zip");
+
+        Assert.assertEquals(ExportController.EXIT_SUCCESS, export(input.getPath(), "--out", out.getPath()));
+
+        try (ZipFile zipFile = new ZipFile(out)) {
+            Assert.assertNotNull(zipFile.getEntry(SOURCE_PATH));
+        }
+
+        assertLines("ok");
+        Assert.assertEquals(3, lines.size());
+    }
+
+    public void testExportInputsToArchive() throws Exception {
+        File out = new File(directory, "out.zip");
+
+        // Same archive twice
+        Assert.assertEquals(ExportController.EXIT_SUCCESS, export(input.getPath(), input.getPath(), "--out", out.getPath()));
+
+        try (ZipFile zipFile = new ZipFile(out)) {
+            Assert.assertNotNull(zipFile.getEntry("input.jar/" + SOURCE_PATH));
+            Assert.assertNotNull(zipFile.getEntry("input-2.jar/" + SOURCE_PATH));
+        }
+
+        for (String line : lines) {
+            if (line.startsWith("{\"type\":\"file\"")) {
+                Assert.assertTrue(line, line.contains(",\"path\":\"" + SOURCE_PATH + "\","));
+            } else if (line.startsWith("{\"type\":\"input\"")) {
+                Assert.assertTrue(line, line.contains(",\"files\":1,") && line.endsWith(",\"status\":\"ok\"}"));
+            }
+        }
+
+        Assert.assertTrue(lines.get(lines.size() - 1), lines.get(lines.size() - 1).startsWith("{\"type\":\"summary\",\"inputs\":2,\"failedInputs\":0,\"files\":2,"));
+    }
+
+    public void testUnwritableOutput() throws Exception {
+        File file = new File(directory, "file");
+
+        Files.write(file.toPath(), new byte[0]);
+
+        // Output directory inside a regular file
+        Assert.assertEquals(ExportController.EXIT_FAILURE, export(input.getPath(), "--out", new File(file, "out").getPath()));
+
+        assertLines("failed");
+        Assert.assertEquals(2, lines.size());
+    }
+
+    public void testWriteFailure() throws Exception {
+        File out = new File(directory, "out");
+
+        // The directory of the source can't be created
+        Assert.assertTrue(out.mkdir());
+        Files.write(new File(out, "org").toPath(), new byte[0]);
+
+        Assert.assertEquals(ExportController.EXIT_FAILURE, export(input.getPath(), "--out", out.getPath()));
+
+        // Not decompiled if the writer failed first
+        assertLines("failed");
+    }
+
+    public void testUsage() throws Exception {
+        Assert.assertEquals(ExportController.EXIT_USAGE, export(input.getPath()));
+        Assert.assertTrue(lines.isEmpty());
+    }
+
+    protected int export(String... args) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArrayList<String> allArgs = new ArrayList<>();
+
+        allArgs.add(ExportController.EXPORT_FLAG);
+        allArgs.addAll(Arrays.asList(args));
+
+        try (PrintStream ps = new PrintStream(baos, true, "UTF-8")) {
+            int status = new ExportController(ps).export(allArgs.toArray(new String[0]));
+
+            lines = new ArrayList<>();
+
+            for (String line : new String(baos.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line.trim());
+                }
+            }
+
+            return status;
+        }
+    }
+
+    /**
+     * Check the lines of the decompiled files, then the line of the input and the summary.
+     */
+    protected void assertLines(String inputStatus) {
+        int fileCount = lines.size() - 2;
+
+        Assert.assertTrue(lines.toString(), fileCount >= 0);
+
+        for (int i=0; i<fileCount; i++) {
+            String line = lines.get(i);
+
+            Assert.assertTrue(line, line.startsWith("{\"type\":\"file\",\"input\":\"input.jar\",\"path\":\"" + SOURCE_PATH + "\","));
+            Assert.assertTrue(line, line.endsWith(",\"status\":\"ok\"}"));
+        }
+
+        String inputLine = lines.get(fileCount);
+        String summaryLine = lines.get(fileCount + 1);
+        String failedInputs = "ok".equals(inputStatus) ? "0" : "1";
+
+        Assert.assertTrue(inputLine, inputLine.startsWith("{\"type\":\"input\",\"input\":\"input.jar\","));
+        Assert.assertTrue(inputLine, inputLine.contains(",\"status\":\"" + inputStatus + "\""));
+        Assert.assertTrue(summaryLine, summaryLine.startsWith("{\"type\":\"summary\",\"inputs\":1,\"failedInputs\":" + failedInputs + ","));
+    }
+
+    protected static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,189 @@
+package org.jd.gui.service.extension;
+
+import junit.framework.TestCase;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.model.container.TestContainer;
+import org.jd.gui.model.container.TestEntry;
+import org.junit.Assert;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Compare the selector with the lookup of the previous services, like 'IndexerService'.
+ */
+public class ProviderSelectorTest extends TestCase {
+    protected static final List<Provider> PROVIDERS = Arrays.asList(
+        new Provider("class", null, "*:file:*.class"),
+        new Provider("module-info", null, "*:file:*/module-info.class"),
+        new Provider("class-in-jar", null, "jar:file:*.class"),
+        new Provider("class-in-meta-inf", "META-INF/.*", "jar:file:*.class"),
+        new Provider("text", null, "*:file:*.txt", "*:file:*.md", "*:file:*/LICENSE"),
+        new Provider("manifest", null, "*:file:META-INF/MANIFEST.MF"),
+        new Provider("web-xml", null, "war:file:WEB-INF/web.xml"),
+        new Provider("xml", null, "*:file:*.xml"),
+        new Provider("spring-xml", ".*-context\\.xml", "*:file:*.xml"),
+        new Provider("jar", null, "*:file:*.jar", "*:file:*.war"),
+        new Provider("war-lib", "WEB-INF/lib/.*", "war:file:*.jar"),
+        new Provider("dir", null, "*:dir:*"),
+        new Provider("package", null, "jar:dir:*"),
+        new Provider("meta-inf-dir", "(.*/)?META-INF", "*:dir:*"),
+        new Provider("file", null, "*:file:*"),
+        new Provider("test-file", ".*/test/.*", "generic:file:*")
+    );
+    protected static final String[] CONTAINER_TYPES = { "generic", "jar", "war", "ear", "*" };
+    protected static final String[] PATHS = {
+        "A.class", "a/b/A.class", "module-info.class", "a/module-info.class", "META-INF/A.class", "META-INF/versions/9/module-info.class",
+        "LICENSE", "a/LICENSE", "LICENSE.txt", "README.md", "a/b.md", "META-INF/MANIFEST.MF", "a/META-INF/MANIFEST.MF",
+        "WEB-INF/web.xml", "a/WEB-INF/web.xml", "pom.xml", "app-context.xml", "a/app-context.xml", "lib.jar",
+        "WEB-INF/lib/lib.jar", "a.war", "a", "a/b", "META-INF", "a/META-INF", "a/test/b", "a/test/B.class",
+        "a.b/c", "a.b/c.d", ".hidden", "a/.", "", "file.", "x.CLASS", "x.class.bak"
+    };
+
+    public void testSameProvidersAsPreviousServices() {
+        ProviderSelector<Provider> selector = new ProviderSelector<>(PROVIDERS, p -> p.selectors, p -> p.pathPattern);
+        PreviousService previousService = new PreviousService(PROVIDERS);
+
+        for (String containerType : CONTAINER_TYPES) {
+            for (boolean directory : new boolean[] { false, true }) {
+                for (String path : PATHS) {
+                    TestEntry entry = newEntry(containerType, path, directory);
+                    String message = containerType + ':' + (directory ? "dir" : "file") + ':' + path;
+
+                    Assert.assertSame(message, previousService.get(entry), selector.get(entry));
+                    Assert.assertSame(message, previousService.get(containerType, entry), selector.get(containerType, entry));
+                    Assert.assertSame(message, previousService.get("jar", entry), selector.get("jar", entry));
+                }
+            }
+        }
+    }
+
+    public void testSelection() {
+        ProviderSelector<Provider> selector = new ProviderSelector<>(PROVIDERS, p -> p.selectors, p -> p.pathPattern);
+
+        Assert.assertEquals("class", selector.get(newEntry("generic", "a/A.class", false)).name);
+        Assert.assertEquals("class-in-jar", selector.get(newEntry("jar", "a/A.class", false)).name);
+        Assert.assertEquals("class-in-meta-inf", selector.get(newEntry("jar", "META-INF/A.class", false)).name);
+        Assert.assertEquals("module-info", selector.get(newEntry("generic", "a/module-info.class", false)).name);
+        Assert.assertEquals("war-lib", selector.get(newEntry("war", "WEB-INF/lib/lib.jar", false)).name);
+        Assert.assertEquals("jar", selector.get(newEntry("war", "lib.jar", false)).name);
+        Assert.assertEquals("spring-xml", selector.get(newEntry("generic", "a/app-context.xml", false)).name);
+        Assert.assertEquals("meta-inf-dir", selector.get(newEntry("generic", "a/META-INF", true)).name);
+        Assert.assertEquals("test-file", selector.get(newEntry("generic", "a/test/b", false)).name);
+        Assert.assertEquals("file", selector.get(newEntry("jar", "a/test/b", false)).name);
+        // No fallback on the container type '*'
+        Assert.assertNull(selector.get("generic", newEntry("generic", "a/A.class", false)));
+    }
+
+    public void testExtensionResultsNotShared() {
+        // The results memoized per extension must not depend on the first path looked up
+        ProviderSelector<Provider> selector = new ProviderSelector<>(PROVIDERS, p -> p.selectors, p -> p.pathPattern);
+
+        Assert.assertEquals("xml", selector.get(newEntry("war", "pom.xml", false)).name);
+        Assert.assertEquals("web-xml", selector.get(newEntry("war", "WEB-INF/web.xml", false)).name);
+        Assert.assertEquals("xml", selector.get(newEntry("war", "pom.xml", false)).name);
+    }
+
+    protected static TestEntry newEntry(String containerType, String path, boolean directory) {
+        TestContainer container = new TestContainer(containerType);
+        return container.add(container.root, path, directory);
+    }
+
+    protected static class Provider {
+        protected String name;
+        protected Pattern pathPattern;
+        protected String[] selectors;
+
+        public Provider(String name, String pathPattern, String... selectors) {
+            this.name = name;
+            this.pathPattern = (pathPattern == null) ? null : Pattern.compile(pathPattern);
+            this.selectors = selectors;
+        }
+
+        @Override public String toString() { return name; }
+    }
+
+    /**
+     * Lookup of the services replaced by the selector.
+     */
+    protected static class PreviousService {
+        protected HashMap<String, Providers> mapProviders = new HashMap<>();
+
+        public PreviousService(Collection<Provider> providers) {
+            for (Provider provider : providers) {
+                for (String selector : provider.selectors) {
+                    mapProviders.computeIfAbsent(selector, s -> new Providers()).add(provider);
+                }
+            }
+        }
+
+        public Provider get(Container.Entry entry) {
+            Provider provider = get(entry.getContainer().getType(), entry);
+            return (provider != null) ? provider : get("*", entry);
+        }
+
+        public Provider get(String containerType, Container.Entry entry) {
+            String path = entry.getPath();
+            String type = entry.isDirectory() ? "dir" : "file";
+            String prefix = containerType + ':' + type;
+            Provider provider = null;
+            Providers providers = mapProviders.get(prefix + ':' + path);
+
+            if (providers != null) {
+                provider = providers.match(path);
+            }
+
+            if (provider == null) {
+                int lastSlashIndex = path.lastIndexOf('/');
+                String name = path.substring(lastSlashIndex+1);
+
+                providers = mapProviders.get(prefix + ":*/" + name);
+                if (providers != null) {
+                    provider = providers.match(path);
+                }
+
+                if (provider == null) {
+                    int index = name.lastIndexOf('.');
+
+                    if (index != -1) {
+                        providers = mapProviders.get(prefix + ":*." + name.substring(index + 1));
+                        if (providers != null) {
+                            provider = providers.match(path);
+                        }
+                    }
+
+                    if (provider == null) {
+                        providers = mapProviders.get(prefix + ":*");
+                        if (providers != null) {
+                            provider = providers.match(path);
+                        }
+                    }
+                }
+            }
+
+            return provider;
+        }
+
+        protected static class Providers {
+            protected HashMap<String, Provider> providers = new HashMap<>();
+            protected Provider defaultProvider;
+
+            void add(Provider provider) {
+                if (provider.pathPattern != null) {
+                    providers.put(provider.pathPattern.pattern(), provider);
+                } else {
+                    defaultProvider = provider;
+                }
+            }
+
+            Provider match(String path) {
+                for (Provider provider : providers.values()) {
+                    if (provider.pathPattern.matcher(path).matches()) {
+                        return provider;
+                    }
+                }
+                return defaultProvider;
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.jd.gui.service.indexer;
+
+import junit.framework.TestCase;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.model.container.TestContainer;
+import org.jd.gui.model.container.TestEntry;
+import org.jd.gui.util.index.CompactIndexes;
+import org.junit.Assert;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class IndexesCacheServiceTest extends TestCase {
+    protected File directory;
+    protected IndexesCacheService service = new IndexesCacheService();
+    protected HashMap<String, String> preferences = new HashMap<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("jd-gui.test.").toFile();
+        service.directory = new File(directory, "indexes");
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(directory);
+    }
+
+    public void testStoreLoad() throws Exception {
+        File archive = newArchive("test.jar");
+        TestEntry archiveEntry = newArchiveEntry(archive);
+
+        // Root entry, entry of the archive, entry of a nested archive
+        service.store(preferences, archiveEntry, newIndexes(archiveEntry, "test.jar", "a/A.class", "b/B.class"));
+
+        Assert.assertTrue(service.getCacheFile(archive).exists());
+
+        // Entries resolved from their path in a new tree
+        TestEntry newArchiveEntry = newArchiveEntry(archive);
+        CompactIndexes indexes = service.load(preferences, newArchiveEntry);
+
+        Assert.assertNotNull(indexes);
+
+        Map<String, Collection> index = indexes.getIndex("entries");
+
+        Assert.assertEquals(Collections.singletonList(newArchiveEntry), toList(index.get("test.jar")));
+        Assert.assertEquals(Collections.singletonList(find(newArchiveEntry, "a/A.class")), toList(index.get("a/A.class")));
+        Assert.assertEquals(Collections.singletonList(find(newArchiveEntry, "b/B.class")), toList(index.get("b/B.class")));
+    }
+
+    public void testTemporaryFiles() throws Exception {
+        File archive = newArchive("test.jar");
+        TestEntry archiveEntry = newArchiveEntry(archive);
+        File cacheFile = service.getCacheFile(archive);
+
+        // Leftover of another writer
+        new File(cacheFile.getPath() + ".tmp").mkdirs();
+        service.store(preferences, archiveEntry, newIndexes(archiveEntry, "a/A.class"));
+
+        Assert.assertTrue(cacheFile.exists());
+        Assert.assertNotNull(service.load(preferences, newArchiveEntry(archive)));
+
+        // Temporary files are unique per writer, and moved in place
+        File[] tmpFiles = service.directory.listFiles((dir, name) -> name.endsWith(".tmp") && !name.equals(cacheFile.getName() + ".tmp"));
+
+        Assert.assertEquals(0, tmpFiles.length);
+    }
+
+    public void testStaleArchive() throws Exception {
+        File archive = newArchive("test.jar");
+        TestEntry archiveEntry = newArchiveEntry(archive);
+
+        service.store(preferences, archiveEntry, newIndexes(archiveEntry, "a/A.class"));
+        Files.write(archive.toPath(), new byte[] { 4 }, StandardOpenOption.APPEND);
+
+        // Invalidated
+        Assert.assertNull(service.load(preferences, newArchiveEntry(archive)));
+        Assert.assertFalse(service.getCacheFile(archive).exists());
+    }
+
+    public void testMissingEntry() throws Exception {
+        File archive = newArchive("test.jar");
+        TestEntry archiveEntry = newArchiveEntry(archive);
+
+        service.store(preferences, archiveEntry, newIndexes(archiveEntry, "a/A.class", "b/B.class"));
+
+        TestEntry newArchiveEntry = newArchiveEntry(archive);
+
+        find(newArchiveEntry, "b").children.clear();
+
+        // Invalidated
+        Assert.assertNull(service.load(preferences, newArchiveEntry));
+        Assert.assertFalse(service.getCacheFile(archive).exists());
+    }
+
+    public void testEviction() throws Exception {
+        File archive1 = newArchive("test1.jar");
+        File archive2 = newArchive("test2.jar");
+        TestEntry archiveEntry1 = newArchiveEntry(archive1);
+        TestEntry archiveEntry2 = newArchiveEntry(archive2);
+
+        service.store(preferences, archiveEntry1, newIndexes(archiveEntry1, "a/A.class"));
+        service.store(preferences, archiveEntry2, newIndexes(archiveEntry2, "a/A.class"));
+
+        File cacheFile1 = service.getCacheFile(archive1);
+        File cacheFile2 = service.getCacheFile(archive2);
+        long now = System.currentTimeMillis();
+
+        cacheFile1.setLastModified(now - 20000);
+        cacheFile2.setLastModified(now - 10000);
+
+        // Marked as recently used by the loading
+        Assert.assertNotNull(service.load(preferences, newArchiveEntry(archive1)));
+
+        // Least recently used file deleted first
+        service.evict(cacheFile1.length());
+
+        Assert.assertTrue(cacheFile1.exists());
+        Assert.assertFalse(cacheFile2.exists());
+    }
+
+    public void testDisabled() throws Exception {
+        File archive = newArchive("test.jar");
+        TestEntry archiveEntry = newArchiveEntry(archive);
+
+        preferences.put(IndexesCacheService.ENABLED, "false");
+        service.store(preferences, archiveEntry, newIndexes(archiveEntry, "a/A.class"));
+
+        Assert.assertFalse(service.getCacheFile(archive).exists());
+        Assert.assertNull(service.load(preferences, archiveEntry));
+    }
+
+    protected File newArchive(String name) throws Exception {
+        File file = new File(directory, name);
+
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+
+        return file;
+    }
+
+    /**
+     * test.jar
+     * +- a/A.class
+     * +- lib/nested.jar
+     *    +- b/B.class
+     */
+    protected TestEntry newArchiveEntry(File archive) {
+        TestEntry archiveEntry = new TestEntry(null, null, archive.getName(), archive.toURI(), false, null);
+        TestContainer container = new TestContainer(archiveEntry);
+        TestEntry a = container.add(container.root, "a", true);
+        container.add(a, "a/A.class", false);
+        TestEntry lib = container.add(container.root, "lib", true);
+        TestEntry nested = container.add(lib, "lib/nested.jar", false);
+        TestContainer nestedContainer = new TestContainer(nested);
+        TestEntry b = nestedContainer.add(nestedContainer.root, "b", true);
+        nestedContainer.add(b, "b/B.class", false);
+
+        return archiveEntry;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static CompactIndexes newIndexes(TestEntry archiveEntry, String... paths) {
+        CompactIndexes.Builder builder = new CompactIndexes.Builder();
+
+        for (String path : paths) {
+            TestEntry entry = path.equals(archiveEntry.path) ? archiveEntry : find(archiveEntry, path);
+            builder.getIndex("entries").get(path).add(entry);
+        }
+
+        return builder.build();
+    }
+
+    protected static TestEntry find(Container.Entry parent, String path) {
+        for (Container.Entry child : parent.getChildren()) {
+            if (child.getPath().equals(path)) {
+                return (TestEntry)child;
+            }
+
+            TestEntry entry = find(child, path);
+
+            if (entry != null) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    protected static List<Object> toList(Collection<?> collection) {
+        return (collection == null) ? null : new ArrayList<>(collection);
+    }
+
+    protected static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
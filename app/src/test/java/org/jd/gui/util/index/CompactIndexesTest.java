@@ -0,0 +1,192 @@
+package org.jd.gui.util.index;
+
+import junit.framework.TestCase;
+import org.jd.gui.api.feature.ContentIndexable;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.model.container.TestEntry;
+import org.jd.gui.api.model.Indexes;
+import org.junit.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+public class CompactIndexesTest extends TestCase {
+    protected TestEntry a = new TestEntry("a/A.class");
+    protected TestEntry b = new TestEntry("b/B.class");
+    protected TestEntry c = new TestEntry("c/C.class");
+
+    @SuppressWarnings("unchecked")
+    protected CompactIndexes.Builder newBuilder() {
+        CompactIndexes.Builder builder = new CompactIndexes.Builder();
+
+        builder.getIndex("typeDeclarations").get("b/B").add(b);
+        builder.getIndex("typeDeclarations").get("a/A").add(a);
+        builder.getIndex("typeDeclarations").get("c/C").add(c);
+        builder.getIndex("typeReferences").get("java/lang/Object").add(c);
+        builder.getIndex("typeReferences").get("java/lang/Object").add(a);
+        builder.getIndex("typeReferences").get("java/lang/Object").add(c);
+        builder.getIndex("subTypeNames").get("java/lang/Object").add("a/A");
+        builder.getIndex("subTypeNames").get("java/lang/Object").add("c/C");
+
+        return builder;
+    }
+
+    public void testBuild() {
+        CompactIndexes indexes = newBuilder().build();
+        Map<String, Collection> typeDeclarations = indexes.getIndex("typeDeclarations");
+
+        // Keys sorted, values decoded
+        Assert.assertEquals(Arrays.asList("a/A", "b/B", "c/C"), new ArrayList<>(typeDeclarations.keySet()));
+        Assert.assertEquals(Collections.singletonList(b), toList(typeDeclarations.get("b/B")));
+        Assert.assertNull(typeDeclarations.get("d/D"));
+        Assert.assertNull(indexes.getIndex("unknown"));
+
+        // Postings sorted by entry id, in order of first addition (b, a, c), without duplicates
+        Assert.assertEquals(Arrays.asList(a, c), toList(indexes.getIndex("typeReferences").get("java/lang/Object")));
+
+        // String values
+        Assert.assertEquals(Arrays.asList("a/A", "c/C"), toList(indexes.getIndex("subTypeNames").get("java/lang/Object")));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testBuildSeveralTimes() {
+        CompactIndexes.Builder builder = newBuilder();
+        CompactIndexes first = builder.build();
+
+        builder.getIndex("typeDeclarations").get("d/D").add(new TestEntry("d/D.class"));
+
+        Assert.assertEquals(3, first.getIndex("typeDeclarations").size());
+        Assert.assertEquals(4, builder.build().getIndex("typeDeclarations").size());
+    }
+
+    public void testSnapshots() {
+        CompactIndexes.Builder builder = new CompactIndexes.Builder();
+        ArrayList<Integer> progresses = new ArrayList<>();
+
+        builder.setSnapshotListener(new ContentIndexable.SnapshotListener() {
+            @Override public void snapshotPublished(Indexes snapshot, int progress) { progresses.add(progress); }
+            @Override public boolean isCancelled() { return false; }
+        });
+
+        builder.entriesFound(4);
+        builder.nextSnapshotTime = 0;
+        builder.entriesIndexed(1);
+        builder.entriesIndexed(1);
+
+        // A single snapshot before the delay, no snapshot once all entries are indexed
+        builder.nextSnapshotTime = 0;
+        builder.entriesIndexed(2);
+
+        Assert.assertEquals(Collections.singletonList(25), progresses);
+        Assert.assertEquals(100, builder.getProgress());
+    }
+
+    public void testDeferredEntries() {
+        CompactIndexes.Builder builder = new CompactIndexes.Builder();
+        ArrayList<Container.Entry> deferredEntries = new ArrayList<>();
+
+        Assert.assertFalse(builder.deferIndexation(a));
+
+        builder.setDeferredEntries(deferredEntries);
+
+        Assert.assertTrue(builder.deferIndexation(a));
+        Assert.assertEquals(Collections.singletonList(a), deferredEntries);
+    }
+
+    public void testWriteRead() throws Exception {
+        CompactIndexes indexes = newBuilder().build();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            indexes.write(out);
+            // Longer than the 64K limit of 'writeUTF'
+            CompactIndexes.writeString(out, repeat("été€", 20000));
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray());
+        CompactIndexes read = CompactIndexes.read(buffer, indexes.getEntries());
+
+        for (String name : Arrays.asList("typeDeclarations", "typeReferences", "subTypeNames")) {
+            Assert.assertEquals(toMap(indexes.getIndex(name)), toMap(read.getIndex(name)));
+        }
+
+        Assert.assertEquals(repeat("été€", 20000), CompactIndexes.readString(buffer));
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testUpdate() {
+        TestEntry d = new TestEntry("d/D.class");
+        CompactIndexes.Builder deltaBuilder = new CompactIndexes.Builder();
+
+        deltaBuilder.getIndex("typeDeclarations").get("d/D").add(d);
+        deltaBuilder.getIndex("typeReferences").get("java/lang/Object").add(d);
+        deltaBuilder.getIndex("subTypeNames").get("java/lang/Object").add("d/D");
+
+        CompactIndexes updated = newBuilder().build().update(entry -> entry == c, deltaBuilder.build());
+
+        Assert.assertEquals(Arrays.asList("a/A", "b/B", "d/D"), new ArrayList<>(updated.getIndex("typeDeclarations").keySet()));
+        Assert.assertEquals(Arrays.asList(a, d), toList(updated.getIndex("typeReferences").get("java/lang/Object")));
+        // Names of the removed types removed from the values
+        Assert.assertEquals(Arrays.asList("a/A", "d/D"), toList(updated.getIndex("subTypeNames").get("java/lang/Object")));
+        // Kept entries compacted, added entries appended
+        Assert.assertEquals(Arrays.asList(b, a, d), Arrays.asList(updated.getEntries()));
+
+        // Unreferenced strings removed, strings of the delta not duplicated
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a/A", "b/B", "d/D", "java/lang/Object")), new HashSet<>(Arrays.asList(updated.strings)));
+        Assert.assertEquals(4, updated.strings.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testUpdateSeveralTimes() {
+        CompactIndexes indexes = newBuilder().build();
+        CompactIndexes expected = indexes;
+
+        for (int i=0; i<100; i++) {
+            // Replace 'c' by a new entry
+            TestEntry newC = new TestEntry("c/C.class");
+            CompactIndexes.Builder deltaBuilder = new CompactIndexes.Builder();
+
+            deltaBuilder.getIndex("typeDeclarations").get("c/C").add(newC);
+            deltaBuilder.getIndex("typeDeclarations").get("c/C$" + i).add(newC);
+            deltaBuilder.getIndex("typeReferences").get("java/lang/Object").add(newC);
+            deltaBuilder.getIndex("subTypeNames").get("java/lang/Object").add("c/C");
+
+            Object oldC = indexes.getIndex("typeDeclarations").get("c/C").iterator().next();
+
+            indexes = indexes.update(entry -> entry == oldC, deltaBuilder.build());
+        }
+
+        // The dictionary does not grow
+        Assert.assertEquals(expected.strings.length + 1, indexes.strings.length);
+        Assert.assertEquals(Arrays.asList("a/A", "b/B", "c/C", "c/C$99"), new ArrayList<>(indexes.getIndex("typeDeclarations").keySet()));
+        Assert.assertEquals(toMap(expected.getIndex("subTypeNames")), toMap(indexes.getIndex("subTypeNames")));
+        Assert.assertEquals(3, indexes.getEntries().length);
+    }
+
+    protected static Map<String, List<Object>> toMap(Map<String, Collection> index) {
+        TreeMap<String, List<Object>> map = new TreeMap<>();
+
+        for (Map.Entry<String, Collection> entry : index.entrySet()) {
+            map.put(entry.getKey(), toList(entry.getValue()));
+        }
+
+        return map;
+    }
+
+    protected static List<Object> toList(Collection<?> collection) {
+        return new ArrayList<>(collection);
+    }
+
+    protected static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder();
+
+        while (count-- > 0) {
+            sb.append(s);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,125 @@
+package org.jd.gui.util.index;
+
+import junit.framework.TestCase;
+import org.jd.gui.api.model.Indexes;
+import org.jd.gui.model.container.TestEntry;
+import org.junit.Assert;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+public class GlobalIndexesTest extends TestCase {
+    @SuppressWarnings("unchecked")
+    protected static CompactIndexes newIndexes(String... typeNames) {
+        CompactIndexes.Builder builder = new CompactIndexes.Builder();
+
+        for (String typeName : typeNames) {
+            builder.getIndex("typeDeclarations").get(typeName).add(new TestEntry(typeName + ".class"));
+        }
+
+        return builder.build();
+    }
+
+    public void testLookup() {
+        GlobalIndexes globalIndexes = new GlobalIndexes("typeDeclarations");
+        Future<Indexes> future1 = CompletableFuture.completedFuture(null);
+        Future<Indexes> future2 = CompletableFuture.completedFuture(null);
+
+        globalIndexes.add(future1);
+        globalIndexes.add(future2);
+        globalIndexes.update(future1, newIndexes("a/A", "b/B"));
+        globalIndexes.update(future2, newIndexes("b/B"));
+
+        Map<String, Collection> index = globalIndexes.getFederatedIndexes().getIndex("typeDeclarations");
+
+        Assert.assertEquals(1, index.get("a/A").size());
+        Assert.assertEquals(2, index.get("b/B").size());
+        Assert.assertNull(index.get("c/C"));
+        Assert.assertEquals(Integer.valueOf(3), globalIndexes.masks.get("typeDeclarations").get("b/B"));
+    }
+
+    public void testUpdateRemovesKeys() {
+        GlobalIndexes globalIndexes = new GlobalIndexes("typeDeclarations");
+        Future<Indexes> future1 = CompletableFuture.completedFuture(null);
+        Future<Indexes> future2 = CompletableFuture.completedFuture(null);
+
+        globalIndexes.add(future1);
+        globalIndexes.add(future2);
+        globalIndexes.update(future1, newIndexes("a/A", "b/B"));
+        globalIndexes.update(future2, newIndexes("b/B"));
+        // 'a/A' and 'b/B' removed from the first container
+        globalIndexes.update(future1, newIndexes("c/C"));
+
+        Map<String, Integer> masks = globalIndexes.masks.get("typeDeclarations");
+
+        Assert.assertNull(masks.get("a/A"));
+        Assert.assertEquals(Integer.valueOf(2), masks.get("b/B"));
+        Assert.assertEquals(Integer.valueOf(1), masks.get("c/C"));
+        Assert.assertNull(globalIndexes.getFederatedIndexes().getIndex("typeDeclarations").get("a/A"));
+    }
+
+    public void testRetain() {
+        GlobalIndexes globalIndexes = new GlobalIndexes("typeDeclarations");
+        Future<Indexes> future1 = CompletableFuture.completedFuture(null);
+        Future<Indexes> future2 = CompletableFuture.completedFuture(null);
+
+        globalIndexes.add(future1);
+        globalIndexes.add(future2);
+        globalIndexes.update(future1, newIndexes("a/A", "b/B"));
+        globalIndexes.update(future2, newIndexes("b/B"));
+        globalIndexes.retain(Collections.singletonList(future2));
+
+        Map<String, Integer> masks = globalIndexes.masks.get("typeDeclarations");
+
+        Assert.assertNull(masks.get("a/A"));
+        Assert.assertEquals(Integer.valueOf(2), masks.get("b/B"));
+        Assert.assertEquals(1, globalIndexes.getFederatedIndexes().size());
+    }
+
+    public void testPreviousSnapshot() {
+        GlobalIndexes globalIndexes = new GlobalIndexes("typeDeclarations");
+        Future<Indexes> future1 = CompletableFuture.completedFuture(null);
+
+        globalIndexes.add(future1);
+        globalIndexes.update(future1, newIndexes("a/A"));
+
+        Map<String, Collection> previousIndex = globalIndexes.getFederatedIndexes().getIndex("typeDeclarations");
+
+        // The bit of 'a/A' is cleared, the previous snapshot still contains it
+        globalIndexes.update(future1, newIndexes("b/B"));
+
+        Assert.assertNull(globalIndexes.masks.get("typeDeclarations").get("a/A"));
+        Assert.assertEquals(1, previousIndex.get("a/A").size());
+        Assert.assertNull(globalIndexes.getFederatedIndexes().getIndex("typeDeclarations").get("a/A"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testProgressiveSnapshots() {
+        GlobalIndexes globalIndexes = new GlobalIndexes("typeDeclarations");
+        Future<Indexes> future1 = CompletableFuture.completedFuture(null);
+        CompactIndexes.Builder builder = new CompactIndexes.Builder();
+
+        globalIndexes.add(future1);
+        builder.getIndex("typeDeclarations").get("a/A").add(new TestEntry("a/A.class"));
+
+        CompactIndexes snapshot = builder.build();
+
+        globalIndexes.update(future1, snapshot);
+        builder.getIndex("typeDeclarations").get("b/B").add(new TestEntry("b/B.class"));
+
+        CompactIndexes indexes = builder.build();
+
+        // Only the keys added since the previous snapshot, none removed
+        Assert.assertEquals(Collections.singletonList("b/B"), indexes.getAddedKeys(snapshot, "typeDeclarations"));
+        Assert.assertFalse(indexes.hasRemovedKeys(snapshot));
+        Assert.assertNull(indexes.getAddedKeys(newIndexes("a/A"), "typeDeclarations"));
+
+        globalIndexes.update(future1, indexes);
+
+        Map<String, Collection> index = globalIndexes.getFederatedIndexes().getIndex("typeDeclarations");
+
+        Assert.assertEquals(1, index.get("a/A").size());
+        Assert.assertEquals(1, index.get("b/B").size());
+    }
+}
@@ -0,0 +1,111 @@
+package org.jd.gui.util.index;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.util.*;
+
+public class TrigramIndexTest extends TestCase {
+    protected static final String[] KEYS = {
+        "java/lang/Object", "java/lang/String", "java/util/HashMap", "java/util/ArrayList", "org/jd/gui/App", "été"
+    };
+
+    public void testFind() {
+        TrigramIndex index = new TrigramIndex(KEYS);
+
+        Assert.assertArrayEquals(new int[] { 0, 1 }, index.find(Collections.singletonList("java/lang")));
+        Assert.assertArrayEquals(new int[] { 2, 3 }, index.find(Arrays.asList("java", "util")));
+        Assert.assertArrayEquals(new int[] { 5 }, index.find(Collections.singletonList("été")));
+        Assert.assertArrayEquals(new int[0], index.find(Collections.singletonList("unknown")));
+        Assert.assertArrayEquals(new int[0], index.find(Arrays.asList("lang", "Map")));
+    }
+
+    public void testShortFragments() {
+        TrigramIndex index = new TrigramIndex(KEYS);
+
+        // No trigram to select keys
+        Assert.assertNull(index.find(Collections.emptyList()));
+        Assert.assertNull(index.find(Arrays.asList("ja", "a")));
+    }
+
+    public void testLongKeys() {
+        char[] chars = new char[TrigramIndex.MAX_KEY_LENGTH + 1];
+        Arrays.fill(chars, 'x');
+        String[] keys = { "abcd", new String(chars), "bcde" };
+        TrigramIndex index = new TrigramIndex(keys);
+
+        // Keys not indexed are always candidates
+        Assert.assertArrayEquals(new int[] { 0, 1 }, index.find(Collections.singletonList("abc")));
+        Assert.assertArrayEquals(new int[] { 1 }, index.find(Collections.singletonList("zzz")));
+    }
+
+    public void testRandomKeys() {
+        Random random = new Random(42);
+        String[] keys = new String[5000];
+
+        // Enough trigrams to grow the hash table several times
+        for (int i=0; i<keys.length; i++) {
+            keys[i] = randomString(random, 3 + random.nextInt(20));
+        }
+
+        TrigramIndex index = new TrigramIndex(keys);
+
+        for (int n=0; n<500; n++) {
+            String key = keys[random.nextInt(keys.length)];
+            int start = random.nextInt(key.length() - 2);
+            String fragment = key.substring(start, start + 3 + random.nextInt(key.length() - start - 2));
+            int[] candidates = index.find(Collections.singletonList(fragment));
+
+            // Sorted candidates, containing all the matching keys
+            for (int i=1; i<candidates.length; i++) {
+                Assert.assertTrue(candidates[i-1] < candidates[i]);
+            }
+            for (int i=0; i<keys.length; i++) {
+                if (keys[i].contains(fragment)) {
+                    Assert.assertTrue(Arrays.binarySearch(candidates, i) >= 0);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testFilter() {
+        Random random = new Random(7);
+        CompactIndexes.Builder builder = new CompactIndexes.Builder();
+        Map<String, Collection> builderIndex = builder.getIndex("strings");
+        HashSet<String> keys = new HashSet<>();
+
+        // Large enough to use the trigram index
+        while (keys.size() < 2 * CompactIndexes.Index.TRIGRAM_INDEX_THRESHOLD) {
+            String key = randomString(random, 3 + random.nextInt(12));
+            keys.add(key);
+            builderIndex.get(key).add(key);
+        }
+
+        CompactIndexes.Index index = (CompactIndexes.Index)builder.build().getIndex("strings");
+
+        for (String pattern : Arrays.asList("abc", "ab*cd", "a?cde", "hgf*", "*aaa*bbb*")) {
+            boolean prefix = !pattern.startsWith("*");
+            String regex = (prefix ? "" : ".*") + pattern.replace("*", ".*").replace("?", ".") + ".*";
+            TreeSet<String> expected = new TreeSet<>();
+
+            for (String key : keys) {
+                if (key.matches(regex)) {
+                    expected.add(key);
+                }
+            }
+
+            Assert.assertEquals(pattern, expected, new TreeSet<>(index.filter(pattern, prefix, key -> key.matches(regex)).keySet()));
+        }
+    }
+
+    protected static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+
+        while (length-- > 0) {
+            sb.append((char)('a' + random.nextInt(8)));
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package org.jd.gui.util.index;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.util.*;
+
+public class TypeNameIndexTest extends TestCase {
+    protected static final String[] TYPE_NAMES = {
+        "java/util/HashMap", "java/util/HashMap$Node", "java/util/concurrent/ConcurrentHashMap", "java/lang/String",
+        "java/lang/StringBuilder", "org/jd/gui/App", "hashCode"
+    };
+
+    public void testSimpleNameOffset() {
+        Assert.assertEquals(10, TypeNameIndex.getSimpleNameOffset("java/util/HashMap"));
+        Assert.assertEquals(18, TypeNameIndex.getSimpleNameOffset("java/util/HashMap$Node"));
+        Assert.assertEquals(0, TypeNameIndex.getSimpleNameOffset("Test"));
+    }
+
+    public void testPrefix() {
+        TypeNameIndex index = new TypeNameIndex(TYPE_NAMES);
+
+        // Sorted by simple name, without case
+        Assert.assertEquals(Arrays.asList("hashCode", "java/util/HashMap"), find(index, "hash", "", ""));
+        Assert.assertEquals(Arrays.asList("java/lang/String", "java/lang/StringBuilder"), find(index, "STRING", "", ""));
+        Assert.assertEquals(Collections.singletonList("java/util/HashMap$Node"), find(index, "node", "", ""));
+        Assert.assertEquals(Collections.emptyList(), find(index, "zzz", "", ""));
+        Assert.assertEquals(TYPE_NAMES.length, index.find("", "", "").length);
+    }
+
+    public void testCamelCase() {
+        TypeNameIndex index = new TypeNameIndex(TYPE_NAMES);
+
+        Assert.assertEquals(Arrays.asList("java/util/concurrent/ConcurrentHashMap", "java/util/HashMap"), find(index, "", "HM", ""));
+        Assert.assertEquals(Collections.singletonList("java/util/concurrent/ConcurrentHashMap"), find(index, "", "CHM", ""));
+        Assert.assertEquals(Collections.singletonList("java/lang/StringBuilder"), find(index, "s", "B", ""));
+        // Letters of the package are ignored
+        Assert.assertEquals(Collections.emptyList(), find(index, "", "", "j"));
+        Assert.assertEquals(Arrays.asList("org/jd/gui/App", "java/util/concurrent/ConcurrentHashMap", "java/util/HashMap"), find(index, "", "", "ap"));
+    }
+
+    protected static List<String> find(TypeNameIndex index, String prefix, String upperCases, String letters) {
+        ArrayList<String> list = new ArrayList<>();
+
+        for (int position : index.find(prefix, upperCases, letters)) {
+            list.add(TYPE_NAMES[position]);
+        }
+
+        return list;
+    }
+}
@@ -8,29 +8,57 @@
 package org.jd.gui.model.container;
 
 import org.jd.gui.api.API;
+import org.jd.gui.api.feature.ContainerEntryLocatable;
+import org.jd.gui.api.feature.ContainerWatchable;
+import org.jd.gui.api.feature.ContentChecksumGettable;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.spi.ContainerFactory;
 import org.jd.gui.util.exception.ExceptionUtil;
-
+import org.jd.gui.util.io.DirectoryWatcher;
+import org.jd.gui.util.io.EntryContentCache;
+import org.jd.gui.util.io.SharedFileSystems;
+import org.jd.gui.util.io.TempStorage;
+import org.jd.gui.util.zip.ZipArchive;
+import org.jd.gui.util.zip.ZipArchiveFileSystem;
+import org.jd.gui.util.zip.ZipArchiveFileSystemProvider;
+import org.jd.gui.util.zip.ZipArchivePath;
+
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.*;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
-
-public class GenericContainer implements Container {
-    protected static final long TIMESTAMP = System.currentTimeMillis();
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-    protected static long tmpFileCounter = 0;
+public class GenericContainer implements Container, ContainerEntryLocatable, ContainerWatchable {
+    protected static final int URI_CACHE_SIZE = 4096;
 
     protected API api;
     protected int rootNameCount;
     protected Container.Entry root;
+    protected URI rootUri;
+    protected ZipArchiveFileSystem archiveFileSystem;
+    protected ZipArchive archive;
+    // Index of the entries by path: by node for an archive, by path string otherwise, filled as the entries are created.
+    // The children are loaded once, under the lock of their parent entry: indexers, decompilers and exporters share
+    // the same entries.
+    protected AtomicReferenceArray<ArchiveEntry> archiveEntries;
+    protected Map<String, Container.Entry> pathEntries;
+    // URIs are built on demand: only the most recently used ones are kept
+    protected Map<Container.Entry, URI> uris = Collections.synchronizedMap(new LinkedHashMap<Container.Entry, URI>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Container.Entry, URI> eldest) {
+            return size() > URI_CACHE_SIZE;
+        }
+    });
+    // Containers of the nested archives, closed with this container
+    protected ArrayList<Container> nestedContainers = new ArrayList<>();
+    protected boolean closed = false;
 
     public GenericContainer(API api, Container.Entry parentEntry, Path rootPath) {
         try {
@@ -38,11 +66,27 @@ public class GenericContainer implements Container {
 
             this.api = api;
             this.rootNameCount = rootPath.getNameCount();
-            this.root = new Entry(parentEntry, rootPath, new URI(uri.getScheme(), uri.getHost(), uri.getPath() + "!/", null)) {
-                public Entry newChildEntry(Path fsPath) {
-                    return new Entry(parent, fsPath, null);
-                }
-            };
+            this.rootUri = new URI(uri.getScheme(), uri.getHost(), uri.getPath() + "!/", null);
+
+            if ((rootPath instanceof ZipArchivePath) && (rootNameCount == 0)) {
+                // Entries are flyweights over the nodes of the archive
+                this.archiveFileSystem = (ZipArchiveFileSystem)rootPath.getFileSystem();
+                this.archive = archiveFileSystem.getArchive();
+                this.archiveEntries = new AtomicReferenceArray<>(archive.getNodeCount());
+                this.root = new ArchiveEntry(parentEntry, archive.getRoot()) {
+                    public ArchiveEntry newChildEntry(int node) {
+                        return new ArchiveEntry(parent, node);
+                    }
+                };
+            } else {
+                this.root = new Entry(parentEntry, rootPath, "") {
+                    public Entry newChildEntry(Path fsPath, BasicFileAttributes attributes) {
+                        return new Entry(parent, fsPath, fsPath.getFileName().toString(), attributes);
+                    }
+                };
+                this.pathEntries = new ConcurrentHashMap<>();
+                this.pathEntries.put("", root);
+            }
         } catch (URISyntaxException e) {
             assert ExceptionUtil.printStackTrace(e);
         }
@@ -51,60 +95,240 @@ public class GenericContainer implements Container {
     public String getType() { return "generic"; }
     public Container.Entry getRoot() { return root; }
 
-    protected class Entry implements Container.Entry {
+    @Override
+    public void close() {
+        ArrayList<Container> containers;
+
+        synchronized (nestedContainers) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            containers = new ArrayList<>(nestedContainers);
+            nestedContainers.clear();
+        }
+
+        for (Container container : containers) {
+            container.close();
+        }
+
+        if (archiveFileSystem != null) {
+            SharedFileSystems.getInstance().release(archiveFileSystem);
+        } else if (root instanceof Entry) {
+            SharedFileSystems.getInstance().release(((Entry)root).fsPath.getFileSystem());
+        }
+
+        EntryContentCache.getInstance().invalidate(this);
+
+        if (root != null) {
+            TempStorage.getInstance().release(root.getParent());
+        }
+
+        uris.clear();
+    }
+
+    // --- ContainerEntryLocatable --- //
+    public Container.Entry getEntry(String path) {
+        if (archive != null) {
+            return getArchiveEntry(archive.getNode(path));
+        } else {
+            return getPathEntry(path);
+        }
+    }
+
+    protected Container.Entry getArchiveEntry(int node) {
+        if (node == -1) {
+            return null;
+        }
+
+        ArchiveEntry entry = archiveEntries.get(node);
+
+        if (entry == null) {
+            // Create the entry and its siblings with the children of the parent
+            Container.Entry parent = getArchiveEntry(archive.getParent(node));
+
+            if (parent != null) {
+                parent.getChildren();
+                entry = archiveEntries.get(node);
+            }
+        }
+
+        return entry;
+    }
+
+    protected Container.Entry getPathEntry(String path) {
+        Container.Entry entry = pathEntries.get(path);
+
+        if (entry == null) {
+            int index = path.lastIndexOf('/');
+
+            if (!path.isEmpty()) {
+                // Create the entry and its siblings with the children of the parent
+                Container.Entry parent = getPathEntry((index == -1) ? "" : path.substring(0, index));
+
+                if ((parent != null) && parent.isDirectory()) {
+                    parent.getChildren();
+                    entry = pathEntries.get(path);
+                }
+            }
+        }
+
+        return entry;
+    }
+
+    // --- ContainerWatchable --- //
+    public Closeable watch(ContainerWatchable.ChangeListener listener) throws IOException {
+        if ((archive != null) || !(root instanceof Entry)) {
+            return null;
+        }
+
+        Path rootPath = ((Entry)root).fsPath;
+
+        if (rootPath.getFileSystem() != FileSystems.getDefault()) {
+            return null;
+        }
+
+        return new DirectoryWatcher(rootPath, directories -> refresh(rootPath, directories, listener));
+    }
+
+    protected synchronized void refresh(Path rootPath, Set<Path> directories, ContainerWatchable.ChangeListener listener) {
+        ArrayList<String> paths = new ArrayList<>(directories.size());
+
+        for (Path directory : directories) {
+            paths.add(rootPath.relativize(directory).toString().replace(File.separatorChar, '/'));
+        }
+
+        // Parents first: the entries of the removed directories are unregistered before their refresh
+        paths.sort(Comparator.comparingInt(String::length));
+
+        ArrayList<Container.Entry> removed = new ArrayList<>();
+        ArrayList<Container.Entry> added = new ArrayList<>();
+
+        for (String path : paths) {
+            Container.Entry entry = pathEntries.get(path);
+
+            // The directories never listed have no children to refresh
+            if ((entry instanceof Entry) && (((Entry)entry).children != null) && Files.isDirectory(((Entry)entry).fsPath)) {
+                ((Entry)entry).refreshChildren(removed, added);
+            }
+        }
+
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            listener.containerChanged(removed, added);
+        }
+    }
+
+    protected URI getUri(Container.Entry entry) {
+        if (entry == root) {
+            return rootUri;
+        }
+
+        return uris.computeIfAbsent(entry, e -> {
+            try {
+                return new URI(rootUri.getScheme(), rootUri.getHost(), rootUri.getPath() + e.getPath(), null);
+            } catch (URISyntaxException ex) {
+                assert ExceptionUtil.printStackTrace(ex);
+                return null;
+            }
+        });
+    }
+
+    protected Collection<Container.Entry> loadChildrenFromFileEntry(Container.Entry entry, Path fsPath) throws IOException {
+        // Nested archive, read from the byte range of this entry
+        SharedFileSystems sharedFileSystems = SharedFileSystems.getInstance();
+        FileSystem subFileSystem = sharedFileSystems.acquire(fsPath, () -> ZipArchiveFileSystemProvider.getInstance().newFileSystem(fsPath, Collections.emptyMap()));
+
+        if (subFileSystem != null) {
+            Iterator<Path> rootDirectories = subFileSystem.getRootDirectories().iterator();
+
+            if (rootDirectories.hasNext()) {
+                Path rootPath = rootDirectories.next();
+                ContainerFactory containerFactory = api.getContainerFactory(rootPath);
+
+                if (containerFactory != null) {
+                    Container container = containerFactory.make(api, entry, rootPath);
+
+                    if (container != null) {
+                        boolean added;
+
+                        synchronized (nestedContainers) {
+                            added = !closed && nestedContainers.add(container);
+                        }
+
+                        if (!added) {
+                            container.close();
+                            return Collections.emptyList();
+                        }
+
+                        return container.getRoot().getChildren();
+                    }
+                }
+            }
+
+            sharedFileSystems.release(subFileSystem);
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Entry of a directory, or of an archive opened by the JDK zip file system.
+     */
+    protected class Entry implements Container.Entry, ContentChecksumGettable {
         protected Container.Entry parent;
         protected Path fsPath;
+        protected String name;
         protected String strPath;
-        protected URI uri;
         protected Boolean isDirectory;
-        protected Collection<Container.Entry> children;
+        protected long length = -1L;
+        protected long lastModified = -1L;
+        protected volatile Collection<Container.Entry> children;
 
-        public Entry(Container.Entry parent, Path fsPath, URI uri) {
+        public Entry(Container.Entry parent, Path fsPath, String name) {
             this.parent = parent;
             this.fsPath = fsPath;
-            this.strPath = null;
-            this.uri = uri;
-            this.isDirectory = null;
-            this.children = null;
+            this.name = name;
         }
 
-        public Entry newChildEntry(Path fsPath) { return new Entry(this, fsPath, null); }
+        public Entry(Container.Entry parent, Path fsPath, String name, BasicFileAttributes attributes) {
+            this(parent, fsPath, name);
 
-        public Container getContainer() { return GenericContainer.this; }
-        public Container.Entry getParent() { return parent; }
-
-        public URI getUri() {
-            if (uri == null) {
-                try {
-                    URI rootUri = root.getUri();
-                    uri = new URI(rootUri.getScheme(), rootUri.getHost(), rootUri.getPath() + getPath(), null);
-                } catch (URISyntaxException e) {
-                    assert ExceptionUtil.printStackTrace(e);
-                }
+            if (attributes != null) {
+                this.isDirectory = Boolean.valueOf(attributes.isDirectory());
+                this.length = attributes.isDirectory() ? 0L : attributes.size();
+                this.lastModified = attributes.lastModifiedTime().toMillis();
             }
-            return uri;
         }
 
+        public Entry newChildEntry(Path fsPath, BasicFileAttributes attributes) {
+            return new Entry(this, fsPath, fsPath.getFileName().toString(), attributes);
+        }
+
+        public Container getContainer() { return GenericContainer.this; }
+        public Container.Entry getParent() { return parent; }
+        public URI getUri() { return GenericContainer.this.getUri(this); }
+
         public String getPath() {
             if (strPath == null) {
-                int nameCount = fsPath.getNameCount();
-
-                if (rootNameCount == nameCount) {
+                if (this == root) {
                     strPath = "";
                 } else {
-                    strPath = fsPath.subpath(rootNameCount, nameCount).toString().replace(fsPath.getFileSystem().getSeparator(), "/");
-
-                    int strPathLength = strPath.length();
+                    // Prefix shared with the siblings
+                    String parentPath = (parent == root) || (parent.getContainer() != GenericContainer.this) ? "" : parent.getPath();
 
-                    if ((strPathLength > 0) && strPath.charAt(strPathLength-1) == '/') {
-                        // Cut last separator
-                        strPath = strPath.substring(0, strPathLength-1);
-                    }
+                    strPath = parentPath.isEmpty() ? cutSeparator(name) : parentPath + '/' + cutSeparator(name);
                 }
             }
             return strPath;
         }
 
+        protected String cutSeparator(String name) {
+            // Cut last separator
+            int length = name.length();
+            return ((length > 1) && ((name.charAt(length-1) == '/') || (name.charAt(length-1) == '\\'))) ? name.substring(0, length-1) : name;
+        }
+
         public boolean isDirectory() {
             if (isDirectory == null) {
                 isDirectory = Boolean.valueOf(Files.isDirectory(fsPath));
@@ -113,12 +337,27 @@ public class GenericContainer implements Container {
         }
 
         public long length() {
-            try {
-                return Files.size(fsPath);
-            } catch (IOException e) {
-                assert ExceptionUtil.printStackTrace(e);
-                return -1L;
+            if (length == -1L) {
+                try {
+                    return length = Files.size(fsPath);
+                } catch (IOException e) {
+                    assert ExceptionUtil.printStackTrace(e);
+                    return -1L;
+                }
             }
+            return length;
+        }
+
+        public long getContentChecksum() {
+            if (lastModified == -1L) {
+                try {
+                    lastModified = Files.getLastModifiedTime(fsPath).toMillis();
+                } catch (IOException e) {
+                    assert ExceptionUtil.printStackTrace(e);
+                    return length();
+                }
+            }
+            return (lastModified * 31) + length();
         }
 
         public InputStream getInputStream() {
@@ -130,13 +369,13 @@ public class GenericContainer implements Container {
             }
         }
 
-        public Collection<Container.Entry> getChildren() {
+        public synchronized Collection<Container.Entry> getChildren() {
             if (children == null) {
                 try {
-                    if (Files.isDirectory(fsPath)) {
+                    if (isDirectory()) {
                         children = loadChildrenFromDirectoryEntry();
                     } else {
-                        children = loadChildrenFromFileEntry();
+                        children = loadChildrenFromFileEntry(this, fsPath);
                     }
                 } catch (IOException e) {
                     assert ExceptionUtil.printStackTrace(e);
@@ -146,51 +385,185 @@ public class GenericContainer implements Container {
         }
 
         protected Collection<Container.Entry> loadChildrenFromDirectoryEntry() throws IOException {
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(fsPath)) {
-                ArrayList<Container.Entry> children = new ArrayList<>();
-                int parentNameCount = fsPath.getNameCount();
+            ArrayList<Container.Entry> children = new ArrayList<>();
+            int parentNameCount = fsPath.getNameCount();
+
+            // Attributes of all children read with the listing of the directory
+            Files.walkFileTree(fsPath, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path subPath, BasicFileAttributes attributes) {
+                    if (subPath.getNameCount() > parentNameCount) {
+                        // Links are resolved on demand
+                        children.add(newChildEntry(subPath, attributes.isSymbolicLink() ? null : attributes));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
 
-                for (Path subPath : stream) {
+                @Override
+                public FileVisitResult visitFileFailed(Path subPath, IOException e) {
                     if (subPath.getNameCount() > parentNameCount) {
-                        children.add(newChildEntry(subPath));
+                        children.add(newChildEntry(subPath, null));
                     }
+                    return FileVisitResult.CONTINUE;
                 }
+            });
 
-                children.sort(ContainerEntryComparator.COMPARATOR);
-                return Collections.unmodifiableCollection(children);
+            children.sort(ContainerEntryComparator.COMPARATOR);
+
+            for (Container.Entry child : children) {
+                pathEntries.put(child.getPath(), child);
             }
+
+            return Collections.unmodifiableCollection(children);
         }
 
-        protected Collection<Container.Entry> loadChildrenFromFileEntry() throws IOException {
-            StringBuilder suffix = new StringBuilder(".").append(TIMESTAMP).append('.').append(tmpFileCounter++).append('.').append(fsPath.getFileName().toString());
-            File tmpFile = File.createTempFile("jd-gui.tmp.", suffix.toString());
-            Path tmpPath = Paths.get(tmpFile.toURI());
+        /**
+         * List the directory again: unchanged children are kept, modified files are replaced by new entries.
+         */
+        protected void refreshChildren(List<Container.Entry> removed, List<Container.Entry> added) {
+            try {
+                HashMap<String, Container.Entry> oldChildren = new HashMap<>();
+                ArrayList<Container.Entry> newChildren = new ArrayList<>();
+
+                for (Container.Entry child : children) {
+                    oldChildren.put(child.getPath(), child);
+                }
 
-            tmpFile.delete();
-            tmpFile.deleteOnExit();
-            Files.copy(fsPath, tmpPath);
+                for (Container.Entry child : loadChildrenFromDirectoryEntry()) {
+                    Container.Entry oldChild = oldChildren.remove(child.getPath());
 
-            FileSystem subFileSystem = FileSystems.newFileSystem(tmpPath, null);
+                    if ((oldChild != null) && !isModified(oldChild, child)) {
+                        newChildren.add(oldChild);
+                    } else {
+                        if (oldChild != null) {
+                            unregister(oldChild);
+                            removed.add(oldChild);
+                        }
+                        newChildren.add(child);
+                        added.add(child);
+                    }
+                }
 
-            if (subFileSystem != null) {
-                Iterator<Path> rootDirectories = subFileSystem.getRootDirectories().iterator();
+                for (Container.Entry oldChild : oldChildren.values()) {
+                    unregister(oldChild);
+                    removed.add(oldChild);
+                }
 
-                if (rootDirectories.hasNext()) {
-                    Path rootPath = rootDirectories.next();
-                    ContainerFactory containerFactory = api.getContainerFactory(rootPath);
+                for (Container.Entry child : newChildren) {
+                    pathEntries.put(child.getPath(), child);
+                }
 
-                    if (containerFactory != null) {
-                        Container container = containerFactory.make(api, this, rootPath);
+                newChildren.sort(ContainerEntryComparator.COMPARATOR);
+                children = Collections.unmodifiableCollection(newChildren);
+            } catch (IOException e) {
+                assert ExceptionUtil.printStackTrace(e);
+            }
+        }
 
-                        if (container != null) {
-                            return container.getRoot().getChildren();
-                        }
+        protected boolean isModified(Container.Entry oldEntry, Container.Entry newEntry) {
+            if (oldEntry.isDirectory() != newEntry.isDirectory()) {
+                return true;
+            }
+            if (oldEntry.isDirectory() || !(oldEntry instanceof Entry) || !(newEntry instanceof Entry)) {
+                return false;
+            }
+            return ((Entry)oldEntry).getContentChecksum() != ((Entry)newEntry).getContentChecksum();
+        }
+
+        protected void unregister(Container.Entry entry) {
+            String path = entry.getPath();
+
+            pathEntries.remove(path);
+
+            if (entry.isDirectory()) {
+                String prefix = path + '/';
+                pathEntries.keySet().removeIf(p -> p.startsWith(prefix));
+            }
+        }
+    }
+
+    /**
+     * Flyweight entry of an archive: the path, the type, the size and the content are read from the arrays of the
+     * archive. The path is decoded on each call.
+     */
+    protected class ArchiveEntry implements Container.Entry, ContentChecksumGettable {
+        protected Container.Entry parent;
+        protected int node;
+        protected volatile Collection<Container.Entry> children;
+
+        public ArchiveEntry(Container.Entry parent, int node) {
+            this.parent = parent;
+            this.node = node;
+            archiveEntries.set(node, this);
+        }
+
+        public ArchiveEntry newChildEntry(int node) { return new ArchiveEntry(this, node); }
+
+        public Container getContainer() { return GenericContainer.this; }
+        public Container.Entry getParent() { return parent; }
+        public URI getUri() { return GenericContainer.this.getUri(this); }
+        public String getPath() { return archive.getPath(node); }
+        public boolean isDirectory() { return archive.isDirectory(node); }
+        public long length() { return archive.getSize(node); }
+        public long getContentChecksum() { return archive.getCrc(node) & 0xFFFFFFFFL; }
+
+        public InputStream getInputStream() {
+            try {
+                return archive.getInputStream(node);
+            } catch (IOException e) {
+                assert ExceptionUtil.printStackTrace(e);
+                return null;
+            }
+        }
+
+        public synchronized Collection<Container.Entry> getChildren() {
+            if (children == null) {
+                try {
+                    if (archive.isDirectory(node)) {
+                        children = loadChildrenFromDirectoryEntry();
+                    } else {
+                        children = loadChildrenFromFileEntry(this, archiveFileSystem.getPath("/" + getPath()));
                     }
+                } catch (IOException e) {
+                    assert ExceptionUtil.printStackTrace(e);
                 }
             }
+            return children;
+        }
+
+        protected Collection<Container.Entry> loadChildrenFromDirectoryEntry() {
+            int count = 0;
+
+            for (int child=archive.getFirstChild(node); child!=-1; child=archive.getNextSibling(child)) {
+                count++;
+            }
+
+            // Directories before files, sorted by path, each path being decoded once
+            int[] nodes = new int[count];
+            String[] paths = new String[count];
+            Integer[] order = new Integer[count];
+            int index = 0;
+
+            for (int child=archive.getFirstChild(node); child!=-1; child=archive.getNextSibling(child)) {
+                nodes[index] = child;
+                paths[index] = archive.getPath(child);
+                order[index] = Integer.valueOf(index);
+                index++;
+            }
+
+            Arrays.sort(order, (i1, i2) -> {
+                boolean d1 = archive.isDirectory(nodes[i1.intValue()]);
+                boolean d2 = archive.isDirectory(nodes[i2.intValue()]);
+                return (d1 != d2) ? (d1 ? -1 : 1) : paths[i1.intValue()].compareTo(paths[i2.intValue()]);
+            });
+
+            ArrayList<Container.Entry> children = new ArrayList<>(count);
+
+            for (Integer i : order) {
+                children.add(newChildEntry(nodes[i.intValue()]));
+            }
 
-            tmpFile.delete();
-            return Collections.emptyList();
+            return Collections.unmodifiableCollection(children);
         }
     }
 }
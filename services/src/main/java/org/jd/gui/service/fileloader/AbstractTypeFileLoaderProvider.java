@@ -54,7 +54,8 @@ public abstract class AbstractTypeFileLoaderProvider extends AbstractFileLoaderP
                     pathSuffix = file.getAbsolutePath().substring(rootFile.getAbsolutePath().length()).replace(File.separator, "/");
                     URI rootUri = rootFile.toURI();
                     URI uri = new URI(rootUri.getScheme(), rootUri.getHost(), rootUri.getPath() + '!' + pathSuffix, null);
-                    ((UriOpenable)mainPanel).openUri(uri);
+                    // Open the page once the panel is displayed: the loader may run out of the event dispatch thread
+                    SwingUtilities.invokeLater(() -> ((UriOpenable)mainPanel).openUri(uri));
                     return true;
                 } catch (URISyntaxException e) {
                     assert ExceptionUtil.printStackTrace(e);
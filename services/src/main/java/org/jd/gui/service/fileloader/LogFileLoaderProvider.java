@@ -8,6 +8,7 @@
 package org.jd.gui.service.fileloader;
 
 import org.jd.gui.api.API;
+import org.jd.gui.api.model.Container;
 import org.jd.gui.util.io.TextReader;
 import org.jd.gui.view.component.LogPage;
 
@@ -29,4 +30,7 @@ public class LogFileLoaderProvider extends ZipFileLoaderProvider {
         api.addPanel(file.getName(), null, "Location: " + file.getAbsolutePath(), new LogPage(api, file.toURI(), TextReader.getText(file)));
         return true;
     }
+
+    // Not an archive
+    @Override public Container open(API api, File file, Container.Entry parentEntry) { return null; }
 }
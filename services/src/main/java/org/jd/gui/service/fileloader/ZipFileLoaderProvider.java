@@ -8,7 +8,11 @@
 package org.jd.gui.service.fileloader;
 
 import org.jd.gui.api.API;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.spi.ContainerFactory;
 import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.io.SharedFileSystems;
+import org.jd.gui.util.zip.ZipArchiveFileSystemProvider;
 
 import java.io.File;
 import java.io.IOException;
@@ -18,6 +22,7 @@ import java.nio.file.FileSystem;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 
@@ -34,28 +39,82 @@ public class ZipFileLoaderProvider extends AbstractFileLoaderProvider {
 
     @Override
     public boolean load(API api, File file) {
+        FileSystem fileSystem = acquireFileSystem(file);
+
+        if (fileSystem != null) {
+            Iterator<Path> rootDirectories = fileSystem.getRootDirectories().iterator();
+
+            if (rootDirectories.hasNext() && (load(api, file, rootDirectories.next()) != null)) {
+                return true;
+            }
+
+            SharedFileSystems.getInstance().release(fileSystem);
+        }
+
+        return false;
+    }
+
+    @Override
+    public Container open(API api, File file, Container.Entry parentEntry) {
+        FileSystem fileSystem = acquireFileSystem(file);
+
+        if (fileSystem != null) {
+            Iterator<Path> rootDirectories = fileSystem.getRootDirectories().iterator();
+
+            if (rootDirectories.hasNext()) {
+                Path rootPath = rootDirectories.next();
+                ContainerFactory containerFactory = api.getContainerFactory(rootPath);
+
+                if (containerFactory != null) {
+                    Container container = containerFactory.make(api, parentEntry, rootPath);
+
+                    if (container != null) {
+                        return container;
+                    }
+                }
+            }
+
+            SharedFileSystems.getInstance().release(fileSystem);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the file system shared by the containers opened on the same version of the archive, released by
+     * 'Container.close()', or null
+     */
+    protected FileSystem acquireFileSystem(File file) {
+        try {
+            Object key = Arrays.asList(file.toPath().toRealPath(), file.lastModified(), file.length());
+
+            return SharedFileSystems.getInstance().acquire(key, () -> {
+                try {
+                    return ZipArchiveFileSystemProvider.getInstance().newFileSystem(file.toPath(), Collections.emptyMap());
+                } catch (IOException e) {
+                    // Archive larger than 2 GB or not supported: use the zip file system of the JDK
+                    return newZipFileSystem(file);
+                }
+            });
+        } catch (IOException e) {
+            assert ExceptionUtil.printStackTrace(e);
+            return null;
+        }
+    }
+
+    protected FileSystem newZipFileSystem(File file) {
         try {
             URI fileUri = file.toURI();
             URI uri = new URI("jar:" + fileUri.getScheme(), fileUri.getHost(), fileUri.getPath() + "!/", null);
-            FileSystem fileSystem;
 
             try {
-                fileSystem = FileSystems.getFileSystem(uri);
+                return FileSystems.getFileSystem(uri);
             } catch (FileSystemNotFoundException e) {
-                fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap());
-            }
-
-            if (fileSystem != null) {
-                Iterator<Path> rootDirectories = fileSystem.getRootDirectories().iterator();
-
-                if (rootDirectories.hasNext()) {
-                    return load(api, file, rootDirectories.next()) != null;
-                }
+                return FileSystems.newFileSystem(uri, Collections.emptyMap());
             }
         } catch (URISyntaxException|IOException e) {
             assert ExceptionUtil.printStackTrace(e);
+            return null;
         }
-
-        return false;
     }
 }
@@ -7,17 +7,28 @@
 
 package org.jd.gui.service.indexer;
 
+import org.jd.gui.api.API;
 import org.jd.gui.api.model.Container;
+import org.jd.gui.api.model.DeferringIndexes;
 import org.jd.gui.api.model.Indexes;
+import org.jd.gui.api.model.ProgressiveIndexes;
 import org.jd.gui.spi.Indexer;
 import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.index.LocalIndexes;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.regex.Pattern;
 
 public abstract class AbstractIndexerProvider implements Indexer {
+    protected static final ForkJoinPool INDEXER_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    protected static final int FILE_BATCH_SIZE = 32;
+
     protected List<String> externalSelectors;
     protected Pattern externalPathPattern;
 
@@ -89,4 +100,262 @@ public abstract class AbstractIndexerProvider implements Indexer {
             }
         }
     }
+
+    /**
+     * Index the children of 'entry', recursively, with a work-stealing pool: sub-directories and batches of files are
+     * indexed in parallel into thread confined indexes, then merged into 'indexes' in traversal order.<br>
+     * <br>
+     * Progressive indexes are populated as soon as a batch of files and all the previous batches, in traversal order,
+     * are indexed, to publish deterministic partial results. The cancellation of 'indexes' is checked between files.
+     * Nested archives are skipped if 'indexes' defers their indexation.
+     */
+    protected static void indexChildren(API api, Container.Entry entry, Indexes indexes, int depth) {
+        checkCancelled(indexes);
+
+        OrderedMerger merger = null;
+
+        if (indexes instanceof ProgressiveIndexes) {
+            synchronized (indexes) {
+                ((ProgressiveIndexes)indexes).entriesFound(countFiles(entry, depth));
+            }
+            merger = new OrderedMerger((ProgressiveIndexes)indexes);
+        }
+
+        ChildrenIndexerTask task = new ChildrenIndexerTask(api, entry, depth, indexes, (merger == null) ? null : merger.getRoot());
+        List<LocalIndexes> list = ForkJoinTask.inForkJoinPool() ? task.invoke() : INDEXER_POOL.invoke(task);
+
+        for (LocalIndexes localIndexes : list) {
+            localIndexes.mergeInto(indexes);
+        }
+    }
+
+    /**
+     * Stop the indexation if it has been cancelled.
+     */
+    protected static void checkCancelled(Indexes indexes) {
+        if (indexes.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    protected static int countFiles(Container.Entry entry, int depth) {
+        int count = 0;
+
+        if (depth > 0) {
+            for (Container.Entry e : entry.getChildren()) {
+                count += e.isDirectory() ? countFiles(e, depth-1) : 1;
+            }
+        }
+
+        return count;
+    }
+
+    protected static class ChildrenIndexerTask extends RecursiveTask<List<LocalIndexes>> {
+        protected API api;
+        protected Container.Entry entry;
+        protected int depth;
+        protected Indexes indexes;
+        // Position in the traversal order, if 'indexes' is progressive
+        protected OrderedMerger.Slot slot;
+
+        public ChildrenIndexerTask(API api, Container.Entry entry, int depth, Indexes indexes, OrderedMerger.Slot slot) {
+            this.api = api;
+            this.entry = entry;
+            this.depth = depth;
+            this.indexes = indexes;
+            this.slot = slot;
+        }
+
+        @Override
+        protected List<LocalIndexes> compute() {
+            if (depth <= 0) {
+                if (slot != null) {
+                    slot.expanded(Collections.emptyList());
+                }
+                return Collections.emptyList();
+            }
+
+            checkCancelled(indexes);
+
+            // Split children into sub-directories and batches of consecutive files
+            ArrayList<ForkJoinTask<List<LocalIndexes>>> tasks = new ArrayList<>();
+            ArrayList<OrderedMerger.Slot> slots = (slot == null) ? null : new ArrayList<>();
+            ArrayList<Container.Entry> files = null;
+
+            for (Container.Entry e : entry.getChildren()) {
+                if (e.isDirectory()) {
+                    if (files != null) {
+                        tasks.add(new FilesIndexerTask(api, files, indexes, newSlot(slots, false)));
+                        files = null;
+                    }
+                    tasks.add(new ChildrenIndexerTask(api, e, depth-1, indexes, newSlot(slots, true)));
+                } else {
+                    if (files == null) {
+                        files = new ArrayList<>(FILE_BATCH_SIZE);
+                    }
+                    files.add(e);
+                    if (files.size() == FILE_BATCH_SIZE) {
+                        tasks.add(new FilesIndexerTask(api, files, indexes, newSlot(slots, false)));
+                        files = null;
+                    }
+                }
+            }
+
+            if (files != null) {
+                tasks.add(new FilesIndexerTask(api, files, indexes, newSlot(slots, false)));
+            }
+
+            if (slot != null) {
+                // Publish the order of the children before their indexation
+                slot.expanded(slots);
+            }
+
+            // Fork, then join in order to keep a deterministic result
+            invokeAll(tasks);
+
+            ArrayList<LocalIndexes> list = new ArrayList<>();
+
+            for (ForkJoinTask<List<LocalIndexes>> task : tasks) {
+                list.addAll(task.join());
+            }
+
+            return list;
+        }
+
+        protected OrderedMerger.Slot newSlot(List<OrderedMerger.Slot> slots, boolean directory) {
+            if (slots == null) {
+                return null;
+            }
+
+            OrderedMerger.Slot s = new OrderedMerger.Slot(slot.merger, directory);
+            slots.add(s);
+            return s;
+        }
+    }
+
+    protected static class FilesIndexerTask extends RecursiveTask<List<LocalIndexes>> {
+        protected API api;
+        protected List<Container.Entry> files;
+        protected Indexes indexes;
+        protected OrderedMerger.Slot slot;
+
+        public FilesIndexerTask(API api, List<Container.Entry> files, Indexes indexes, OrderedMerger.Slot slot) {
+            this.api = api;
+            this.files = files;
+            this.indexes = indexes;
+            this.slot = slot;
+        }
+
+        @Override
+        protected List<LocalIndexes> compute() {
+            LocalIndexes localIndexes = new LocalIndexes(indexes);
+
+            for (Container.Entry file : files) {
+                checkCancelled(indexes);
+
+                Indexer indexer = api.getIndexer(file);
+
+                if ((indexer != null) && !isDeferred(indexer, file)) {
+                    indexer.index(api, file, localIndexes);
+                }
+            }
+
+            if (slot != null) {
+                slot.indexed(localIndexes, files.size());
+                return Collections.emptyList();
+            }
+
+            return localIndexes.isEmpty() ? Collections.emptyList() : Collections.singletonList(localIndexes);
+        }
+
+        protected boolean isDeferred(Indexer indexer, Container.Entry file) {
+            return (indexer instanceof ZipFileIndexerProvider) && (indexes instanceof DeferringIndexes) && ((DeferringIndexes)indexes).deferIndexation(file);
+        }
+    }
+
+    /**
+     * Merges the batches of files into progressive indexes in traversal order: a batch is merged once it and all the
+     * previous batches are indexed, and once the sub-directories before it are split into batches. The merge order,
+     * and so the content of the indexes, does not depend on the scheduling of the tasks.
+     */
+    protected static class OrderedMerger {
+        protected ProgressiveIndexes indexes;
+        protected Slot root = new Slot(this, true);
+        // Depth-first traversal of the slots, stopped on the first slot not yet indexed or expanded
+        protected ArrayDeque<Iterator<Slot>> stack = new ArrayDeque<>();
+        protected Slot current = root;
+
+        public OrderedMerger(ProgressiveIndexes indexes) {
+            this.indexes = indexes;
+        }
+
+        public Slot getRoot() { return root; }
+
+        // Called with the lock of 'indexes'
+        protected void advance() {
+            while (true) {
+                if (current == null) {
+                    while (!stack.isEmpty() && !stack.peek().hasNext()) {
+                        stack.pop();
+                    }
+                    if (stack.isEmpty()) {
+                        return;
+                    }
+                    current = stack.peek().next();
+                }
+
+                if (current.directory) {
+                    if (current.children == null) {
+                        return;
+                    }
+                    stack.push(current.children.iterator());
+                    current.children = null;
+                } else {
+                    if (!current.indexed) {
+                        return;
+                    }
+                    if (current.localIndexes != null) {
+                        current.localIndexes.mergeInto(indexes);
+                        current.localIndexes = null;
+                    }
+                    indexes.entriesIndexed(current.fileCount);
+                }
+
+                current = null;
+            }
+        }
+
+        /**
+         * Sub-directory, expanded into the slots of its children, or batch of files.
+         */
+        protected static class Slot {
+            protected OrderedMerger merger;
+            protected boolean directory;
+            protected List<Slot> children;
+            protected boolean indexed;
+            protected LocalIndexes localIndexes;
+            protected int fileCount;
+
+            public Slot(OrderedMerger merger, boolean directory) {
+                this.merger = merger;
+                this.directory = directory;
+            }
+
+            public void expanded(List<Slot> children) {
+                synchronized (merger.indexes) {
+                    this.children = children;
+                    merger.advance();
+                }
+            }
+
+            public void indexed(LocalIndexes localIndexes, int fileCount) {
+                synchronized (merger.indexes) {
+                    this.indexed = true;
+                    this.localIndexes = localIndexes.isEmpty() ? null : localIndexes;
+                    this.fileCount = fileCount;
+                    merger.advance();
+                }
+            }
+        }
+    }
 }
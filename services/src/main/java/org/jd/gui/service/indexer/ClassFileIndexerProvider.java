@@ -11,36 +11,23 @@ import org.jd.gui.api.API;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.api.model.Indexes;
 import org.jd.gui.util.exception.ExceptionUtil;
-import org.objectweb.asm.*;
-import org.objectweb.asm.signature.SignatureReader;
-import org.objectweb.asm.signature.SignatureVisitor;
+import org.jd.gui.util.io.EntryContentCache;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.regex.Pattern;
 
-import static org.objectweb.asm.ClassReader.*;
-
 /**
- * Unsafe thread implementation of class file indexer.
+ * Thread safe implementation of class file indexer: the state of the indexation is held by a 'ClassIndexer' reused by
+ * each thread.
  */
 public class ClassFileIndexerProvider extends AbstractIndexerProvider {
-    protected HashSet<String> typeDeclarationSet = new HashSet<>();
-    protected HashSet<String> constructorDeclarationSet = new HashSet<>();
-    protected HashSet<String> methodDeclarationSet = new HashSet<>();
-    protected HashSet<String> fieldDeclarationSet = new HashSet<>();
-    protected HashSet<String> typeReferenceSet = new HashSet<>();
-    protected HashSet<String> constructorReferenceSet = new HashSet<>();
-    protected HashSet<String> methodReferenceSet = new HashSet<>();
-    protected HashSet<String> fieldReferenceSet = new HashSet<>();
-    protected HashSet<String> stringSet = new HashSet<>();
-    protected HashSet<String> superTypeNameSet = new HashSet<>();
-    protected HashSet<String> descriptorSet = new HashSet<>();
-
-    protected ClassIndexer classIndexer = new ClassIndexer();
-    protected SignatureIndexer signatureIndexer = new SignatureIndexer();
+    protected static final ThreadLocal<ClassIndexer> CLASS_INDEXER = ThreadLocal.withInitial(ClassIndexer::new);
 
     @Override public String[] getSelectors() { return appendSelectors("*:file:*.class"); }
 
@@ -54,74 +41,228 @@ public class ClassFileIndexerProvider extends AbstractIndexerProvider {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void index(API api, Container.Entry entry, Indexes indexes) {
-        // Cleaning sets...
-        typeDeclarationSet.clear();
-        constructorDeclarationSet.clear();
-        methodDeclarationSet.clear();
-        fieldDeclarationSet.clear();
-        typeReferenceSet.clear();
-        constructorReferenceSet.clear();
-        methodReferenceSet.clear();
-        fieldReferenceSet.clear();
-        stringSet.clear();
-        superTypeNameSet.clear();
-        descriptorSet.clear();
-
-        try (InputStream inputStream = entry.getInputStream()) {
-            // Index field, method, interfaces & super type
-            ClassReader classReader = new ClassReader(inputStream);
-            classReader.accept(classIndexer, SKIP_CODE|SKIP_DEBUG|SKIP_FRAMES);
-
-            // Index descriptors
-            for (String descriptor : descriptorSet) {
-                new SignatureReader(descriptor).accept(signatureIndexer);
+        CLASS_INDEXER.get().index(entry, indexes);
+    }
+
+    /**
+     * Class file scanner reading the constant pool, the fields, the methods and the annotations directly from the
+     * bytes of the class file. Code and debug attributes are skipped. Buffers are reused from one class to another,
+     * and names are decoded once per thread thanks to a dictionary of modified UTF-8 byte sequences.
+     */
+    protected static class ClassIndexer {
+        protected HashSet<String> typeDeclarationSet = new HashSet<>();
+        protected HashSet<String> constructorDeclarationSet = new HashSet<>();
+        protected HashSet<String> methodDeclarationSet = new HashSet<>();
+        protected HashSet<String> fieldDeclarationSet = new HashSet<>();
+        protected HashSet<String> typeReferenceSet = new HashSet<>();
+        protected HashSet<String> constructorReferenceSet = new HashSet<>();
+        protected HashSet<String> methodReferenceSet = new HashSet<>();
+        protected HashSet<String> fieldReferenceSet = new HashSet<>();
+        protected HashSet<String> stringSet = new HashSet<>();
+        protected HashSet<String> superTypeNameSet = new HashSet<>();
+
+        protected byte[] buffer = new byte[16 * 1024];
+        protected int length;
+        protected int[] items = new int[1024];         // Offsets of the constant pool items, after the tag
+        protected String[] utf8s = new String[1024];   // Decoded CONSTANT_Utf8 items
+        protected Utf8Dictionary dictionary = new Utf8Dictionary();
+
+        protected String name;
+        protected int signatureOffset;
+
+        @SuppressWarnings("unchecked")
+        public void index(Container.Entry entry, Indexes indexes) {
+            try (InputStream inputStream = EntryContentCache.getInstance().getInputStream(entry)) {
+                read(inputStream);
+                clear();
+
+                // Index field, method, interfaces, super type, descriptors & references
+                parse();
+
+                // Append sets to indexes
+                addToIndexes(indexes, "typeDeclarations", typeDeclarationSet, entry);
+                addToIndexes(indexes, "constructorDeclarations", constructorDeclarationSet, entry);
+                addToIndexes(indexes, "methodDeclarations", methodDeclarationSet, entry);
+                addToIndexes(indexes, "fieldDeclarations", fieldDeclarationSet, entry);
+                addToIndexes(indexes, "typeReferences", typeReferenceSet, entry);
+                addToIndexes(indexes, "constructorReferences", constructorReferenceSet, entry);
+                addToIndexes(indexes, "methodReferences", methodReferenceSet, entry);
+                addToIndexes(indexes, "fieldReferences", fieldReferenceSet, entry);
+                addToIndexes(indexes, "strings", stringSet, entry);
+
+                // Populate map [super type name : [sub type name]]
+                if (superTypeNameSet.size() > 0) {
+                    Map<String, Collection> index = indexes.getIndex("subTypeNames");
+
+                    for (String superTypeName : superTypeNameSet) {
+                        index.get(superTypeName).add(name);
+                    }
+                }
+            } catch (Exception e) {
+                assert ExceptionUtil.printStackTrace(e);
+            }
+        }
+
+        protected void read(InputStream inputStream) throws IOException {
+            int count;
+
+            length = 0;
+
+            while ((count = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+                length += count;
+
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
             }
+        }
 
-            // Index references
-            char[] buffer = new char[classReader.getMaxStringLength()];
+        protected void clear() {
+            typeDeclarationSet = clear(typeDeclarationSet);
+            constructorDeclarationSet = clear(constructorDeclarationSet);
+            methodDeclarationSet = clear(methodDeclarationSet);
+            fieldDeclarationSet = clear(fieldDeclarationSet);
+            typeReferenceSet = clear(typeReferenceSet);
+            constructorReferenceSet = clear(constructorReferenceSet);
+            methodReferenceSet = clear(methodReferenceSet);
+            fieldReferenceSet = clear(fieldReferenceSet);
+            stringSet = clear(stringSet);
+            superTypeNameSet = clear(superTypeNameSet);
+        }
+
+        /**
+         * Clearing a set costs its capacity: sets grown by a large class are replaced.
+         */
+        protected static HashSet<String> clear(HashSet<String> set) {
+            if (set.size() > 256) {
+                return new HashSet<>();
+            }
+
+            set.clear();
+            return set;
+        }
+
+        protected void parse() {
+            if (readInt(0) != 0xCAFEBABE) {
+                throw new IllegalArgumentException("Invalid class file");
+            }
+
+            // Locate constant pool items
+            int itemCount = readUnsignedShort(8);
+            int offset = 10;
 
-            for (int i=classReader.getItemCount()-1; i>0; i--) {
-                int startIndex = classReader.getItem(i);
+            if (items.length < itemCount) {
+                items = new int[itemCount];
+                utf8s = new String[itemCount];
+            } else {
+                Arrays.fill(utf8s, 0, itemCount, null);
+            }
+
+            for (int i=1; i<itemCount; i++) {
+                items[i] = offset + 1;
+
+                switch (buffer[offset]) {
+                    case 1: // CONSTANT_Utf8
+                        offset += 3 + readUnsignedShort(offset + 1);
+                        break;
+                    case 3: // CONSTANT_Integer
+                    case 4: // CONSTANT_Float
+                    case 9: // CONSTANT_Fieldref
+                    case 10: // CONSTANT_Methodref
+                    case 11: // CONSTANT_InterfaceMethodref
+                    case 12: // CONSTANT_NameAndType
+                    case 17: // CONSTANT_Dynamic
+                    case 18: // CONSTANT_InvokeDynamic
+                        offset += 5;
+                        break;
+                    case 5: // CONSTANT_Long
+                    case 6: // CONSTANT_Double
+                        offset += 9;
+                        items[++i] = 0;
+                        break;
+                    case 15: // CONSTANT_MethodHandle
+                        offset += 4;
+                        break;
+                    case 7: // CONSTANT_Class
+                    case 8: // CONSTANT_String
+                    case 16: // CONSTANT_MethodType
+                    case 19: // CONSTANT_Module
+                    case 20: // CONSTANT_Package
+                        offset += 3;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid constant pool tag");
+                }
+            }
+
+            // Index type declaration, super type & interfaces
+            name = readClass(offset + 2);
+            typeDeclarationSet.add(name);
+
+            if (readUnsignedShort(offset + 4) != 0) {
+                superTypeNameSet.add(readClass(offset + 4));
+            }
 
-                if (startIndex != 0) {
-                    int tag = classReader.readByte(startIndex-1);
+            int count = readUnsignedShort(offset + 6);
+            offset += 8;
 
-                    switch (tag) {
+            for (int i=0; i<count; i++, offset+=2) {
+                superTypeNameSet.add(readClass(offset));
+            }
+
+            // Index fields & methods
+            count = readUnsignedShort(offset);
+            offset += 2;
+
+            for (int i=0; i<count; i++) {
+                offset = parseMember(offset, false);
+            }
+
+            count = readUnsignedShort(offset);
+            offset += 2;
+
+            for (int i=0; i<count; i++) {
+                offset = parseMember(offset, true);
+            }
+
+            // Index class annotations
+            offset = parseAttributes(offset, false);
+
+            if (offset > length) {
+                throw new IllegalArgumentException("Truncated class file");
+            }
+
+            // Index references
+            for (int i=itemCount-1; i>0; i--) {
+                int itemOffset = items[i];
+
+                if (itemOffset != 0) {
+                    switch (buffer[itemOffset-1]) {
                         case 7: // CONSTANT_Class
-                            String className = classReader.readUTF8(startIndex, buffer);
-                            if (className.startsWith("[")) {
-                                new SignatureReader(className).acceptType(signatureIndexer);
+                            int nameOffset = items[readUnsignedShort(itemOffset)];
+                            if ((readUnsignedShort(nameOffset) > 0) && (buffer[nameOffset+2] == '[')) {
+                                parseType(nameOffset+2);
                             } else {
-                                typeReferenceSet.add(className);
+                                typeReferenceSet.add(readUtf8(itemOffset));
                             }
                             break;
                         case 8: // CONSTANT_String
-                            String str = classReader.readUTF8(startIndex, buffer);
-                            stringSet.add(str);
+                            stringSet.add(readUtf8(itemOffset));
                             break;
                         case 9: // CONSTANT_Fieldref
-                            int nameAndTypeItem = classReader.readUnsignedShort(startIndex+2);
-                            int nameAndTypeIndex = classReader.getItem(nameAndTypeItem);
-                            tag = classReader.readByte(nameAndTypeIndex-1);
-                            if (tag == 12) { // CONSTANT_NameAndType
-                                String fieldName = classReader.readUTF8(nameAndTypeIndex, buffer);
-                                fieldReferenceSet.add(fieldName);
+                            int nameAndTypeOffset = items[readUnsignedShort(itemOffset+2)];
+                            if (buffer[nameAndTypeOffset-1] == 12) { // CONSTANT_NameAndType
+                                fieldReferenceSet.add(readUtf8(nameAndTypeOffset));
                             }
                             break;
                         case 10: // CONSTANT_Methodref:
                         case 11: // CONSTANT_InterfaceMethodref:
-                            nameAndTypeItem = classReader.readUnsignedShort(startIndex+2);
-                            nameAndTypeIndex = classReader.getItem(nameAndTypeItem);
-                            tag = classReader.readByte(nameAndTypeIndex-1);
-                            if (tag == 12) { // CONSTANT_NameAndType
-                                String methodName = classReader.readUTF8(nameAndTypeIndex, buffer);
+                            nameAndTypeOffset = items[readUnsignedShort(itemOffset+2)];
+                            if (buffer[nameAndTypeOffset-1] == 12) { // CONSTANT_NameAndType
+                                String methodName = readUtf8(nameAndTypeOffset);
                                 if ("<init>".equals(methodName)) {
-                                    int classItem = classReader.readUnsignedShort(startIndex);
-                                    int classIndex = classReader.getItem(classItem);
-                                    className = classReader.readUTF8(classIndex, buffer);
-                                    constructorReferenceSet.add(className);
+                                    constructorReferenceSet.add(readClass(itemOffset));
                                 } else {
                                     methodReferenceSet.add(methodName);
                                 }
@@ -130,159 +271,414 @@ public class ClassFileIndexerProvider extends AbstractIndexerProvider {
                     }
                 }
             }
+        }
 
-            String typeName = classIndexer.name;
+        /**
+         * Index a field or a method: name, signature (or descriptor if no signature is present), exceptions and
+         * annotations.
+         *
+         * @return the offset of the next member
+         */
+        protected int parseMember(int offset, boolean method) {
+            String memberName = readUtf8(offset + 2);
+            int descriptorOffset = offset + 4;
+
+            if (method) {
+                if ("<init>".equals(memberName)) {
+                    constructorDeclarationSet.add(name);
+                } else if (! "<clinit>".equals(memberName)) {
+                    methodDeclarationSet.add(memberName);
+                }
+            } else {
+                fieldDeclarationSet.add(memberName);
+            }
 
-            // Append sets to indexes
-            addToIndexes(indexes, "typeDeclarations", typeDeclarationSet, entry);
-            addToIndexes(indexes, "constructorDeclarations", constructorDeclarationSet, entry);
-            addToIndexes(indexes, "methodDeclarations", methodDeclarationSet, entry);
-            addToIndexes(indexes, "fieldDeclarations", fieldDeclarationSet, entry);
-            addToIndexes(indexes, "typeReferences", typeReferenceSet, entry);
-            addToIndexes(indexes, "constructorReferences", constructorReferenceSet, entry);
-            addToIndexes(indexes, "methodReferences", methodReferenceSet, entry);
-            addToIndexes(indexes, "fieldReferences", fieldReferenceSet, entry);
-            addToIndexes(indexes, "strings", stringSet, entry);
+            signatureOffset = 0;
+            offset = parseAttributes(offset + 6, method);
+            parseSignature((signatureOffset == 0) ? descriptorOffset : signatureOffset);
 
-            // Populate map [super type name : [sub type name]]
-            if (superTypeNameSet.size() > 0) {
-                Map<String, Collection> index = indexes.getIndex("subTypeNames");
+            return offset;
+        }
 
-                for (String superTypeName : superTypeNameSet) {
-                    index.get(superTypeName).add(typeName);
+        /**
+         * Index annotations and exceptions, and locate the signature of a member.
+         *
+         * @return the offset following the attributes
+         */
+        protected int parseAttributes(int offset, boolean method) {
+            int count = readUnsignedShort(offset);
+            offset += 2;
+
+            for (int i=0; i<count; i++) {
+                String attributeName = readUtf8(offset);
+                int attributeOffset = offset + 6;
+
+                switch (attributeName) {
+                    case "Signature":
+                        signatureOffset = attributeOffset;
+                        break;
+                    case "Exceptions":
+                        if (method) {
+                            for (int j=readUnsignedShort(attributeOffset), o=attributeOffset+2; j>0; j--, o+=2) {
+                                typeReferenceSet.add(readClass(o));
+                            }
+                        }
+                        break;
+                    case "RuntimeVisibleAnnotations":
+                    case "RuntimeInvisibleAnnotations":
+                        parseAnnotations(attributeOffset);
+                        break;
+                    case "RuntimeVisibleTypeAnnotations":
+                    case "RuntimeInvisibleTypeAnnotations":
+                        parseTypeAnnotations(attributeOffset);
+                        break;
+                    case "RuntimeVisibleParameterAnnotations":
+                    case "RuntimeInvisibleParameterAnnotations":
+                        if (method) {
+                            for (int j=buffer[attributeOffset] & 0xFF, o=attributeOffset+1; j>0; j--) {
+                                o = parseAnnotations(o);
+                            }
+                        }
+                        break;
                 }
+
+                offset = attributeOffset + readInt(offset + 2);
             }
-        } catch (Exception e) {
-            assert ExceptionUtil.printStackTrace(e);
+
+            return offset;
         }
-    }
 
-    protected class ClassIndexer extends ClassVisitor {
-        protected AnnotationIndexer annotationIndexer = new AnnotationIndexer();
-        protected FieldIndexer fieldIndexer = new FieldIndexer(annotationIndexer);
-        protected MethodIndexer methodIndexer = new MethodIndexer(annotationIndexer);
+        protected int parseAnnotations(int offset) {
+            int count = readUnsignedShort(offset);
+            offset += 2;
 
-        protected String name;
+            for (int i=0; i<count; i++) {
+                offset = parseAnnotation(offset, true);
+            }
 
-        public ClassIndexer() { super(Opcodes.ASM7); }
+            return offset;
+        }
 
-        @Override
-        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-            this.name = name;
-            typeDeclarationSet.add(name);
+        protected void parseTypeAnnotations(int offset) {
+            int count = readUnsignedShort(offset);
+            offset += 2;
+
+            for (int i=0; i<count; i++) {
+                // Skip target info
+                switch (buffer[offset] & 0xFF) {
+                    case 0x00: // CLASS_TYPE_PARAMETER
+                    case 0x01: // METHOD_TYPE_PARAMETER
+                    case 0x16: // METHOD_FORMAL_PARAMETER
+                        offset += 2;
+                        break;
+                    case 0x13: // FIELD
+                    case 0x14: // METHOD_RETURN
+                    case 0x15: // METHOD_RECEIVER
+                        offset += 1;
+                        break;
+                    case 0x40: // LOCAL_VARIABLE
+                    case 0x41: // RESOURCE_VARIABLE
+                        offset += 3 + 6 * readUnsignedShort(offset + 1);
+                        break;
+                    case 0x47: // CAST
+                    case 0x48: // CONSTRUCTOR_INVOCATION_TYPE_ARGUMENT
+                    case 0x49: // METHOD_INVOCATION_TYPE_ARGUMENT
+                    case 0x4A: // CONSTRUCTOR_REFERENCE_TYPE_ARGUMENT
+                    case 0x4B: // METHOD_REFERENCE_TYPE_ARGUMENT
+                        offset += 4;
+                        break;
+                    default: // CLASS_EXTENDS, CLASS_TYPE_PARAMETER_BOUND, METHOD_TYPE_PARAMETER_BOUND, THROWS, EXCEPTION_PARAMETER, INSTANCEOF, NEW, CONSTRUCTOR_REFERENCE, METHOD_REFERENCE
+                        offset += 3;
+                        break;
+                }
+                // Skip type path
+                offset += 1 + 2 * (buffer[offset] & 0xFF);
+                offset = parseAnnotation(offset, true);
+            }
+        }
 
-            if (superName != null) {
-                superTypeNameSet.add(superName);
+        /**
+         * @param index true to index the type of the annotation, the enum types and the nested annotations
+         * @return the offset following the annotation
+         */
+        protected int parseAnnotation(int offset, boolean index) {
+            if (index) {
+                parseSignature(offset);
             }
 
-            if (interfaces != null) {
-                for (int i=interfaces.length-1; i>=0; i--) {
-                    superTypeNameSet.add(interfaces[i]);
-                }
+            int count = readUnsignedShort(offset + 2);
+            offset += 4;
+
+            for (int i=0; i<count; i++) {
+                offset = parseElementValue(offset + 2, index);
             }
-        }
 
-        @Override
-        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-            descriptorSet.add(desc);
-            return annotationIndexer;
+            return offset;
         }
 
-        @Override
-        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
-            descriptorSet.add(desc);
-            return annotationIndexer;
+        protected int parseElementValue(int offset, boolean index) {
+            switch (buffer[offset]) {
+                case 'e':
+                    if (index) {
+                        parseSignature(offset + 1);
+                    }
+                    return offset + 5;
+                case '@':
+                    return parseAnnotation(offset + 1, index);
+                case '[':
+                    // Values of arrays are not indexed
+                    int count = readUnsignedShort(offset + 1);
+                    offset += 3;
+                    for (int i=0; i<count; i++) {
+                        offset = parseElementValue(offset, false);
+                    }
+                    return offset;
+                default:
+                    return offset + 3;
+            }
         }
 
-        @Override
-        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-            fieldDeclarationSet.add(name);
-            descriptorSet.add(signature==null ? desc : signature);
-            return fieldIndexer;
-        }
+        /**
+         * Index the class types of the descriptor or the signature referenced at 'offset'.
+         */
+        protected void parseSignature(int offset) {
+            int utf8Offset = items[readUnsignedShort(offset)];
+            int start = utf8Offset + 2;
+            int end = start + readUnsignedShort(utf8Offset);
 
-        @Override
-        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-            if ("<init>".equals(name)) {
-                constructorDeclarationSet.add(this.name);
-            } else if (! "<clinit>".equals(name)) {
-                methodDeclarationSet.add(name);
-            }
+            offset = start;
+
+            if (buffer[offset] == '<') {
+                // Formal type parameters
+                byte b;
+
+                offset += 2;
 
-            descriptorSet.add(signature==null ? desc : signature);
+                do {
+                    while (buffer[offset] != ':') {
+                        offset++;
+                    }
+
+                    b = buffer[++offset];
+
+                    if ((b == 'L') || (b == '[') || (b == 'T')) {
+                        offset = parseType(offset);
+                    }
+                    while ((b = buffer[offset++]) == ':') {
+                        offset = parseType(offset);
+                    }
+                } while (b != '>');
+            }
 
-            if (exceptions != null) {
-                for (int i=exceptions.length-1; i>=0; i--) {
-                    typeReferenceSet.add(exceptions[i]);
+            if (buffer[offset] == '(') {
+                // Method
+                offset++;
+                while (buffer[offset] != ')') {
+                    offset = parseType(offset);
+                }
+                offset = parseType(offset + 1);
+                while (offset < end) {
+                    // Exceptions
+                    offset = parseType(offset + 1);
+                }
+            } else {
+                // Field or class
+                offset = parseType(offset);
+                while (offset < end) {
+                    offset = parseType(offset);
                 }
             }
-            return methodIndexer;
         }
-    }
-
-    protected class SignatureIndexer extends SignatureVisitor {
-        SignatureIndexer() { super(Opcodes.ASM7); }
 
-        @Override public void visitClassType(String name) { typeReferenceSet.add(name); }
-    }
+        /**
+         * Index the class types of the type at 'offset'. Names of inner classes of parameterized types are not indexed.
+         *
+         * @return the offset following the type
+         */
+        protected int parseType(int offset) {
+            switch (buffer[offset++]) {
+                case '[':
+                    return parseType(offset);
+                case 'T':
+                    while (buffer[offset++] != ';');
+                    return offset;
+                case 'L':
+                    int start = offset;
+                    boolean visited = false;
+                    boolean inner = false;
+
+                    while (true) {
+                        byte b = buffer[offset++];
+
+                        if ((b == '.') || (b == ';')) {
+                            if (!visited && !inner) {
+                                typeReferenceSet.add(dictionary.get(buffer, start, offset-1-start));
+                            }
+                            if (b == ';') {
+                                return offset;
+                            }
+                            start = offset;
+                            visited = false;
+                            inner = true;
+                        } else if (b == '<') {
+                            if (!inner) {
+                                typeReferenceSet.add(dictionary.get(buffer, start, offset-1-start));
+                            }
+                            visited = true;
 
-    protected class AnnotationIndexer extends AnnotationVisitor {
-        public AnnotationIndexer() { super(Opcodes.ASM7); }
+                            while ((b = buffer[offset]) != '>') {
+                                if (b == '*') {
+                                    offset++;
+                                } else if ((b == '+') || (b == '-')) {
+                                    offset = parseType(offset + 1);
+                                } else {
+                                    offset = parseType(offset);
+                                }
+                            }
+                        }
+                    }
+                case 'Z': case 'C': case 'B': case 'S': case 'I': case 'F': case 'J': case 'D': case 'V':
+                    return offset;
+                default:
+                    throw new IllegalArgumentException("Invalid signature");
+            }
+        }
 
-        @Override public void visitEnum(String name, String desc, String value) { descriptorSet.add(desc); }
+        protected int readUnsignedShort(int offset) {
+            return ((buffer[offset] & 0xFF) << 8) | (buffer[offset+1] & 0xFF);
+        }
 
-        @Override
-        public AnnotationVisitor visitAnnotation(String name, String desc) {
-            descriptorSet.add(desc);
-            return this;
+        protected int readInt(int offset) {
+            return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset+1] & 0xFF) << 16) | ((buffer[offset+2] & 0xFF) << 8) | (buffer[offset+3] & 0xFF);
         }
-    }
 
-    protected class FieldIndexer extends FieldVisitor {
-        protected AnnotationIndexer annotationIndexer;
+        /**
+         * @return the CONSTANT_Utf8 item referenced at 'offset'
+         */
+        protected String readUtf8(int offset) {
+            int index = readUnsignedShort(offset);
+            String utf8 = utf8s[index];
 
-        public FieldIndexer(AnnotationIndexer annotationIndexer) {
-            super(Opcodes.ASM7);
-            this.annotationIndexer = annotationIndexer;
-        }
+            if (utf8 == null) {
+                int utf8Offset = items[index];
+                utf8s[index] = utf8 = dictionary.get(buffer, utf8Offset+2, readUnsignedShort(utf8Offset));
+            }
 
-        @Override
-        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-            descriptorSet.add(desc);
-            return annotationIndexer;
+            return utf8;
         }
 
-        @Override
-        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
-            descriptorSet.add(desc);
-            return annotationIndexer;
+        /**
+         * @return the name of the CONSTANT_Class item referenced at 'offset'
+         */
+        protected String readClass(int offset) {
+            return readUtf8(items[readUnsignedShort(offset)]);
         }
     }
 
-    protected class MethodIndexer extends MethodVisitor {
-        protected AnnotationIndexer annotationIndexer;
+    /**
+     * Open addressing hash table of the strings decoded from modified UTF-8 byte sequences: a sequence already seen
+     * is found by hash and comparison, without creating a string. Long sequences are not retained, and the
+     * dictionary is cleared when it is full.
+     */
+    protected static class Utf8Dictionary {
+        protected static final int MAX_SIZE = 32 * 1024;
+        protected static final int MAX_LENGTH = 256;
+
+        protected byte[][] keys = new byte[MAX_SIZE * 2][];
+        protected String[] values = new String[MAX_SIZE * 2];
+        protected int[] hashes = new int[MAX_SIZE * 2];
+        protected int size = 0;
+        protected char[] chars = new char[256];
+
+        public String get(byte[] bytes, int offset, int length) {
+            if (length > MAX_LENGTH) {
+                return decode(bytes, offset, length);
+            }
 
-        public MethodIndexer(AnnotationIndexer annotationIndexer) {
-            super(Opcodes.ASM7);
-            this.annotationIndexer = annotationIndexer;
-        }
+            int hash = 0;
+
+            for (int i=offset, end=offset+length; i<end; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+
+            int mask = keys.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            byte[] key;
+
+            while ((key = keys[slot]) != null) {
+                if ((hashes[slot] == hash) && equals(key, bytes, offset, length)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
 
-        @Override
-        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-            descriptorSet.add(desc);
-            return annotationIndexer;
+            if (size == MAX_SIZE) {
+                Arrays.fill(keys, null);
+                Arrays.fill(values, null);
+                size = 0;
+                slot = (hash ^ (hash >>> 16)) & mask;
+            }
+
+            String value = decode(bytes, offset, length);
+
+            keys[slot] = Arrays.copyOfRange(bytes, offset, offset+length);
+            values[slot] = value;
+            hashes[slot] = hash;
+            size++;
+
+            return value;
         }
 
-        @Override
-        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
-            descriptorSet.add(desc);
-            return annotationIndexer;
+        protected static boolean equals(byte[] key, byte[] bytes, int offset, int length) {
+            if (key.length != length) {
+                return false;
+            }
+
+            for (int i=0; i<length; i++) {
+                if (key[i] != bytes[offset+i]) {
+                    return false;
+                }
+            }
+
+            return true;
         }
 
-        @Override
-        public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
-            descriptorSet.add(desc);
-            return annotationIndexer;
+        protected String decode(byte[] bytes, int offset, int length) {
+            int end = offset + length;
+            int i = offset;
+
+            while ((i < end) && (bytes[i] >= 0)) {
+                i++;
+            }
+
+            if (i == end) {
+                // ASCII characters are encoded in one byte, as in ISO-8859-1
+                return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+            }
+
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+
+            int count = 0;
+
+            for (int j=offset; j<i; j++) {
+                chars[count++] = (char)bytes[j];
+            }
+
+            while (i < end) {
+                int c = bytes[i++];
+
+                if ((c & 0x80) == 0) {
+                    chars[count++] = (char)(c & 0x7F);
+                } else if ((c & 0xE0) == 0xC0) {
+                    chars[count++] = (char)(((c & 0x1F) << 6) + (bytes[i++] & 0x3F));
+                } else {
+                    chars[count++] = (char)(((c & 0xF) << 12) + ((bytes[i++] & 0x3F) << 6) + (bytes[i++] & 0x3F));
+                }
+            }
+
+            return new String(chars, 0, count);
         }
     }
 }
@@ -10,7 +10,6 @@ package org.jd.gui.service.indexer;
 import org.jd.gui.api.API;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.api.model.Indexes;
-import org.jd.gui.spi.Indexer;
 
 public class DirectoryIndexerProvider extends AbstractIndexerProvider {
 
@@ -29,18 +28,6 @@ public class DirectoryIndexerProvider extends AbstractIndexerProvider {
     }
 
     public void index(API api, Container.Entry entry, Indexes indexes, int depth) {
-        if (depth-- > 0) {
-            for (Container.Entry e : entry.getChildren()) {
-                if (e.isDirectory()) {
-                    index(api, e, indexes, depth);
-                } else {
-                    Indexer indexer = api.getIndexer(e);
-
-                    if (indexer != null) {
-                        indexer.index(api, e, indexes);
-                    }
-                }
-            }
-        }
+        indexChildren(api, entry, indexes, depth);
     }
 }
@@ -24,7 +24,8 @@ import java.io.InputStream;
 import java.util.*;
 
 /**
- * Unsafe thread implementation of java file indexer.
+ * Thread safe implementation of java file indexer: the state of the indexation is held by a 'Listener' created for
+ * each entry.
  */
 public class JavaFileIndexerProvider extends AbstractIndexerProvider {
 
@@ -19,83 +19,82 @@ import java.util.HashSet;
 import static org.objectweb.asm.ClassReader.*;
 
 /**
- * Unsafe thread implementation of class file indexer.
+ * Thread safe implementation of module-info file indexer: the state of the indexation is held by a 'ClassIndexer'
+ * created for each entry.
  */
 public class JavaModuleInfoFileIndexerProvider extends AbstractIndexerProvider {
-    protected HashSet<String> javaModuleDeclarationSet = new HashSet<>();
-    protected HashSet<String> javaModuleReferenceSet = new HashSet<>();
-    protected HashSet<String> typeReferenceSet = new HashSet<>();
-
-    protected ClassIndexer classIndexer = new ClassIndexer();
 
     @Override public String[] getSelectors() { return appendSelectors("jmod:file:classes/module-info.class"); }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void index(API api, Container.Entry entry, Indexes indexes) {
-        // Cleaning sets...
-        javaModuleDeclarationSet.clear();
-        javaModuleReferenceSet.clear();
-        typeReferenceSet.clear();
-
-        try (InputStream inputStream = entry.getInputStream()) {
-            // Index field, method, interfaces & super type
-            ClassReader classReader = new ClassReader(inputStream);
-            classReader.accept(classIndexer, SKIP_CODE|SKIP_DEBUG|SKIP_FRAMES);
-
-            // Append sets to indexes
-            addToIndexes(indexes, "javaModuleDeclarations", javaModuleDeclarationSet, entry);
-            addToIndexes(indexes, "javaModuleReferences", javaModuleReferenceSet, entry);
-            addToIndexes(indexes, "typeReferences", typeReferenceSet, entry);
-        } catch (Exception e) {
-            assert ExceptionUtil.printStackTrace(e);
-        }
+        new ClassIndexer().index(entry, indexes);
     }
 
-    protected class ClassIndexer extends ClassVisitor {
+    protected static class ClassIndexer extends ClassVisitor {
+        protected HashSet<String> javaModuleDeclarationSet = new HashSet<>();
+        protected HashSet<String> javaModuleReferenceSet = new HashSet<>();
+        protected HashSet<String> typeReferenceSet = new HashSet<>();
+
         protected ModuleIndexer moduleIndexer = new ModuleIndexer();
 
         public ClassIndexer() { super(Opcodes.ASM7); }
 
+        @SuppressWarnings("unchecked")
+        public void index(Container.Entry entry, Indexes indexes) {
+            try (InputStream inputStream = entry.getInputStream()) {
+                // Index field, method, interfaces & super type
+                ClassReader classReader = new ClassReader(inputStream);
+                classReader.accept(this, SKIP_CODE|SKIP_DEBUG|SKIP_FRAMES);
+
+                // Append sets to indexes
+                addToIndexes(indexes, "javaModuleDeclarations", javaModuleDeclarationSet, entry);
+                addToIndexes(indexes, "javaModuleReferences", javaModuleReferenceSet, entry);
+                addToIndexes(indexes, "typeReferences", typeReferenceSet, entry);
+            } catch (Exception e) {
+                assert ExceptionUtil.printStackTrace(e);
+            }
+        }
+
         @Override
         public ModuleVisitor visitModule(String moduleName, int moduleFlags, String moduleVersion) {
             javaModuleDeclarationSet.add(moduleName);
             return moduleIndexer;
         }
-    }
 
-    protected class ModuleIndexer extends ModuleVisitor {
-        public ModuleIndexer() { super(Opcodes.ASM7); }
+        protected class ModuleIndexer extends ModuleVisitor {
+            public ModuleIndexer() { super(Opcodes.ASM7); }
 
-        @Override public void visitMainClass(final String mainClass) { typeReferenceSet.add(mainClass); }
-        @Override public void visitRequire(final String module, final int access, final String version) { javaModuleReferenceSet.add(module); }
-        @Override public void visitUse(final String service) { typeReferenceSet.add(service); }
+            @Override public void visitMainClass(final String mainClass) { typeReferenceSet.add(mainClass); }
+            @Override public void visitRequire(final String module, final int access, final String version) { javaModuleReferenceSet.add(module); }
+            @Override public void visitUse(final String service) { typeReferenceSet.add(service); }
 
-        @Override
-        public void visitExport(final String packaze, final int access, final String... modules) {
-            if (modules != null) {
-                for (String module : modules) {
-                    javaModuleReferenceSet.add(module);
+            @Override
+            public void visitExport(final String packaze, final int access, final String... modules) {
+                if (modules != null) {
+                    for (String module : modules) {
+                        javaModuleReferenceSet.add(module);
+                    }
                 }
             }
-        }
 
-        @Override
-        public void visitOpen(final String packaze, final int access, final String... modules) {
-            if (modules != null) {
-                for (String module : modules) {
-                    javaModuleReferenceSet.add(module);
+            @Override
+            public void visitOpen(final String packaze, final int access, final String... modules) {
+                if (modules != null) {
+                    for (String module : modules) {
+                        javaModuleReferenceSet.add(module);
+                    }
                 }
             }
-        }
 
-        @Override
-        public void visitProvide(final String service, final String... providers) {
-            typeReferenceSet.add(service);
+            @Override
+            public void visitProvide(final String service, final String... providers) {
+                typeReferenceSet.add(service);
 
-            if (providers != null) {
-                for (String provider : providers) {
-                    typeReferenceSet.add(provider);
+                if (providers != null) {
+                    for (String provider : providers) {
+                        typeReferenceSet.add(provider);
+                    }
                 }
             }
         }
@@ -10,7 +10,6 @@ package org.jd.gui.service.indexer;
 import org.jd.gui.api.API;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.api.model.Indexes;
-import org.jd.gui.spi.Indexer;
 
 public class ZipFileIndexerProvider extends AbstractIndexerProvider {
 
@@ -18,16 +17,6 @@ public class ZipFileIndexerProvider extends AbstractIndexerProvider {
 
     @Override
     public void index(API api, Container.Entry entry, Indexes indexes) {
-        for (Container.Entry e : entry.getChildren()) {
-            if (e.isDirectory()) {
-                index(api, e, indexes);
-            } else {
-                Indexer indexer = api.getIndexer(e);
-
-                if (indexer != null) {
-                    indexer.index(api, e, indexes);
-                }
-            }
-        }
+        indexChildren(api, entry, indexes, Integer.MAX_VALUE);
     }
 }
@@ -11,14 +11,19 @@ import org.jd.gui.spi.PreferencesPanel;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Arrays;
 import java.util.Map;
 
 public class ClassFileSaverPreferencesProvider extends JPanel implements PreferencesPanel {
     protected static final String WRITE_LINE_NUMBERS = "ClassFileSaverPreferences.writeLineNumbers";
     protected static final String WRITE_METADATA = "ClassFileSaverPreferences.writeMetadata";
+    protected static final String COMPRESSION = "ClassFileSaverPreferences.compression";
+    protected static final String[] COMPRESSION_VALUES = { "stored", "fastest", "default", "best" };
+    protected static final String[] COMPRESSION_LABELS = { "none (stored)", "fastest", "default", "best" };
 
     protected JCheckBox writeLineNumbersCheckBox;
     protected JCheckBox writeMetadataCheckBox;
+    protected JComboBox<String> compressionComboBox;
 
     public ClassFileSaverPreferencesProvider() {
         super(new GridLayout(0,1));
@@ -28,6 +33,13 @@ public class ClassFileSaverPreferencesProvider extends JPanel implements Prefere
 
         add(writeLineNumbersCheckBox);
         add(writeMetadataCheckBox);
+
+        JPanel compressionPanel = new JPanel(new BorderLayout());
+        compressionPanel.add(new JLabel("Compression of saved archives: "), BorderLayout.WEST);
+
+        compressionComboBox = new JComboBox<>(COMPRESSION_LABELS);
+        compressionPanel.add(compressionComboBox, BorderLayout.CENTER);
+        add(compressionPanel);
     }
 
     // --- PreferencesPanel --- //
@@ -43,12 +55,17 @@ public class ClassFileSaverPreferencesProvider extends JPanel implements Prefere
     public void loadPreferences(Map<String, String> preferences) {
         writeLineNumbersCheckBox.setSelected(!"false".equals(preferences.get(WRITE_LINE_NUMBERS)));
         writeMetadataCheckBox.setSelected(!"false".equals(preferences.get(WRITE_METADATA)));
+
+        // Default: "default"
+        int compressionIndex = Arrays.asList(COMPRESSION_VALUES).indexOf(preferences.get(COMPRESSION));
+        compressionComboBox.setSelectedIndex((compressionIndex == -1) ? 2 : compressionIndex);
     }
 
     @Override
     public void savePreferences(Map<String, String> preferences) {
         preferences.put(WRITE_LINE_NUMBERS, Boolean.toString(writeLineNumbersCheckBox.isSelected()));
         preferences.put(WRITE_METADATA, Boolean.toString(writeMetadataCheckBox.isSelected()));
+        preferences.put(COMPRESSION, COMPRESSION_VALUES[compressionComboBox.getSelectedIndex()]);
     }
 
     @Override public boolean arePreferencesValid() { return true; }
@@ -14,25 +14,66 @@ import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.util.Arrays;
 import java.util.Map;
 
 public class DirectoryIndexerPreferencesProvider extends JPanel implements PreferencesPanel, DocumentListener {
     protected static final int MAX_VALUE = 30;
+    protected static final int MAX_CACHE_SIZE_VALUE = 65536;
     protected static final String MAXIMUM_DEPTH_KEY = "DirectoryIndexerPreferences.maximumDepth";
+    protected static final String CACHE_ENABLED_KEY = "DirectoryIndexerPreferences.cacheEnabled";
+    protected static final String CACHE_CONTENT_HASH_KEY = "DirectoryIndexerPreferences.cacheContentHash";
+    protected static final String CACHE_MAXIMUM_SIZE_KEY = "DirectoryIndexerPreferences.cacheMaximumSize";
+    protected static final String WATCH_CHANGES_KEY = "DirectoryIndexerPreferences.watchChanges";
+    protected static final String NESTED_ARCHIVES_KEY = "DirectoryIndexerPreferences.nestedArchives";
+    protected static final String[] NESTED_ARCHIVES_VALUES = { "eager", "deferred", "onDemand" };
+    protected static final String[] NESTED_ARCHIVES_LABELS = { "with the container", "after the container", "on first expansion" };
 
     protected PreferencesPanel.PreferencesPanelChangeListener listener = null;
     protected JTextField maximumDepthTextField;
+    protected JCheckBox cacheEnabledCheckBox;
+    protected JCheckBox cacheContentHashCheckBox;
+    protected JTextField cacheMaximumSizeTextField;
+    protected JCheckBox watchChangesCheckBox;
+    protected JComboBox<String> nestedArchivesComboBox;
     protected Color errorBackgroundColor = Color.RED;
     protected Color defaultBackgroundColor;
 
     public DirectoryIndexerPreferencesProvider() {
-        super(new BorderLayout());
+        super(new GridLayout(0,1));
 
-        add(new JLabel("Maximum depth (1.." + MAX_VALUE + "): "), BorderLayout.WEST);
+        JPanel maximumDepthPanel = new JPanel(new BorderLayout());
+        maximumDepthPanel.add(new JLabel("Maximum depth (1.." + MAX_VALUE + "): "), BorderLayout.WEST);
 
         maximumDepthTextField = new JTextField();
         maximumDepthTextField.getDocument().addDocumentListener(this);
-        add(maximumDepthTextField, BorderLayout.CENTER);
+        maximumDepthPanel.add(maximumDepthTextField, BorderLayout.CENTER);
+        add(maximumDepthPanel);
+
+        cacheEnabledCheckBox = new JCheckBox("Keep indexes of archives in a disk cache");
+        cacheEnabledCheckBox.addActionListener(e -> onCacheEnabledChange());
+        add(cacheEnabledCheckBox);
+
+        cacheContentHashCheckBox = new JCheckBox("Check archive content before reusing cached indexes");
+        add(cacheContentHashCheckBox);
+
+        JPanel cacheMaximumSizePanel = new JPanel(new BorderLayout());
+        cacheMaximumSizePanel.add(new JLabel("Maximum cache size in MB (1.." + MAX_CACHE_SIZE_VALUE + "): "), BorderLayout.WEST);
+
+        cacheMaximumSizeTextField = new JTextField();
+        cacheMaximumSizeTextField.getDocument().addDocumentListener(this);
+        cacheMaximumSizePanel.add(cacheMaximumSizeTextField, BorderLayout.CENTER);
+        add(cacheMaximumSizePanel);
+
+        watchChangesCheckBox = new JCheckBox("Update indexes when the files of an opened directory change");
+        add(watchChangesCheckBox);
+
+        JPanel nestedArchivesPanel = new JPanel(new BorderLayout());
+        nestedArchivesPanel.add(new JLabel("Index nested archives: "), BorderLayout.WEST);
+
+        nestedArchivesComboBox = new JComboBox<>(NESTED_ARCHIVES_LABELS);
+        nestedArchivesPanel.add(nestedArchivesComboBox, BorderLayout.CENTER);
+        add(nestedArchivesPanel);
 
         defaultBackgroundColor = maximumDepthTextField.getBackground();
     }
@@ -53,18 +94,50 @@ public class DirectoryIndexerPreferencesProvider extends JPanel implements Prefe
 
         maximumDepthTextField.setText((preference != null) ? preference : "15");
         maximumDepthTextField.setCaretPosition(maximumDepthTextField.getText().length());
+
+        cacheEnabledCheckBox.setSelected(!"false".equals(preferences.get(CACHE_ENABLED_KEY)));
+        cacheContentHashCheckBox.setSelected("true".equals(preferences.get(CACHE_CONTENT_HASH_KEY)));
+        watchChangesCheckBox.setSelected(!"false".equals(preferences.get(WATCH_CHANGES_KEY)));
+
+        // Default: "deferred"
+        int nestedArchivesIndex = Arrays.asList(NESTED_ARCHIVES_VALUES).indexOf(preferences.get(NESTED_ARCHIVES_KEY));
+        nestedArchivesComboBox.setSelectedIndex((nestedArchivesIndex == -1) ? 1 : nestedArchivesIndex);
+
+        preference = preferences.get(CACHE_MAXIMUM_SIZE_KEY);
+
+        cacheMaximumSizeTextField.setText((preference != null) ? preference : "256");
+        cacheMaximumSizeTextField.setCaretPosition(cacheMaximumSizeTextField.getText().length());
+
+        onCacheEnabledChange();
     }
 
     @Override
     public void savePreferences(Map<String, String> preferences) {
         preferences.put(MAXIMUM_DEPTH_KEY, maximumDepthTextField.getText());
+        preferences.put(CACHE_ENABLED_KEY, Boolean.toString(cacheEnabledCheckBox.isSelected()));
+        preferences.put(CACHE_CONTENT_HASH_KEY, Boolean.toString(cacheContentHashCheckBox.isSelected()));
+        preferences.put(CACHE_MAXIMUM_SIZE_KEY, cacheMaximumSizeTextField.getText());
+        preferences.put(WATCH_CHANGES_KEY, Boolean.toString(watchChangesCheckBox.isSelected()));
+        preferences.put(NESTED_ARCHIVES_KEY, NESTED_ARCHIVES_VALUES[nestedArchivesComboBox.getSelectedIndex()]);
     }
 
     @Override
     public boolean arePreferencesValid() {
+        return isMaximumDepthValid() && isCacheMaximumSizeValid();
+    }
+
+    protected boolean isMaximumDepthValid() {
+        return isValid(maximumDepthTextField, MAX_VALUE);
+    }
+
+    protected boolean isCacheMaximumSizeValid() {
+        return isValid(cacheMaximumSizeTextField, MAX_CACHE_SIZE_VALUE);
+    }
+
+    protected static boolean isValid(JTextField textField, int maxValue) {
         try {
-            int i = Integer.valueOf(maximumDepthTextField.getText());
-            return (i > 0) && (i <= MAX_VALUE);
+            int i = Integer.valueOf(textField.getText());
+            return (i > 0) && (i <= maxValue);
         } catch (NumberFormatException e) {
             assert ExceptionUtil.printStackTrace(e);
             return false;
@@ -82,10 +155,18 @@ public class DirectoryIndexerPreferencesProvider extends JPanel implements Prefe
     @Override public void changedUpdate(DocumentEvent e) { onTextChange(); }
 
     public void onTextChange() {
-        maximumDepthTextField.setBackground(arePreferencesValid() ? defaultBackgroundColor : errorBackgroundColor);
+        maximumDepthTextField.setBackground(isMaximumDepthValid() ? defaultBackgroundColor : errorBackgroundColor);
+        cacheMaximumSizeTextField.setBackground(isCacheMaximumSizeValid() ? defaultBackgroundColor : errorBackgroundColor);
 
         if (listener != null) {
             listener.preferencesPanelChanged(this);
         }
     }
+
+    protected void onCacheEnabledChange() {
+        boolean enabled = cacheEnabledCheckBox.isSelected();
+
+        cacheContentHashCheckBox.setEnabled(enabled);
+        cacheMaximumSizeTextField.setEnabled(enabled);
+    }
 }
@@ -12,6 +12,7 @@ import org.jd.gui.api.model.Container;
 import org.jd.gui.service.preferencespanel.MavenOrgSourceLoaderPreferencesProvider;
 import org.jd.gui.spi.SourceLoader;
 import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.io.TempStorage;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -31,8 +32,9 @@ public class MavenOrgSourceLoaderProvider implements SourceLoader {
     protected static final String MAVENORG_LOAD_URL_PREFIX = "https://search.maven.org/classic/remotecontent?filepath=";
     protected static final String MAVENORG_LOAD_URL_SUFFIX = "-sources.jar";
 
-    protected HashSet<Container.Entry> failed = new HashSet<>();
-    protected HashMap<Container.Entry, File> cache = new HashMap<>();
+    // Keyed by archive entry: forgotten with the closed containers
+    protected Set<Container.Entry> failed = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    protected Map<Container.Entry, File> cache = Collections.synchronizedMap(new WeakHashMap<>());
 
     @Override
     public String getSource(API api, Container.Entry entry) {
@@ -44,7 +46,7 @@ public class MavenOrgSourceLoaderProvider implements SourceLoader {
             }
 
             if (accepted(filters, entry.getPath())) {
-                return searchSource(entry, cache.get(entry.getContainer().getRoot().getParent()));
+                return searchSource(entry, getCachedSourceJarFile(entry.getContainer().getRoot().getParent()));
             }
         }
 
@@ -112,9 +114,23 @@ public class MavenOrgSourceLoaderProvider implements SourceLoader {
         return null;
     }
 
+    protected File getCachedSourceJarFile(Container.Entry entry) {
+        File file = cache.get(entry);
+
+        if ((file != null) && !file.exists()) {
+            // Deleted by the temporary storage: downloaded again on the next 'loadSource' call
+            cache.remove(entry);
+            return null;
+        }
+
+        return file;
+    }
+
     protected File downloadSourceJarFile(Container.Entry entry) {
-        if (cache.containsKey(entry)) {
-            return cache.get(entry);
+        File cachedFile = getCachedSourceJarFile(entry);
+
+        if (cachedFile != null) {
+            return cachedFile;
         }
 
         if (!entry.isDirectory() && !failed.contains(entry)) {
@@ -202,10 +218,8 @@ public class MavenOrgSourceLoaderProvider implements SourceLoader {
                     // Load source
                     String filePath = groupId.replace('.', '/') + '/' + artifactId + '/' + version + '/' + artifactId + '-' + version;
                     URL loadUrl = new URL(MAVENORG_LOAD_URL_PREFIX + filePath + MAVENORG_LOAD_URL_SUFFIX);
-                    File tmpFile = File.createTempFile("jd-gui.tmp.", '.' + groupId + '_' + artifactId + '_' + version + "-sources.jar");
-
-                    tmpFile.delete();
-                    tmpFile.deleteOnExit();
+                    TempStorage tempStorage = TempStorage.getInstance();
+                    File tmpFile = tempStorage.createTempFile(entry, "jd-gui.tmp.", '.' + groupId + '_' + artifactId + '_' + version + "-sources.jar");
 
                     try (InputStream is = new BufferedInputStream(loadUrl.openStream()); OutputStream os = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
                         int read = is.read(buffer);
@@ -213,8 +227,12 @@ public class MavenOrgSourceLoaderProvider implements SourceLoader {
                             os.write(buffer, 0, read);
                             read = is.read(buffer);
                         }
+                    } catch (IOException e) {
+                        tempStorage.delete(tmpFile);
+                        throw e;
                     }
 
+                    tempStorage.written(tmpFile);
                     cache.put(entry, tmpFile);
                     return tmpFile;
                 }
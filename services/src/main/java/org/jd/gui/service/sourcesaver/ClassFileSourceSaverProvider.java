@@ -10,7 +10,8 @@ package org.jd.gui.service.sourcesaver;
 import org.jd.core.v1.ClassFileToJavaSourceDecompiler;
 import org.jd.gui.api.API;
 import org.jd.gui.api.model.Container;
-import org.jd.gui.util.decompiler.ContainerLoader;
+import org.jd.gui.util.decompiler.CompositeLoader;
+import org.jd.gui.util.decompiler.DecompilationCache;
 import org.jd.gui.util.decompiler.LineNumberStringBuilderPrinter;
 import org.jd.gui.util.exception.ExceptionUtil;
 import org.jd.gui.util.io.NewlineOutputStream;
@@ -31,9 +32,6 @@ public class ClassFileSourceSaverProvider extends AbstractSourceSaverProvider {
 
     protected static final ClassFileToJavaSourceDecompiler DECOMPILER = new ClassFileToJavaSourceDecompiler();
 
-    protected ContainerLoader loader = new ContainerLoader();
-    protected LineNumberStringBuilderPrinter printer = new LineNumberStringBuilderPrinter();
-
     @Override public String[] getSelectors() { return appendSelectors("*:file:*.class"); }
 
     @Override
@@ -63,11 +61,35 @@ public class ClassFileSourceSaverProvider extends AbstractSourceSaverProvider {
 
     @Override
     public void saveContent(API api, Controller controller, Listener listener, Path rootPath, Path path, Container.Entry entry) {
-        try {
+        boolean reported = (path.toString().indexOf('$') == -1);
+
+        if (controller instanceof SourceSaverPipeline) {
+            // Decompiled by a worker thread of the pipeline
+            ((SourceSaverPipeline)controller).submit(path, () -> getContent(api, listener, path, entry), reported);
+        } else {
             // Call listener
-            if (path.toString().indexOf('$') == -1) {
+            if (reported) {
                 listener.pathSaved(path);
             }
+
+            try {
+                Files.write(path, getContent(api, listener, path, entry));
+            } catch (IOException e) {
+                assert ExceptionUtil.printStackTrace(e);
+            }
+        }
+    }
+
+    /**
+     * Decompile 'entry', then report the decompilation of 'path' to 'listener'. Called concurrently by the workers of a
+     * pipeline.
+     *
+     * @return the source, or an error message
+     */
+    public byte[] getContent(API api, Listener listener, Path path, Container.Entry entry) {
+        long start = System.nanoTime();
+
+        try {
             // Init preferences
             Map<String, String> preferences = api.getPreferences();
             boolean realignmentLineNumbers = getPreferenceValue(preferences, REALIGN_LINE_NUMBERS, true);
@@ -78,20 +100,18 @@ public class ClassFileSourceSaverProvider extends AbstractSourceSaverProvider {
             configuration.put("realignLineNumbers", realignmentLineNumbers);
 
             // Init loader
-            loader.setEntry(entry);
+            CompositeLoader loader = new CompositeLoader(api, entry);
 
             // Init printer
+            LineNumberStringBuilderPrinter printer = new LineNumberStringBuilderPrinter();
             printer.setRealignmentLineNumber(realignmentLineNumbers);
             printer.setUnicodeEscape(unicodeEscape);
             printer.setShowLineNumbers(showLineNumbers);
 
-            // Format internal name
-            String entryPath = entry.getPath();
-            assert entryPath.endsWith(".class");
-            String entryInternalName = entryPath.substring(0, entryPath.length() - 6); // 6 = ".class".length()
+            assert entry.getPath().endsWith(".class");
 
-            // Decompile class file
-            DECOMPILER.decompile(loader, printer, entryInternalName, configuration);
+            // Decompile class file, or replay its cached decompilation
+            DecompilationCache.getInstance().decompile(preferences, DECOMPILER, loader, printer, entry, configuration);
 
             StringBuilder stringBuffer = printer.getStringBuffer();
 
@@ -128,19 +148,18 @@ public class ClassFileSourceSaverProvider extends AbstractSourceSaverProvider {
                 stringBuffer.append("\n */");
             }
 
-            try (PrintStream ps = new PrintStream(new NewlineOutputStream(Files.newOutputStream(path)), true, "UTF-8")) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(stringBuffer.length() + 1024);
+
+            try (PrintStream ps = new PrintStream(new NewlineOutputStream(baos), true, "UTF-8")) {
                 ps.print(stringBuffer.toString());
-            } catch (IOException e) {
-                assert ExceptionUtil.printStackTrace(e);
             }
+
+            listener.pathDecompiled(path, System.nanoTime() - start, null);
+            return baos.toByteArray();
         } catch (Throwable t) {
             assert ExceptionUtil.printStackTrace(t);
-
-            try (BufferedWriter writer = Files.newBufferedWriter(path, Charset.defaultCharset())) {
-                writer.write("// INTERNAL ERROR //");
-            } catch (IOException ee) {
-                assert ExceptionUtil.printStackTrace(ee);
-            }
+            listener.pathDecompiled(path, System.nanoTime() - start, t);
+            return "// INTERNAL ERROR //".getBytes(Charset.defaultCharset());
         }
     }
 
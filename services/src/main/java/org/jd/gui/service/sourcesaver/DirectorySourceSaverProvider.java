@@ -13,6 +13,7 @@ import org.jd.gui.spi.SourceSaver;
 import org.jd.gui.util.exception.ExceptionUtil;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
@@ -43,16 +44,43 @@ public class DirectorySourceSaverProvider extends AbstractSourceSaverProvider {
     public void save(API api, SourceSaver.Controller controller, SourceSaver.Listener listener, Path rootPath, Container.Entry entry) {
         Path path = rootPath.resolve(entry.getPath());
 
-        try {
-            Files.createDirectories(path);
+        if (controller instanceof SourceSaverPipeline) {
+            ((SourceSaverPipeline)controller).createDirectories(path);
             saveContent(api, controller, listener, rootPath, path, entry);
-        } catch (IOException e) {
-            assert ExceptionUtil.printStackTrace(e);
+        } else {
+            try {
+                Files.createDirectories(path);
+                saveContent(api, controller, listener, rootPath, path, entry);
+            } catch (IOException e) {
+                assert ExceptionUtil.printStackTrace(e);
+            }
         }
     }
 
     @Override
     public void saveContent(API api, SourceSaver.Controller controller, SourceSaver.Listener listener, Path rootPath, Path path, Container.Entry entry) {
+        if (controller instanceof SourceSaverPipeline) {
+            saveChildren(api, controller, listener, rootPath, entry);
+        } else {
+            // Root of the export: class files are decompiled in parallel
+            try (SourceSaverPipeline pipeline = new SourceSaverPipeline(controller, listener)) {
+                saveChildren(api, pipeline, pipeline, rootPath, entry);
+            } catch (IOException e) {
+                // Failure of a write, thrown to the caller of the export
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void saveArchive(API api, SourceSaver.Controller controller, SourceSaver.Listener listener, Path archivePath, Container.Entry entry) throws IOException {
+        // Streamed in one pass, without zip file system
+        try (SourceSaverPipeline pipeline = SourceSaverPipeline.newArchivePipeline(controller, listener, archivePath, api.getPreferences())) {
+            saveChildren(api, pipeline, pipeline, archivePath, entry);
+        }
+    }
+
+    protected void saveChildren(API api, SourceSaver.Controller controller, SourceSaver.Listener listener, Path rootPath, Container.Entry entry) {
         for (Container.Entry e : getChildren(entry)) {
             if (controller.isCancelled()) {
                 break;
@@ -13,6 +13,7 @@ import org.jd.gui.spi.SourceSaver;
 import org.jd.gui.util.exception.ExceptionUtil;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
@@ -35,18 +36,40 @@ public class FileSourceSaverProvider extends AbstractSourceSaverProvider {
 
     @Override
     public void saveContent(API api, SourceSaver.Controller controller, SourceSaver.Listener listener, Path rootPath, Path path, Container.Entry entry) {
-        listener.pathSaved(path);
+        if (controller instanceof SourceSaverPipeline) {
+            // Written in order with the decompiled sources
+            ((SourceSaverPipeline)controller).submit(path, () -> getContent(entry), true);
+        } else {
+            listener.pathSaved(path);
 
-        try (InputStream is = entry.getInputStream()) {
-            Files.copy(is, path, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            assert ExceptionUtil.printStackTrace(e);
+            try (InputStream is = entry.getInputStream()) {
+                Files.copy(is, path, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                assert ExceptionUtil.printStackTrace(e);
+
+                try (BufferedWriter writer = Files.newBufferedWriter(path, Charset.defaultCharset())) {
+                    writer.write("// INTERNAL ERROR //");
+                } catch (IOException ee) {
+                    assert ExceptionUtil.printStackTrace(ee);
+                }
+            }
+        }
+    }
+
+    protected static byte[] getContent(Container.Entry entry) {
+        try (InputStream is = entry.getInputStream(); ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[1024 * 4];
+            int len = is.read(buffer);
 
-            try (BufferedWriter writer = Files.newBufferedWriter(path, Charset.defaultCharset())) {
-                writer.write("// INTERNAL ERROR //");
-            } catch (IOException ee) {
-                assert ExceptionUtil.printStackTrace(ee);
+            while (len > 0) {
+                baos.write(buffer, 0, len);
+                len = is.read(buffer);
             }
+
+            return baos.toByteArray();
+        } catch (IOException e) {
+            assert ExceptionUtil.printStackTrace(e);
+            return "// INTERNAL ERROR //".getBytes(Charset.defaultCharset());
         }
     }
 }
@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.service.sourcesaver;
+
+import org.jd.gui.spi.SourceSaver;
+import org.jd.gui.util.exception.ExceptionUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Parallel export of the sources: the contents submitted by the traversal of the containers are computed by worker
+ * threads, then written in submission order by a single writer thread.<br>
+ * <br>
+ * The number of pending contents is bounded: 'submit' blocks while the writer is late. The pipeline is passed to the
+ * source savers as their controller and their listener; the progress is reported when a content is written.<br>
+ * <br>
+ * A pipeline created on an output stream streams the contents into a zip archive, in one pass: the paths are relative
+ * to the path of the archive, and the nested archives are written inside their entry.<br>
+ * <br>
+ * The first failure of a write stops the pipeline: it is reported as a cancellation to the traversal, the pending
+ * contents are skipped, and the failure is thrown by 'close'.<br>
+ * <br>
+ * System property 'jd-gui.saveAllSources.threads': number of worker threads, the number of processors by default.
+ */
+public class SourceSaverPipeline implements SourceSaver.Controller, SourceSaver.Listener, AutoCloseable {
+    public static final String COMPRESSION = "ClassFileSaverPreferences.compression";
+    public static final String[] COMPRESSION_VALUES = { "stored", "fastest", "default", "best" };
+    protected static final int[] COMPRESSION_LEVELS = { Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION };
+
+    protected static final int THREAD_COUNT = Math.max(1, Integer.getInteger("jd-gui.saveAllSources.threads", Runtime.getRuntime().availableProcessors()));
+    protected static final AtomicInteger PIPELINE_COUNT = new AtomicInteger();
+
+    protected static final int CONTENT = 0;
+    protected static final int DIRECTORY = 1;
+    protected static final int OPEN_ARCHIVE = 2;
+    protected static final int CLOSE_ARCHIVE = 3;
+
+    public interface ContentProducer {
+        /**
+         * @return the content to write, or null to write nothing
+         */
+        byte[] produce() throws Exception;
+    }
+
+    protected SourceSaver.Controller controller;
+    protected SourceSaver.Listener listener;
+    protected ExecutorService workers;
+    protected BlockingQueue<Task> tasks;
+    protected Thread writer;
+    protected long submittedCount;
+    protected long writtenCount;
+    // First failure of the writer or of the closing of the archive
+    protected volatile Throwable failure;
+
+    // Archives being written, the innermost first; used by the writer thread only
+    protected ArrayDeque<Archive> archives;
+    protected int level;
+
+    public SourceSaverPipeline(SourceSaver.Controller controller, SourceSaver.Listener listener) {
+        this(controller, listener, THREAD_COUNT);
+    }
+
+    public SourceSaverPipeline(SourceSaver.Controller controller, SourceSaver.Listener listener, int threadCount) {
+        String name = "jd-gui-source-saver-" + PIPELINE_COUNT.incrementAndGet();
+
+        this.controller = controller;
+        this.listener = listener;
+        this.tasks = new ArrayBlockingQueue<>(threadCount * 4);
+        this.workers = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, name + "-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::write, name + "-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @param archivePath path of the archive, root of the paths of the contents
+     * @param os          output stream of the archive, closed by 'close'
+     * @param compression one of COMPRESSION_VALUES; "stored" entries are not compressed
+     */
+    public SourceSaverPipeline(SourceSaver.Controller controller, SourceSaver.Listener listener, int threadCount, Path archivePath, OutputStream os, String compression) {
+        this(controller, listener, threadCount);
+
+        this.level = COMPRESSION_LEVELS[getCompressionIndex(compression)];
+        this.archives = new ArrayDeque<>();
+        this.archives.push(new Archive(archivePath, newZipOutputStream(os)));
+    }
+
+    /**
+     * @return a pipeline streaming the contents into the new archive 'archivePath'
+     */
+    public static SourceSaverPipeline newArchivePipeline(SourceSaver.Controller controller, SourceSaver.Listener listener, Path archivePath, Map<String, String> preferences) throws IOException {
+        OutputStream os = new BufferedOutputStream(Files.newOutputStream(archivePath), 64 * 1024);
+        return new SourceSaverPipeline(controller, listener, THREAD_COUNT, archivePath, os, preferences.get(COMPRESSION));
+    }
+
+    public static int getCompressionIndex(String compression) {
+        for (int i=0; i<COMPRESSION_VALUES.length; i++) {
+            if (COMPRESSION_VALUES[i].equals(compression)) {
+                return i;
+            }
+        }
+
+        // Default: "default"
+        return 2;
+    }
+
+    /**
+     * @return true if the contents are streamed into an archive
+     */
+    public boolean isStreaming() { return archives != null; }
+
+    /**
+     * Compute a content on a worker thread, then write it to 'path'.
+     *
+     * @param reported true to report 'path' to the listener once written
+     */
+    public void submit(Path path, ContentProducer producer, boolean reported) {
+        if (!isCancelled()) {
+            FutureTask<byte[]> future = new FutureTask<>(() -> isCancelled() ? null : producer.produce());
+
+            workers.execute(future);
+            enqueue(new Task(CONTENT, path, reported, future));
+        }
+    }
+
+    /**
+     * Create a directory, in order with the written contents.
+     */
+    public void createDirectories(Path path) {
+        if (!isCancelled()) {
+            enqueue(new Task(DIRECTORY, path, false, null));
+        }
+    }
+
+    /**
+     * Start a nested archive, streaming pipelines only: the paths of the next contents are relative to 'path', until
+     * 'closeArchive'.
+     */
+    public void openArchive(Path path) {
+        enqueue(new Task(OPEN_ARCHIVE, path, false, null));
+    }
+
+    public void closeArchive(Path path) {
+        enqueue(new Task(CLOSE_ARCHIVE, path, false, null));
+    }
+
+    /**
+     * Wait until the submitted contents are written, before closing their file system for example.
+     */
+    public synchronized void flush() {
+        try {
+            while (writtenCount < submittedCount) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            assert ExceptionUtil.printStackTrace(e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flush 'controller' if it is a pipeline.
+     */
+    public static void flush(SourceSaver.Controller controller) {
+        if (controller instanceof SourceSaverPipeline) {
+            ((SourceSaverPipeline)controller).flush();
+        }
+    }
+
+    /**
+     * Wait until the submitted contents are written, then stop the threads and close the archive.
+     *
+     * @throws IOException the first failure of a write or of the closing of the archive
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            tasks.put(Task.END);
+            writer.join();
+        } catch (InterruptedException e) {
+            assert ExceptionUtil.printStackTrace(e);
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+
+            if (archives != null) {
+                try {
+                    archives.getLast().zos.close();
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+        }
+
+        Throwable t = failure;
+
+        if (t != null) {
+            throw (t instanceof IOException) ? (IOException)t : new IOException(t);
+        }
+    }
+
+    protected void enqueue(Task task) {
+        synchronized (this) {
+            submittedCount++;
+        }
+
+        try {
+            tasks.put(task);
+        } catch (InterruptedException e) {
+            assert ExceptionUtil.printStackTrace(e);
+
+            if (task.future != null) {
+                task.future.cancel(false);
+            }
+
+            written();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void write() {
+        try {
+            for (Task task = tasks.take(); task != Task.END; task = tasks.take()) {
+                try {
+                    if (failure != null) {
+                        // Skipped, the producers are never blocked
+                        if (task.future != null) {
+                            task.future.cancel(false);
+                        }
+                    } else if (archives == null) {
+                        writeFile(task);
+                    } else {
+                        writeEntry(task);
+                    }
+                } catch (ExecutionException|CancellationException e) {
+                    // Content not computed, reported to the listener by the source saver
+                    assert ExceptionUtil.printStackTrace(e);
+                } catch (Throwable t) {
+                    // I/O errors, and the unchecked exceptions of the listener: the writer thread keeps running
+                    failed(t);
+                }
+
+                written();
+            }
+        } catch (InterruptedException e) {
+            assert ExceptionUtil.printStackTrace(e);
+        }
+    }
+
+    protected void writeFile(Task task) throws ExecutionException, InterruptedException, IOException {
+        if (task.type == DIRECTORY) {
+            Files.createDirectories(task.path);
+        } else {
+            byte[] content = task.future.get();
+
+            if ((content != null) && !controller.isCancelled()) {
+                Files.write(task.path, content);
+
+                if (task.reported) {
+                    pathSaved(task.path);
+                }
+            }
+        }
+    }
+
+    protected void writeEntry(Task task) throws ExecutionException, InterruptedException, IOException {
+        Archive archive = archives.peek();
+        ZipOutputStream zos = archive.zos;
+        String name = archive.getEntryName(task.path);
+
+        switch (task.type) {
+            case CONTENT:
+                byte[] content = task.future.get();
+
+                if ((content != null) && !controller.isCancelled()) {
+                    // Same name saved twice, a source next to its class file for example: the first one is kept
+                    if (archive.names.add(name)) {
+                        zos.putNextEntry(newZipEntry(name, content));
+                        zos.write(content);
+                        zos.closeEntry();
+                    }
+
+                    if (task.reported) {
+                        pathSaved(task.path);
+                    }
+                }
+                break;
+            case DIRECTORY:
+                if (!name.isEmpty() && archive.names.add(name + '/')) {
+                    zos.putNextEntry(newZipEntry(name + '/', new byte[0]));
+                    zos.closeEntry();
+                }
+                break;
+            case OPEN_ARCHIVE:
+                if (archive.names.add(name)) {
+                    // Deflated, even if stored: the size of the nested archive is unknown
+                    ZipEntry zipEntry = new ZipEntry(name);
+                    zipEntry.setMethod(ZipEntry.DEFLATED);
+                    zos.putNextEntry(zipEntry);
+                    archives.push(new Archive(task.path, newZipOutputStream(new FilterOutputStream(zos) {
+                        @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+                        // Close the nested archive, not its entry
+                        @Override public void close() throws IOException { flush(); }
+                    })));
+                } else {
+                    // Name already written: the nested archive is discarded
+                    archives.push(new Archive(task.path, newZipOutputStream(new OutputStream() {
+                        @Override public void write(int b) {}
+                        @Override public void write(byte[] b, int off, int len) {}
+                    }), true));
+                }
+                break;
+            case CLOSE_ARCHIVE:
+                // Not opened if its entry failed
+                if (archive.rootPath.equals(task.path) && (archives.size() > 1)) {
+                    archives.pop();
+                    zos.close();
+
+                    if (!archive.discarded) {
+                        archives.peek().zos.closeEntry();
+                    }
+                }
+                break;
+        }
+    }
+
+    protected ZipOutputStream newZipOutputStream(OutputStream os) {
+        ZipOutputStream zos = new ZipOutputStream(os);
+        zos.setLevel(level);
+        return zos;
+    }
+
+    protected ZipEntry newZipEntry(String name, byte[] content) {
+        ZipEntry zipEntry = new ZipEntry(name);
+
+        if (level == Deflater.NO_COMPRESSION) {
+            // Stored: size and checksum before the content
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(content.length);
+            zipEntry.setCrc(crc.getValue());
+        }
+
+        return zipEntry;
+    }
+
+    protected synchronized void written() {
+        writtenCount++;
+        notifyAll();
+    }
+
+    protected synchronized void failed(Throwable t) {
+        assert ExceptionUtil.printStackTrace(t);
+
+        if (failure == null) {
+            failure = t;
+        }
+    }
+
+    // --- SourceSaver.Controller --- //
+    @Override public boolean isCancelled() { return (failure != null) || controller.isCancelled(); }
+
+    // --- SourceSaver.Listener --- //
+    @Override
+    public void pathSaved(Path path) {
+        // Called by the traversal thread and the writer thread
+        synchronized (listener) {
+            listener.pathSaved(path);
+        }
+    }
+
+    @Override
+    public void pathDecompiled(Path path, long nanos, Throwable failure) {
+        // Called by the worker threads
+        synchronized (listener) {
+            listener.pathDecompiled(path, nanos, failure);
+        }
+    }
+
+    protected static class Task {
+        protected static final Task END = new Task(-1, null, false, null);
+
+        protected int type;
+        protected Path path;
+        protected boolean reported;
+        protected FutureTask<byte[]> future;
+
+        public Task(int type, Path path, boolean reported, FutureTask<byte[]> future) {
+            this.type = type;
+            this.path = path;
+            this.reported = reported;
+            this.future = future;
+        }
+    }
+
+    protected static class Archive {
+        protected Path rootPath;
+        protected ZipOutputStream zos;
+        protected boolean discarded;
+        // Names of the written entries, with a trailing '/' for the directories
+        protected HashSet<String> names = new HashSet<>();
+
+        public Archive(Path rootPath, ZipOutputStream zos) {
+            this(rootPath, zos, false);
+        }
+
+        public Archive(Path rootPath, ZipOutputStream zos, boolean discarded) {
+            this.rootPath = rootPath;
+            this.zos = zos;
+            this.discarded = discarded;
+        }
+
+        /**
+         * @return the path relative to the root of the archive, with '/' separators
+         */
+        public String getEntryName(Path path) {
+            StringBuilder sb = new StringBuilder();
+
+            for (Path name : rootPath.relativize(path)) {
+                if (sb.length() > 0) {
+                    sb.append('/');
+                }
+                sb.append(name.toString());
+            }
+
+            return sb.toString();
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.jd.gui.api.API;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.spi.SourceSaver;
 import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.io.TempStorage;
 
 import java.io.File;
 import java.net.URI;
@@ -26,6 +27,14 @@ public class ZipFileSourceSaverProvider extends DirectorySourceSaverProvider {
 
     @Override
     public void save(API api, SourceSaver.Controller controller, SourceSaver.Listener listener, Path rootPath, Container.Entry entry) {
+        if ((controller instanceof SourceSaverPipeline) && ((SourceSaverPipeline)controller).isStreaming()) {
+            saveNestedArchive(api, (SourceSaverPipeline)controller, rootPath, entry);
+            return;
+        }
+
+        // Write the pending sources before the archive
+        SourceSaverPipeline.flush(controller);
+
         try {
             String sourcePath = getSourcePath(entry);
             Path path = rootPath.resolve(sourcePath);
@@ -40,28 +49,60 @@ public class ZipFileSourceSaverProvider extends DirectorySourceSaverProvider {
             if (tmpSourceFile != null) {
                 Files.copy(tmpSourceFile.toPath(), path);
             } else {
-                File tmpFile = File.createTempFile("jd-gui.", ".tmp.zip");
-
-                tmpFile.delete();
-                tmpFile.deleteOnExit();
-
-                URI tmpFileUri = tmpFile.toURI();
-                URI tmpArchiveUri = new URI("jar:" + tmpFileUri.getScheme(), tmpFileUri.getHost(), tmpFileUri.getPath() + "!/", null);
-
-                HashMap<String, String> env = new HashMap<>();
-                env.put("create", "true");
-
-                FileSystem tmpArchiveFs = FileSystems.newFileSystem(tmpArchiveUri, env);
-                Path tmpArchiveRootPath = tmpArchiveFs.getPath("/");
-
-                saveContent(api, controller, listener, tmpArchiveRootPath, tmpArchiveRootPath, entry);
-
-                tmpArchiveFs.close();
-
-                Files.move(tmpFile.toPath(), path);
+                TempStorage tempStorage = TempStorage.getInstance();
+                File tmpFile = tempStorage.createTempFile(entry, "jd-gui.", ".tmp.zip");
+
+                try {
+                    // Created by the zip file system
+                    tmpFile.delete();
+
+                    URI tmpFileUri = tmpFile.toURI();
+                    URI tmpArchiveUri = new URI("jar:" + tmpFileUri.getScheme(), tmpFileUri.getHost(), tmpFileUri.getPath() + "!/", null);
+
+                    HashMap<String, String> env = new HashMap<>();
+                    env.put("create", "true");
+
+                    try (FileSystem tmpArchiveFs = FileSystems.newFileSystem(tmpArchiveUri, env)) {
+                        Path tmpArchiveRootPath = tmpArchiveFs.getPath("/");
+                        // Report the decompiled sources at their path in the saved archive
+                        SourceSaver.Listener tmpArchiveListener = new SourceSaver.Listener() {
+                            @Override public void pathSaved(Path p) { listener.pathSaved(p); }
+
+                            @Override
+                            public void pathDecompiled(Path p, long nanos, Throwable failure) {
+                                listener.pathDecompiled(path.resolve(tmpArchiveRootPath.relativize(p).toString()), nanos, failure);
+                            }
+                        };
+
+                        saveContent(api, controller, tmpArchiveListener, tmpArchiveRootPath, tmpArchiveRootPath, entry);
+                        // Write the pending sources before closing the archive
+                        SourceSaverPipeline.flush(controller);
+                    }
+
+                    Files.move(tmpFile.toPath(), path);
+                } finally {
+                    // Deleted if not moved
+                    tempStorage.delete(tmpFile);
+                }
             }
         } catch (Exception e) {
             assert ExceptionUtil.printStackTrace(e);
         }
     }
+
+    /**
+     * Write the archive in the archive streamed by 'pipeline', without temporary file.
+     */
+    protected void saveNestedArchive(API api, SourceSaverPipeline pipeline, Path rootPath, Container.Entry entry) {
+        Path path = rootPath.resolve(getSourcePath(entry));
+        File sourceFile = api.loadSourceFile(entry);
+
+        if (sourceFile != null) {
+            pipeline.submit(path, () -> Files.readAllBytes(sourceFile.toPath()), false);
+        } else {
+            pipeline.openArchive(path);
+            saveChildren(api, pipeline, pipeline, path, entry);
+            pipeline.closeArchive(path);
+        }
+    }
 }
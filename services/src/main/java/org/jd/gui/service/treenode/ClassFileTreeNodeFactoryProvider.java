@@ -14,6 +14,7 @@ import org.jd.gui.api.model.Container;
 import org.jd.gui.util.exception.ExceptionUtil;
 import org.jd.gui.view.component.DynamicPage;
 import org.jd.gui.view.data.TreeNodeBean;
+import org.jd.gui.util.io.EntryContentCache;
 
 import javax.swing.*;
 import javax.swing.tree.DefaultMutableTreeNode;
@@ -70,7 +71,7 @@ public class ClassFileTreeNodeFactoryProvider extends AbstractTypeFileTreeNodeFa
             tip.append(location);
             tip.append("<br>Java compiler version: ");
 
-            try (InputStream is = entry.getInputStream()) {
+            try (InputStream is = EntryContentCache.getInstance().getInputStream(entry)) {
                 is.skip(4); // Skip magic number
                 int minorVersion = readUnsignedShort(is);
                 int majorVersion = readUnsignedShort(is);
@@ -8,15 +8,15 @@
 package org.jd.gui.service.type;
 
 import org.jd.gui.api.API;
+import org.jd.gui.api.feature.ContainerEntryLocatable;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.api.model.Type;
 import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.io.EntryContentCache;
 import org.objectweb.asm.*;
 
 import javax.swing.*;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -33,8 +33,8 @@ public class ClassFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
         }
     }
 
-    // Create cache
-    protected Cache<URI, JavaType> cache = new Cache<>();
+    // Create cache, keyed by entry: a modified file is a new entry
+    protected Cache<Container.Entry, JavaType> cache = new Cache<>();
 
     @Override public String[] getSelectors() { return appendSelectors("*:file:*.class"); }
 
@@ -45,15 +45,15 @@ public class ClassFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
 
     @Override
     public Type make(API api, Container.Entry entry, String fragment) {
-        URI key = entry.getUri();
+        Container.Entry key = entry;
 
         if (cache.containsKey(key)) {
             return cache.get(key);
         } else {
             JavaType type;
 
-            try (InputStream is = entry.getInputStream()) {
-                ClassReader classReader = new ClassReader(is);
+            try {
+                ClassReader classReader = new ClassReader(EntryContentCache.getInstance().getBytes(entry));
 
                 if ((fragment != null) && (fragment.length() > 0)) {
                     // Search type name in fragment. URI format : see jd.gui.api.feature.UriOpener
@@ -72,22 +72,15 @@ public class ClassFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
                             if (entry.getPath().endsWith(entryTypePath)) {
                                 // Entry path ends with the internal class name
                                 String pathToFound = entry.getPath().substring(0, entry.getPath().length() - entryTypePath.length()) + fragmentTypePath;
-                                Container.Entry entryFound = null;
-
-                                for (Container.Entry e : entry.getParent().getChildren()) {
-                                    if (e.getPath().equals(pathToFound)) {
-                                        entryFound = e;
-                                        break;
-                                    }
-                                }
+                                Container.Entry entryFound = getSibling(entry, pathToFound);
 
                                 if (entryFound == null)
                                     return null;
 
                                 entry = entryFound;
 
-                                try (InputStream is2 = entry.getInputStream()) {
-                                    classReader = new ClassReader(is2);
+                                try {
+                                    classReader = new ClassReader(EntryContentCache.getInstance().getBytes(entry));
                                 } catch (IOException e) {
                                     assert ExceptionUtil.printStackTrace(e);
                                     return null;
@@ -119,6 +112,31 @@ public class ClassFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
         }
     }
 
+    protected static Container.Entry getSibling(Container.Entry entry, String path) {
+        Container container = entry.getContainer();
+
+        if (container instanceof ContainerEntryLocatable) {
+            String entryPath = entry.getPath();
+            int index = entryPath.lastIndexOf('/');
+
+            if ((path.lastIndexOf('/') == index) && path.regionMatches(0, entryPath, 0, index + 1)) {
+                Container.Entry sibling = ((ContainerEntryLocatable)container).getEntry(path);
+
+                if ((sibling != null) && (sibling.getParent() == entry.getParent())) {
+                    return sibling;
+                }
+            }
+        } else {
+            for (Container.Entry e : entry.getParent().getChildren()) {
+                if (e.getPath().equals(path)) {
+                    return e;
+                }
+            }
+        }
+
+        return null;
+    }
+
     static class JavaType implements Type {
         protected Container.Entry entry;
         protected int access;
@@ -156,8 +174,8 @@ public class ClassFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
                         Container.Entry innerEntry = getEntry(name);
 
                         if (innerEntry != null) {
-                            try (InputStream is = innerEntry.getInputStream()) {
-                                ClassReader classReader = new ClassReader(is);
+                            try {
+                                ClassReader classReader = new ClassReader(EntryContentCache.getInstance().getBytes(innerEntry));
                                 if (innerTypes == null) {
                                     innerTypes = new ArrayList<>();
                                 }
@@ -248,8 +266,8 @@ public class ClassFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
                 Container.Entry entry = getEntry(name);
 
                 if (entry != null) {
-                    try (InputStream is = entry.getInputStream()) {
-                        ClassReader classReader = new ClassReader(is);
+                    try {
+                        ClassReader classReader = new ClassReader(EntryContentCache.getInstance().getBytes(entry));
                         InnerClassVisitor classVisitor = new InnerClassVisitor(name);
 
                         classReader.accept(classVisitor, ClassReader.SKIP_CODE|ClassReader.SKIP_DEBUG|ClassReader.SKIP_FRAMES);
@@ -270,15 +288,7 @@ public class ClassFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
         }
 
         protected Container.Entry getEntry(String typeName) {
-            String pathToFound = typeName + ".class";
-
-            for (Container.Entry entry : entry.getParent().getChildren()) {
-                if (entry.getPath().equals(pathToFound)) {
-                    return entry;
-                }
-            }
-
-            return null;
+            return getSibling(entry, typeName + ".class");
         }
 
         @Override public int getFlags() { return access; }
@@ -22,7 +22,6 @@ import org.jd.gui.util.parser.antlr.JavaParser;
 import javax.swing.*;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
 import java.util.*;
 
 public class JavaFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
@@ -32,8 +31,8 @@ public class JavaFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
         ANTLRJavaParser.parse(new ANTLRInputStream("class EarlyLoading{}"), new Listener(null));
     }
 
-    // Create cache
-    protected Cache<URI, Listener> cache = new Cache<>();
+    // Create cache, keyed by entry: a modified file is a new entry
+    protected Cache<Container.Entry, Listener> cache = new Cache<>();
 
     @Override public String[] getSelectors() { return appendSelectors("*:file:*.java"); }
 
@@ -72,7 +71,7 @@ public class JavaFileTypeFactoryProvider extends AbstractTypeFactoryProvider {
     }
 
     protected Listener getListener(Container.Entry entry) {
-        URI key = entry.getUri();
+        Container.Entry key = entry;
 
         if (cache.containsKey(key)) {
             return cache.get(key);
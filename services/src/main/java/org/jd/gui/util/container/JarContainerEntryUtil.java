@@ -10,11 +10,11 @@ package org.jd.gui.util.container;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.model.container.ContainerEntryComparator;
 import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.io.EntryContentCache;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Opcodes;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -91,8 +91,8 @@ public class JarContainerEntryUtil {
     }
 
     protected static void populateInnerTypePaths(final HashSet<String> innerTypePaths, Container.Entry entry) {
-        try (InputStream is = entry.getInputStream()) {
-            ClassReader classReader = new ClassReader(is);
+        try {
+            ClassReader classReader = new ClassReader(EntryContentCache.getInstance().getBytes(entry));
             String p = entry.getPath();
             final String prefixPath = p.substring(0, p.length() - classReader.getClassName().length() - 6);
 
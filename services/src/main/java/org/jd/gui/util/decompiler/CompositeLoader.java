@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.decompiler;
+
+import org.jd.gui.api.API;
+import org.jd.gui.api.feature.ContainerEntryLocatable;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.util.index.IndexesUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Loader resolving the internal names in the open containers, through the type declaration indexes.<br>
+ * <br>
+ * The sources are searched in the order of the preference 'ClassFileDecompilerPreferences.loaderSearchOrder', a comma
+ * separated list of:
+ * <ul>
+ *     <li>'directory': the directory of the decompiled entry,</li>
+ *     <li>'container': the container of the decompiled entry,</li>
+ *     <li>'classpath': the other open containers, in the opening order.</li>
+ * </ul>
+ * The result of each lookup is kept, so that 'canLoad' followed by 'load' resolves the name once.
+ */
+public class CompositeLoader extends ContainerLoader {
+    public static final String SEARCH_ORDER = "ClassFileDecompilerPreferences.loaderSearchOrder";
+    public static final String DEFAULT_SEARCH_ORDER = "directory,container,classpath";
+
+    protected static final int DIRECTORY = 0;
+    protected static final int CONTAINER = 1;
+    protected static final int CLASSPATH = 2;
+
+    protected API api;
+    protected int[] searchOrder;
+    protected HashMap<String, Container.Entry> resolvedEntries = new HashMap<>();
+
+    public CompositeLoader(API api) {
+        this.api = api;
+        this.searchOrder = parseSearchOrder(api.getPreferences().get(SEARCH_ORDER));
+    }
+
+    public CompositeLoader(API api, Container.Entry entry) {
+        this(api);
+        this.entry = entry;
+    }
+
+    @Override
+    public void setEntry(Container.Entry e) {
+        if (entry != e) {
+            entry = e;
+            resolvedEntries.clear();
+        }
+    }
+
+    protected static int[] parseSearchOrder(String value) {
+        List<Integer> list = new ArrayList<>(3);
+
+        for (String source : ((value == null) || value.trim().isEmpty() ? DEFAULT_SEARCH_ORDER : value).split(",")) {
+            switch (source.trim()) {
+                case "directory": list.add(DIRECTORY); break;
+                case "container": list.add(CONTAINER); break;
+                case "classpath": list.add(CLASSPATH); break;
+            }
+        }
+
+        int[] order = new int[list.size()];
+
+        for (int i=0; i<order.length; i++) {
+            order[i] = list.get(i);
+        }
+
+        return order;
+    }
+
+    @Override
+    protected Container.Entry getEntry(String internalPath) {
+        Container.Entry e = resolvedEntries.get(internalPath);
+
+        if ((e == null) && !resolvedEntries.containsKey(internalPath)) {
+            e = resolve(internalPath);
+            resolvedEntries.put(internalPath, e);
+        }
+
+        return e;
+    }
+
+    protected Container.Entry resolve(String internalPath) {
+        List<Container.Entry> declarations = null;
+
+        for (int source : searchOrder) {
+            Container.Entry e;
+
+            if (source == DIRECTORY) {
+                e = super.getEntry(internalPath);
+            } else {
+                if (declarations == null) {
+                    declarations = IndexesUtil.findInternalTypeName(api.getCollectionOfFutureIndexes(), internalPath);
+                }
+                e = (source == CONTAINER) ? findInContainer(declarations, internalPath) : findInClassPath(declarations, internalPath);
+            }
+
+            if (e != null) {
+                return e;
+            }
+        }
+
+        return null;
+    }
+
+    protected Container.Entry findInContainer(List<Container.Entry> declarations, String internalPath) {
+        Container container = entry.getContainer();
+
+        for (Container.Entry declaration : declarations) {
+            if ((declaration.getContainer() == container) && isClassFile(declaration, internalPath)) {
+                return declaration;
+            }
+        }
+
+        // Container not indexed yet: look up the path from the root of the container
+        if (container instanceof ContainerEntryLocatable) {
+            return ((ContainerEntryLocatable)container).getEntry(internalPath + ".class");
+        }
+
+        return null;
+    }
+
+    protected Container.Entry findInClassPath(List<Container.Entry> declarations, String internalPath) {
+        Container container = entry.getContainer();
+
+        for (Container.Entry declaration : declarations) {
+            if ((declaration.getContainer() != container) && isClassFile(declaration, internalPath)) {
+                return declaration;
+            }
+        }
+
+        return null;
+    }
+
+    protected static boolean isClassFile(Container.Entry entry, String internalPath) {
+        // Path ending with '<internal name>.class', the index also references the outer class files of inner types
+        String path = entry.getPath();
+        int index = path.length() - internalPath.length() - 6; // 6 = ".class".length()
+
+        return (index >= 0) && ((index == 0) || (path.charAt(index - 1) == '/')) && path.endsWith(".class") && path.startsWith(internalPath, index);
+    }
+}
@@ -9,14 +9,13 @@ package org.jd.gui.util.decompiler;
 
 import org.jd.core.v1.api.loader.Loader;
 import org.jd.core.v1.api.loader.LoaderException;
+import org.jd.gui.api.feature.ContainerEntryLocatable;
 import org.jd.gui.api.model.Container;
+import org.jd.gui.util.io.EntryContentCache;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
 public class ContainerLoader implements Loader {
-    protected byte[] buffer = new byte[1024 * 4];
     protected Container.Entry entry;
 
     public ContainerLoader() { this.entry = null; }
@@ -32,6 +31,22 @@ public class ContainerLoader implements Loader {
         if (entry.getPath().equals(path)) {
             return entry;
         }
+
+        Container container = entry.getContainer();
+
+        if (container instanceof ContainerEntryLocatable) {
+            // Siblings only: check the package before the lookup
+            String entryPath = entry.getPath();
+            int index = entryPath.lastIndexOf('/');
+
+            if ((path.lastIndexOf('/') != index) || !path.regionMatches(0, entryPath, 0, index + 1)) {
+                return null;
+            }
+
+            Container.Entry e = ((ContainerEntryLocatable)container).getEntry(path);
+            return ((e != null) && (e.getParent() == entry.getParent())) ? e : null;
+        }
+
         for (Container.Entry e : entry.getParent().getChildren()) {
             if (e.getPath().equals(path)) {
                 return e;
@@ -40,6 +55,14 @@ public class ContainerLoader implements Loader {
         return null;
     }
 
+    protected byte[] load(Container.Entry entry) throws LoaderException {
+        try {
+            return EntryContentCache.getInstance().getBytes(entry);
+        } catch (IOException e) {
+            throw new LoaderException(e);
+        }
+    }
+
     // --- Loader --- //
     @Override
     public boolean canLoad(String internalName) {
@@ -53,18 +76,7 @@ public class ContainerLoader implements Loader {
         if (entry == null) {
             return null;
         } else {
-            try (InputStream input=entry.getInputStream(); ByteArrayOutputStream output=new ByteArrayOutputStream()) {
-                int len = input.read(buffer);
-
-                while (len > 0) {
-                    output.write(buffer, 0, len);
-                    len = input.read(buffer);
-                }
-
-                return output.toByteArray();
-            } catch (IOException e) {
-                throw new LoaderException(e);
-            }
+            return load(entry);
         }
     }
 }
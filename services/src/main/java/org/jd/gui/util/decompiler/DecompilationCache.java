@@ -0,0 +1,786 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.decompiler;
+
+import org.jd.core.v1.ClassFileToJavaSourceDecompiler;
+import org.jd.core.v1.api.loader.Loader;
+import org.jd.core.v1.api.loader.LoaderException;
+import org.jd.core.v1.api.printer.Printer;
+import org.jd.gui.api.feature.ContainerEntryLocatable;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.util.exception.ExceptionUtil;
+import org.jd.gui.util.io.EntryContentCache;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cache of the decompilation results, in memory and on disk, shared by the pages and the source savers.<br>
+ * <br>
+ * A result is the recording of the calls of the decompiler to its printer, replayed to any printer: the unicode
+ * escaping and the display of the line numbers are applied by the printer. A result is identified by the SHA-1 of the
+ * class file and of its inner class files, the configuration of the decompiler and the version of JD-Core, so a class
+ * shipped in several archives is decompiled once.<br>
+ * <br>
+ * The output also depends on the types resolved by the loader, which change with the open containers: each result
+ * records the types requested to the loader, with the checksums of their class files or their absence. A result is
+ * replayed only if the loader still resolves the same types to the same contents, otherwise the class is decompiled
+ * again and the result is replaced.<br>
+ * <br>
+ * The disk tier stores deflated recordings under the directory of the preference 'JdGuiPreferences.cacheDirectory',
+ * least recently used files being deleted first.<br>
+ * <br>
+ * System properties:
+ * <ul>
+ *     <li>'jd-gui.decompilationCache.size': maximum number of bytes in memory, 16 MB by default,</li>
+ *     <li>'jd-gui.decompilationCache.diskSize': maximum number of bytes on disk, 256 MB by default.</li>
+ * </ul>
+ */
+public class DecompilationCache {
+    public static final String CACHE_DIRECTORY = "JdGuiPreferences.cacheDirectory";
+
+    protected static final String JD_CORE_VERSION = "JdGuiPreferences.jdCoreVersion";
+
+    protected static final DecompilationCache DECOMPILATION_CACHE = new DecompilationCache(
+        Long.getLong("jd-gui.decompilationCache.size", 16L * 1024 * 1024), Long.getLong("jd-gui.decompilationCache.diskSize", 256L * 1024 * 1024));
+
+    protected static final int MAGIC = 0x4A444443; // "JDDC"
+    protected static final int VERSION = 2;
+    protected static final String EXTENSION = ".jdd";
+
+    // Recorded calls
+    protected static final int START = 0;
+    protected static final int END = 1;
+    protected static final int TEXT = 2;
+    protected static final int NUMERIC_CONSTANT = 3;
+    protected static final int STRING_CONSTANT = 4;
+    protected static final int KEYWORD = 5;
+    protected static final int DECLARATION = 6;
+    protected static final int REFERENCE = 7;
+    protected static final int INDENT = 8;
+    protected static final int UNINDENT = 9;
+    protected static final int START_LINE = 10;
+    protected static final int END_LINE = 11;
+    protected static final int EXTRA_LINE = 12;
+    protected static final int START_MARKER = 13;
+    protected static final int END_MARKER = 14;
+    // Arguments of the recorded calls: 'i' for an integer, 's' for a string
+    protected static final String[] ARGUMENTS = { "iii", "", "s", "s", "ss", "s", "isss", "issss", "", "", "i", "", "i", "i", "i" };
+
+    // Checksum of the types not found by the loader
+    protected static final long NOT_FOUND = -1L;
+
+    protected long maxWeight;
+    protected long maxDiskSize;
+
+    protected long weight;
+    protected LinkedHashMap<String, byte[]> recordings = new LinkedHashMap<>(16, 0.75F, true);
+    // Size of the disk tier, computed on the first store
+    protected long diskSize = -1;
+
+    protected long hitCount;
+    protected long diskHitCount;
+    protected long missCount;
+
+    public static DecompilationCache getInstance() { return DECOMPILATION_CACHE; }
+
+    public DecompilationCache(long maxWeight, long maxDiskSize) {
+        this.maxWeight = maxWeight;
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    /**
+     * Decompile 'entry' to 'printer', or replay its cached decompilation. The results of the failed decompilations, and
+     * of the decompilations during which a type could not be read, are not stored.
+     */
+    public void decompile(
+            Map<String, String> preferences, ClassFileToJavaSourceDecompiler decompiler, Loader loader, Printer printer,
+            Container.Entry entry, Map<String, Object> configuration) throws Exception {
+        String entryPath = entry.getPath();
+        String entryInternalName = entryPath.substring(0, entryPath.length() - 6); // 6 = ".class".length()
+        String key = getKey(preferences, entry, configuration);
+        byte[] recording = (key == null) ? null : get(preferences, key);
+
+        if ((recording != null) && hasSameDependencies(recording, loader)) {
+            replay(recording, printer);
+        } else if (key == null) {
+            decompiler.decompile(loader, printer, entryInternalName, configuration);
+        } else {
+            DependencyLoader dependencyLoader = new DependencyLoader(loader);
+            Recorder recorder = new Recorder(printer);
+
+            decompiler.decompile(dependencyLoader, recorder, entryInternalName, configuration);
+
+            if (!dependencyLoader.failed) {
+                put(preferences, key, recorder.toByteArray(dependencyLoader.checksums));
+            }
+        }
+    }
+
+    public synchronized long getHitCount() { return hitCount; }
+    public synchronized long getDiskHitCount() { return diskHitCount; }
+    public synchronized long getMissCount() { return missCount; }
+    public synchronized long getWeight() { return weight; }
+
+    public synchronized void clear() {
+        recordings.clear();
+        weight = 0;
+    }
+
+    protected static String getKey(Map<String, String> preferences, Container.Entry entry, Map<String, Object> configuration) {
+        try {
+            EntryContentCache contentCache = EntryContentCache.getInstance();
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = contentCache.getBytes(entry);
+
+            digest.update(bytes);
+
+            if (entry.getParent() != null) {
+                // Inner classes, decompiled with their outer class
+                TreeMap<String, Container.Entry> innerEntries = new TreeMap<>();
+                String className = new ClassReader(bytes).getClassName();
+
+                addInnerEntries(innerEntries, entry, bytes, className + '$');
+
+                for (Map.Entry<String, Container.Entry> innerEntry : innerEntries.entrySet()) {
+                    digest.update(innerEntry.getKey().getBytes(StandardCharsets.UTF_8));
+                    digest.update(contentCache.getBytes(innerEntry.getValue()));
+                }
+            }
+
+            digest.update(new TreeMap<>(configuration).toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(preferences.get(JD_CORE_VERSION)).getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder sb = new StringBuilder(40);
+
+            for (byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return sb.toString();
+        } catch (Exception e) {
+            assert ExceptionUtil.printStackTrace(e);
+            return null;
+        }
+    }
+
+    /**
+     * Add the inner classes of 'entry' declared by its 'InnerClasses' attribute, and their inner classes, without
+     * listing the package.
+     */
+    protected static void addInnerEntries(TreeMap<String, Container.Entry> innerEntries, Container.Entry entry, byte[] bytes, String innerPrefix) throws IOException {
+        ClassReader classReader = new ClassReader(bytes);
+        String className = classReader.getClassName();
+        String path = entry.getPath();
+
+        if (!path.endsWith(className + ".class")) {
+            return;
+        }
+
+        String prefixPath = path.substring(0, path.length() - className.length() - 6); // 6 = ".class".length()
+        ArrayList<String> innerPaths = new ArrayList<>();
+
+        classReader.accept(new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                if (name.startsWith(innerPrefix)) {
+                    innerPaths.add(prefixPath + name + ".class");
+                }
+            }
+        }, ClassReader.SKIP_CODE|ClassReader.SKIP_DEBUG|ClassReader.SKIP_FRAMES);
+
+        for (String innerPath : innerPaths) {
+            if (!innerEntries.containsKey(innerPath)) {
+                Container.Entry innerEntry = getSibling(entry, innerPath);
+
+                if (innerEntry != null) {
+                    byte[] innerBytes = EntryContentCache.getInstance().getBytes(innerEntry);
+
+                    innerEntries.put(innerPath, innerEntry);
+                    addInnerEntries(innerEntries, innerEntry, innerBytes, innerPrefix);
+                }
+            }
+        }
+    }
+
+    protected static Container.Entry getSibling(Container.Entry entry, String path) {
+        Container container = entry.getContainer();
+
+        if (container instanceof ContainerEntryLocatable) {
+            return ((ContainerEntryLocatable)container).getEntry(path);
+        }
+
+        for (Container.Entry sibling : entry.getParent().getChildren()) {
+            if (sibling.getPath().equals(path)) {
+                return sibling;
+            }
+        }
+
+        return null;
+    }
+
+    protected byte[] get(Map<String, String> preferences, String key) {
+        synchronized (this) {
+            byte[] recording = recordings.get(key);
+
+            if (recording != null) {
+                hitCount++;
+                return recording;
+            }
+        }
+
+        File file = getCacheFile(preferences, key);
+
+        if ((file != null) && file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if ((in.readInt() == MAGIC) && (in.readInt() == VERSION)) {
+                    int length = in.readInt();
+
+                    // 1032: maximum compression ratio of deflate
+                    if ((length < 0) || (length > file.length() * 1032L)) {
+                        throw new IOException("Invalid recording length");
+                    }
+
+                    byte[] recording = new byte[length];
+
+                    new DataInputStream(new InflaterInputStream(in)).readFully(recording);
+                    // A corrupted recording is deleted before being replayed to a printer
+                    check(recording);
+                    file.setLastModified(System.currentTimeMillis());
+
+                    synchronized (this) {
+                        diskHitCount++;
+                        putInMemory(key, recording);
+                    }
+
+                    return recording;
+                }
+            } catch (IOException | RuntimeException e) {
+                // Damaged file: deleted, decompiled again
+                assert ExceptionUtil.printStackTrace(e);
+            }
+
+            file.delete();
+        }
+
+        synchronized (this) {
+            missCount++;
+        }
+
+        return null;
+    }
+
+    protected void put(Map<String, String> preferences, String key, byte[] recording) {
+        synchronized (this) {
+            putInMemory(key, recording);
+        }
+
+        File file = getCacheFile(preferences, key);
+
+        if (file != null) {
+            File tmpFile = null;
+
+            try {
+                file.getParentFile().mkdirs();
+                // Unique per writer: the same class may be decompiled by several threads at the same time
+                tmpFile = Files.createTempFile(file.getParentFile().toPath(), key, ".tmp").toFile();
+
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(recording.length);
+                    out.flush();
+
+                    DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+                    deflater.write(recording);
+                    deflater.finish();
+                }
+
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                evict(file.getParentFile(), file.length());
+            } catch (IOException e) {
+                assert ExceptionUtil.printStackTrace(e);
+
+                if (tmpFile != null) {
+                    tmpFile.delete();
+                }
+            }
+        }
+    }
+
+    protected void putInMemory(String key, byte[] recording) {
+        if (recording.length <= maxWeight / 8) {
+            // Replace the result of the same class decompiled with other dependencies
+            byte[] previous = recordings.put(key, recording);
+
+            weight += recording.length - ((previous == null) ? 0 : previous.length);
+
+            Iterator<byte[]> iterator = recordings.values().iterator();
+
+            while (weight > maxWeight) {
+                weight -= iterator.next().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    protected static File getCacheFile(Map<String, String> preferences, String key) {
+        String directory = preferences.get(CACHE_DIRECTORY);
+        return (directory == null) ? null : new File(new File(directory, "decompilations"), key + EXTENSION);
+    }
+
+    /**
+     * Delete the least recently used files while the total size of the disk tier exceeds the maximum.
+     */
+    protected synchronized void evict(File directory, long addedSize) {
+        if (diskSize >= 0) {
+            diskSize += addedSize;
+
+            if (diskSize <= maxDiskSize) {
+                return;
+            }
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+
+        if (files != null) {
+            diskSize = 0;
+
+            for (File file : files) {
+                diskSize += file.length();
+            }
+
+            if (diskSize > maxDiskSize) {
+                Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+                for (File file : files) {
+                    long length = file.length();
+
+                    if (file.delete()) {
+                        diskSize -= length;
+
+                        // Evict down to 90%, not to list the directory on each store
+                        if (diskSize <= maxDiskSize * 9 / 10) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if 'loader' resolves the types requested during the recording to the same contents
+     */
+    protected static boolean hasSameDependencies(byte[] recording, Loader loader) {
+        try {
+            Reader reader = new Reader(recording);
+
+            for (int i=reader.readInt(); i>0; i--) {
+                String internalName = reader.readString();
+                long checksum = (reader.readInt() == 0) ? NOT_FOUND : reader.readInt() & 0xFFFFFFFFL;
+
+                if (getChecksum(loader, internalName) != checksum) {
+                    return false;
+                }
+            }
+
+            return true;
+        } catch (IOException | LoaderException e) {
+            assert ExceptionUtil.printStackTrace(e);
+            return false;
+        }
+    }
+
+    protected static long getChecksum(Loader loader, String internalName) throws LoaderException {
+        byte[] bytes = loader.canLoad(internalName) ? loader.load(internalName) : null;
+
+        if (bytes == null) {
+            return NOT_FOUND;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /**
+     * Read a recording without replaying it.
+     *
+     * @throws IOException if the recording is corrupted
+     */
+    protected static void check(byte[] recording) throws IOException {
+        Reader reader = new Reader(recording);
+
+        reader.skipDependencies();
+
+        while (reader.hasNext()) {
+            int call = reader.readInt();
+
+            if ((call < 0) || (call >= ARGUMENTS.length)) {
+                throw new IOException("Invalid recording");
+            }
+
+            for (int i=0, length=ARGUMENTS[call].length(); i<length; i++) {
+                if (ARGUMENTS[call].charAt(i) == 'i') {
+                    reader.readInt();
+                } else {
+                    reader.readString();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replay the calls recorded by a Recorder.
+     */
+    public static void replay(byte[] recording, Printer printer) throws IOException {
+        Reader reader = new Reader(recording);
+
+        reader.skipDependencies();
+
+        while (reader.hasNext()) {
+            switch (reader.readInt()) {
+                case START: printer.start(reader.readInt(), reader.readInt(), reader.readInt()); break;
+                case END: printer.end(); break;
+                case TEXT: printer.printText(reader.readString()); break;
+                case NUMERIC_CONSTANT: printer.printNumericConstant(reader.readString()); break;
+                case STRING_CONSTANT: printer.printStringConstant(reader.readString(), reader.readString()); break;
+                case KEYWORD: printer.printKeyword(reader.readString()); break;
+                case DECLARATION: printer.printDeclaration(reader.readInt(), reader.readString(), reader.readString(), reader.readString()); break;
+                case REFERENCE: printer.printReference(reader.readInt(), reader.readString(), reader.readString(), reader.readString(), reader.readString()); break;
+                case INDENT: printer.indent(); break;
+                case UNINDENT: printer.unindent(); break;
+                case START_LINE: printer.startLine(reader.readInt()); break;
+                case END_LINE: printer.endLine(); break;
+                case EXTRA_LINE: printer.extraLine(reader.readInt()); break;
+                case START_MARKER: printer.startMarker(reader.readInt()); break;
+                case END_MARKER: printer.endMarker(reader.readInt()); break;
+                default: throw new IOException("Invalid recording");
+            }
+        }
+    }
+
+    /**
+     * Printer recording the calls, then forwarding them to another printer. Integers are stored as variable length
+     * quantities; each string is stored once, then referenced by its index.
+     */
+    public static class Recorder implements Printer {
+        protected Printer printer;
+        protected ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        protected HashMap<String, Integer> strings = new HashMap<>();
+
+        public Recorder(Printer printer) {
+            this.printer = printer;
+        }
+
+        /**
+         * @param dependencies checksums of the class files of the types requested to the loader, by internal name,
+         *                     NOT_FOUND for the types not found
+         * @return the dependencies, with their own table of strings, followed by the recorded calls
+         */
+        public byte[] toByteArray(Map<String, Long> dependencies) {
+            Recorder header = new Recorder(null);
+
+            header.writeInt(dependencies.size());
+
+            for (Map.Entry<String, Long> dependency : dependencies.entrySet()) {
+                long checksum = dependency.getValue().longValue();
+
+                header.writeString(dependency.getKey());
+
+                if (checksum == NOT_FOUND) {
+                    header.writeInt(0);
+                } else {
+                    header.writeInt(1);
+                    header.writeInt((int)checksum);
+                }
+            }
+
+            byte[] calls = out.toByteArray();
+
+            header.out.write(calls, 0, calls.length);
+            return header.out.toByteArray();
+        }
+
+        protected void writeInt(int i) {
+            // Zigzag encoding
+            int v = (i << 1) ^ (i >> 31);
+
+            while ((v & ~0x7F) != 0) {
+                out.write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+
+            out.write(v);
+        }
+
+        protected void writeString(String s) {
+            if (s == null) {
+                writeInt(0);
+            } else {
+                Integer index = strings.get(s);
+
+                if (index == null) {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+                    strings.put(s, strings.size() + 1);
+                    writeInt(strings.size());
+                    writeInt(bytes.length);
+                    out.write(bytes, 0, bytes.length);
+                } else {
+                    writeInt(index);
+                }
+            }
+        }
+
+        // --- Printer --- //
+        @Override
+        public void start(int maxLineNumber, int majorVersion, int minorVersion) {
+            writeInt(START);
+            writeInt(maxLineNumber);
+            writeInt(majorVersion);
+            writeInt(minorVersion);
+            printer.start(maxLineNumber, majorVersion, minorVersion);
+        }
+
+        @Override
+        public void end() {
+            writeInt(END);
+            printer.end();
+        }
+
+        @Override
+        public void printText(String text) {
+            writeInt(TEXT);
+            writeString(text);
+            printer.printText(text);
+        }
+
+        @Override
+        public void printNumericConstant(String constant) {
+            writeInt(NUMERIC_CONSTANT);
+            writeString(constant);
+            printer.printNumericConstant(constant);
+        }
+
+        @Override
+        public void printStringConstant(String constant, String ownerInternalName) {
+            writeInt(STRING_CONSTANT);
+            writeString(constant);
+            writeString(ownerInternalName);
+            printer.printStringConstant(constant, ownerInternalName);
+        }
+
+        @Override
+        public void printKeyword(String keyword) {
+            writeInt(KEYWORD);
+            writeString(keyword);
+            printer.printKeyword(keyword);
+        }
+
+        @Override
+        public void printDeclaration(int type, String internalTypeName, String name, String descriptor) {
+            writeInt(DECLARATION);
+            writeInt(type);
+            writeString(internalTypeName);
+            writeString(name);
+            writeString(descriptor);
+            printer.printDeclaration(type, internalTypeName, name, descriptor);
+        }
+
+        @Override
+        public void printReference(int type, String internalTypeName, String name, String descriptor, String ownerInternalName) {
+            writeInt(REFERENCE);
+            writeInt(type);
+            writeString(internalTypeName);
+            writeString(name);
+            writeString(descriptor);
+            writeString(ownerInternalName);
+            printer.printReference(type, internalTypeName, name, descriptor, ownerInternalName);
+        }
+
+        @Override
+        public void indent() {
+            writeInt(INDENT);
+            printer.indent();
+        }
+
+        @Override
+        public void unindent() {
+            writeInt(UNINDENT);
+            printer.unindent();
+        }
+
+        @Override
+        public void startLine(int lineNumber) {
+            writeInt(START_LINE);
+            writeInt(lineNumber);
+            printer.startLine(lineNumber);
+        }
+
+        @Override
+        public void endLine() {
+            writeInt(END_LINE);
+            printer.endLine();
+        }
+
+        @Override
+        public void extraLine(int count) {
+            writeInt(EXTRA_LINE);
+            writeInt(count);
+            printer.extraLine(count);
+        }
+
+        @Override
+        public void startMarker(int type) {
+            writeInt(START_MARKER);
+            writeInt(type);
+            printer.startMarker(type);
+        }
+
+        @Override
+        public void endMarker(int type) {
+            writeInt(END_MARKER);
+            writeInt(type);
+            printer.endMarker(type);
+        }
+    }
+
+    /**
+     * Loader keeping the checksums of the class files of the requested types.
+     */
+    protected static class DependencyLoader implements Loader {
+        protected Loader loader;
+        protected LinkedHashMap<String, Long> checksums = new LinkedHashMap<>();
+        protected boolean failed = false;
+
+        public DependencyLoader(Loader loader) {
+            this.loader = loader;
+        }
+
+        @Override
+        public boolean canLoad(String internalName) {
+            Long checksum = checksums.get(internalName);
+
+            if (checksum == null) {
+                try {
+                    checksums.put(internalName, checksum=getChecksum(loader, internalName));
+                } catch (LoaderException e) {
+                    assert ExceptionUtil.printStackTrace(e);
+                    failed = true;
+                    return false;
+                }
+            }
+
+            return checksum.longValue() != NOT_FOUND;
+        }
+
+        @Override
+        public byte[] load(String internalName) throws LoaderException {
+            try {
+                byte[] bytes = loader.load(internalName);
+
+                if (!checksums.containsKey(internalName)) {
+                    CRC32 crc = new CRC32();
+
+                    if (bytes != null) {
+                        crc.update(bytes);
+                    }
+
+                    checksums.put(internalName, (bytes == null) ? NOT_FOUND : crc.getValue());
+                }
+
+                return bytes;
+            } catch (LoaderException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+
+    protected static class Reader {
+        protected byte[] bytes;
+        protected int position;
+        protected ArrayList<String> strings = new ArrayList<>();
+
+        public Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public boolean hasNext() { return position < bytes.length; }
+
+        /**
+         * Skip the dependencies, and their table of strings, before the recorded calls.
+         */
+        public void skipDependencies() throws IOException {
+            for (int i=readInt(); i>0; i--) {
+                readString();
+
+                if (readInt() != 0) {
+                    readInt();
+                }
+            }
+
+            strings.clear();
+        }
+
+        public int readInt() throws IOException {
+            int v = 0;
+            int shift = 0;
+            int b;
+
+            do {
+                if (position >= bytes.length) {
+                    throw new EOFException();
+                }
+
+                b = bytes[position++];
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        public String readString() throws IOException {
+            int index = readInt();
+
+            if (index == 0) {
+                return null;
+            }
+
+            if ((index < 0) || (index > strings.size() + 1)) {
+                throw new IOException("Invalid string index");
+            }
+
+            if (index > strings.size()) {
+                int length = readInt();
+
+                if ((length < 0) || (position + length > bytes.length)) {
+                    throw new EOFException();
+                }
+
+                strings.add(new String(bytes, position, length, StandardCharsets.UTF_8));
+                position += length;
+            }
+
+            return strings.get(index - 1);
+        }
+    }
+}
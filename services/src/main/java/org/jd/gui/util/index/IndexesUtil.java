@@ -8,6 +8,7 @@
 package org.jd.gui.util.index;
 
 import org.jd.gui.api.model.Container;
+import org.jd.gui.api.model.FederatedIndexes;
 import org.jd.gui.api.model.Indexes;
 import org.jd.gui.util.exception.ExceptionUtil;
 
@@ -28,6 +29,11 @@ public class IndexesUtil {
     }
 
     public static boolean contains(Collection<Future<Indexes>> collectionOfFutureIndexes, String indexName, String key) {
+        if (collectionOfFutureIndexes instanceof FederatedIndexes) {
+            Map<String, Collection> index = ((FederatedIndexes)collectionOfFutureIndexes).getIndex(indexName);
+            return (index != null) && (index.get(key) != null);
+        }
+
         try {
             for (Future<Indexes> futureIndexes : collectionOfFutureIndexes) {
                 if (futureIndexes.isDone()) {
@@ -48,6 +54,17 @@ public class IndexesUtil {
     public static List<Container.Entry> find(Collection<Future<Indexes>> collectionOfFutureIndexes, String indexName, String key) {
         ArrayList<Container.Entry> entries = new ArrayList<>();
 
+        if (collectionOfFutureIndexes instanceof FederatedIndexes) {
+            Map<String, Collection> index = ((FederatedIndexes)collectionOfFutureIndexes).getIndex(indexName);
+            if (index != null) {
+                Collection<Container.Entry> collection = index.get(key);
+                if (collection != null) {
+                    entries.addAll(collection);
+                }
+            }
+            return entries;
+        }
+
         try {
             for (Future<Indexes> futureIndexes : collectionOfFutureIndexes) {
                 if (futureIndexes.isDone()) {
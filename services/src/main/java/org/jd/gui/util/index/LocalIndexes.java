@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.index;
+
+import org.jd.gui.api.model.Indexes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread confined indexes, populating keys automatically, used by parallel indexing tasks.<br>
+ * <br>
+ * Keys are kept in insertion order: merging several local indexes, in traversal order, into a target reproduces the
+ * content of a sequential indexation.
+ */
+public class LocalIndexes implements Indexes {
+    protected LinkedHashMap<String, Map<String, Collection>> indexes = new LinkedHashMap<>();
+    protected Indexes target;
+
+    /**
+     * @param target indexes into which these indexes will be merged, checked for cancellation
+     */
+    public LocalIndexes(Indexes target) {
+        this.target = target;
+    }
+
+    @Override
+    public Map<String, Collection> getIndex(String name) {
+        Map<String, Collection> index = indexes.get(name);
+
+        if (index == null) {
+            indexes.put(name, index=new IndexWithDefault());
+        }
+
+        return index;
+    }
+
+    public boolean isEmpty() {
+        return indexes.isEmpty();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return target.isCancelled();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void mergeInto(Indexes target) {
+        for (Map.Entry<String, Map<String, Collection>> mapEntry : indexes.entrySet()) {
+            Map<String, Collection> targetIndex = target.getIndex(mapEntry.getKey());
+
+            for (Map.Entry<String, Collection> entry : mapEntry.getValue().entrySet()) {
+                targetIndex.get(entry.getKey()).addAll(entry.getValue());
+            }
+        }
+    }
+
+    protected static class IndexWithDefault extends LinkedHashMap<String, Collection> {
+        @Override
+        public Collection get(Object o) {
+            Collection value = super.get(o);
+
+            if (value == null) {
+                put(o.toString(), value=new ArrayList());
+            }
+
+            return value;
+        }
+    }
+}
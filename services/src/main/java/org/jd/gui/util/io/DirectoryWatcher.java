@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.io;
+
+import org.jd.gui.util.exception.ExceptionUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watch a directory tree with a WatchService, from a daemon thread. Events are coalesced: the listener is called when
+ * no event has been received during QUIET_DELAY milliseconds, or after MAXIMUM_DELAY milliseconds, with the
+ * directories whose content changed.
+ */
+public class DirectoryWatcher implements Closeable {
+    protected static final long QUIET_DELAY = 300;
+    protected static final long MAXIMUM_DELAY = 3000;
+
+    public interface Listener {
+        void directoriesChanged(Set<Path> directories);
+    }
+
+    protected Listener listener;
+    protected WatchService watchService;
+    protected HashMap<WatchKey, Path> directories = new HashMap<>();
+    protected Thread thread;
+
+    public DirectoryWatcher(Path root, Listener listener) throws IOException {
+        this.listener = listener;
+        this.watchService = root.getFileSystem().newWatchService();
+
+        register(root);
+
+        thread = new Thread(this::run, "jd-gui-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    protected void register(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    protected void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                HashSet<Path> changedDirectories = new HashSet<>();
+                long deadline = System.currentTimeMillis() + MAXIMUM_DELAY;
+
+                while (key != null) {
+                    process(key, changedDirectories);
+
+                    long timeout = Math.min(QUIET_DELAY, deadline - System.currentTimeMillis());
+                    key = (timeout > 0) ? watchService.poll(timeout, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (!changedDirectories.isEmpty()) {
+                    try {
+                        listener.directoriesChanged(changedDirectories);
+                    } catch (Throwable t) {
+                        assert ExceptionUtil.printStackTrace(t);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignore) {
+            // Watch closed
+        }
+    }
+
+    protected void process(WatchKey key, Set<Path> changedDirectories) {
+        Path directory = directories.get(key);
+
+        if (directory != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    // Events lost
+                    changedDirectories.addAll(directories.values());
+                } else {
+                    changedDirectories.add(directory);
+
+                    if (event.kind() == ENTRY_CREATE) {
+                        Path child = directory.resolve((Path)event.context());
+
+                        if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                            try {
+                                register(child);
+                            } catch (IOException e) {
+                                assert ExceptionUtil.printStackTrace(e);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        if (!key.reset()) {
+            // Directory deleted
+            directories.remove(key);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+}
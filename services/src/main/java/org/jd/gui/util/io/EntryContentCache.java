@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.io;
+
+import org.jd.gui.api.feature.ContentChecksumGettable;
+import org.jd.gui.api.model.Container;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Process-wide cache of entry contents, bounded by a number of bytes.<br>
+ * <br>
+ * Entries are identified by their container, their path and their checksum. The eviction policy is W-TinyLFU: new
+ * contents enter a small LRU window; contents leaving the window are admitted in the main space, a segmented LRU, only
+ * if they are accessed more often than the content they would evict. The access frequencies are estimated by a
+ * count-min sketch, halved periodically.<br>
+ * <br>
+ * System properties:
+ * <ul>
+ *     <li>'jd-gui.contentCache.size': maximum number of bytes, 32 MB by default,</li>
+ *     <li>'jd-gui.contentCache.offHeap': 'true' to store the contents in direct buffers.</li>
+ * </ul>
+ */
+public class EntryContentCache {
+    protected static final EntryContentCache ENTRY_CONTENT_CACHE = new EntryContentCache(
+        Long.getLong("jd-gui.contentCache.size", 32L * 1024 * 1024), Boolean.getBoolean("jd-gui.contentCache.offHeap"));
+
+    protected static final int WINDOW = 0;
+    protected static final int PROBATION = 1;
+    protected static final int PROTECTED = 2;
+
+    protected long maxWeight;
+    protected long windowMaxWeight;
+    protected long protectedMaxWeight;
+    protected long maxContentWeight;
+    protected boolean offHeap;
+
+    protected HashMap<Key, Node> nodes = new HashMap<>();
+    protected Node[] queues = { new Node(), new Node(), new Node() };
+    protected long[] weights = new long[3];
+    protected FrequencySketch sketch;
+
+    protected long hitCount;
+    protected long missCount;
+    protected long evictionCount;
+
+    public static EntryContentCache getInstance() { return ENTRY_CONTENT_CACHE; }
+
+    public EntryContentCache(long maxWeight, boolean offHeap) {
+        this.maxWeight = maxWeight;
+        this.windowMaxWeight = Math.max(1, maxWeight / 100);
+        this.protectedMaxWeight = (maxWeight - windowMaxWeight) * 8 / 10;
+        this.maxContentWeight = maxWeight / 16;
+        this.offHeap = offHeap;
+        // Expected number of contents, for an average size of 4 KB
+        this.sketch = new FrequencySketch((int)Math.min(1 << 16, Math.max(64, maxWeight / 4096)));
+    }
+
+    /**
+     * Read-through access: a missing content is loaded, then cached if the policy admits it.
+     *
+     * @return the content, shared with the cache: it must not be modified
+     */
+    public byte[] getBytes(Container.Entry entry) throws IOException {
+        Key key = new Key(entry);
+        Object content = get(key);
+
+        if (content == null) {
+            byte[] bytes = read(entry);
+            put(key, bytes);
+            return bytes;
+        }
+
+        if (content instanceof byte[]) {
+            return (byte[])content;
+        }
+
+        ByteBuffer buffer = ((ByteBuffer)content).duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Access for the scans, like the indexation: a missing content is read from the entry and is not cached, only its
+     * access is counted.
+     */
+    public InputStream getInputStream(Container.Entry entry) throws IOException {
+        Object content = get(new Key(entry));
+
+        if (content == null) {
+            InputStream inputStream = entry.getInputStream();
+
+            if (inputStream == null) {
+                throw new IOException("Unable to read '" + entry.getPath() + "'");
+            }
+
+            return inputStream;
+        }
+
+        if (content instanceof byte[]) {
+            return new ByteArrayInputStream((byte[])content);
+        }
+
+        return new ByteBufferInputStream(((ByteBuffer)content).duplicate());
+    }
+
+    public synchronized long getHitCount() { return hitCount; }
+    public synchronized long getMissCount() { return missCount; }
+    public synchronized long getEvictionCount() { return evictionCount; }
+    public synchronized long getWeight() { return weights[WINDOW] + weights[PROBATION] + weights[PROTECTED]; }
+
+    /**
+     * Remove the contents of a closed container.
+     */
+    public synchronized void invalidate(Container container) {
+        Iterator<Node> iterator = nodes.values().iterator();
+
+        while (iterator.hasNext()) {
+            Node node = iterator.next();
+
+            if (node.key.container == container) {
+                remove(node);
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        nodes.clear();
+
+        for (int i=0; i<queues.length; i++) {
+            queues[i].previous = queues[i].next = queues[i];
+            weights[i] = 0;
+        }
+    }
+
+    protected static byte[] read(Container.Entry entry) throws IOException {
+        long length = entry.length();
+
+        try (InputStream input=entry.getInputStream(); ByteArrayOutputStream output=new ByteArrayOutputStream((length > 0) && (length < Integer.MAX_VALUE) ? (int)length : 1024 * 4)) {
+            if (input == null) {
+                throw new IOException("Unable to read '" + entry.getPath() + "'");
+            }
+
+            byte[] buffer = new byte[1024 * 4];
+            int len = input.read(buffer);
+
+            while (len > 0) {
+                output.write(buffer, 0, len);
+                len = input.read(buffer);
+            }
+
+            return output.toByteArray();
+        }
+    }
+
+    // --- Policy --- //
+    protected synchronized Object get(Key key) {
+        sketch.increment(key.hashCode());
+
+        Node node = nodes.get(key);
+
+        if (node == null) {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        onAccess(node);
+        return node.content;
+    }
+
+    protected void put(Key key, byte[] bytes) {
+        if (bytes.length > maxContentWeight) {
+            return;
+        }
+
+        Object content = bytes;
+
+        if (offHeap) {
+            // Copied out of the lock
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes).flip();
+            content = buffer.asReadOnlyBuffer();
+        }
+
+        synchronized (this) {
+            if (!nodes.containsKey(key)) {
+                Node node = new Node(key, content, bytes.length);
+
+                nodes.put(key, node);
+                append(WINDOW, node);
+                evict();
+            }
+        }
+    }
+
+    protected void onAccess(Node node) {
+        if (node.queue == PROBATION) {
+            // Promotion, the least recently used protected contents are moved back to the probation space
+            remove(node);
+            append(PROTECTED, node);
+
+            while (weights[PROTECTED] > protectedMaxWeight) {
+                Node demoted = queues[PROTECTED].next;
+                remove(demoted);
+                append(PROBATION, demoted);
+            }
+        } else {
+            remove(node);
+            append(node.queue, node);
+        }
+    }
+
+    protected void evict() {
+        // Move the least recently used contents of the window to the probation space, as candidates
+        Node candidate = null;
+
+        while (weights[WINDOW] > windowMaxWeight) {
+            Node node = queues[WINDOW].next;
+            remove(node);
+            append(PROBATION, node);
+
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        // Evict candidates or victims, by frequency
+        Node probation = queues[PROBATION];
+
+        while (getWeight() > maxWeight) {
+            Node victim = probation.next;
+
+            if (victim == probation) {
+                // Empty probation space
+                evict((queues[PROTECTED].next != queues[PROTECTED]) ? queues[PROTECTED].next : queues[WINDOW].next);
+            } else if ((candidate == null) || (candidate == victim)) {
+                evict(victim);
+                candidate = null;
+            } else if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                evict(victim);
+            } else {
+                Node next = candidate.next;
+                evict(candidate);
+                candidate = (next == probation) ? null : next;
+            }
+        }
+    }
+
+    protected void evict(Node node) {
+        remove(node);
+        nodes.remove(node.key);
+        evictionCount++;
+    }
+
+    protected void append(int queue, Node node) {
+        Node head = queues[queue];
+
+        node.queue = queue;
+        node.previous = head.previous;
+        node.next = head;
+        head.previous.next = node;
+        head.previous = node;
+        weights[queue] += node.weight;
+    }
+
+    protected void remove(Node node) {
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+        node.previous = node.next = null;
+        weights[node.queue] -= node.weight;
+    }
+
+    protected static class Key {
+        protected Container container;
+        protected String path;
+        protected long checksum;
+        protected int hashCode;
+
+        public Key(Container.Entry entry) {
+            this.container = entry.getContainer();
+            this.path = entry.getPath();
+            this.checksum = (entry instanceof ContentChecksumGettable) ? ((ContentChecksumGettable)entry).getContentChecksum() : entry.length();
+            this.hashCode = (System.identityHashCode(container) * 31 + path.hashCode()) * 31 + Long.hashCode(checksum);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key other = (Key)o;
+
+            return (container == other.container) && (checksum == other.checksum) && path.equals(other.path);
+        }
+
+        @Override public int hashCode() { return hashCode; }
+    }
+
+    protected static class Node {
+        protected Key key;
+        protected Object content; // byte[] or read-only ByteBuffer
+        protected int weight;
+        protected int queue;
+        protected Node previous;
+        protected Node next;
+
+        // Head of a queue
+        public Node() {
+            this.previous = this.next = this;
+        }
+
+        public Node(Key key, Object content, int weight) {
+            this.key = key;
+            this.content = content;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 bit counters, 16 per expected content, halved each time the number of increments reaches
+     * 10 times the number of expected contents. A smaller table saturates: all contents then look equally frequent.
+     */
+    protected static class FrequencySketch {
+        protected static final int[] SEEDS = { 0x97CB3127, 0xB5C0AF45, 0xC2B2AE35, 0x9E3779B9 };
+
+        protected byte[] counters;
+        protected int shift;
+        protected int size;
+        protected int sampleSize;
+
+        public FrequencySketch(int capacity) {
+            int length = Integer.highestOneBit(Math.max(16, capacity - 1)) << 5;
+
+            this.counters = new byte[length];
+            this.shift = 32 - Integer.numberOfTrailingZeros(length);
+            this.sampleSize = 10 * capacity;
+        }
+
+        public int frequency(int hash) {
+            int h = spread(hash);
+            int frequency = 15;
+
+            for (int seed : SEEDS) {
+                frequency = Math.min(frequency, counters[(h * seed) >>> shift]);
+            }
+
+            return frequency;
+        }
+
+        public void increment(int hash) {
+            int h = spread(hash);
+            boolean added = false;
+
+            for (int seed : SEEDS) {
+                int index = (h * seed) >>> shift;
+
+                if (counters[index] < 15) {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+
+            if (added && (++size == sampleSize)) {
+                // Aging
+                for (int i=0; i<counters.length; i++) {
+                    counters[i] >>>= 1;
+                }
+                size /= 2;
+            }
+        }
+
+        protected static int spread(int hash) {
+            hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+            return (hash >>> 16) ^ hash;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.io;
+
+import org.jd.gui.util.exception.ExceptionUtil;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reference counted file systems, shared by the containers opened on the same archive. A file system is opened by the
+ * first 'acquire' call on its key, and closed by the last 'release' call. Opening runs outside the monitor: the
+ * concurrent callers of the same key wait for the first one, the others are not blocked.
+ */
+public class SharedFileSystems {
+    protected static final SharedFileSystems SHARED_FILE_SYSTEMS = new SharedFileSystems();
+
+    public interface Opener {
+        FileSystem open() throws IOException;
+    }
+
+    protected HashMap<Object, CompletableFuture<Shared>> sharedByKey = new HashMap<>();
+    protected IdentityHashMap<FileSystem, Shared> sharedByFileSystem = new IdentityHashMap<>();
+
+    public static SharedFileSystems getInstance() { return SHARED_FILE_SYSTEMS; }
+
+    /**
+     * @param key    key of the file system, the real path and the modification date of an archive for example
+     * @param opener called if no file system is open for this key
+     * @return the shared file system, or null if 'opener' returned null
+     */
+    public FileSystem acquire(Object key, Opener opener) throws IOException {
+        for (;;) {
+            CompletableFuture<Shared> future;
+            boolean opening = false;
+
+            synchronized (this) {
+                future = sharedByKey.get(key);
+
+                if ((future != null) && future.isDone()) {
+                    Shared shared = future.join();
+
+                    if (shared.fileSystem.isOpen()) {
+                        shared.count++;
+                        return shared.fileSystem;
+                    }
+
+                    future = null;
+                }
+
+                if (future == null) {
+                    // Reserve the key, then open outside the monitor
+                    future = new CompletableFuture<>();
+                    sharedByKey.put(key, future);
+                    opening = true;
+                }
+            }
+
+            if (opening) {
+                return open(key, future, opener);
+            }
+
+            // Wait for the concurrent opening of the same key, then retry: it may have failed or been released
+            future.join();
+        }
+    }
+
+    protected FileSystem open(Object key, CompletableFuture<Shared> future, Opener opener) throws IOException {
+        FileSystem fileSystem = null;
+        Shared shared = null;
+
+        try {
+            fileSystem = opener.open();
+        } finally {
+            synchronized (this) {
+                if (fileSystem == null) {
+                    sharedByKey.remove(key);
+                } else {
+                    shared = sharedByFileSystem.get(fileSystem);
+
+                    if (shared == null) {
+                        shared = new Shared(key, fileSystem);
+                        sharedByFileSystem.put(fileSystem, shared);
+                    }
+
+                    shared.count++;
+                }
+            }
+
+            future.complete(shared);
+        }
+
+        return fileSystem;
+    }
+
+    /**
+     * Release a file system returned by 'acquire'. Other file systems are ignored.
+     */
+    public void release(FileSystem fileSystem) {
+        Shared shared;
+
+        synchronized (this) {
+            shared = sharedByFileSystem.get(fileSystem);
+
+            if ((shared == null) || (--shared.count > 0)) {
+                return;
+            }
+
+            sharedByFileSystem.remove(fileSystem);
+
+            CompletableFuture<Shared> future = sharedByKey.get(shared.key);
+
+            if ((future != null) && (future.getNow(null) == shared)) {
+                sharedByKey.remove(shared.key);
+            }
+        }
+
+        try {
+            fileSystem.close();
+        } catch (IOException|UnsupportedOperationException e) {
+            assert ExceptionUtil.printStackTrace(e);
+        }
+    }
+
+    public synchronized int getCount(FileSystem fileSystem) {
+        Shared shared = sharedByFileSystem.get(fileSystem);
+        return (shared == null) ? 0 : shared.count;
+    }
+
+    protected static class Shared {
+        protected Object key;
+        protected FileSystem fileSystem;
+        protected int count;
+
+        public Shared(Object key, FileSystem fileSystem) {
+            this.key = key;
+            this.fileSystem = fileSystem;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.io;
+
+import org.jd.gui.util.exception.ExceptionUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Temporary files of the session, stored in a private directory deleted at exit.<br>
+ * <br>
+ * Each file is attached to an owner, a container entry for example: the files are deleted when their owner is
+ * released or garbage collected. Beyond the quota, the oldest files are deleted first: the users of a temporary file
+ * must check that it still exists.<br>
+ * <br>
+ * System property 'jd-gui.tempStorage.quota': maximum number of megabytes, 1024 by default.
+ */
+public class TempStorage {
+    protected static final TempStorage TEMP_STORAGE = new TempStorage(Long.getLong("jd-gui.tempStorage.quota", 1024L) * 1024 * 1024);
+
+    protected long quota;
+    protected File directory;
+    protected long size;
+    // Files in creation order
+    protected LinkedHashMap<File, Item> items = new LinkedHashMap<>();
+
+    public static TempStorage getInstance() { return TEMP_STORAGE; }
+
+    public TempStorage(long quota) {
+        this.quota = quota;
+    }
+
+    /**
+     * Create an empty file. Once written, its size must be recorded by 'written(File)'.
+     */
+    public synchronized File createTempFile(Object owner, String prefix, String suffix) throws IOException {
+        File file = File.createTempFile(prefix, suffix, getDirectory());
+
+        items.put(file, new Item(owner));
+        deleteReleasedFiles();
+
+        return file;
+    }
+
+    /**
+     * Record the size of a written file, then delete the oldest other files beyond the quota.
+     */
+    public synchronized void written(File file) {
+        Item item = items.get(file);
+
+        if (item != null) {
+            long length = file.length();
+
+            size += length - item.length;
+            item.length = length;
+
+            Iterator<Map.Entry<File, Item>> iterator = items.entrySet().iterator();
+
+            while ((size > quota) && iterator.hasNext()) {
+                Map.Entry<File, Item> entry = iterator.next();
+
+                if (!entry.getKey().equals(file)) {
+                    size -= entry.getValue().length;
+                    iterator.remove();
+                    deleteFile(entry.getKey());
+                }
+            }
+        }
+    }
+
+    public synchronized void delete(File file) {
+        Item item = items.remove(file);
+
+        if (item != null) {
+            size -= item.length;
+            deleteFile(file);
+        }
+    }
+
+    /**
+     * Delete the files of an owner.
+     */
+    public synchronized void release(Object owner) {
+        Iterator<Map.Entry<File, Item>> iterator = items.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<File, Item> entry = iterator.next();
+
+            if (entry.getValue().owner.get() == owner) {
+                size -= entry.getValue().length;
+                iterator.remove();
+                deleteFile(entry.getKey());
+            }
+        }
+    }
+
+    public synchronized long getSize() { return size; }
+
+    protected void deleteReleasedFiles() {
+        Iterator<Map.Entry<File, Item>> iterator = items.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<File, Item> entry = iterator.next();
+
+            if (entry.getValue().owner.get() == null) {
+                size -= entry.getValue().length;
+                iterator.remove();
+                deleteFile(entry.getKey());
+            }
+        }
+    }
+
+    protected File getDirectory() throws IOException {
+        if ((directory == null) || !directory.isDirectory()) {
+            directory = Files.createTempDirectory("jd-gui.tmp.").toFile();
+
+            File dir = directory;
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                File[] files = dir.listFiles();
+
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+
+                dir.delete();
+            }, "jd-gui-temp-storage-cleaner"));
+        }
+
+        return directory;
+    }
+
+    protected static void deleteFile(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            // Open on Windows: deleted at exit
+            assert ExceptionUtil.printStackTrace(e);
+            file.deleteOnExit();
+        }
+    }
+
+    protected static class Item {
+        protected WeakReference<Object> owner;
+        protected long length;
+
+        public Item(Object owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+    }
+}
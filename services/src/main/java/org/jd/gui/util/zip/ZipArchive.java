@@ -0,0 +1,666 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.zip;
+
+import org.jd.gui.util.io.ByteBufferInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only ZIP archive over a byte buffer, a slice of a parent archive or an array, or over a file.<br>
+ * <br>
+ * The central directory is parsed once into flat arrays of nodes, one per entry plus the implicit directories. Names
+ * reference the bytes of the central directory and are decoded on demand. Stored entries are read straight from the
+ * buffer, deflated entries through a streaming inflater.<br>
+ * <br>
+ * A file is not mapped: only its central directory is loaded, the entries are read at each call, and the file is
+ * released by 'close()'.
+ */
+public class ZipArchive {
+    protected static final int LOCSIG = 0x04034b50;
+    protected static final int CENSIG = 0x02014b50;
+    protected static final int ENDSIG = 0x06054b50;
+    protected static final int ZIP64_ENDSIG = 0x06064b50;
+    protected static final int ZIP64_LOCSIG = 0x07064b50;
+
+    protected static final int STORED = 0;
+    protected static final int DEFLATED = 8;
+
+    protected static final int DIRECTORY = 1;
+    protected static final int NON_ASCII = 2;
+
+    protected ByteBuffer buffer;
+    // Archive file, null if the whole archive is in 'buffer'
+    protected RandomAccessFile file;
+    // Position of 'buffer' in the file
+    protected long bufferPosition;
+    // Position of the archive in the file or in 'buffer', after prepended bytes
+    protected long base;
+
+    // --- Nodes: entries and implicit directories, names referencing the bytes of the central directory --- //
+    protected int nodeCount;
+    protected int[] nameOffsets;
+    protected int[] nameLengths;
+    protected int[] hashes;
+    protected byte[] flags;
+    protected int[] parents;
+    protected int[] firstChildren;
+    protected int[] lastChildren;
+    protected int[] nextSiblings;
+    protected short[] methods;
+    protected int[] times; // MS-DOS format
+    protected int[] crcs;
+    protected long[] compressedSizes;
+    protected long[] sizes;
+    protected long[] localHeaderOffsets;
+    // Open addressing table of node + 1, by hash of the path
+    protected int[] table;
+
+    public ZipArchive(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.clear();
+        parseCentralDirectory();
+        // Only needed while building
+        lastChildren = null;
+    }
+
+    /**
+     * @param file archive file, closed by 'close()'
+     */
+    public ZipArchive(RandomAccessFile file) throws IOException {
+        long length = file.length();
+
+        this.file = file;
+        // End of central directory record, its comment and the Zip64 records
+        loadBuffer(Math.max(0, length - (22 + 0xFFFF + 20 + 56)));
+        parseCentralDirectory();
+        // Only needed while building
+        lastChildren = null;
+    }
+
+    /**
+     * Release the archive file: the entries can no longer be read.
+     */
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    // --- Nodes --- //
+    public int getRoot() { return 0; }
+    public int getNodeCount() { return nodeCount; }
+
+    /**
+     * @param path path without leading and trailing separators, "" for the root
+     * @return the node, or -1 if the archive contains no entry with this path
+     */
+    public int getNode(String path) {
+        int mask = table.length - 1;
+        int hash = path.hashCode();
+        int length = path.length();
+
+        for (int slot=mix(hash) & mask, n; (n=table[slot]) != 0; slot=(slot + 1) & mask) {
+            int node = n - 1;
+
+            if (hashes[node] == hash) {
+                if ((flags[node] & NON_ASCII) == 0) {
+                    if (nameLengths[node] == length) {
+                        int offset = nameOffsets[node];
+                        int i = 0;
+
+                        while ((i < length) && (buffer.get(offset + i) == path.charAt(i))) {
+                            i++;
+                        }
+
+                        if (i == length) {
+                            return node;
+                        }
+                    }
+                } else if (getPath(node).equals(path)) {
+                    return node;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the path of the node, decoded at each call
+     */
+    public String getPath(int node) {
+        int length = nameLengths[node];
+
+        if (length == 0) {
+            return "";
+        }
+
+        byte[] bytes = new byte[length];
+        int offset = nameOffsets[node];
+
+        for (int i=0; i<length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+
+        return new String(bytes, ((flags[node] & NON_ASCII) == 0) ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    public boolean isDirectory(int node) { return (flags[node] & DIRECTORY) != 0; }
+    public int getParent(int node) { return parents[node]; }
+    public int getFirstChild(int node) { return firstChildren[node]; }
+    public int getNextSibling(int node) { return nextSiblings[node]; }
+    public long getSize(int node) { return sizes[node]; }
+    public int getCrc(int node) { return crcs[node]; }
+    public long getLastModifiedTime(int node) { return (times[node] == 0) ? 0L : dosToJavaTime(times[node] & 0xFFFFFFFFL); }
+
+    // --- Data --- //
+    /**
+     * @return the content of a stored entry, without copy if the archive is in a buffer, or null if the entry is
+     * compressed or a directory
+     */
+    public ByteBuffer getStoredContent(int node) throws IOException {
+        if (isDirectory(node) || (methods[node] != STORED)) {
+            return null;
+        }
+        return getRawContent(node, sizes[node]);
+    }
+
+    public InputStream getInputStream(int node) throws IOException {
+        if (isDirectory(node)) {
+            throw new IOException("'" + getPath(node) + "' is a directory");
+        }
+
+        switch (methods[node]) {
+            case STORED:
+                return new ByteBufferInputStream(getRawContent(node, sizes[node]));
+            case DEFLATED:
+                return new ZipInflaterInputStream(getRawContent(node, compressedSizes[node]), sizes[node]);
+            default:
+                throw new ZipException("Unsupported compression method " + methods[node] + " for '" + getPath(node) + "'");
+        }
+    }
+
+    protected ByteBuffer getRawContent(int node, long length) throws IOException {
+        long offset = base + localHeaderOffsets[node];
+
+        if (file != null) {
+            return readRawContent(node, offset, length);
+        }
+
+        if ((offset < 0) || (offset + 30 > buffer.capacity()) || (buffer.getInt((int)offset) != LOCSIG)) {
+            throw new ZipException("Invalid local header for '" + getPath(node) + "'");
+        }
+
+        int start = (int)offset + 30 + (buffer.getShort((int)offset + 26) & 0xFFFF) + (buffer.getShort((int)offset + 28) & 0xFFFF);
+
+        if ((length > buffer.capacity() - start)) {
+            throw new ZipException("Truncated entry '" + getPath(node) + "'");
+        }
+
+        ByteBuffer content = buffer.duplicate();
+        content.position(start).limit(start + (int)length);
+        return content.slice();
+    }
+
+    protected ByteBuffer readRawContent(int node, long offset, long length) throws IOException {
+        synchronized (file) {
+            long fileLength = file.length();
+            byte[] header = new byte[30];
+
+            if ((offset < 0) || (offset + 30 > fileLength)) {
+                throw new ZipException("Invalid local header for '" + getPath(node) + "'");
+            }
+
+            file.seek(offset);
+            file.readFully(header);
+
+            ByteBuffer headerBuffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (headerBuffer.getInt(0) != LOCSIG) {
+                throw new ZipException("Invalid local header for '" + getPath(node) + "'");
+            }
+
+            long start = offset + 30 + (headerBuffer.getShort(26) & 0xFFFF) + (headerBuffer.getShort(28) & 0xFFFF);
+
+            if ((length > fileLength - start) || (length > Integer.MAX_VALUE - 8)) {
+                throw new ZipException("Truncated entry '" + getPath(node) + "'");
+            }
+
+            byte[] content = new byte[(int)length];
+
+            file.seek(start);
+            file.readFully(content);
+            return ByteBuffer.wrap(content);
+        }
+    }
+
+    /**
+     * Load the bytes of the file from 'position' to the end in 'buffer'.
+     */
+    protected void loadBuffer(long position) throws IOException {
+        synchronized (file) {
+            long length = file.length() - position;
+
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new ZipException("Central directory too large");
+            }
+
+            byte[] bytes = new byte[(int)length];
+
+            file.seek(position);
+            file.readFully(bytes);
+            buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            bufferPosition = position;
+        }
+    }
+
+    // --- Central directory --- //
+    protected void parseCentralDirectory() throws IOException {
+        int capacity = buffer.capacity();
+        int end = -1;
+
+        for (int i=capacity-22, min=Math.max(0, capacity-22-0xFFFF); i>=min; i--) {
+            if ((buffer.getInt(i) == ENDSIG) && (i + 22 + (buffer.getShort(i + 20) & 0xFFFF) <= capacity)) {
+                end = i;
+                break;
+            }
+        }
+
+        if (end == -1) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        long count = buffer.getShort(end + 10) & 0xFFFF;
+        long size = buffer.getInt(end + 12) & 0xFFFFFFFFL;
+        long offset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+        int endOfDirectory = end;
+
+        if (((count == 0xFFFF) || (size == 0xFFFFFFFFL) || (offset == 0xFFFFFFFFL)) && (end >= 20) && (buffer.getInt(end - 20) == ZIP64_LOCSIG)) {
+            long zip64End = buffer.getLong(end - 20 + 8) - bufferPosition;
+
+            if ((file != null) && (zip64End < 0) && (zip64End + bufferPosition >= 0)) {
+                // Zip64 record before the loaded bytes
+                loadBuffer(zip64End + bufferPosition);
+                parseCentralDirectory();
+                return;
+            }
+
+            if ((zip64End >= 0) && (zip64End + 56 <= end) && (buffer.getInt((int)zip64End) == ZIP64_ENDSIG)) {
+                count = buffer.getLong((int)zip64End + 32);
+                size = buffer.getLong((int)zip64End + 40);
+                offset = buffer.getLong((int)zip64End + 48);
+                endOfDirectory = (int)zip64End;
+            }
+        }
+
+        // Bytes prepended to the archive, like a launch script, shift all offsets
+        long start = endOfDirectory - size;
+
+        if ((file != null) && (start < 0) && (start + bufferPosition >= 0)) {
+            // Central directory before the loaded bytes
+            loadBuffer(start + bufferPosition);
+            parseCentralDirectory();
+            return;
+        }
+
+        if ((start < 0) || (offset > start + bufferPosition) || (count > Integer.MAX_VALUE / 2)) {
+            throw new ZipException("Invalid central directory");
+        }
+
+        base = start + bufferPosition - offset;
+        initNodes((int)count);
+
+        int position = (int)start;
+
+        for (long i=0; i<count; i++) {
+            if ((position + 46 > endOfDirectory) || (buffer.getInt(position) != CENSIG)) {
+                throw new ZipException("Invalid central directory entry");
+            }
+
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+
+            if (position + 46 + nameLength + extraLength > endOfDirectory) {
+                throw new ZipException("Invalid central directory entry");
+            }
+
+            addEntry(position, nameLength, extraLength);
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+    }
+
+    protected void initNodes(int count) {
+        int capacity = Math.max(16, count + count / 4);
+
+        nameOffsets = new int[capacity];
+        nameLengths = new int[capacity];
+        hashes = new int[capacity];
+        flags = new byte[capacity];
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        lastChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        methods = new short[capacity];
+        times = new int[capacity];
+        crcs = new int[capacity];
+        compressedSizes = new long[capacity];
+        sizes = new long[capacity];
+        localHeaderOffsets = new long[capacity];
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+
+        // Root
+        nodeCount = 0;
+        newNode(0, 0, 0, 0, -1, true);
+    }
+
+    protected void addEntry(int position, int nameLength, int extraLength) {
+        int start = position + 46;
+        int end = start + nameLength;
+        boolean nonAscii = false;
+
+        for (int i=start; i<end; i++) {
+            if (buffer.get(i) < 0) {
+                nonAscii = true;
+                break;
+            }
+        }
+
+        while ((start < end) && (buffer.get(start) == '/')) {
+            start++;
+        }
+
+        boolean directory = (end > start) && (buffer.get(end - 1) == '/');
+
+        while ((end > start) && (buffer.get(end - 1) == '/')) {
+            end--;
+        }
+
+        if (end == start) {
+            return;
+        }
+
+        int length = end - start;
+        int hash = hash(start, length, nonAscii);
+        int node = findNode(start, length, hash);
+
+        if (node == -1) {
+            node = newNode(start, length, hash, nonAscii ? NON_ASCII : 0, getDirectoryNode(start, length, nonAscii), directory);
+        } else if (localHeaderOffsets[node] != -1L) {
+            // Duplicate entry: keep the first one
+            return;
+        }
+
+        long compressedSize = buffer.getInt(position + 20) & 0xFFFFFFFFL;
+        long uncompressedSize = buffer.getInt(position + 24) & 0xFFFFFFFFL;
+        long localHeaderOffset = buffer.getInt(position + 42) & 0xFFFFFFFFL;
+
+        if ((uncompressedSize == 0xFFFFFFFFL) || (compressedSize == 0xFFFFFFFFL) || (localHeaderOffset == 0xFFFFFFFFL)) {
+            // Zip64 extended information
+            int extra = position + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+
+            while (extra + 4 <= extraEnd) {
+                int id = buffer.getShort(extra) & 0xFFFF;
+                int length64 = buffer.getShort(extra + 2) & 0xFFFF;
+
+                if (id == 0x0001) {
+                    int field = extra + 4;
+
+                    if ((uncompressedSize == 0xFFFFFFFFL) && (field + 8 <= extraEnd)) {
+                        uncompressedSize = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if ((compressedSize == 0xFFFFFFFFL) && (field + 8 <= extraEnd)) {
+                        compressedSize = buffer.getLong(field);
+                        field += 8;
+                    }
+                    if ((localHeaderOffset == 0xFFFFFFFFL) && (field + 8 <= extraEnd)) {
+                        localHeaderOffset = buffer.getLong(field);
+                    }
+                    break;
+                }
+
+                extra += 4 + length64;
+            }
+        }
+
+        if (!isDirectory(node)) {
+            methods[node] = buffer.getShort(position + 10);
+            crcs[node] = buffer.getInt(position + 16);
+            compressedSizes[node] = compressedSize;
+            sizes[node] = uncompressedSize;
+        }
+
+        times[node] = buffer.getInt(position + 12);
+        localHeaderOffsets[node] = localHeaderOffset;
+    }
+
+    protected int getDirectoryNode(int start, int length, boolean nonAscii) {
+        int lastSlashIndex = length - 1;
+
+        while ((lastSlashIndex >= 0) && (buffer.get(start + lastSlashIndex) != '/')) {
+            lastSlashIndex--;
+        }
+
+        if (lastSlashIndex <= 0) {
+            return 0;
+        }
+
+        int hash = hash(start, lastSlashIndex, nonAscii);
+        int node = findNode(start, lastSlashIndex, hash);
+
+        if (node != -1) {
+            // An entry may also be used as a directory
+            flags[node] |= DIRECTORY;
+            return node;
+        }
+
+        // Implicit directory, named by a prefix of its child
+        return newNode(start, lastSlashIndex, hash, nonAscii ? NON_ASCII : 0, getDirectoryNode(start, lastSlashIndex, nonAscii), true);
+    }
+
+    /**
+     * @return the hash of the decoded name, equal to 'String.hashCode()'
+     */
+    protected int hash(int start, int length, boolean nonAscii) {
+        if (nonAscii) {
+            byte[] bytes = new byte[length];
+            ByteBuffer name = buffer.duplicate();
+
+            name.position(start);
+            name.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8).hashCode();
+        }
+
+        int hash = 0;
+
+        for (int i=start, end=start+length; i<end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+
+        return hash;
+    }
+
+    protected int findNode(int start, int length, int hash) {
+        int mask = table.length - 1;
+
+        for (int slot=mix(hash) & mask, n; (n=table[slot]) != 0; slot=(slot + 1) & mask) {
+            int node = n - 1;
+
+            if ((hashes[node] == hash) && (nameLengths[node] == length)) {
+                int offset = nameOffsets[node];
+                int i = 0;
+
+                while ((i < length) && (buffer.get(offset + i) == buffer.get(start + i))) {
+                    i++;
+                }
+
+                if (i == length) {
+                    return node;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    protected int newNode(int nameOffset, int nameLength, int hash, int flag, int parent, boolean directory) {
+        if (nodeCount == nameOffsets.length) {
+            int capacity = nodeCount * 2;
+
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            methods = Arrays.copyOf(methods, capacity);
+            times = Arrays.copyOf(times, capacity);
+            crcs = Arrays.copyOf(crcs, capacity);
+            compressedSizes = Arrays.copyOf(compressedSizes, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            localHeaderOffsets = Arrays.copyOf(localHeaderOffsets, capacity);
+        }
+
+        int node = nodeCount++;
+
+        nameOffsets[node] = nameOffset;
+        nameLengths[node] = nameLength;
+        hashes[node] = hash;
+        flags[node] = (byte)(flag | (directory ? DIRECTORY : 0));
+        parents[node] = parent;
+        firstChildren[node] = -1;
+        lastChildren[node] = -1;
+        nextSiblings[node] = -1;
+        localHeaderOffsets[node] = -1L;
+
+        if (parent != -1) {
+            if (lastChildren[parent] == -1) {
+                firstChildren[parent] = node;
+            } else {
+                nextSiblings[lastChildren[parent]] = node;
+            }
+            lastChildren[parent] = node;
+        }
+
+        if (nodeCount * 2 > table.length) {
+            int[] oldTable = table;
+
+            table = new int[oldTable.length * 2];
+
+            for (int n : oldTable) {
+                if (n != 0) {
+                    putInTable(n - 1);
+                }
+            }
+        }
+
+        putInTable(node);
+        return node;
+    }
+
+    protected void putInTable(int node) {
+        int mask = table.length - 1;
+        int slot = mix(hashes[node]) & mask;
+
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        table[slot] = node + 1;
+    }
+
+    protected static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    protected static long dosToJavaTime(long time) {
+        try {
+            return LocalDateTime.of(
+                (int)(((time >> 25) & 0x7F) + 1980), (int)((time >> 21) & 0x0F), (int)((time >> 16) & 0x1F),
+                (int)((time >> 11) & 0x1F), (int)((time >> 5) & 0x3F), (int)((time << 1) & 0x3E))
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return 0L;
+        }
+    }
+
+    // --- Streams --- //
+    protected static class ZipInflaterInputStream extends InflaterInputStream {
+        protected ByteBuffer compressed;
+        protected long remaining;
+        protected boolean eof;
+        protected boolean closed;
+
+        public ZipInflaterInputStream(ByteBuffer compressed, long size) {
+            super(new ByteBufferInputStream(compressed), new Inflater(true), (int)Math.max(64, Math.min(8192, compressed.remaining())));
+            this.compressed = compressed;
+            this.remaining = size;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return closed ? 0 : (int)Math.min(Integer.MAX_VALUE, Math.max(0, remaining));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new ZipException("Unexpected end of compressed data");
+            }
+
+            int count = Math.min(buf.length, compressed.remaining());
+
+            if (count == 0) {
+                // The raw deflate format may need an extra dummy byte
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            } else {
+                compressed.get(buf, 0, count);
+                len = count;
+            }
+
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.end();
+            }
+        }
+    }
+}
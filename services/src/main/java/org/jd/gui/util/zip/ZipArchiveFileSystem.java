@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.zip;
+
+import org.jd.gui.util.exception.ExceptionUtil;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.*;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Collections;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Read-only file system over a ZipArchive, created by 'ZipArchiveFileSystemProvider.newFileSystem(Path, Map)'.
+ */
+public class ZipArchiveFileSystem extends FileSystem {
+    protected ZipArchiveFileSystemProvider provider;
+    protected ZipArchive archive;
+    protected String uriPrefix;
+    protected ZipArchivePath rootPath;
+    protected volatile boolean open = true;
+
+    /**
+     * @param uriPrefix scheme specific part of the URIs, followed by the absolute path of the entries
+     */
+    protected ZipArchiveFileSystem(ZipArchiveFileSystemProvider provider, ZipArchive archive, String uriPrefix) {
+        this.provider = provider;
+        this.archive = archive;
+        this.uriPrefix = uriPrefix;
+        this.rootPath = new ZipArchivePath(this, "/");
+    }
+
+    public ZipArchive getArchive() { return archive; }
+    public ZipArchivePath getRootPath() { return rootPath; }
+
+    protected URI getUri(String absolutePath) {
+        try {
+            return new URI(ZipArchiveFileSystemProvider.SCHEME, uriPrefix + '!' + absolutePath, null);
+        } catch (URISyntaxException e) {
+            assert ExceptionUtil.printStackTrace(e);
+            return null;
+        }
+    }
+
+    @Override public FileSystemProvider provider() { return provider; }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            archive.close();
+        }
+    }
+
+    @Override public boolean isOpen() { return open; }
+    @Override public boolean isReadOnly() { return true; }
+    @Override public String getSeparator() { return "/"; }
+    @Override public Iterable<Path> getRootDirectories() { return Collections.singletonList(rootPath); }
+    @Override public Iterable<FileStore> getFileStores() { return Collections.emptyList(); }
+    @Override public Set<String> supportedFileAttributeViews() { return Collections.singleton("basic"); }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        if (more.length == 0) {
+            return first.equals("/") ? rootPath : new ZipArchivePath(this, first);
+        }
+
+        StringBuilder sb = new StringBuilder(first);
+
+        for (String segment : more) {
+            if (!segment.isEmpty()) {
+                if (sb.length() > 0) {
+                    sb.append('/');
+                }
+                sb.append(segment);
+            }
+        }
+
+        return new ZipArchivePath(this, sb.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int index = syntaxAndPattern.indexOf(':');
+
+        if (index <= 0) {
+            throw new IllegalArgumentException("Syntax missing: " + syntaxAndPattern);
+        }
+
+        String syntax = syntaxAndPattern.substring(0, index);
+        String regex = syntaxAndPattern.substring(index + 1);
+
+        if (syntax.equalsIgnoreCase("glob")) {
+            regex = globToRegex(regex);
+        } else if (!syntax.equalsIgnoreCase("regex")) {
+            throw new UnsupportedOperationException("Syntax not supported: " + syntaxAndPattern);
+        }
+
+        Pattern pattern = Pattern.compile(regex);
+        return path -> pattern.matcher(path.toString()).matches();
+    }
+
+    /**
+     * Translate a glob pattern, with the syntax of FileSystem.getPathMatcher, to a regular expression.<br>
+     * '*' and '?' do not cross directory boundaries, '**' does.
+     */
+    protected static String globToRegex(String glob) {
+        StringBuilder sb = new StringBuilder(glob.length() + 16);
+        boolean inGroup = false;
+
+        for (int i=0, length=glob.length(); i<length; i++) {
+            char c = glob.charAt(i);
+
+            switch (c) {
+                case '*':
+                    if ((i+1 < length) && (glob.charAt(i+1) == '*')) {
+                        sb.append(".*");
+                        i++;
+                    } else {
+                        sb.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    sb.append("[^/]");
+                    break;
+                case '[':
+                    int start = i + 1;
+                    int end = glob.indexOf(']', start);
+
+                    if (end == -1) {
+                        throw new PatternSyntaxException("Missing ']'", glob, i);
+                    }
+
+                    sb.append("[[^/]&&[");
+
+                    if ((start < end) && (glob.charAt(start) == '!')) {
+                        sb.append('^');
+                        start++;
+                    }
+                    if (start == end) {
+                        throw new PatternSyntaxException("Empty bracket expression", glob, i);
+                    }
+
+                    for (int j=start; j<end; j++) {
+                        char bracketChar = glob.charAt(j);
+
+                        if ((bracketChar == '[') || (bracketChar == '\\') || (bracketChar == '&') || (bracketChar == '^')) {
+                            sb.append('\\');
+                        }
+
+                        sb.append(bracketChar);
+                    }
+
+                    sb.append("]]");
+                    i = end;
+                    break;
+                case '{':
+                    if (inGroup) {
+                        throw new PatternSyntaxException("Nested groups not supported", glob, i);
+                    }
+                    sb.append("(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    if (inGroup) {
+                        sb.append(')');
+                        inGroup = false;
+                    } else {
+                        sb.append("\\}");
+                    }
+                    break;
+                case ',':
+                    sb.append(inGroup ? "|" : ",");
+                    break;
+                case '\\':
+                    if (++i == length) {
+                        throw new PatternSyntaxException("No character to escape", glob, i - 1);
+                    }
+                    c = glob.charAt(i);
+                    // Fall through
+                default:
+                    if (!Character.isLetterOrDigit(c)) {
+                        sb.append('\\');
+                    }
+                    sb.append(c);
+                    break;
+            }
+        }
+
+        if (inGroup) {
+            throw new PatternSyntaxException("Missing '}'", glob, glob.length());
+        }
+
+        return sb.toString();
+    }
+
+    @Override public UserPrincipalLookupService getUserPrincipalLookupService() { throw new UnsupportedOperationException(); }
+    @Override public WatchService newWatchService() { throw new UnsupportedOperationException(); }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.*;
+
+/**
+ * Provider of read-only file systems over ZIP archives, not installed: file systems are created explicitly with
+ * 'newFileSystem(Path, Map)'.<br>
+ * <br>
+ * An archive on the default file system is read on demand, without mapping: its file is released as soon as its file
+ * system is closed. An archive stored in another ZipArchiveFileSystem is read from the byte range of its parent; a
+ * compressed one is inflated once in memory. No temporary file is written.
+ */
+public class ZipArchiveFileSystemProvider extends FileSystemProvider {
+    public static final String SCHEME = "jd-zip";
+
+    protected static final ZipArchiveFileSystemProvider ZIP_ARCHIVE_FILE_SYSTEM_PROVIDER = new ZipArchiveFileSystemProvider();
+
+    public static ZipArchiveFileSystemProvider getInstance() { return ZIP_ARCHIVE_FILE_SYSTEM_PROVIDER; }
+
+    protected ZipArchiveFileSystemProvider() {}
+
+    @Override public String getScheme() { return SCHEME; }
+
+    @Override
+    public FileSystem newFileSystem(Path path, Map<String, ?> env) throws IOException {
+        return new ZipArchiveFileSystem(this, newArchive(path), getUriPrefix(path.toUri()));
+    }
+
+    protected ZipArchive newArchive(Path path) throws IOException {
+        if ((path instanceof ZipArchivePath) || (path.getFileSystem() != FileSystems.getDefault())) {
+            return new ZipArchive(getContent(path));
+        }
+
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "r");
+
+        try {
+            if (file.length() > Integer.MAX_VALUE) {
+                throw new IOException("Archive too large: " + path);
+            }
+            return new ZipArchive(file);
+        } catch (IOException|RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    protected ByteBuffer getContent(Path path) throws IOException {
+        if (path instanceof ZipArchivePath) {
+            ZipArchivePath zipArchivePath = (ZipArchivePath)path;
+            int node = getNode(zipArchivePath);
+            ByteBuffer content = zipArchivePath.fileSystem.getArchive().getStoredContent(node);
+
+            if (content != null) {
+                return content;
+            }
+        }
+
+        long size = Files.size(path);
+
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Archive too large: " + path);
+        }
+
+        byte[] bytes = new byte[(int)size];
+
+        try (InputStream is = Files.newInputStream(path)) {
+            int offset = 0;
+            int count;
+
+            while ((offset < bytes.length) && ((count = is.read(bytes, offset, bytes.length - offset)) != -1)) {
+                offset += count;
+            }
+
+            if (offset < bytes.length) {
+                throw new IOException("Unexpected end of archive: " + path);
+            }
+        }
+
+        return ByteBuffer.wrap(bytes);
+    }
+
+    protected static String getUriPrefix(URI uri) {
+        return SCHEME.equals(uri.getScheme()) ? uri.getSchemeSpecificPart() : uri.getScheme() + ':' + uri.getSchemeSpecificPart();
+    }
+
+    @Override public FileSystem newFileSystem(URI uri, Map<String, ?> env) { throw new UnsupportedOperationException(); }
+    @Override public FileSystem getFileSystem(URI uri) { throw new FileSystemNotFoundException(uri.toString()); }
+    @Override public Path getPath(URI uri) { throw new FileSystemNotFoundException(uri.toString()); }
+
+    // --- Read operations --- //
+    @Override
+    public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+        checkReadOnly(options);
+        ZipArchivePath zipArchivePath = toZipArchivePath(path);
+        return zipArchivePath.fileSystem.getArchive().getInputStream(getNode(zipArchivePath));
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        checkReadOnly(options.toArray(new OpenOption[options.size()]));
+
+        ZipArchivePath zipArchivePath = toZipArchivePath(path);
+        ZipArchive archive = zipArchivePath.fileSystem.getArchive();
+        int node = getNode(zipArchivePath);
+        ByteBuffer content = archive.getStoredContent(node);
+
+        if (content == null) {
+            long size = archive.getSize(node);
+
+            if (archive.isDirectory(node) || (size > Integer.MAX_VALUE - 8)) {
+                throw new IOException("Unable to read " + path);
+            }
+
+            byte[] bytes = new byte[(int)size];
+
+            try (InputStream is = archive.getInputStream(node)) {
+                int offset = 0;
+                int count;
+
+                while ((offset < bytes.length) && ((count = is.read(bytes, offset, bytes.length - offset)) != -1)) {
+                    offset += count;
+                }
+            }
+
+            content = ByteBuffer.wrap(bytes);
+        }
+
+        return new ByteBufferChannel(content);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        ZipArchivePath zipArchivePath = toZipArchivePath(dir);
+        ZipArchiveFileSystem fileSystem = zipArchivePath.fileSystem;
+        ZipArchive archive = fileSystem.getArchive();
+        int node = getNode(zipArchivePath);
+
+        if (!archive.isDirectory(node)) {
+            throw new NotDirectoryException(dir.toString());
+        }
+
+        ArrayList<Path> children = new ArrayList<>();
+
+        for (int child=archive.getFirstChild(node); child!=-1; child=archive.getNextSibling(child)) {
+            ZipArchivePath childPath;
+
+            if (zipArchivePath.isAbsolute()) {
+                childPath = new ZipArchivePath(fileSystem, "/" + archive.getPath(child));
+                childPath.node = child;
+            } else {
+                String path = archive.getPath(child);
+                childPath = (ZipArchivePath)dir.resolve(path.substring(path.lastIndexOf('/') + 1));
+            }
+
+            if ((filter == null) || filter.accept(childPath)) {
+                children.add(childPath);
+            }
+        }
+
+        return new DirectoryStream<Path>() {
+            @Override public Iterator<Path> iterator() { return children.iterator(); }
+            @Override public void close() {}
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        if (type != BasicFileAttributes.class) {
+            throw new UnsupportedOperationException();
+        }
+
+        ZipArchivePath zipArchivePath = toZipArchivePath(path);
+        return (A)new ZipArchiveFileAttributes(zipArchivePath.fileSystem.getArchive(), getNode(zipArchivePath));
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        BasicFileAttributes attrs = readAttributes(path, BasicFileAttributes.class, options);
+        HashMap<String, Object> map = new HashMap<>();
+        String names = attributes.startsWith("basic:") ? attributes.substring(6) : attributes;
+
+        for (String name : names.split(",")) {
+            boolean all = name.equals("*");
+
+            if (all || name.equals("size")) map.put("size", attrs.size());
+            if (all || name.equals("isDirectory")) map.put("isDirectory", attrs.isDirectory());
+            if (all || name.equals("isRegularFile")) map.put("isRegularFile", attrs.isRegularFile());
+            if (all || name.equals("isSymbolicLink")) map.put("isSymbolicLink", Boolean.FALSE);
+            if (all || name.equals("isOther")) map.put("isOther", Boolean.FALSE);
+            if (all || name.equals("lastModifiedTime")) map.put("lastModifiedTime", attrs.lastModifiedTime());
+            if (all || name.equals("lastAccessTime")) map.put("lastAccessTime", attrs.lastAccessTime());
+            if (all || name.equals("creationTime")) map.put("creationTime", attrs.creationTime());
+            if (all || name.equals("fileKey")) map.put("fileKey", null);
+        }
+
+        return map;
+    }
+
+    @Override
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) { return null; }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        getNode(toZipArchivePath(path));
+
+        for (AccessMode mode : modes) {
+            if (mode != AccessMode.READ) {
+                throw new AccessDeniedException(path.toString());
+            }
+        }
+    }
+
+    @Override public boolean isSameFile(Path path1, Path path2) { return path1.equals(path2); }
+    @Override public boolean isHidden(Path path) { return false; }
+    @Override public FileStore getFileStore(Path path) { throw new UnsupportedOperationException(); }
+
+    // --- Write operations --- //
+    @Override public void createDirectory(Path dir, FileAttribute<?>... attrs) { throw new ReadOnlyFileSystemException(); }
+    @Override public void delete(Path path) { throw new ReadOnlyFileSystemException(); }
+    @Override public void copy(Path source, Path target, CopyOption... options) { throw new ReadOnlyFileSystemException(); }
+    @Override public void move(Path source, Path target, CopyOption... options) { throw new ReadOnlyFileSystemException(); }
+    @Override public void setAttribute(Path path, String attribute, Object value, LinkOption... options) { throw new ReadOnlyFileSystemException(); }
+
+    protected static ZipArchivePath toZipArchivePath(Path path) {
+        if (!(path instanceof ZipArchivePath)) {
+            throw new ProviderMismatchException();
+        }
+        return (ZipArchivePath)path;
+    }
+
+    protected static int getNode(ZipArchivePath path) throws IOException {
+        if (!path.fileSystem.isOpen()) {
+            throw new ClosedFileSystemException();
+        }
+
+        int node = path.getNode();
+
+        if (node == -1) {
+            throw new NoSuchFileException(path.toString());
+        }
+
+        return node;
+    }
+
+    protected static void checkReadOnly(OpenOption... options) {
+        for (OpenOption option : options) {
+            if ((option != StandardOpenOption.READ) && (option != LinkOption.NOFOLLOW_LINKS)) {
+                throw new UnsupportedOperationException("Unsupported option: " + option);
+            }
+        }
+    }
+
+    protected static class ZipArchiveFileAttributes implements BasicFileAttributes {
+        protected ZipArchive archive;
+        protected int node;
+
+        public ZipArchiveFileAttributes(ZipArchive archive, int node) {
+            this.archive = archive;
+            this.node = node;
+        }
+
+        @Override public FileTime lastModifiedTime() { return FileTime.fromMillis(archive.getLastModifiedTime(node)); }
+        @Override public FileTime lastAccessTime() { return lastModifiedTime(); }
+        @Override public FileTime creationTime() { return lastModifiedTime(); }
+        @Override public boolean isRegularFile() { return !archive.isDirectory(node); }
+        @Override public boolean isDirectory() { return archive.isDirectory(node); }
+        @Override public boolean isSymbolicLink() { return false; }
+        @Override public boolean isOther() { return false; }
+        @Override public long size() { return archive.isDirectory(node) ? 0L : archive.getSize(node); }
+        @Override public Object fileKey() { return null; }
+    }
+
+    protected static class ByteBufferChannel implements SeekableByteChannel {
+        protected ByteBuffer buffer;
+        protected boolean open = true;
+
+        public ByteBufferChannel(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            checkOpen();
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(dst.remaining(), buffer.remaining());
+            ByteBuffer src = buffer.duplicate();
+
+            src.limit(src.position() + count);
+            dst.put(src);
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override public int write(ByteBuffer src) { throw new NonWritableChannelException(); }
+        @Override public long position() throws IOException { checkOpen(); return buffer.position(); }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            checkOpen();
+            buffer.position((int)Math.min(newPosition, buffer.limit()));
+            return this;
+        }
+
+        @Override public long size() throws IOException { checkOpen(); return buffer.limit(); }
+        @Override public SeekableByteChannel truncate(long size) { throw new NonWritableChannelException(); }
+        @Override public boolean isOpen() { return open; }
+        @Override public void close() { open = false; }
+
+        protected void checkOpen() throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
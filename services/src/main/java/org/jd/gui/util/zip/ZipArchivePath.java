@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2008-2019 Emmanuel Dupuy.
+ * This project is distributed under the GPLv3 license.
+ * This is a Copyleft license that gives the user the right to use,
+ * copy and modify the code freely for non-commercial purposes.
+ */
+
+package org.jd.gui.util.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Path of a ZipArchiveFileSystem: '/' separated names, absolute paths starting with '/'.
+ */
+public class ZipArchivePath implements Path {
+    protected static final int UNRESOLVED = -2;
+
+    protected ZipArchiveFileSystem fileSystem;
+    protected String path;
+    protected int[] offsets;
+    protected int node = UNRESOLVED;
+
+    protected ZipArchivePath(ZipArchiveFileSystem fileSystem, String path) {
+        this.fileSystem = fileSystem;
+        this.path = normalizeSeparators(path);
+    }
+
+    protected static String normalizeSeparators(String path) {
+        int length = path.length();
+        boolean normalized = true;
+
+        for (int i=0; i<length; i++) {
+            if ((path.charAt(i) == '/') && ((i == length - 1) || (path.charAt(i + 1) == '/'))) {
+                normalized = (length == 1);
+                break;
+            }
+        }
+
+        if (normalized) {
+            return path;
+        }
+
+        StringBuilder sb = new StringBuilder(length);
+
+        for (int i=0; i<length; i++) {
+            char c = path.charAt(i);
+
+            if ((c != '/') || (sb.length() == 0) || (sb.charAt(sb.length() - 1) != '/')) {
+                sb.append(c);
+            }
+        }
+
+        if ((sb.length() > 1) && (sb.charAt(sb.length() - 1) == '/')) {
+            sb.setLength(sb.length() - 1);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return the node of this path in the archive, or -1 if the path does not exist
+     */
+    protected int getNode() {
+        if (node == UNRESOLVED) {
+            ZipArchivePath absolutePath = toAbsolutePath();
+            node = fileSystem.getArchive().getNode(absolutePath.path.substring(1));
+        }
+        return node;
+    }
+
+    protected int[] getOffsets() {
+        if (offsets == null) {
+            ArrayList<Integer> list = new ArrayList<>();
+            int length = path.length();
+            int start = isAbsolute() ? 1 : 0;
+
+            if (start < length) {
+                list.add(start);
+
+                for (int i=start; i<length; i++) {
+                    if (path.charAt(i) == '/') {
+                        list.add(i + 1);
+                    }
+                }
+            }
+
+            int[] array = new int[list.size()];
+
+            for (int i=0; i<array.length; i++) {
+                array[i] = list.get(i);
+            }
+
+            offsets = array;
+        }
+        return offsets;
+    }
+
+    protected String getNameString(int index) {
+        int[] offsets = getOffsets();
+        int end = (index + 1 < offsets.length) ? offsets[index + 1] - 1 : path.length();
+        return path.substring(offsets[index], end);
+    }
+
+    @Override public FileSystem getFileSystem() { return fileSystem; }
+    @Override public boolean isAbsolute() { return path.startsWith("/"); }
+    @Override public Path getRoot() { return isAbsolute() ? fileSystem.getRootPath() : null; }
+
+    @Override
+    public Path getFileName() {
+        int count = getNameCount();
+        return (count == 0) ? null : (count == 1) && !isAbsolute() ? this : new ZipArchivePath(fileSystem, getNameString(count - 1));
+    }
+
+    @Override
+    public Path getParent() {
+        int count = getNameCount();
+
+        if (count == 0) {
+            return null;
+        }
+        if (count == 1) {
+            return getRoot();
+        }
+
+        return new ZipArchivePath(fileSystem, path.substring(0, getOffsets()[count - 1] - 1));
+    }
+
+    @Override public int getNameCount() { return getOffsets().length; }
+
+    @Override
+    public Path getName(int index) {
+        if ((index < 0) || (index >= getNameCount())) {
+            throw new IllegalArgumentException();
+        }
+        return new ZipArchivePath(fileSystem, getNameString(index));
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        int[] offsets = getOffsets();
+
+        if ((beginIndex < 0) || (beginIndex >= offsets.length) || (endIndex > offsets.length) || (beginIndex >= endIndex)) {
+            throw new IllegalArgumentException();
+        }
+
+        int end = (endIndex < offsets.length) ? offsets[endIndex] - 1 : path.length();
+        return new ZipArchivePath(fileSystem, path.substring(offsets[beginIndex], end));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof ZipArchivePath) || (other.getFileSystem() != fileSystem) || (other.isAbsolute() != isAbsolute())) {
+            return false;
+        }
+
+        String otherPath = ((ZipArchivePath)other).path;
+
+        if (otherPath.equals("/") || otherPath.isEmpty()) {
+            return true;
+        }
+
+        return path.startsWith(otherPath) && ((path.length() == otherPath.length()) || (path.charAt(otherPath.length()) == '/'));
+    }
+
+    @Override public boolean startsWith(String other) { return startsWith(getFileSystem().getPath(other)); }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof ZipArchivePath) || (other.getFileSystem() != fileSystem)) {
+            return false;
+        }
+
+        ZipArchivePath o = (ZipArchivePath)other;
+
+        if (o.isAbsolute()) {
+            return o.path.equals(path);
+        }
+
+        int start = path.length() - o.path.length();
+        return !o.path.isEmpty() && path.endsWith(o.path) && ((start == 0) || (path.charAt(start - 1) == '/'));
+    }
+
+    @Override public boolean endsWith(String other) { return endsWith(getFileSystem().getPath(other)); }
+
+    @Override
+    public Path normalize() {
+        int count = getNameCount();
+        ArrayList<String> names = new ArrayList<>(count);
+        boolean changed = false;
+
+        for (int i=0; i<count; i++) {
+            String name = getNameString(i);
+
+            if (name.equals(".")) {
+                changed = true;
+            } else if (name.equals("..") && !names.isEmpty() && !names.get(names.size() - 1).equals("..")) {
+                names.remove(names.size() - 1);
+                changed = true;
+            } else if (name.equals("..") && isAbsolute()) {
+                changed = true;
+            } else {
+                names.add(name);
+            }
+        }
+
+        return changed ? new ZipArchivePath(fileSystem, (isAbsolute() ? "/" : "") + String.join("/", names)) : this;
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        ZipArchivePath o = checkPath(other);
+
+        if (o.isAbsolute()) {
+            return o;
+        }
+        if (o.path.isEmpty()) {
+            return this;
+        }
+        if (path.isEmpty()) {
+            return o;
+        }
+
+        return new ZipArchivePath(fileSystem, path.endsWith("/") ? path + o.path : path + '/' + o.path);
+    }
+
+    @Override public Path resolve(String other) { return resolve(getFileSystem().getPath(other)); }
+
+    @Override
+    public Path resolveSibling(Path other) {
+        Path parent = getParent();
+        return (parent == null) ? other : parent.resolve(other);
+    }
+
+    @Override public Path resolveSibling(String other) { return resolveSibling(getFileSystem().getPath(other)); }
+
+    @Override
+    public Path relativize(Path other) {
+        ZipArchivePath o = checkPath(other);
+
+        if (o.isAbsolute() != isAbsolute()) {
+            throw new IllegalArgumentException("'other' is different type of Path");
+        }
+
+        int count = getNameCount();
+        int otherCount = o.getNameCount();
+        int common = 0;
+
+        while ((common < count) && (common < otherCount) && getNameString(common).equals(o.getNameString(common))) {
+            common++;
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (int i=common; i<count; i++) {
+            sb.append((sb.length() == 0) ? ".." : "/..");
+        }
+        for (int i=common; i<otherCount; i++) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(o.getNameString(i));
+        }
+
+        return new ZipArchivePath(fileSystem, sb.toString());
+    }
+
+    @Override public URI toUri() { return fileSystem.getUri(toAbsolutePath().path); }
+
+    @Override
+    public ZipArchivePath toAbsolutePath() {
+        return isAbsolute() ? this : new ZipArchivePath(fileSystem, "/" + path);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        ZipArchivePath realPath = (ZipArchivePath)toAbsolutePath().normalize();
+        fileSystem.provider().checkAccess(realPath);
+        return realPath;
+    }
+
+    @Override public File toFile() { throw new UnsupportedOperationException(); }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        ArrayList<Path> names = new ArrayList<>();
+
+        for (int i=0, count=getNameCount(); i<count; i++) {
+            names.add(getName(i));
+        }
+
+        return names.iterator();
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return path.compareTo(((ZipArchivePath)other).path);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof ZipArchivePath) && (((ZipArchivePath)o).fileSystem == fileSystem) && ((ZipArchivePath)o).path.equals(path);
+    }
+
+    @Override public int hashCode() { return path.hashCode(); }
+    @Override public String toString() { return path; }
+
+    protected ZipArchivePath checkPath(Path other) {
+        if (!(other instanceof ZipArchivePath)) {
+            throw new ProviderMismatchException();
+        }
+        return (ZipArchivePath)other;
+    }
+}
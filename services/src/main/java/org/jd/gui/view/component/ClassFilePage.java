@@ -16,13 +16,18 @@ import org.jd.gui.util.decompiler.*;
 import org.jd.gui.util.exception.ExceptionUtil;
 import org.jd.gui.util.io.NewlineOutputStream;
 
+import javax.swing.*;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultCaret;
 import java.awt.*;
+import java.awt.event.HierarchyEvent;
 import java.io.*;
+import java.net.URI;
 import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ClassFilePage extends TypePage {
     protected static final String ESCAPE_UNICODE_CHARACTERS   = "ClassFileDecompilerPreferences.escapeUnicodeCharacters";
@@ -33,7 +38,20 @@ public class ClassFilePage extends TypePage {
 
     protected static final ClassFileToJavaSourceDecompiler DECOMPILER = new ClassFileToJavaSourceDecompiler();
 
+    // Pages are decompiled in background, out of the event dispatch thread
+    protected static final ExecutorService DECOMPILER_EXECUTOR = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+        Thread thread = new Thread(runnable, "jd-gui-decompiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     protected int maximumLineNumber = -1;
+    // Running decompilation, and preferences of the decompilation postponed until the page is displayed
+    protected Decompilation decompilation;
+    protected Map<String, String> pendingPreferences;
+    // URI opened before the end of the first decompilation
+    protected URI pendingUri;
+    protected boolean decompiled = false;
 
     static {
         // Early class loading
@@ -50,49 +68,105 @@ public class ClassFilePage extends TypePage {
         Map<String, String> preferences = api.getPreferences();
         // Init view
         setErrorForeground(Color.decode(preferences.get("JdGuiPreferences.errorBackgroundColor")));
-        // Display source
-        decompile(preferences);
+        setText("// Decompiling...");
+        // Display source, decompiled once the page is displayed, cancelled when the page is hidden
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                if (isShowing()) {
+                    if (pendingPreferences != null) {
+                        decompileInBackground(pendingPreferences);
+                    }
+                } else if (decompilation != null) {
+                    pendingPreferences = decompilation.preferences;
+                    decompilation.cancel();
+                    decompilation = null;
+                }
+            }
+        });
+        pendingPreferences = preferences;
     }
 
+    /**
+     * Decompile synchronously.
+     */
     public void decompile(Map<String, String> preferences) {
-        try {
-            // Clear ...
-            clearHyperlinks();
-            clearLineNumbers();
-            declarations.clear();
-            typeDeclarations.clear();
-            strings.clear();
+        Decompilation d = new Decompilation(preferences);
 
-            // Init preferences
-            boolean realignmentLineNumbers = getPreferenceValue(preferences, REALIGN_LINE_NUMBERS, false);
-            boolean unicodeEscape = getPreferenceValue(preferences, ESCAPE_UNICODE_CHARACTERS, false);
+        d.decompile();
+        setDecompilation(d);
+    }
 
-            Map<String, Object> configuration = new HashMap<>();
-            configuration.put("realignLineNumbers", realignmentLineNumbers);
+    /**
+     * Decompile in background, from the event dispatch thread. The current source is displayed until the end of the
+     * decompilation.
+     */
+    public void decompileInBackground(Map<String, String> preferences) {
+        if (decompilation != null) {
+            decompilation.cancel();
+        }
 
-            setShowMisalignment(realignmentLineNumbers);
+        pendingPreferences = null;
+        decompilation = new Decompilation(preferences);
+        DECOMPILER_EXECUTOR.execute(decompilation);
+    }
 
-            // Init loader
-            ContainerLoader loader = new ContainerLoader(entry);
+    protected void setDecompilation(Decompilation d) {
+        ClassFilePrinter printer = d.printer;
+        DefaultCaret caret = (DefaultCaret)textArea.getCaret();
+        int updatePolicy = caret.getUpdatePolicy();
 
-            // Init printer
-            ClassFilePrinter printer = new ClassFilePrinter();
-            printer.setRealignmentLineNumber(realignmentLineNumbers);
-            printer.setUnicodeEscape(unicodeEscape);
+        // Clear ...
+        clearHyperlinks();
+        clearLineNumbers();
+        declarations.clear();
+        typeDeclarations.clear();
+        references.clear();
+        strings.clear();
 
-            // Format internal name
-            String entryPath = entry.getPath();
-            assert entryPath.endsWith(".class");
-            String entryInternalName = entryPath.substring(0, entryPath.length() - 6); // 6 = ".class".length()
+        setShowMisalignment(d.realignmentLineNumbers);
 
-            // Decompile class file
-            DECOMPILER.decompile(loader, printer, entryInternalName, configuration);
-        } catch (Throwable t) {
-            assert ExceptionUtil.printStackTrace(t);
+        if (printer.text == null) {
             setText("// INTERNAL ERROR //");
+        } else {
+            // Set line numbers, then the text
+            if (printer.maxLineNumber == 0) {
+                scrollPane.setLineNumbersEnabled(false);
+            } else {
+                setMaxLineNumber(printer.maxLineNumber);
+            }
+
+            for (int i=1, length=printer.lineNumbers.length; i<length; i++) {
+                setLineNumber(i, printer.lineNumbers[i]);
+            }
+
+            for (HyperlinkData hyperlink : printer.hyperlinks) {
+                addHyperlink(hyperlink);
+            }
+
+            declarations.putAll(printer.declarations);
+            typeDeclarations.putAll(printer.typeDeclarations);
+            references.addAll(printer.references);
+            strings.addAll(printer.strings);
+
+            if (decompiled) {
+                // Keep the position of the caret when the source is refreshed
+                caret.setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+            }
+
+            setText(printer.text);
+            caret.setUpdatePolicy(updatePolicy);
         }
 
         maximumLineNumber = getMaximumSourceLineNumber();
+        decompiled = true;
+
+        // Enable the hyperlinks of the new references
+        indexesChanged(collectionOfFutureIndexes);
+
+        if (pendingUri != null) {
+            super.openUri(pendingUri);
+            pendingUri = null;
+        }
     }
 
     protected static boolean getPreferenceValue(Map<String, String> preferences, String key, boolean defaultValue) {
@@ -124,7 +198,7 @@ public class ClassFilePage extends TypePage {
             configuration.put("realignLineNumbers", realignmentLineNumbers);
 
             // Init loader
-            ContainerLoader loader = new ContainerLoader(entry);
+            CompositeLoader loader = new CompositeLoader(api, entry);
 
             // Init printer
             LineNumberStringBuilderPrinter printer = new LineNumberStringBuilderPrinter();
@@ -132,13 +206,10 @@ public class ClassFilePage extends TypePage {
             printer.setUnicodeEscape(unicodeEscape);
             printer.setShowLineNumbers(showLineNumbers);
 
-            // Format internal name
-            String entryPath = entry.getPath();
-            assert entryPath.endsWith(".class");
-            String entryInternalName = entryPath.substring(0, entryPath.length() - 6); // 6 = ".class".length()
+            assert entry.getPath().endsWith(".class");
 
-            // Decompile class file
-            DECOMPILER.decompile(loader, printer, entryInternalName, configuration);
+            // Decompile class file, or replay its cached decompilation
+            DecompilationCache.getInstance().decompile(preferences, DECOMPILER, loader, printer, entry, configuration);
 
             StringBuilder stringBuffer = printer.getStringBuffer();
 
@@ -191,12 +262,28 @@ public class ClassFilePage extends TypePage {
         }
     }
 
+    // --- UriOpenable --- //
+    @Override
+    public boolean openUri(URI uri) {
+        if (decompiled) {
+            return super.openUri(uri);
+        } else {
+            // Opened at the end of the decompilation
+            pendingUri = uri;
+            return true;
+        }
+    }
+
     // --- LineNumberNavigable --- //
     @Override
     public int getMaximumLineNumber() { return maximumLineNumber; }
 
     @Override
     public void goToLineNumber(int lineNumber) {
+        if (!decompiled) {
+            return;
+        }
+
         int textAreaLineNumber = getTextAreaLineNumber(lineNumber);
         if (textAreaLineNumber > 0) {
             try {
@@ -215,36 +302,137 @@ public class ClassFilePage extends TypePage {
     // --- PreferencesChangeListener --- //
     @Override
     public void preferencesChanged(Map<String, String> preferences) {
-        DefaultCaret caret = (DefaultCaret)textArea.getCaret();
-        int updatePolicy = caret.getUpdatePolicy();
-
-        caret.setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
-        decompile(preferences);
-        caret.setUpdatePolicy(updatePolicy);
+        if (isShowing()) {
+            decompileInBackground(preferences);
+        } else {
+            // Decompiled when displayed
+            if (decompilation != null) {
+                decompilation.cancel();
+                decompilation = null;
+            }
+            pendingPreferences = preferences;
+        }
 
         super.preferencesChanged(preferences);
     }
 
+    /**
+     * Decompilation of the entry into a printer, without access to the components of the page.
+     */
+    protected class Decompilation implements Runnable {
+        protected Map<String, String> preferences;
+        protected boolean realignmentLineNumbers;
+        protected boolean unicodeEscape;
+        protected CompositeLoader loader;
+        protected ClassFilePrinter printer;
+        protected volatile boolean cancelled = false;
+
+        public Decompilation(Map<String, String> preferences) {
+            this.preferences = preferences;
+            this.realignmentLineNumbers = getPreferenceValue(preferences, REALIGN_LINE_NUMBERS, false);
+            this.unicodeEscape = getPreferenceValue(preferences, ESCAPE_UNICODE_CHARACTERS, false);
+            // Each resolution checks the cancellation
+            this.loader = new CompositeLoader(api, entry) {
+                @Override
+                protected Container.Entry getEntry(String internalPath) {
+                    checkCancelled();
+                    return super.getEntry(internalPath);
+                }
+            };
+            this.printer = new ClassFilePrinter(this);
+        }
+
+        public void cancel() { cancelled = true; }
+
+        protected void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!cancelled) {
+                try {
+                    decompile();
+                } catch (CancellationException e) {
+                    return;
+                }
+
+                SwingUtilities.invokeLater(() -> {
+                    // Ignore the results of the cancelled and replaced decompilations
+                    if (decompilation == this) {
+                        decompilation = null;
+
+                        if (!cancelled) {
+                            setDecompilation(this);
+                        }
+                    }
+                });
+            }
+        }
+
+        public void decompile() {
+            try {
+                Map<String, Object> configuration = new HashMap<>();
+                configuration.put("realignLineNumbers", realignmentLineNumbers);
+
+                // Init printer
+                printer.setRealignmentLineNumber(realignmentLineNumbers);
+                printer.setUnicodeEscape(unicodeEscape);
+
+                assert entry.getPath().endsWith(".class");
+
+                // Decompile class file, or replay its cached decompilation
+                DecompilationCache.getInstance().decompile(preferences, DECOMPILER, loader, printer, entry, configuration);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Throwable t) {
+                checkCancelled();
+                assert ExceptionUtil.printStackTrace(t);
+                printer.text = null;
+            }
+        }
+    }
+
+    /**
+     * Printer collecting the text, the declarations, the references and the line numbers, set to the page at the end of
+     * the decompilation.
+     */
     public class ClassFilePrinter extends StringBuilderPrinter {
+        protected Decompilation decompilation;
         protected HashMap<String, ReferenceData> referencesCache = new HashMap<>();
 
+        protected String text;
+        protected int maxLineNumber;
+        protected int[] lineNumbers = new int[1];
+        protected HashMap<String, DeclarationData> declarations = new HashMap<>();
+        protected TreeMap<Integer, DeclarationData> typeDeclarations = new TreeMap<>();
+        protected ArrayList<ReferenceData> references = new ArrayList<>();
+        protected ArrayList<StringData> strings = new ArrayList<>();
+        protected ArrayList<HyperlinkData> hyperlinks = new ArrayList<>();
+
         // Manage line number and misalignment
         int textAreaLineNumber = 1;
 
+        public ClassFilePrinter(Decompilation decompilation) {
+            this.decompilation = decompilation;
+        }
+
         @Override
         public void start(int maxLineNumber, int majorVersion, int minorVersion) {
+            decompilation.checkCancelled();
             super.start(maxLineNumber, majorVersion, minorVersion);
-
-            if (maxLineNumber == 0) {
-                scrollPane.setLineNumbersEnabled(false);
-            } else {
-                setMaxLineNumber(maxLineNumber);
-            }
+            this.maxLineNumber = maxLineNumber;
         }
 
         @Override
         public void end() {
-            setText(stringBuffer.toString());
+            text = stringBuffer.toString();
+        }
+
+        protected void addHyperlink(HyperlinkData hyperlink) {
+            hyperlinks.add(hyperlink);
         }
 
         // --- Add strings --- //
@@ -301,8 +489,15 @@ public class ClassFilePage extends TypePage {
 
         @Override
         public void startLine(int lineNumber) {
+            decompilation.checkCancelled();
             super.startLine(lineNumber);
-            setLineNumber(textAreaLineNumber, lineNumber);
+
+            if (lineNumber > 0) {
+                if (lineNumbers.length <= textAreaLineNumber) {
+                    lineNumbers = Arrays.copyOf(lineNumbers, Math.max(textAreaLineNumber + 1, lineNumbers.length * 2));
+                }
+                lineNumbers[textAreaLineNumber] = lineNumber;
+            }
         }
         @Override
         public void endLine() {
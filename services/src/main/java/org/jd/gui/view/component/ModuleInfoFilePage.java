@@ -12,7 +12,7 @@ import org.fife.ui.rtextarea.Marker;
 import org.jd.gui.api.API;
 import org.jd.gui.api.model.Container;
 import org.jd.gui.api.model.Indexes;
-import org.jd.gui.util.decompiler.ContainerLoader;
+import org.jd.gui.util.decompiler.CompositeLoader;
 import org.jd.gui.util.decompiler.StringBuilderPrinter;
 import org.jd.gui.util.exception.ExceptionUtil;
 import org.jd.gui.util.index.IndexesUtil;
@@ -42,6 +42,15 @@ public class ModuleInfoFilePage extends ClassFilePage {
 
     public ModuleInfoFilePage(API api, Container.Entry entry) {
         super(api, entry);
+        decompileInBackground(api.getPreferences());
+    }
+
+    @Override
+    public void decompileInBackground(Map<String, String> preferences) {
+        // Small class file: decompiled synchronously
+        pendingPreferences = null;
+        decompile(preferences);
+        decompiled = true;
     }
 
     @Override
@@ -56,7 +65,7 @@ public class ModuleInfoFilePage extends ClassFilePage {
             boolean unicodeEscape = getPreferenceValue(preferences, ESCAPE_UNICODE_CHARACTERS, false);
 
             // Init loader
-            ContainerLoader loader = new ContainerLoader(entry);
+            CompositeLoader loader = new CompositeLoader(api, entry);
 
             // Init printer
             ModuleInfoFilePrinter printer = new ModuleInfoFilePrinter();
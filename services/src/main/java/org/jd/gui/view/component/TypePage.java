@@ -344,21 +344,7 @@ public abstract class TypePage extends CustomLineNumbersPage implements UriGetta
             boolean enabled;
 
             if (reference.name == null) {
-                enabled = false;
-
-                try {
-                    for (Future<Indexes> futureIndexes : collectionOfFutureIndexes) {
-                        if (futureIndexes.isDone()) {
-                            Map<String, Collection> index = futureIndexes.get().getIndex("typeDeclarations");
-                            if ((index != null) && (index.get(typeName) != null)) {
-                                enabled = true;
-                                break;
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    assert ExceptionUtil.printStackTrace(e);
-                }
+                enabled = IndexesUtil.containsInternalTypeName(collectionOfFutureIndexes, typeName);
             } else {
                 try {
                     // Recursive search
@@ -390,24 +376,7 @@ public abstract class TypePage extends CustomLineNumbersPage implements UriGetta
 
     @SuppressWarnings("unchecked")
     protected String searchTypeHavingMember(String typeName, String name, String descriptor, Container.Entry entry) {
-        ArrayList<Container.Entry> entries = new ArrayList<>();
-
-        try {
-            for (Future<Indexes> futureIndexes : collectionOfFutureIndexes) {
-                if (futureIndexes.isDone()) {
-                    Map<String, Collection> index = futureIndexes.get().getIndex("typeDeclarations");
-                    if (index != null) {
-                        Collection<Container.Entry> collection = index.get(typeName);
-                        if (collection != null) {
-                            entries.addAll(collection);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            assert ExceptionUtil.printStackTrace(e);
-        }
-
+        List<Container.Entry> entries = IndexesUtil.findInternalTypeName(collectionOfFutureIndexes, typeName);
         String rootUri = entry.getContainer().getRoot().getUri().toString();
         ArrayList<Container.Entry> sameContainerEntries = new ArrayList<>();
 
@@ -0,0 +1,60 @@
+package org.jd.gui.model.container;
+
+import org.jd.gui.api.feature.ContainerEntryLocatable;
+import org.jd.gui.api.model.Container;
+
+import java.net.URI;
+import java.util.HashMap;
+
+/**
+ * In-memory container shared by the tests.<br>
+ * Entries are located by path; a container built on an entry is mounted under it, as an archive file.
+ */
+public class TestContainer implements Container, ContainerEntryLocatable {
+    public String type;
+    public TestEntry root;
+    public HashMap<String, TestEntry> entries = new HashMap<>();
+
+    public TestContainer() {
+        this("test");
+    }
+
+    public TestContainer(String type) {
+        this.type = type;
+        this.root = new TestEntry(this, null, "", null, true, null);
+    }
+
+    public TestContainer(TestEntry parentEntry) {
+        this.type = "test";
+        this.root = new TestEntry(this, parentEntry, "", URI.create("test:/" + parentEntry.path + "!/"), true, null);
+        // Children of an archive file are the children of the root of its container
+        parentEntry.children = root.children;
+    }
+
+    public TestEntry add(String path) {
+        return add(root, path, false, null);
+    }
+
+    public TestEntry add(String path, byte[] content) {
+        return add(root, path, false, content);
+    }
+
+    public TestEntry add(TestEntry parent, String path, boolean directory) {
+        return add(parent, path, directory, null);
+    }
+
+    public TestEntry add(TestEntry parent, String path, boolean directory, byte[] content) {
+        URI uri = (root.uri == null) ? null : URI.create(root.uri + path);
+        return add(new TestEntry(this, parent, path, uri, directory, content));
+    }
+
+    public <T extends TestEntry> T add(T entry) {
+        entry.parent.children.add(entry);
+        entries.put(entry.path, entry);
+        return entry;
+    }
+
+    @Override public String getType() { return type; }
+    @Override public Container.Entry getRoot() { return root; }
+    @Override public Container.Entry getEntry(String path) { return entries.get(path); }
+}
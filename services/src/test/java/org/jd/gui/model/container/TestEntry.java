@@ -0,0 +1,51 @@
+package org.jd.gui.model.container;
+
+import org.jd.gui.api.model.Container;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * In-memory entry shared by the tests.<br>
+ * Built alone, or by a <code>TestContainer</code> that links it to its parent.
+ */
+public class TestEntry implements Container.Entry {
+    public Container container;
+    public TestEntry parent;
+    public String path;
+    public URI uri;
+    public boolean directory;
+    public byte[] content;
+    public List<Container.Entry> children = new ArrayList<>();
+
+    public TestEntry(String path) {
+        this(null, null, path, null, false, null);
+    }
+
+    public TestEntry(String path, byte[] content) {
+        this(null, null, path, null, false, content);
+    }
+
+    public TestEntry(Container container, TestEntry parent, String path, URI uri, boolean directory, byte[] content) {
+        this.container = container;
+        this.parent = parent;
+        this.path = path;
+        this.uri = uri;
+        this.directory = directory;
+        this.content = content;
+    }
+
+    @Override public Container getContainer() { return container; }
+    @Override public Container.Entry getParent() { return parent; }
+    @Override public URI getUri() { return uri; }
+    @Override public String getPath() { return path; }
+    @Override public boolean isDirectory() { return directory; }
+    @Override public long length() { return (content == null) ? 0 : content.length; }
+    @Override public InputStream getInputStream() { return (content == null) ? null : new ByteArrayInputStream(content); }
+    @Override public Collection<Container.Entry> getChildren() { return children; }
+    @Override public String toString() { return path; }
+}
@@ -0,0 +1,416 @@
+package org.jd.gui.service.indexer;
+
+import junit.framework.TestCase;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.model.container.TestEntry;
+import org.jd.gui.api.model.Indexes;
+import org.junit.Assert;
+import org.objectweb.asm.*;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.annotation.*;
+import java.net.URL;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.objectweb.asm.ClassReader.*;
+
+/**
+ * Compare the indexes of the class file scanner with the indexes of the previous implementation, based on ASM.
+ */
+public class ClassFileIndexerProviderTest extends TestCase {
+    protected static final String[] INDEX_NAMES = {
+        "typeDeclarations", "constructorDeclarations", "methodDeclarations", "fieldDeclarations", "typeReferences",
+        "constructorReferences", "methodReferences", "fieldReferences", "strings", "subTypeNames"
+    };
+
+    public void testJdGuiClasses() throws Exception {
+        URL url = ClassFileIndexerProvider.class.getResource("ClassFileIndexerProvider.class");
+        int count = 0;
+
+        if ("file".equals(url.getProtocol())) {
+            // All the classes of the module
+            Path root = Paths.get(url.toURI());
+
+            for (int i=ClassFileIndexerProvider.class.getName().split("\\.").length-1; i>0; i--) {
+                root = root.getParent();
+            }
+
+            try (Stream<Path> stream = Files.walk(root)) {
+                for (Path path : stream.filter(p -> p.toString().endsWith(".class")).collect(Collectors.toList())) {
+                    assertSameIndexes(root.relativize(path).toString(), Files.readAllBytes(path));
+                    count++;
+                }
+            }
+        } else {
+            for (Class<?> clazz : Arrays.asList(ClassFileIndexerProvider.class, AbstractIndexerProvider.class, ZipFileIndexerProvider.class)) {
+                assertSameIndexes(clazz.getName(), getBytes(clazz));
+                count++;
+            }
+        }
+
+        Assert.assertTrue(count > 0);
+    }
+
+    public void testGenerics() throws Exception {
+        for (Class<?> clazz : Arrays.asList(HashMap.class, Map.Entry.class, Collectors.class, Generic.class, Generic.Inner.class)) {
+            assertSameIndexes(clazz.getName(), getBytes(clazz));
+        }
+    }
+
+    public void testAnnotations() throws Exception {
+        for (Class<?> clazz : Arrays.asList(Annotated.class, TypeAnnotation.class, Values.class, Retention.class)) {
+            assertSameIndexes(clazz.getName(), getBytes(clazz));
+        }
+    }
+
+    public void testModuleInfo() throws Exception {
+        ClassWriter classWriter = new ClassWriter(0);
+
+        classWriter.visit(Opcodes.V9, Opcodes.ACC_MODULE, "module-info", null, null, null);
+
+        ModuleVisitor moduleVisitor = classWriter.visitModule("org.jd.gui.test", Opcodes.ACC_OPEN, "1.0");
+
+        moduleVisitor.visitRequire("java.base", Opcodes.ACC_MANDATED, null);
+        moduleVisitor.visitRequire("java.desktop", 0, null);
+        moduleVisitor.visitExport("org/jd/gui/api", 0);
+        moduleVisitor.visitOpen("org/jd/gui/spi", 0, "java.base");
+        moduleVisitor.visitUse("org/jd/gui/spi/Indexer");
+        moduleVisitor.visitProvide("org/jd/gui/spi/Indexer", "org/jd/gui/service/indexer/ClassFileIndexerProvider");
+        moduleVisitor.visitEnd();
+        classWriter.visitEnd();
+
+        assertSameIndexes("module-info.class", classWriter.toByteArray());
+
+        // Module descriptor of the runtime, since Java 9
+        URL url = Object.class.getResource("/module-info.class");
+
+        if (url != null) {
+            try (InputStream is = url.openStream()) {
+                assertSameIndexes("java.base/module-info.class", lowerVersion(readAll(is)));
+            }
+        }
+    }
+
+    protected static void assertSameIndexes(String path, byte[] bytes) {
+        TestEntry entry = new TestEntry(path, bytes);
+        TestIndexes expected = new TestIndexes();
+        TestIndexes actual = new TestIndexes();
+
+        new AsmClassIndexer().index(entry, expected);
+        new ClassFileIndexerProvider().index(null, entry, actual);
+
+        for (String name : INDEX_NAMES) {
+            Assert.assertEquals(path + ": " + name, expected.getIndex(name), actual.getIndex(name));
+        }
+    }
+
+    protected static byte[] getBytes(Class<?> clazz) throws IOException {
+        try (InputStream is = clazz.getResourceAsStream('/' + clazz.getName().replace('.', '/') + ".class")) {
+            return lowerVersion(readAll(is));
+        }
+    }
+
+    /**
+     * ASM 7 reads class files up to Java 11: the version of the runtime classes is lowered, it is not used by the
+     * indexers.
+     */
+    protected static byte[] lowerVersion(byte[] bytes) {
+        if ((((bytes[6] & 0xFF) << 8) | (bytes[7] & 0xFF)) > Opcodes.V11) {
+            bytes[6] = 0;
+            bytes[7] = (byte)Opcodes.V11;
+        }
+        return bytes;
+    }
+
+    protected static byte[] readAll(InputStream is) throws IOException {
+        java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+
+        while ((count = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, count);
+        }
+
+        return baos.toByteArray();
+    }
+
+    // --- Indexed classes --- //
+    @Target(ElementType.TYPE_USE)
+    @Retention(RetentionPolicy.RUNTIME)
+    protected @interface TypeAnnotation {
+        String value() default "";
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    protected @interface Values {
+        ElementType type() default ElementType.FIELD;
+        Class<?> clazz() default Object.class;
+        Retention nested() default @Retention(RetentionPolicy.CLASS);
+        ElementType[] types() default { ElementType.METHOD, ElementType.TYPE };
+        String[] strings() default {};
+    }
+
+    @Values(type=ElementType.TYPE, clazz=Serializable.class, nested=@Retention(RetentionPolicy.SOURCE), types={ ElementType.PACKAGE }, strings={ "a", "b" })
+    protected static class Annotated<@TypeAnnotation T extends @TypeAnnotation Comparable<T>> extends @TypeAnnotation ArrayList<@TypeAnnotation("element") String> implements @TypeAnnotation Serializable {
+        @Deprecated @TypeAnnotation
+        protected Map<@TypeAnnotation String, @TypeAnnotation List<@TypeAnnotation T>> map;
+        protected @TypeAnnotation int @TypeAnnotation [] array;
+
+        @Values(types={})
+        public Annotated(@Deprecated @TypeAnnotation String s) throws @TypeAnnotation IOException {
+            if (s == null) {
+                throw new IOException("null");
+            }
+        }
+
+        public <@TypeAnnotation U extends Callable<? super @TypeAnnotation T>> @TypeAnnotation U call(@Values(clazz=Runnable.class) U u) {
+            Object o = (@TypeAnnotation Object)u;
+            return (o instanceof @TypeAnnotation Runnable) ? null : u;
+        }
+    }
+
+    protected static class Generic<K extends Comparable<? super K>, V> implements Comparator<Map.Entry<K, V[]>> {
+        protected Generic<K, V>.Inner inner;
+        protected Map<? extends K, ? super List<V>>[] maps;
+
+        @Override
+        public int compare(Map.Entry<K, V[]> e1, Map.Entry<K, V[]> e2) {
+            return e1.getKey().compareTo(e2.getKey());
+        }
+
+        protected class Inner implements Iterable<Map.Entry<K, V>> {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return Collections.emptyIterator();
+            }
+        }
+    }
+
+    // --- Test classes --- //
+    protected static class TestIndexes implements Indexes {
+        protected HashMap<String, Map<String, Collection>> indexes = new HashMap<>();
+
+        @Override
+        public Map<String, Collection> getIndex(String name) {
+            return indexes.computeIfAbsent(name, k -> new HashMap<String, Collection>() {
+                @Override
+                public Collection get(Object key) {
+                    return computeIfAbsent(key.toString(), s -> new ArrayList<>());
+                }
+            });
+        }
+    }
+
+    /**
+     * Previous implementation of the class file indexer.
+     */
+    protected static class AsmClassIndexer extends ClassVisitor {
+        protected HashSet<String> typeDeclarationSet = new HashSet<>();
+        protected HashSet<String> constructorDeclarationSet = new HashSet<>();
+        protected HashSet<String> methodDeclarationSet = new HashSet<>();
+        protected HashSet<String> fieldDeclarationSet = new HashSet<>();
+        protected HashSet<String> typeReferenceSet = new HashSet<>();
+        protected HashSet<String> constructorReferenceSet = new HashSet<>();
+        protected HashSet<String> methodReferenceSet = new HashSet<>();
+        protected HashSet<String> fieldReferenceSet = new HashSet<>();
+        protected HashSet<String> stringSet = new HashSet<>();
+        protected HashSet<String> superTypeNameSet = new HashSet<>();
+        protected HashSet<String> descriptorSet = new HashSet<>();
+
+        protected SignatureIndexer signatureIndexer = new SignatureIndexer();
+        protected AnnotationIndexer annotationIndexer = new AnnotationIndexer();
+        protected FieldIndexer fieldIndexer = new FieldIndexer();
+        protected MethodIndexer methodIndexer = new MethodIndexer();
+
+        protected String name;
+
+        public AsmClassIndexer() { super(Opcodes.ASM7); }
+
+        @SuppressWarnings("unchecked")
+        public void index(Container.Entry entry, Indexes indexes) {
+            try (InputStream inputStream = entry.getInputStream()) {
+                ClassReader classReader = new ClassReader(inputStream);
+                classReader.accept(this, SKIP_CODE|SKIP_DEBUG|SKIP_FRAMES);
+
+                for (String descriptor : descriptorSet) {
+                    new SignatureReader(descriptor).accept(signatureIndexer);
+                }
+
+                char[] buffer = new char[classReader.getMaxStringLength()];
+
+                for (int i=classReader.getItemCount()-1; i>0; i--) {
+                    int startIndex = classReader.getItem(i);
+
+                    if (startIndex != 0) {
+                        int tag = classReader.readByte(startIndex-1);
+
+                        switch (tag) {
+                            case 7: // CONSTANT_Class
+                                String className = classReader.readUTF8(startIndex, buffer);
+                                if (className.startsWith("[")) {
+                                    new SignatureReader(className).acceptType(signatureIndexer);
+                                } else {
+                                    typeReferenceSet.add(className);
+                                }
+                                break;
+                            case 8: // CONSTANT_String
+                                stringSet.add(classReader.readUTF8(startIndex, buffer));
+                                break;
+                            case 9: // CONSTANT_Fieldref
+                                int nameAndTypeIndex = classReader.getItem(classReader.readUnsignedShort(startIndex+2));
+                                if (classReader.readByte(nameAndTypeIndex-1) == 12) {
+                                    fieldReferenceSet.add(classReader.readUTF8(nameAndTypeIndex, buffer));
+                                }
+                                break;
+                            case 10: // CONSTANT_Methodref
+                            case 11: // CONSTANT_InterfaceMethodref
+                                nameAndTypeIndex = classReader.getItem(classReader.readUnsignedShort(startIndex+2));
+                                if (classReader.readByte(nameAndTypeIndex-1) == 12) {
+                                    String methodName = classReader.readUTF8(nameAndTypeIndex, buffer);
+                                    if ("<init>".equals(methodName)) {
+                                        int classIndex = classReader.getItem(classReader.readUnsignedShort(startIndex));
+                                        constructorReferenceSet.add(classReader.readUTF8(classIndex, buffer));
+                                    } else {
+                                        methodReferenceSet.add(methodName);
+                                    }
+                                }
+                                break;
+                        }
+                    }
+                }
+
+                AbstractIndexerProvider.addToIndexes(indexes, "typeDeclarations", typeDeclarationSet, entry);
+                AbstractIndexerProvider.addToIndexes(indexes, "constructorDeclarations", constructorDeclarationSet, entry);
+                AbstractIndexerProvider.addToIndexes(indexes, "methodDeclarations", methodDeclarationSet, entry);
+                AbstractIndexerProvider.addToIndexes(indexes, "fieldDeclarations", fieldDeclarationSet, entry);
+                AbstractIndexerProvider.addToIndexes(indexes, "typeReferences", typeReferenceSet, entry);
+                AbstractIndexerProvider.addToIndexes(indexes, "constructorReferences", constructorReferenceSet, entry);
+                AbstractIndexerProvider.addToIndexes(indexes, "methodReferences", methodReferenceSet, entry);
+                AbstractIndexerProvider.addToIndexes(indexes, "fieldReferences", fieldReferenceSet, entry);
+                AbstractIndexerProvider.addToIndexes(indexes, "strings", stringSet, entry);
+
+                if (superTypeNameSet.size() > 0) {
+                    Map<String, Collection> index = indexes.getIndex("subTypeNames");
+
+                    for (String superTypeName : superTypeNameSet) {
+                        index.get(superTypeName).add(name);
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.name = name;
+            typeDeclarationSet.add(name);
+
+            if (superName != null) {
+                superTypeNameSet.add(superName);
+            }
+            if (interfaces != null) {
+                superTypeNameSet.addAll(Arrays.asList(interfaces));
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            descriptorSet.add(desc);
+            return annotationIndexer;
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+            descriptorSet.add(desc);
+            return annotationIndexer;
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            fieldDeclarationSet.add(name);
+            descriptorSet.add(signature==null ? desc : signature);
+            return fieldIndexer;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if ("<init>".equals(name)) {
+                constructorDeclarationSet.add(this.name);
+            } else if (! "<clinit>".equals(name)) {
+                methodDeclarationSet.add(name);
+            }
+
+            descriptorSet.add(signature==null ? desc : signature);
+
+            if (exceptions != null) {
+                typeReferenceSet.addAll(Arrays.asList(exceptions));
+            }
+            return methodIndexer;
+        }
+
+        protected class SignatureIndexer extends SignatureVisitor {
+            SignatureIndexer() { super(Opcodes.ASM7); }
+
+            @Override public void visitClassType(String name) { typeReferenceSet.add(name); }
+        }
+
+        protected class AnnotationIndexer extends AnnotationVisitor {
+            public AnnotationIndexer() { super(Opcodes.ASM7); }
+
+            @Override public void visitEnum(String name, String desc, String value) { descriptorSet.add(desc); }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String name, String desc) {
+                descriptorSet.add(desc);
+                return this;
+            }
+        }
+
+        protected class FieldIndexer extends FieldVisitor {
+            public FieldIndexer() { super(Opcodes.ASM7); }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                descriptorSet.add(desc);
+                return annotationIndexer;
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+                descriptorSet.add(desc);
+                return annotationIndexer;
+            }
+        }
+
+        protected class MethodIndexer extends MethodVisitor {
+            public MethodIndexer() { super(Opcodes.ASM7); }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                descriptorSet.add(desc);
+                return annotationIndexer;
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+                descriptorSet.add(desc);
+                return annotationIndexer;
+            }
+
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+                descriptorSet.add(desc);
+                return annotationIndexer;
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.jd.gui.service.sourcesaver;
+
+import junit.framework.TestCase;
+import org.jd.gui.spi.SourceSaver;
+import org.junit.Assert;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class SourceSaverPipelineTest extends TestCase {
+    protected static final SourceSaver.Controller CONTROLLER = () -> false;
+
+    protected File directory;
+    protected List<Path> savedPaths = Collections.synchronizedList(new ArrayList<>());
+    protected SourceSaver.Listener listener = path -> savedPaths.add(path);
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("jd-gui.test.").toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(directory);
+    }
+
+    public void testFilesWrittenInSubmissionOrder() throws Exception {
+        Path rootPath = directory.toPath();
+        ArrayList<Path> paths = new ArrayList<>();
+
+        try (SourceSaverPipeline pipeline = new SourceSaverPipeline(CONTROLLER, listener, 4)) {
+            for (int i=0; i<10; i++) {
+                Path packagePath = rootPath.resolve("p" + i);
+
+                pipeline.createDirectories(packagePath);
+
+                for (int j=0; j<20; j++) {
+                    Path path = packagePath.resolve("C" + j + ".java");
+                    pipeline.submit(path, newProducer(path), true);
+                    paths.add(path);
+                }
+            }
+        }
+
+        Assert.assertEquals(paths, savedPaths);
+
+        for (Path path : paths) {
+            Assert.assertEquals(path.toString(), new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+        }
+    }
+
+    public void testEntriesStreamedInSubmissionOrder() throws Exception {
+        Path archivePath = directory.toPath().resolve("sources.zip");
+        Path nestedArchivePath = archivePath.resolve("lib/nested.jar");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<String> nestedNames = new ArrayList<>();
+
+        try (SourceSaverPipeline pipeline = new SourceSaverPipeline(CONTROLLER, listener, 4, archivePath, baos, "stored")) {
+            submit(pipeline, archivePath, "a", names);
+            pipeline.createDirectories(archivePath.resolve("lib"));
+            names.add("lib/");
+            pipeline.openArchive(nestedArchivePath);
+            names.add("lib/nested.jar");
+            submit(pipeline, nestedArchivePath, "n", nestedNames);
+            pipeline.closeArchive(nestedArchivePath);
+            submit(pipeline, archivePath, "z", names);
+        }
+
+        byte[] nestedArchive = null;
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            ArrayList<String> readNames = new ArrayList<>();
+
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                readNames.add(entry.getName());
+
+                if (entry.getName().equals("lib/nested.jar")) {
+                    nestedArchive = readAllBytes(zis);
+                } else if (!entry.isDirectory()) {
+                    Assert.assertEquals(archivePath.resolve(entry.getName()).toString(), new String(readAllBytes(zis), StandardCharsets.UTF_8));
+                }
+            }
+
+            Assert.assertEquals(names, readNames);
+        }
+
+        Assert.assertNotNull(nestedArchive);
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(nestedArchive))) {
+            ArrayList<String> readNames = new ArrayList<>();
+
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                readNames.add(entry.getName());
+            }
+
+            Assert.assertEquals(nestedNames, readNames);
+        }
+    }
+
+    public void testDuplicateEntriesSkipped() throws Exception {
+        Path archivePath = directory.toPath().resolve("sources.zip");
+        Path path = archivePath.resolve("com/x/Foo.java");
+        Path nestedArchivePath = archivePath.resolve("lib/nested.jar");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (SourceSaverPipeline pipeline = new SourceSaverPipeline(CONTROLLER, listener, 4, archivePath, baos, "default")) {
+            pipeline.submit(path, () -> "first".getBytes(StandardCharsets.UTF_8), true);
+            pipeline.submit(path, () -> "second".getBytes(StandardCharsets.UTF_8), true);
+            pipeline.createDirectories(archivePath.resolve("lib"));
+            pipeline.createDirectories(archivePath.resolve("lib"));
+            pipeline.openArchive(nestedArchivePath);
+            submit(pipeline, nestedArchivePath, "n", new ArrayList<>());
+            pipeline.closeArchive(nestedArchivePath);
+            pipeline.openArchive(nestedArchivePath);
+            submit(pipeline, nestedArchivePath, "m", new ArrayList<>());
+            pipeline.closeArchive(nestedArchivePath);
+        }
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            ArrayList<String> readNames = new ArrayList<>();
+
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                readNames.add(entry.getName());
+
+                if (entry.getName().equals("com/x/Foo.java")) {
+                    // First one kept
+                    Assert.assertEquals("first", new String(readAllBytes(zis), StandardCharsets.UTF_8));
+                }
+            }
+
+            Assert.assertEquals(Arrays.asList("com/x/Foo.java", "lib/", "lib/nested.jar"), readNames);
+        }
+
+        // Both reported
+        Assert.assertEquals(2, Collections.frequency(savedPaths, path));
+    }
+
+    public void testWriteFailureThrownByClose() throws Exception {
+        Path archivePath = directory.toPath().resolve("sources.zip");
+        OutputStream os = new OutputStream() {
+            protected int count;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++count > 1000) {
+                    throw new IOException("No space left on device");
+                }
+            }
+        };
+        SourceSaverPipeline pipeline = new SourceSaverPipeline(CONTROLLER, listener, 2, archivePath, os, "stored");
+
+        // More contents than the capacity of the queue
+        submit(pipeline, archivePath, "a", new ArrayList<>());
+        pipeline.flush();
+
+        Assert.assertTrue(pipeline.isCancelled());
+
+        try {
+            pipeline.close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("No space left on device", e.getMessage());
+        }
+
+        Assert.assertTrue(savedPaths.size() < 20);
+    }
+
+    public void testListenerFailureThrownByClose() throws Exception {
+        RuntimeException failure = new IllegalStateException();
+        SourceSaverPipeline pipeline = new SourceSaverPipeline(CONTROLLER, path -> { throw failure; }, 2);
+        Path rootPath = directory.toPath();
+
+        // Enqueued or skipped, without blocking
+        for (int i=0; i<20; i++) {
+            Path path = rootPath.resolve("C" + i + ".java");
+            pipeline.submit(path, newProducer(path), true);
+        }
+
+        try {
+            pipeline.close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+
+        Assert.assertTrue(Files.exists(rootPath.resolve("C0.java")));
+        Assert.assertFalse(Files.exists(rootPath.resolve("C19.java")));
+    }
+
+    protected static void submit(SourceSaverPipeline pipeline, Path rootPath, String packageName, List<String> names) {
+        for (int i=0; i<20; i++) {
+            String name = packageName + "/C" + i + ".java";
+            Path path = rootPath.resolve(name);
+
+            pipeline.submit(path, newProducer(path), true);
+            names.add(name);
+        }
+    }
+
+    protected static SourceSaverPipeline.ContentProducer newProducer(Path path) {
+        return () -> {
+            // The contents are computed out of order
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            return path.toString().getBytes(StandardCharsets.UTF_8);
+        };
+    }
+
+    protected static byte[] readAllBytes(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+
+        for (int len = is.read(buffer); len != -1; len = is.read(buffer)) {
+            baos.write(buffer, 0, len);
+        }
+
+        return baos.toByteArray();
+    }
+
+    protected static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
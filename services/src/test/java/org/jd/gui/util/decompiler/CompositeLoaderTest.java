@@ -0,0 +1,129 @@
+package org.jd.gui.util.decompiler;
+
+import junit.framework.TestCase;
+import org.jd.gui.api.API;
+import org.jd.gui.api.feature.UriGettable;
+import org.jd.gui.api.model.Container;
+import org.jd.gui.model.container.TestContainer;
+import org.jd.gui.model.container.TestEntry;
+import org.jd.gui.api.model.Indexes;
+import org.jd.gui.spi.*;
+import org.junit.Assert;
+
+import javax.swing.*;
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+public class CompositeLoaderTest extends TestCase {
+    protected TestAPI api = new TestAPI();
+    protected TestContainer container = new TestContainer();
+    protected TestContainer otherContainer = new TestContainer();
+    protected TestEntry entry = container.add("foo/A.class");
+
+    public void testParseSearchOrder() {
+        int[] defaultOrder = { CompositeLoader.DIRECTORY, CompositeLoader.CONTAINER, CompositeLoader.CLASSPATH };
+
+        Assert.assertArrayEquals(defaultOrder, CompositeLoader.parseSearchOrder(null));
+        Assert.assertArrayEquals(defaultOrder, CompositeLoader.parseSearchOrder(" "));
+
+        // Unknown and empty tokens ignored
+        Assert.assertArrayEquals(new int[] { CompositeLoader.CLASSPATH, CompositeLoader.DIRECTORY }, CompositeLoader.parseSearchOrder(" classpath , unknown,,directory"));
+        Assert.assertArrayEquals(new int[0], CompositeLoader.parseSearchOrder("unknown"));
+    }
+
+    public void testIsClassFile() {
+        Assert.assertTrue(CompositeLoader.isClassFile(new TestEntry("foo/Bar.class"), "foo/Bar"));
+        Assert.assertTrue(CompositeLoader.isClassFile(new TestEntry("WEB-INF/classes/foo/Bar.class"), "foo/Bar"));
+        Assert.assertTrue(CompositeLoader.isClassFile(new TestEntry("Bar.class"), "Bar"));
+
+        // Other names with the same suffix
+        Assert.assertFalse(CompositeLoader.isClassFile(new TestEntry("foo/XBar.class"), "Bar"));
+        Assert.assertFalse(CompositeLoader.isClassFile(new TestEntry("foo/Bar$Inner.class"), "foo/Bar"));
+        Assert.assertFalse(CompositeLoader.isClassFile(new TestEntry("foo/Bar.java"), "foo/Bar"));
+        Assert.assertFalse(CompositeLoader.isClassFile(new TestEntry("Bar.class"), "foo/Bar"));
+    }
+
+    public void testSearchOrder() {
+        TestEntry b = container.add("foo/B.class");
+        TestEntry otherB = otherContainer.add("foo/B.class");
+
+        api.addTypeDeclaration("foo/B", b);
+        api.addTypeDeclaration("foo/B", otherB);
+
+        Assert.assertSame(b, new CompositeLoader(api, entry).getEntry("foo/B"));
+
+        api.preferences.put(CompositeLoader.SEARCH_ORDER, "classpath,container");
+        Assert.assertSame(otherB, new CompositeLoader(api, entry).getEntry("foo/B"));
+
+        api.preferences.put(CompositeLoader.SEARCH_ORDER, "unknown");
+        Assert.assertNull(new CompositeLoader(api, entry).getEntry("foo/B"));
+    }
+
+    public void testContainerFallback() {
+        // Container not indexed yet, class in another package
+        TestEntry c = container.add("bar/C.class");
+
+        api.preferences.put(CompositeLoader.SEARCH_ORDER, "directory,classpath");
+        Assert.assertNull(new CompositeLoader(api, entry).getEntry("bar/C"));
+
+        api.preferences.put(CompositeLoader.SEARCH_ORDER, "directory,container");
+        Assert.assertSame(c, new CompositeLoader(api, entry).getEntry("bar/C"));
+    }
+
+    public void testMemoization() {
+        CompositeLoader loader = new CompositeLoader(api, entry);
+
+        Assert.assertFalse(loader.canLoad("foo/Missing"));
+        Assert.assertFalse(loader.canLoad("foo/Missing"));
+        Assert.assertEquals(1, api.lookupCount);
+
+        // Misses forgotten with the decompiled entry
+        loader.setEntry(container.add("foo/D.class"));
+
+        Assert.assertFalse(loader.canLoad("foo/Missing"));
+        Assert.assertEquals(2, api.lookupCount);
+    }
+
+    protected static class TestAPI implements API {
+        protected HashMap<String, String> preferences = new HashMap<>();
+        protected HashMap<String, Collection> typeDeclarations = new HashMap<>();
+        protected int lookupCount;
+
+        @SuppressWarnings("unchecked")
+        public void addTypeDeclaration(String internalTypeName, Container.Entry entry) {
+            typeDeclarations.computeIfAbsent(internalTypeName, k -> new ArrayList<>()).add(entry);
+        }
+
+        @Override public boolean openURI(URI uri) { return false; }
+        @Override public boolean openURI(int x, int y, Collection<Container.Entry> entries, String query, String fragment) { return false; }
+        @Override public void addURI(URI uri) {}
+        @Override public <T extends JComponent & UriGettable> void addPanel(String title, Icon icon, String tip, T component) {}
+        @Override public Collection<Action> getContextualActions(Container.Entry entry, String fragment) { return null; }
+        @Override public UriLoader getUriLoader(URI uri) { return null; }
+        @Override public FileLoader getFileLoader(File file) { return null; }
+        @Override public ContainerFactory getContainerFactory(Path rootPath) { return null; }
+        @Override public PanelFactory getMainPanelFactory(Container container) { return null; }
+        @Override public TreeNodeFactory getTreeNodeFactory(Container.Entry entry) { return null; }
+        @Override public TypeFactory getTypeFactory(Container.Entry entry) { return null; }
+        @Override public Indexer getIndexer(Container.Entry entry) { return null; }
+        @Override public SourceSaver getSourceSaver(Container.Entry entry) { return null; }
+        @Override public Map<String, String> getPreferences() { return preferences; }
+        @Override public String getSource(Container.Entry entry) { return null; }
+        @Override public void loadSource(Container.Entry entry, LoadSourceListener listener) {}
+        @Override public File loadSourceFile(Container.Entry entry) { return null; }
+
+        @Override
+        public Collection<Future<Indexes>> getCollectionOfFutureIndexes() {
+            Indexes indexes = name -> {
+                lookupCount++;
+                return "typeDeclarations".equals(name) ? typeDeclarations : null;
+            };
+
+            return Collections.singletonList(CompletableFuture.completedFuture(indexes));
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package org.jd.gui.util.decompiler;
+
+import junit.framework.TestCase;
+import org.jd.core.v1.ClassFileToJavaSourceDecompiler;
+import org.jd.core.v1.api.loader.Loader;
+import org.jd.core.v1.api.loader.LoaderException;
+import org.jd.core.v1.api.printer.Printer;
+import org.jd.gui.model.container.TestContainer;
+import org.jd.gui.model.container.TestEntry;
+import org.junit.Assert;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+
+public class DecompilationCacheTest extends TestCase {
+    protected File directory;
+    protected HashMap<String, String> preferences = new HashMap<>();
+    protected HashMap<String, Object> configuration = new HashMap<>();
+    protected DecompilationCache cache = new DecompilationCache(1024 * 1024, 1024 * 1024);
+    protected TestEntry entry = new TestEntry("org/jd/Test.class", ("class file " + System.nanoTime()).getBytes(StandardCharsets.UTF_8));
+    protected TestDecompiler decompiler = new TestDecompiler();
+    protected TestLoader loader = new TestLoader();
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("jd-gui.test.").toFile();
+        preferences.put(DecompilationCache.CACHE_DIRECTORY, directory.getPath());
+        loader.classes.put("org/jd/Super", new byte[] { 1, 2, 3 });
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(directory);
+    }
+
+    public void testRecordReplay() throws Exception {
+        LogPrinter printer = new LogPrinter();
+        DecompilationCache.Recorder recorder = new DecompilationCache.Recorder(printer);
+
+        print(recorder);
+
+        HashMap<String, Long> dependencies = new HashMap<>();
+
+        dependencies.put("org/jd/Super", Long.valueOf(0xFFFFFFFFL));
+        dependencies.put("org/jd/Missing", Long.valueOf(DecompilationCache.NOT_FOUND));
+
+        byte[] recording = recorder.toByteArray(dependencies);
+        LogPrinter replayPrinter = new LogPrinter();
+
+        DecompilationCache.check(recording);
+        DecompilationCache.replay(recording, replayPrinter);
+
+        LogPrinter expectedPrinter = new LogPrinter();
+
+        print(expectedPrinter);
+
+        Assert.assertEquals(expectedPrinter.log.toString(), printer.log.toString());
+        Assert.assertEquals(expectedPrinter.log.toString(), replayPrinter.log.toString());
+    }
+
+    public void testCorruptedRecording() throws Exception {
+        DecompilationCache.Recorder recorder = new DecompilationCache.Recorder(new LogPrinter());
+
+        print(recorder);
+        recorder.printText("last text");
+
+        byte[] recording = recorder.toByteArray(Collections.emptyMap());
+
+        // Truncated string, then unknown call
+        for (byte[] corrupted : Arrays.asList(Arrays.copyOf(recording, recording.length - 3), Arrays.copyOf(recording, recording.length + 1))) {
+            if (corrupted.length > recording.length) {
+                corrupted[recording.length] = 99;
+            }
+
+            try {
+                DecompilationCache.check(corrupted);
+                Assert.fail();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    public void testDecompileOnce() throws Exception {
+        String output = decompile();
+
+        Assert.assertEquals(1, decompiler.count);
+        Assert.assertEquals(output, decompile());
+        Assert.assertEquals(1, decompiler.count);
+        Assert.assertEquals(1, cache.getHitCount());
+
+        // Disk tier
+        cache.clear();
+
+        Assert.assertEquals(output, decompile());
+        Assert.assertEquals(1, decompiler.count);
+        Assert.assertEquals(1, cache.getDiskHitCount());
+    }
+
+    public void testDependenciesChanged() throws Exception {
+        String output = decompile();
+
+        // Super type modified
+        loader.classes.put("org/jd/Super", new byte[] { 4, 5, 6 });
+
+        Assert.assertNotEquals(output, decompile());
+        Assert.assertEquals(2, decompiler.count);
+
+        // Missing type found, in another open container
+        loader.classes.put("org/jd/Missing", new byte[] { 7 });
+
+        String newOutput = decompile();
+
+        Assert.assertTrue(newOutput.contains("org/jd/Missing found"));
+        Assert.assertEquals(3, decompiler.count);
+
+        // The result is replaced
+        Assert.assertEquals(newOutput, decompile());
+        Assert.assertEquals(3, decompiler.count);
+        cache.clear();
+        Assert.assertEquals(newOutput, decompile());
+        Assert.assertEquals(3, decompiler.count);
+    }
+
+    public void testLoaderFailureNotStored() throws Exception {
+        loader.failure = true;
+        decompile();
+        decompile();
+
+        Assert.assertEquals(2, decompiler.count);
+    }
+
+    public void testCorruptedFileDeleted() throws Exception {
+        String output = decompile();
+        File[] files = new File(directory, "decompilations").listFiles();
+
+        Assert.assertEquals(1, files.length);
+
+        // Valid header and deflated content, invalid recording
+        byte[] recording = { 0, DecompilationCache.TEXT * 2, 2, 8, 'p', 'a', 'r', 't', 'i', 'a', 'l', 0, 99 };
+
+        writeCacheFile(files[0], recording.length, recording);
+        cache.clear();
+
+        // Decompiled again, without partial output
+        Assert.assertEquals(output, decompile());
+        Assert.assertEquals(2, decompiler.count);
+        Assert.assertEquals(0, cache.getDiskHitCount());
+    }
+
+    public void testDamagedFileDeleted() throws Exception {
+        String output = decompile();
+        File file = new File(directory, "decompilations").listFiles()[0];
+        int count = 1;
+
+        // Negative length, length of a truncated content, invalid string index
+        byte[] recording = { 0, DecompilationCache.TEXT * 2, 1 };
+
+        for (int length : new int[] { -5, recording.length + 100, recording.length }) {
+            writeCacheFile(file, length, recording);
+            cache.clear();
+
+            // Decompiled again, the file replaced
+            Assert.assertEquals(output, decompile());
+            Assert.assertEquals(++count, decompiler.count);
+            Assert.assertEquals(0, cache.getDiskHitCount());
+            Assert.assertTrue(file.exists());
+        }
+
+        // Garbled content
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+        cache.clear();
+
+        Assert.assertEquals(output, decompile());
+        Assert.assertEquals(++count, decompiler.count);
+    }
+
+    public void testKeyWithInnerClasses() throws Exception {
+        TestContainer container = new TestContainer();
+        TestEntry outer = container.add("org/jd/Outer.class", newClass("org/jd/Outer", "org/jd/Outer$Inner"));
+
+        container.add("org/jd/Outer$Inner.class", newClass("org/jd/Outer$Inner", "org/jd/Outer$Inner", "org/jd/Outer$Inner$Deep"));
+        TestEntry deep = container.add("org/jd/Outer$Inner$Deep.class", newClass("org/jd/Outer$Inner$Deep", "org/jd/Outer$Inner$Deep"));
+        TestEntry other = container.add("org/jd/Outer2$Inner.class", newClass("org/jd/Outer2$Inner", "org/jd/Outer2$Inner"));
+
+        String key = DecompilationCache.getKey(preferences, outer, configuration);
+
+        Assert.assertNotNull(key);
+
+        // Sibling sharing the prefix, not an inner class
+        other.content = newClass("org/jd/Outer2$Inner", "org/jd/Outer2$Inner", "org/jd/Outer2$Inner$Other");
+        Assert.assertEquals(key, DecompilationCache.getKey(preferences, outer, configuration));
+
+        // Inner class of an inner class
+        deep.content = newClass("org/jd/Outer$Inner$Deep", "org/jd/Outer$Inner$Deep", "org/jd/Outer$Inner$Deep$1");
+        Assert.assertNotEquals(key, DecompilationCache.getKey(preferences, outer, configuration));
+    }
+
+    protected String decompile() throws Exception {
+        LogPrinter printer = new LogPrinter();
+
+        cache.decompile(preferences, decompiler, loader, printer, entry, configuration);
+        return printer.log.toString();
+    }
+
+    protected static void print(Printer printer) {
+        printer.start(120, 52, 0);
+        printer.startMarker(Printer.TYPE);
+        printer.printKeyword("class");
+        printer.printText(" ");
+        printer.printDeclaration(Printer.TYPE, "org/jd/Test", "Test", null);
+        printer.printText(" été \u2603 ");
+        printer.indent();
+        printer.startLine(-1);
+        printer.printReference(Printer.METHOD, "org/jd/Super", "method", "()V", "org/jd/Test");
+        printer.printNumericConstant("-2147483648");
+        printer.printStringConstant("\"\\n\"", "org/jd/Test");
+        printer.printText("");
+        printer.endLine();
+        printer.extraLine(Integer.MAX_VALUE);
+        printer.startLine(Integer.MIN_VALUE);
+        printer.printText(" ");
+        printer.endLine();
+        printer.unindent();
+        printer.endMarker(Printer.TYPE);
+        printer.end();
+    }
+
+    protected static byte[] newClass(String name, String... innerNames) {
+        ClassWriter classWriter = new ClassWriter(0);
+
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+
+        for (String innerName : innerNames) {
+            int index = innerName.lastIndexOf('$');
+            classWriter.visitInnerClass(innerName, innerName.substring(0, index), innerName.substring(index + 1), Opcodes.ACC_PUBLIC);
+        }
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    protected static void delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Decompiler printing the requested types and the checksums of their contents.
+     */
+    protected static void writeCacheFile(File file, int length, byte[] recording) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(DecompilationCache.MAGIC);
+            out.writeInt(DecompilationCache.VERSION);
+            out.writeInt(length);
+
+            DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+            deflater.write(recording);
+            deflater.finish();
+        }
+    }
+
+    protected static class TestDecompiler extends ClassFileToJavaSourceDecompiler {
+        protected int count;
+
+        @Override
+        public void decompile(Loader loader, Printer printer, String internalName, Map<String, Object> configuration) throws Exception {
+            count++;
+            printer.start(10, 52, 0);
+            printer.printDeclaration(Printer.TYPE, internalName, internalName, null);
+
+            for (String dependency : Arrays.asList("org/jd/Super", "org/jd/Missing")) {
+                printer.startLine(1);
+
+                if (loader.canLoad(dependency)) {
+                    try {
+                        printer.printText(dependency + " found " + Arrays.toString(loader.load(dependency)));
+                    } catch (LoaderException e) {
+                        printer.printText(dependency + " not read");
+                    }
+                } else {
+                    printer.printText(dependency + " not found");
+                }
+
+                printer.endLine();
+            }
+
+            printer.end();
+        }
+    }
+
+    protected static class TestLoader implements Loader {
+        protected HashMap<String, byte[]> classes = new HashMap<>();
+        protected boolean failure;
+
+        @Override
+        public boolean canLoad(String internalName) {
+            return classes.containsKey(internalName);
+        }
+
+        @Override
+        public byte[] load(String internalName) throws LoaderException {
+            if (failure) {
+                throw new LoaderException("Unable to read " + internalName);
+            }
+            return classes.get(internalName);
+        }
+    }
+
+    protected static class LogPrinter implements Printer {
+        protected StringBuilder log = new StringBuilder();
+
+        protected void log(Object... values) {
+            log.append(Arrays.toString(values)).append('\n');
+        }
+
+        @Override public void start(int maxLineNumber, int majorVersion, int minorVersion) { log("start", maxLineNumber, majorVersion, minorVersion); }
+        @Override public void end() { log("end"); }
+        @Override public void printText(String text) { log("text", text); }
+        @Override public void printNumericConstant(String constant) { log("numeric", constant); }
+        @Override public void printStringConstant(String constant, String ownerInternalName) { log("string", constant, ownerInternalName); }
+        @Override public void printKeyword(String keyword) { log("keyword", keyword); }
+        @Override public void printDeclaration(int type, String internalTypeName, String name, String descriptor) { log("declaration", type, internalTypeName, name, descriptor); }
+        @Override public void printReference(int type, String internalTypeName, String name, String descriptor, String ownerInternalName) { log("reference", type, internalTypeName, name, descriptor, ownerInternalName); }
+        @Override public void indent() { log("indent"); }
+        @Override public void unindent() { log("unindent"); }
+        @Override public void startLine(int lineNumber) { log("startLine", lineNumber); }
+        @Override public void endLine() { log("endLine"); }
+        @Override public void extraLine(int count) { log("extraLine", count); }
+        @Override public void startMarker(int type) { log("startMarker", type); }
+        @Override public void endMarker(int type) { log("endMarker", type); }
+    }
+}
@@ -0,0 +1,195 @@
+package org.jd.gui.util.io;
+
+import junit.framework.TestCase;
+import org.jd.gui.api.feature.ContentChecksumGettable;
+import org.jd.gui.model.container.TestContainer;
+import org.jd.gui.model.container.TestEntry;
+import org.junit.Assert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+public class EntryContentCacheTest extends TestCase {
+    protected static final int CONTENT_SIZE = 4096;
+
+    public void testReadThrough() throws Exception {
+        EntryContentCache cache = new EntryContentCache(64 * CONTENT_SIZE, false);
+        TestContainer container = new TestContainer();
+        ChecksumEntry entry = newEntry(container, "A.class", 1L);
+
+        Assert.assertArrayEquals(entry.content, cache.getBytes(entry));
+        Assert.assertArrayEquals(entry.content, cache.getBytes(entry));
+        Assert.assertEquals(1, entry.readCount);
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(CONTENT_SIZE, cache.getWeight());
+
+        // The content is cached by checksum
+        ChecksumEntry modified = newEntry(container, "A.class", 2L);
+
+        Assert.assertArrayEquals(modified.content, cache.getBytes(modified));
+        Assert.assertEquals(1, modified.readCount);
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    public void testScanNotCached() throws Exception {
+        EntryContentCache cache = new EntryContentCache(64 * CONTENT_SIZE, false);
+        ChecksumEntry entry = newEntry(new TestContainer(), "A.class", 1L);
+
+        Assert.assertArrayEquals(entry.content, readAll(cache.getInputStream(entry)));
+        Assert.assertArrayEquals(entry.content, readAll(cache.getInputStream(entry)));
+        Assert.assertEquals(2, entry.readCount);
+        Assert.assertEquals(0, cache.getWeight());
+
+        // Once cached by a read-through access, the scans read the cached content
+        cache.getBytes(entry);
+        Assert.assertArrayEquals(entry.content, readAll(cache.getInputStream(entry)));
+        Assert.assertEquals(3, entry.readCount);
+    }
+
+    public void testLargeContentsNotCached() throws Exception {
+        EntryContentCache cache = new EntryContentCache(16 * CONTENT_SIZE, false);
+        ChecksumEntry entry = newEntry(new TestContainer(), "Large.class", 1L, CONTENT_SIZE + 1);
+
+        cache.getBytes(entry);
+        cache.getBytes(entry);
+        Assert.assertEquals(2, entry.readCount);
+        Assert.assertEquals(0, cache.getWeight());
+    }
+
+    public void testWeightBounded() throws Exception {
+        long maxWeight = 100 * CONTENT_SIZE;
+        EntryContentCache cache = new EntryContentCache(maxWeight, false);
+        TestContainer container = new TestContainer();
+        Random random = new Random(7);
+
+        for (int i=0; i<5000; i++) {
+            cache.getBytes(newEntry(container, "E" + random.nextInt(500) + ".class", 1L, 1 + random.nextInt(4 * CONTENT_SIZE)));
+            Assert.assertTrue(cache.getWeight() <= maxWeight);
+        }
+
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+        Assert.assertEquals(cache.getWeight(), sumOfWeights(cache));
+    }
+
+    public void testFrequentContentsSurviveScan() throws Exception {
+        EntryContentCache cache = new EntryContentCache(100 * CONTENT_SIZE, false);
+        TestContainer container = new TestContainer();
+        ArrayList<ChecksumEntry> hotEntries = new ArrayList<>();
+
+        for (int i=0; i<20; i++) {
+            hotEntries.add(newEntry(container, "Hot" + i + ".class", 1L));
+        }
+
+        for (int i=0; i<5; i++) {
+            for (ChecksumEntry entry : hotEntries) {
+                cache.getBytes(entry);
+            }
+        }
+
+        // A scan of contents read once must not evict the frequently read ones, as a LRU policy would do
+        for (int i=0; i<1000; i++) {
+            cache.getBytes(newEntry(container, "Cold" + i + ".class", 1L));
+        }
+
+        for (ChecksumEntry entry : hotEntries) {
+            cache.getBytes(entry);
+            Assert.assertEquals(entry.path, 1, entry.readCount);
+        }
+    }
+
+    public void testRecentContentsAdmitted() throws Exception {
+        EntryContentCache cache = new EntryContentCache(100 * CONTENT_SIZE, false);
+        TestContainer container = new TestContainer();
+
+        for (int i=0; i<1000; i++) {
+            cache.getBytes(newEntry(container, "Old" + i + ".class", 1L));
+        }
+
+        // The most recent content is kept in the window
+        ChecksumEntry entry = newEntry(container, "New.class", 1L);
+
+        cache.getBytes(entry);
+        cache.getBytes(entry);
+        Assert.assertEquals(1, entry.readCount);
+    }
+
+    public void testInvalidate() throws Exception {
+        EntryContentCache cache = new EntryContentCache(64 * CONTENT_SIZE, true);
+        TestContainer container1 = new TestContainer();
+        TestContainer container2 = new TestContainer();
+        ChecksumEntry entry1 = newEntry(container1, "A.class", 1L);
+        ChecksumEntry entry2 = newEntry(container2, "A.class", 1L);
+
+        Assert.assertArrayEquals(entry1.content, cache.getBytes(entry1));
+        Assert.assertArrayEquals(entry2.content, cache.getBytes(entry2));
+        Assert.assertEquals(2 * CONTENT_SIZE, cache.getWeight());
+
+        cache.invalidate(container1);
+        Assert.assertEquals(CONTENT_SIZE, cache.getWeight());
+
+        // Off heap contents are copied out
+        Assert.assertArrayEquals(entry2.content, cache.getBytes(entry2));
+        Assert.assertArrayEquals(entry2.content, readAll(cache.getInputStream(entry2)));
+        Assert.assertEquals(1, entry2.readCount);
+        Assert.assertArrayEquals(entry1.content, cache.getBytes(entry1));
+        Assert.assertEquals(2, entry1.readCount);
+
+        cache.clear();
+        Assert.assertEquals(0, cache.getWeight());
+    }
+
+    protected static long sumOfWeights(EntryContentCache cache) {
+        long weight = 0;
+
+        for (EntryContentCache.Node node : cache.nodes.values()) {
+            weight += node.weight;
+        }
+
+        return weight;
+    }
+
+    protected static byte[] readAll(InputStream is) throws IOException {
+        try (InputStream input = is) {
+            byte[] bytes = new byte[CONTENT_SIZE * 8];
+            int length = 0;
+            int count;
+
+            while ((count = input.read(bytes, length, bytes.length - length)) > 0) {
+                length += count;
+            }
+
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+    protected static ChecksumEntry newEntry(TestContainer container, String path, long checksum) {
+        return newEntry(container, path, checksum, CONTENT_SIZE);
+    }
+
+    protected static ChecksumEntry newEntry(TestContainer container, String path, long checksum, int size) {
+        byte[] content = new byte[size];
+
+        new Random(Objects.hash(path, checksum)).nextBytes(content);
+        return new ChecksumEntry(container, path, checksum, content);
+    }
+
+    protected static class ChecksumEntry extends TestEntry implements ContentChecksumGettable {
+        protected long checksum;
+        protected int readCount;
+
+        public ChecksumEntry(TestContainer container, String path, long checksum, byte[] content) {
+            super(container, container.root, path, null, false, content);
+            this.checksum = checksum;
+        }
+
+        @Override public long getContentChecksum() { return checksum; }
+
+        @Override
+        public InputStream getInputStream() {
+            readCount++;
+            return super.getInputStream();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.jd.gui.util.io;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class SharedFileSystemsTest extends TestCase {
+    protected File directory;
+    protected SharedFileSystems sharedFileSystems = new SharedFileSystems();
+    protected AtomicInteger openCount = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("jd-gui.test.").toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+
+        directory.delete();
+    }
+
+    public void testReferenceCounting() throws Exception {
+        File file = newArchive("a.zip");
+        FileSystem fileSystem1 = sharedFileSystems.acquire("a", () -> open(file));
+        FileSystem fileSystem2 = sharedFileSystems.acquire("a", () -> open(file));
+
+        Assert.assertSame(fileSystem1, fileSystem2);
+        Assert.assertEquals(1, openCount.get());
+        Assert.assertEquals(2, sharedFileSystems.getCount(fileSystem1));
+
+        // Closed by the last release
+        sharedFileSystems.release(fileSystem1);
+        Assert.assertTrue(fileSystem1.isOpen());
+        Assert.assertEquals(1, sharedFileSystems.getCount(fileSystem1));
+
+        sharedFileSystems.release(fileSystem2);
+        Assert.assertFalse(fileSystem1.isOpen());
+        Assert.assertEquals(0, sharedFileSystems.getCount(fileSystem1));
+
+        // Opened again
+        FileSystem fileSystem3 = sharedFileSystems.acquire("a", () -> open(file));
+
+        Assert.assertNotSame(fileSystem1, fileSystem3);
+        Assert.assertTrue(fileSystem3.isOpen());
+        Assert.assertEquals(2, openCount.get());
+
+        sharedFileSystems.release(fileSystem3);
+    }
+
+    public void testReleaseUnknownFileSystem() throws Exception {
+        FileSystem fileSystem = open(newArchive("a.zip"));
+
+        try {
+            // Not acquired: ignored
+            sharedFileSystems.release(fileSystem);
+            Assert.assertTrue(fileSystem.isOpen());
+            Assert.assertEquals(0, sharedFileSystems.getCount(fileSystem));
+        } finally {
+            fileSystem.close();
+        }
+    }
+
+    public void testOpenerFailure() throws Exception {
+        File file = newArchive("a.zip");
+
+        Assert.assertNull(sharedFileSystems.acquire("a", () -> null));
+
+        try {
+            sharedFileSystems.acquire("a", () -> { throw new IOException("test"); });
+            Assert.fail();
+        } catch (IOException ignore) {
+        }
+
+        // The key is not reserved by the failed openings
+        FileSystem fileSystem = sharedFileSystems.acquire("a", () -> open(file));
+
+        Assert.assertNotNull(fileSystem);
+        Assert.assertEquals(1, sharedFileSystems.getCount(fileSystem));
+
+        sharedFileSystems.release(fileSystem);
+    }
+
+    public void testConcurrentOpenings() throws Exception {
+        File fileA = newArchive("a.zip");
+        File fileB = newArchive("b.zip");
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<FileSystem> future1 = executor.submit(() -> sharedFileSystems.acquire("a", () -> {
+                opening.countDown();
+                try {
+                    resume.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return open(fileA);
+            }));
+
+            Assert.assertTrue(opening.await(10, TimeUnit.SECONDS));
+
+            // Same key: waits for the first opening
+            Future<FileSystem> future2 = executor.submit(() -> sharedFileSystems.acquire("a", () -> open(fileA)));
+
+            // Other key: not blocked by the opening of "a"
+            FileSystem fileSystemB = sharedFileSystems.acquire("b", () -> open(fileB));
+
+            Assert.assertTrue(fileSystemB.isOpen());
+            Assert.assertFalse(future2.isDone());
+
+            resume.countDown();
+
+            FileSystem fileSystem1 = future1.get(10, TimeUnit.SECONDS);
+
+            Assert.assertSame(fileSystem1, future2.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(2, sharedFileSystems.getCount(fileSystem1));
+            Assert.assertEquals(2, openCount.get());
+
+            sharedFileSystems.release(fileSystem1);
+            sharedFileSystems.release(fileSystem1);
+            sharedFileSystems.release(fileSystemB);
+        } finally {
+            resume.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    protected File newArchive(String name) throws IOException {
+        File file = new File(directory, name);
+
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file))) {
+            zos.putNextEntry(new ZipEntry("A.class"));
+            zos.write(new byte[] { 1, 2, 3 });
+            zos.closeEntry();
+        }
+
+        return file;
+    }
+
+    protected FileSystem open(File file) throws IOException {
+        openCount.incrementAndGet();
+        return FileSystems.newFileSystem(file.toPath(), (ClassLoader)null);
+    }
+}
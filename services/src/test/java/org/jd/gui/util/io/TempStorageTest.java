@@ -0,0 +1,92 @@
+package org.jd.gui.util.io;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class TempStorageTest extends TestCase {
+    protected static final int FILE_SIZE = 1024;
+
+    protected TempStorage tempStorage = new TempStorage(3 * FILE_SIZE);
+    protected Object owner1 = new Object();
+    protected Object owner2 = new Object();
+
+    @Override
+    protected void tearDown() {
+        tempStorage.release(owner1);
+        tempStorage.release(owner2);
+        if (tempStorage.directory != null) {
+            tempStorage.directory.delete();
+        }
+    }
+
+    public void testQuota() throws Exception {
+        File file1 = newFile(owner1);
+        File file2 = newFile(owner1);
+        File file3 = newFile(owner2);
+
+        Assert.assertEquals(3 * FILE_SIZE, tempStorage.getSize());
+
+        // The oldest file is deleted beyond the quota
+        File file4 = newFile(owner2);
+
+        Assert.assertFalse(file1.exists());
+        Assert.assertTrue(file2.exists());
+        Assert.assertTrue(file3.exists());
+        Assert.assertTrue(file4.exists());
+        Assert.assertEquals(3 * FILE_SIZE, tempStorage.getSize());
+    }
+
+    public void testLargeFileKept() throws Exception {
+        File file1 = newFile(owner1);
+        File file2 = tempStorage.createTempFile(owner1, "jd-gui.", ".tmp");
+
+        Files.write(file2.toPath(), new byte[4 * FILE_SIZE]);
+        tempStorage.written(file2);
+
+        // The other files are deleted, not the written file
+        Assert.assertFalse(file1.exists());
+        Assert.assertTrue(file2.exists());
+        Assert.assertEquals(4 * FILE_SIZE, tempStorage.getSize());
+    }
+
+    public void testReleaseByOwner() throws Exception {
+        File file1 = newFile(owner1);
+        File file2 = newFile(owner2);
+        File file3 = newFile(owner1);
+
+        tempStorage.release(owner1);
+
+        Assert.assertFalse(file1.exists());
+        Assert.assertTrue(file2.exists());
+        Assert.assertFalse(file3.exists());
+        Assert.assertEquals(FILE_SIZE, tempStorage.getSize());
+
+        // Unknown owner: ignored
+        tempStorage.release(new Object());
+        Assert.assertTrue(file2.exists());
+    }
+
+    public void testDelete() throws Exception {
+        File file1 = newFile(owner1);
+        File file2 = newFile(owner1);
+
+        tempStorage.delete(file1);
+
+        Assert.assertFalse(file1.exists());
+        Assert.assertTrue(file2.exists());
+        Assert.assertEquals(FILE_SIZE, tempStorage.getSize());
+    }
+
+    protected File newFile(Object owner) throws IOException {
+        File file = tempStorage.createTempFile(owner, "jd-gui.", ".tmp");
+
+        Files.write(file.toPath(), new byte[FILE_SIZE]);
+        tempStorage.written(file);
+
+        return file;
+    }
+}
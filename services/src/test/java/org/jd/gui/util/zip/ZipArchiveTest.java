@@ -0,0 +1,382 @@
+package org.jd.gui.util.zip;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+public class ZipArchiveTest extends TestCase {
+    public void testParseCentralDirectory() throws Exception {
+        byte[] bytes = newArchive(
+            "META-INF/", null,
+            "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n",
+            "org/jd/A.class", "A",
+            "org/jd/B.class", "",
+            "/org/jd/sub/C.class", "C",
+            "org/jd/été.txt", "summer");
+        ZipArchive archive = new ZipArchive(ByteBuffer.wrap(bytes));
+
+        Assert.assertEquals("", archive.getPath(archive.getRoot()));
+        Assert.assertTrue(archive.isDirectory(archive.getRoot()));
+        // Entries and implicit directories 'org', 'org/jd' and 'org/jd/sub'
+        Assert.assertEquals(10, archive.getNodeCount());
+        Assert.assertEquals(Arrays.asList("META-INF", "org"), getChildPaths(archive, archive.getRoot()));
+        Assert.assertEquals(Arrays.asList("org/jd/A.class", "org/jd/B.class", "org/jd/sub", "org/jd/été.txt"), getChildPaths(archive, archive.getNode("org/jd")));
+
+        int node = archive.getNode("org/jd/sub/C.class");
+        Assert.assertNotEquals(-1, node);
+        Assert.assertFalse(archive.isDirectory(node));
+        Assert.assertEquals(archive.getNode("org/jd/sub"), archive.getParent(node));
+        Assert.assertTrue(archive.isDirectory(archive.getNode("org/jd/sub")));
+        Assert.assertEquals(1, archive.getSize(node));
+        Assert.assertEquals(crc("C"), archive.getCrc(node));
+        Assert.assertEquals("C", read(archive, node));
+
+        node = archive.getNode("org/jd/été.txt");
+        Assert.assertNotEquals(-1, node);
+        Assert.assertEquals("org/jd/été.txt", archive.getPath(node));
+        Assert.assertEquals("summer", read(archive, node));
+
+        Assert.assertEquals("", read(archive, archive.getNode("org/jd/B.class")));
+        Assert.assertEquals(-1, archive.getNode("org/jd/D.class"));
+        Assert.assertEquals(-1, archive.getNode("org/jd/A.class/"));
+        Assert.assertEquals(-1, archive.getNode("org/j"));
+    }
+
+    public void testSameEntriesAsZipFile() throws Exception {
+        Random random = new Random(42);
+        ArrayList<String> namesAndContents = new ArrayList<>();
+
+        for (int i=0; i<500; i++) {
+            namesAndContents.add("p" + random.nextInt(10) + "/q" + random.nextInt(10) + "/Entry" + i + ".class");
+            namesAndContents.add(randomContent(random));
+        }
+
+        byte[] bytes = newArchive(namesAndContents.toArray(new String[0]));
+        ZipArchive archive = new ZipArchive(ByteBuffer.wrap(bytes));
+        File file = File.createTempFile("jd-gui.test.", ".zip");
+
+        try {
+            Files.write(file.toPath(), bytes);
+
+            try (ZipFile zipFile = new ZipFile(file)) {
+                int count = 0;
+
+                for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); count++) {
+                    ZipEntry zipEntry = e.nextElement();
+                    int node = archive.getNode(zipEntry.getName());
+
+                    Assert.assertNotEquals(zipEntry.getName(), -1, node);
+                    Assert.assertEquals(zipEntry.getSize(), archive.getSize(node));
+                    Assert.assertEquals((int)zipEntry.getCrc(), archive.getCrc(node));
+                    Assert.assertEquals(zipEntry.getTime(), archive.getLastModifiedTime(node));
+
+                    try (InputStream is = zipFile.getInputStream(zipEntry)) {
+                        Assert.assertArrayEquals(readAll(is), readAll(archive.getInputStream(node)));
+                    }
+                }
+
+                Assert.assertEquals(500, count);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testPrependedBytes() throws Exception {
+        byte[] archiveBytes = newArchive("A.class", "A", "b/B.class", "B");
+        byte[] script = "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] bytes = new byte[script.length + archiveBytes.length];
+
+        System.arraycopy(script, 0, bytes, 0, script.length);
+        System.arraycopy(archiveBytes, 0, bytes, script.length, archiveBytes.length);
+
+        ZipArchive archive = new ZipArchive(ByteBuffer.wrap(bytes));
+
+        Assert.assertEquals("A", read(archive, archive.getNode("A.class")));
+        Assert.assertEquals("B", read(archive, archive.getNode("b/B.class")));
+    }
+
+    public void testInvalidArchive() throws Exception {
+        try {
+            new ZipArchive(ByteBuffer.wrap("not an archive".getBytes(StandardCharsets.US_ASCII)));
+            Assert.fail();
+        } catch (ZipException ignore) {
+        }
+
+        byte[] bytes = newArchive("A.class", "A");
+        // Truncate the local header and the content
+        byte[] truncated = Arrays.copyOfRange(bytes, 20, bytes.length);
+
+        try {
+            new ZipArchive(ByteBuffer.wrap(truncated));
+            Assert.fail();
+        } catch (ZipException ignore) {
+        }
+    }
+
+    public void testNestedArchives() throws Exception {
+        byte[] inner = newArchive("a/A.class", "nested A", "B.class", "nested B");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            putEntry(zos, "lib/stored.jar", inner, ZipEntry.STORED);
+            putEntry(zos, "lib/deflated.jar", inner, ZipEntry.DEFLATED);
+            putEntry(zos, "Main.class", "main".getBytes(StandardCharsets.UTF_8), ZipEntry.DEFLATED);
+        }
+
+        File file = File.createTempFile("jd-gui.test.", ".jar");
+
+        try {
+            Files.write(file.toPath(), baos.toByteArray());
+
+            ZipArchiveFileSystemProvider provider = ZipArchiveFileSystemProvider.getInstance();
+            FileSystem fileSystem = provider.newFileSystem(file.toPath(), Collections.emptyMap());
+            ZipArchive archive = ((ZipArchiveFileSystem)fileSystem).getArchive();
+
+            // Stored archives are read without inflating, compressed ones are not
+            Assert.assertNotNull(archive.getStoredContent(archive.getNode("lib/stored.jar")));
+            Assert.assertNull(archive.getStoredContent(archive.getNode("lib/deflated.jar")));
+
+            for (String path : Arrays.asList("lib/stored.jar", "lib/deflated.jar")) {
+                Path nestedPath = fileSystem.getPath(path);
+                FileSystem nestedFileSystem = provider.newFileSystem(nestedPath, Collections.emptyMap());
+                Path root = nestedFileSystem.getRootDirectories().iterator().next();
+
+                Assert.assertEquals("nested A", new String(Files.readAllBytes(root.resolve("a/A.class")), StandardCharsets.UTF_8));
+                Assert.assertEquals("nested B", new String(Files.readAllBytes(root.resolve("B.class")), StandardCharsets.UTF_8));
+                Assert.assertTrue(Files.isDirectory(root.resolve("a")));
+                Assert.assertFalse(Files.exists(root.resolve("C.class")));
+                Assert.assertTrue(nestedPath.toUri().toString() + " -> " + root.resolve("B.class").toUri(), root.resolve("B.class").toUri().toString().startsWith(nestedPath.toUri().toString() + '!'));
+            }
+
+            Assert.assertEquals("main", new String(Files.readAllBytes(fileSystem.getPath("Main.class")), StandardCharsets.UTF_8));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testFileArchive() throws Exception {
+        Random random = new Random(42);
+        ArrayList<String> namesAndContents = new ArrayList<>();
+
+        // Central directory larger than the bytes loaded first from the end of the file
+        for (int i=0; i<2000; i++) {
+            namesAndContents.add("org/jd/gui/util/zip/package" + random.nextInt(10) + "/Entry" + i + ".class");
+            namesAndContents.add(randomContent(random));
+        }
+
+        byte[] archiveBytes = newArchive(namesAndContents.toArray(new String[0]));
+        byte[] script = "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] bytes = new byte[script.length + archiveBytes.length];
+
+        System.arraycopy(script, 0, bytes, 0, script.length);
+        System.arraycopy(archiveBytes, 0, bytes, script.length, archiveBytes.length);
+
+        File file = File.createTempFile("jd-gui.test.", ".zip");
+
+        try {
+            Files.write(file.toPath(), bytes);
+
+            ZipArchive expected = new ZipArchive(ByteBuffer.wrap(bytes));
+            ZipArchive archive = new ZipArchive(new RandomAccessFile(file, "r"));
+
+            try {
+                Assert.assertEquals(expected.getNodeCount(), archive.getNodeCount());
+
+                for (int i=0; i<namesAndContents.size(); i+=2) {
+                    int node = archive.getNode(namesAndContents.get(i));
+
+                    Assert.assertNotEquals(-1, node);
+                    Assert.assertEquals(namesAndContents.get(i+1), read(archive, node));
+                }
+            } finally {
+                archive.close();
+            }
+
+            // Released: the file can be deleted, its entries can no longer be read
+            Assert.assertTrue(file.delete());
+
+            try {
+                read(archive, archive.getNode(namesAndContents.get(0)));
+                Assert.fail();
+            } catch (IOException ignore) {
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testFileReplaced() throws Exception {
+        File file = File.createTempFile("jd-gui.test.", ".jar");
+
+        try {
+            Files.write(file.toPath(), newArchive("A.class", "A", "b/B.class", "B"));
+
+            FileSystem fileSystem = ZipArchiveFileSystemProvider.getInstance().newFileSystem(file.toPath(), Collections.emptyMap());
+            Path path = fileSystem.getPath("b/B.class");
+
+            Assert.assertEquals("B", new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+
+            // Rewritten in place: an IOException, not an error of the JVM
+            Files.write(file.toPath(), "not an archive".getBytes(StandardCharsets.US_ASCII));
+
+            try {
+                Files.readAllBytes(path);
+                Assert.fail();
+            } catch (IOException ignore) {
+            }
+
+            // Replaced once closed
+            fileSystem.close();
+            Assert.assertFalse(fileSystem.isOpen());
+            Assert.assertTrue(file.delete());
+            Files.write(file.toPath(), newArchive("C.class", "C"));
+
+            FileSystem newFileSystem = ZipArchiveFileSystemProvider.getInstance().newFileSystem(file.toPath(), Collections.emptyMap());
+
+            Assert.assertEquals("C", new String(Files.readAllBytes(newFileSystem.getPath("C.class")), StandardCharsets.UTF_8));
+            newFileSystem.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testPathMatcher() throws Exception {
+        File file = File.createTempFile("jd-gui.test.", ".jar");
+
+        try {
+            Files.write(file.toPath(), newArchive("A.class", "A"));
+
+            try (FileSystem fileSystem = ZipArchiveFileSystemProvider.getInstance().newFileSystem(file.toPath(), Collections.emptyMap())) {
+                String[] paths = { "A.class", "A$1.class", "a/B.class", "a/b/C.class", "a/b/C.java", "x+y.txt", "{}.txt" };
+
+                assertMatches(fileSystem, "glob:*.class", paths, "A.class", "A$1.class");
+                assertMatches(fileSystem, "glob:**.class", paths, "A.class", "A$1.class", "a/B.class", "a/b/C.class");
+                assertMatches(fileSystem, "glob:a/**", paths, "a/B.class", "a/b/C.class", "a/b/C.java");
+                assertMatches(fileSystem, "glob:a/*/?.{class,java}", paths, "a/b/C.class", "a/b/C.java");
+                assertMatches(fileSystem, "glob:[A-B]*", paths, "A.class", "A$1.class");
+                assertMatches(fileSystem, "glob:a/[!a]*", paths, "a/B.class");
+                assertMatches(fileSystem, "glob:x+y.txt", paths, "x+y.txt");
+                assertMatches(fileSystem, "glob:\\{\\}.txt", paths, "{}.txt");
+                assertMatches(fileSystem, "regex:a/.*\\.java", paths, "a/b/C.java");
+
+                try {
+                    fileSystem.getPathMatcher("glob:{a,{b,c}}");
+                    Assert.fail();
+                } catch (IllegalArgumentException ignore) {
+                }
+
+                try {
+                    fileSystem.getPathMatcher("other:*");
+                    Assert.fail();
+                } catch (UnsupportedOperationException ignore) {
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    protected static void assertMatches(FileSystem fileSystem, String syntaxAndPattern, String[] paths, String... expected) {
+        PathMatcher matcher = fileSystem.getPathMatcher(syntaxAndPattern);
+        ArrayList<String> matches = new ArrayList<>();
+
+        for (String path : paths) {
+            if (matcher.matches(fileSystem.getPath(path))) {
+                matches.add(path);
+            }
+        }
+
+        Assert.assertEquals(syntaxAndPattern, Arrays.asList(expected), matches);
+    }
+
+    protected static byte[] newArchive(String... namesAndContents) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            for (int i=0; i<namesAndContents.length; i+=2) {
+                String name = namesAndContents[i];
+                String content = namesAndContents[i+1];
+
+                if (content == null) {
+                    zos.putNextEntry(new ZipEntry(name));
+                    zos.closeEntry();
+                } else {
+                    // Alternate stored and deflated entries
+                    putEntry(zos, name, content.getBytes(StandardCharsets.UTF_8), ((i / 2) % 2 == 0) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+                }
+            }
+        }
+
+        return baos.toByteArray();
+    }
+
+    protected static void putEntry(ZipOutputStream zos, String name, byte[] content, int method) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(name);
+
+        zipEntry.setMethod(method);
+
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            zipEntry.setSize(content.length);
+            zipEntry.setCompressedSize(content.length);
+            zipEntry.setCrc(crc.getValue());
+        }
+
+        zos.putNextEntry(zipEntry);
+        zos.write(content);
+        zos.closeEntry();
+    }
+
+    protected static List<String> getChildPaths(ZipArchive archive, int node) {
+        ArrayList<String> paths = new ArrayList<>();
+
+        for (int child=archive.getFirstChild(node); child!=-1; child=archive.getNextSibling(child)) {
+            paths.add(archive.getPath(child));
+        }
+
+        Collections.sort(paths);
+        return paths;
+    }
+
+    protected static String read(ZipArchive archive, int node) throws IOException {
+        return new String(readAll(archive.getInputStream(node)), StandardCharsets.UTF_8);
+    }
+
+    protected static byte[] readAll(InputStream is) throws IOException {
+        try (InputStream input = is) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int count;
+
+            while ((count = input.read(buffer)) > 0) {
+                baos.write(buffer, 0, count);
+            }
+
+            return baos.toByteArray();
+        }
+    }
+
+    protected static String randomContent(Random random) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i=random.nextInt(2000); i>0; i--) {
+            sb.append((char)('a' + random.nextInt(random.nextBoolean() ? 3 : 26)));
+        }
+
+        return sb.toString();
+    }
+
+    protected static int crc(String content) {
+        CRC32 crc = new CRC32();
+        crc.update(content.getBytes(StandardCharsets.UTF_8));
+        return (int)crc.getValue();
+    }
+}